@@ -0,0 +1,73 @@
+package com.example.jagadish.motion;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Matrix;
+
+import java.io.ByteArrayOutputStream;
+
+/**
+ * Android graphics helpers; the pixel kernels they build on live in ImageProcessing.
+ */
+
+public abstract class BitmapProcessing {
+
+    private BitmapProcessing() {
+    }
+
+    public static Bitmap rgbToBitmap(int[] rgb, int width, int height) {
+        if (rgb == null) throw new NullPointerException();
+
+        Bitmap bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.RGB_565);
+        bitmap.setPixels(rgb, 0, width, 0, 0, width, height);
+        return bitmap;
+    }
+
+    /**
+     * Rotate the given Bitmap by the given degrees.
+     *
+     * @param bmp
+     *            Bitmap to rotate.
+     * @param degrees
+     *            Degrees to rotate.
+     * @return Bitmap which was rotated.
+     */
+    public static Bitmap rotate(Bitmap bmp, int degrees) {
+        if (bmp == null) throw new NullPointerException();
+
+        // getting scales of the image
+        int width = bmp.getWidth();
+        int height = bmp.getHeight();
+
+        // Creating a Matrix and rotating it to 90 degrees
+        Matrix matrix = new Matrix();
+        matrix.postRotate(degrees);
+
+        // Getting the rotated Bitmap
+        return Bitmap.createBitmap(bmp, 0, 0, width, height, matrix, true);
+    }
+
+    /**
+     * Rotate the given image in byte array format by the given degrees.
+     *
+     * @param data
+     *            Bitmap to rotate in byte array form.
+     * @param degrees
+     *            Degrees to rotate.
+     * @return Byte array format of an image which was rotated.
+     */
+    public static byte[] rotate(byte[] data, int degrees) {
+        if (data == null) throw new NullPointerException();
+
+        // Convert the byte data into a Bitmap
+        Bitmap bmp = BitmapFactory.decodeByteArray(data, 0, data.length);
+
+        // Getting the rotated Bitmap
+        Bitmap rotatedBmp = rotate(bmp, degrees);
+
+        // Get the byte array from the Bitmap
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        rotatedBmp.compress(Bitmap.CompressFormat.JPEG, 100, stream);
+        return stream.toByteArray();
+    }
+}
@@ -0,0 +1,371 @@
+package com.example.jagadish.motion;
+
+import android.hardware.Camera;
+import android.media.MediaRecorder;
+import android.util.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Starts, rolls over and stops the segment files of motion events. The next output is prepared on
+ * a background thread while the current segment records, so a trigger or roll-over only has to
+ * start writing. With a pre-roll encoder the prepared output is an opened muxer and segments
+ * follow each other at a key frame without losing a frame. With MediaRecorder only the file is
+ * prepared, because the recorder cannot be prepared while the preview still holds the camera, and
+ * a roll-over leaves a short gap while the next recorder starts.
+ */
+
+public class ClipRecorder {
+    public interface Listener {
+        /**
+         * A segment file is complete. Called on the main thread, or on the encoder's finishing
+         * thread for a segment closed by a roll-over.
+         *
+         * @param error
+         *            Why the file is unusable, or null.
+         */
+        public void onClipFinished(File file, long eventId, int segment, IOException error);
+    }
+
+    // Event and segment of a clip closed by a roll-over, until it is finished
+    private static class Closed {
+        final long eventId;
+        final int segment;
+
+        Closed(long eventId, int segment) {
+            this.eventId = eventId;
+            this.segment = segment;
+        }
+    }
+
+    private static final String TAG = "ClipRecorder";
+    private static final String FILE_PREFIX = "MOTION_";
+    private static final long START_LATENCY_TARGET_NANOS = 100000000L; // Motion decision to first frame written
+    private static final int LATENCY_SAMPLES = 64;
+
+    private final File storageDir;
+    private final PreRollEncoder encoder;
+    private final int maxDurationMillis;
+    private final ExecutorService executor;
+    private final HotStandby<PreRollEncoder.PreparedClip> clipStandby;
+    private final HotStandby<File> fileStandby;
+    private final LatencyTracker startLatency = new LatencyTracker(LATENCY_SAMPLES, START_LATENCY_TARGET_NANOS);
+    private final Listener listener;
+    private MediaRecorder mediaRecorder;
+    private long eventId;
+    // Guarded by this, since a roll-over completes on the drain thread
+    private File file;
+    private int segment;
+    private File pendingFile;
+    private final Map<PreRollEncoder.PreparedClip, Closed> closing = new HashMap<>(); // Still being finished
+
+    /**
+     * @param encoder
+     *            Pre-roll encoder to record from, or null to record with MediaRecorder.
+     * @param maxDurationMillis
+     *            Length limit for MediaRecorder segments, as a backstop.
+     */
+    public ClipRecorder(File storageDir, PreRollEncoder encoder, int maxDurationMillis, Listener listener) {
+        if (storageDir == null || listener == null) throw new NullPointerException();
+
+        this.storageDir = storageDir;
+        this.encoder = encoder;
+        this.maxDurationMillis = maxDurationMillis;
+        this.listener = listener;
+        this.executor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "ClipStandby");
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
+
+        if (encoder != null) {
+            encoder.setStartLatency(startLatency);
+            encoder.setClipListener(new PreRollEncoder.ClipListener() {
+                @Override
+                public void onClipSwitched(PreRollEncoder.PreparedClip closed, PreRollEncoder.PreparedClip next) {
+                    onRolledOver(closed);
+                }
+
+                @Override
+                public void onClipFinished(PreRollEncoder.PreparedClip clip, int packets, IOException error) {
+                    onClosedClipFinished(clip, error);
+                }
+            });
+            clipStandby = new HotStandby<>(new HotStandby.Factory<PreRollEncoder.PreparedClip>() {
+                @Override
+                public PreRollEncoder.PreparedClip prepare() throws IOException {
+                    return encoder.prepareClip(createFile());
+                }
+
+                @Override
+                public void discard(PreRollEncoder.PreparedClip clip) {
+                    clip.discard();
+                }
+            }, executor);
+            fileStandby = null;
+            clipStandby.arm();
+        } else {
+            fileStandby = new HotStandby<>(new HotStandby.Factory<File>() {
+                @Override
+                public File prepare() throws IOException {
+                    return createFile();
+                }
+
+                @Override
+                public void discard(File file) {
+                    file.delete();
+                }
+            }, executor);
+            clipStandby = null;
+            fileStandby.arm();
+        }
+    }
+
+    // Renamed once used
+    private File createFile() throws IOException {
+        if (!storageDir.exists()) {
+            storageDir.mkdirs();
+        }
+        return File.createTempFile(FILE_PREFIX, ".mp4", storageDir);
+    }
+
+    // Final name: start time, event id and segment number
+    private File name(long eventId, int segment) {
+        String timeStamp = new SimpleDateFormat("yyyyMMdd_HHmmss", Locale.getDefault()).format(new Date());
+        return new File(storageDir, FILE_PREFIX + timeStamp + "_E" + eventId + "_S" + segment + ".mp4");
+    }
+
+    /**
+     * Start the first segment of an event from the prepared output.
+     *
+     * @param camera
+     *            Camera for MediaRecorder; unused with a pre-roll encoder.
+     * @param triggerNanos
+     *            System.nanoTime() of the motion decision, for the start latency.
+     * @return The segment file.
+     */
+    public File start(Camera camera, long eventId, long triggerNanos) throws IOException {
+        if (isRecording()) throw new IllegalStateException("Already recording");
+
+        this.eventId = eventId;
+        File output = startSegment(camera, name(eventId, 0), triggerNanos);
+        synchronized (this) {
+            file = output;
+            segment = 0;
+        }
+        return output;
+    }
+
+    private File startSegment(Camera camera, File target, long triggerNanos) throws IOException {
+        if (encoder != null) {
+            PreRollEncoder.PreparedClip clip = clipStandby.take();
+            // The open file keeps being written under its new name, or its temporary one if that fails
+            if (!clip.renameTo(target)) logRenameFailure(clip.getFile(), target);
+            encoder.startClip(clip, triggerNanos);
+            return clip.getFile();
+        }
+
+        File output = fileStandby.take();
+        if (output.renameTo(target)) {
+            output = target;
+        } else {
+            logRenameFailure(output, target);
+        }
+        try {
+            mediaRecorder = prepareMediaRecorder(camera, output);
+            mediaRecorder.start();
+        } catch (IOException | RuntimeException e) {
+            if (mediaRecorder != null) {
+                mediaRecorder.release();
+                mediaRecorder = null;
+            }
+            output.delete();
+            throw new IOException("Failed to start MediaRecorder: " + e.getMessage());
+        }
+        startLatency.record(System.nanoTime() - triggerNanos);
+        return output;
+    }
+
+    // The clip is then recorded and reported under the name it has
+    private static void logRenameFailure(File file, File target) {
+        Log.w(TAG, "Could not rename " + file.getName() + " to " + target.getName() + ", keeping the temporary name");
+    }
+
+    /**
+     * Continue the event in its next segment. With a pre-roll encoder the switch happens at the
+     * next key frame and the finished segment is reported from the drain thread.
+     *
+     * @return The new segment's file.
+     */
+    public File rollOver(Camera camera) throws IOException {
+        File finished;
+        int finishedSegment;
+        synchronized (this) {
+            if (file == null) throw new IllegalStateException("Not recording");
+            if (pendingFile != null) throw new IllegalStateException("Roll-over already pending");
+            finished = file;
+            finishedSegment = segment;
+        }
+        File target = name(eventId, finishedSegment + 1);
+
+        if (encoder != null) {
+            PreRollEncoder.PreparedClip clip = clipStandby.take();
+            if (!clip.renameTo(target)) logRenameFailure(clip.getFile(), target);
+            synchronized (this) {
+                pendingFile = clip.getFile();
+            }
+            encoder.rollOver(clip);
+            return clip.getFile();
+        }
+
+        IOException error = stopMediaRecorder();
+        synchronized (this) {
+            file = null;
+        }
+        listener.onClipFinished(finished, eventId, finishedSegment, error);
+        File output = startSegment(camera, target, System.nanoTime());
+        synchronized (this) {
+            file = output;
+            segment = finishedSegment + 1;
+        }
+        return output;
+    }
+
+    // Called on the drain thread once the segment before a roll-over is closed
+    private void onRolledOver(PreRollEncoder.PreparedClip clip) {
+        synchronized (this) {
+            closing.put(clip, new Closed(eventId, segment));
+            file = pendingFile;
+            segment++;
+            pendingFile = null;
+        }
+        clipStandby.arm();
+    }
+
+    // Called on the encoder's finishing thread
+    private void onClosedClipFinished(PreRollEncoder.PreparedClip clip, IOException error) {
+        Closed closed;
+        synchronized (this) {
+            closed = closing.remove(clip);
+        }
+        listener.onClipFinished(clip.getFile(), closed.eventId, closed.segment, error);
+    }
+
+    private MediaRecorder prepareMediaRecorder(Camera camera, File output) throws IOException {
+        MediaRecorder recorder = new MediaRecorder();
+        if (camera != null) {
+            camera.unlock();
+            recorder.setCamera(camera);
+        }
+
+        recorder.setAudioSource(MediaRecorder.AudioSource.CAMCORDER);
+        recorder.setVideoSource(MediaRecorder.VideoSource.CAMERA);
+        recorder.setOutputFormat(MediaRecorder.OutputFormat.MPEG_4);
+        recorder.setVideoEncoder(MediaRecorder.VideoEncoder.H264);
+        recorder.setAudioEncoder(MediaRecorder.AudioEncoder.AAC);
+        recorder.setVideoEncodingBitRate(10000000);
+        recorder.setVideoFrameRate(30);
+        recorder.setVideoSize(1280, 720);
+
+        recorder.setOutputFile(output.getAbsolutePath());
+        recorder.setMaxDuration(maxDurationMillis);
+        recorder.setMaxFileSize(50000000);
+
+        try {
+            recorder.prepare();
+            Log.d(TAG, "MediaRecorder prepared successfully");
+        } catch (IOException e) {
+            recorder.release();
+            throw e;
+        }
+        return recorder;
+    }
+
+    private IOException stopMediaRecorder() {
+        try {
+            mediaRecorder.stop();
+            return null;
+        } catch (RuntimeException e) {
+            return new IOException("MediaRecorder failed: " + e.getMessage());
+        } finally {
+            mediaRecorder.reset();
+            mediaRecorder.release();
+            mediaRecorder = null;
+        }
+    }
+
+    /**
+     * Finish the event's current segment, report it to the listener and re-arm the standby.
+     */
+    public void stop() {
+        IOException error = null;
+        if (mediaRecorder != null) {
+            error = stopMediaRecorder();
+        } else if (encoder != null) {
+            try {
+                encoder.stopClip();
+            } catch (IOException e) {
+                error = e;
+            }
+        }
+
+        // No roll-over can complete once the encoder has stopped the clip
+        File finished;
+        int finishedSegment;
+        synchronized (this) {
+            finished = file;
+            finishedSegment = segment;
+            file = null;
+            pendingFile = null;
+        }
+        // Retries a standby whose last preparation failed
+        if (clipStandby != null) clipStandby.arm();
+        if (fileStandby != null) fileStandby.arm();
+        if (finished != null) listener.onClipFinished(finished, eventId, finishedSegment, error);
+    }
+
+    public synchronized boolean isRecording() {
+        return file != null;
+    }
+
+    public long getEventId() {
+        return eventId;
+    }
+
+    public synchronized int getSegment() {
+        return segment;
+    }
+
+    /**
+     * @return Time from motion decision to the first frame written, against a 100 ms target.
+     */
+    public LatencyTracker getStartLatency() {
+        return startLatency;
+    }
+
+    /**
+     * Finish any clip in progress and drop the prepared output.
+     */
+    public void release() {
+        if (isRecording()) {
+            stop();
+        }
+        if (clipStandby != null) clipStandby.close();
+        if (fileStandby != null) fileStandby.close();
+        executor.shutdown();
+    }
+
+    @Override
+    public String toString() {
+        HotStandby<?> standby = clipStandby != null ? clipStandby : fileStandby;
+        return "standby " + standby.getHits() + " ready, " + standby.getMisses() + " cold; start latency " + startLatency;
+    }
+}
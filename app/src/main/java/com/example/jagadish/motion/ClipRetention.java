@@ -0,0 +1,195 @@
+package com.example.jagadish.motion;
+
+import android.content.Context;
+import android.provider.MediaStore;
+import android.util.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Deletes the clips the retention policy selects, in the background. The policy works from the
+ * clip sizes and running total kept in the event log and reads the log from its oldest live event,
+ * in log order, which is recording order, so a pass reads only the events it deletes or passes
+ * over, and looks at no clip file it does not delete. Deletes and media store
+ * updates run in small batches with a pause between them, and wait while a recording is active
+ * unless the volume is about to run out of space, so retention never competes with a recording
+ * for the disk except to save it.
+ */
+
+public class ClipRetention {
+    public interface RecordingState {
+        public boolean isRecording();
+    }
+
+    private static final String TAG = "ClipRetention";
+    private static final int BATCH_SIZE = 16; // Clips deleted between pauses
+    private static final long BATCH_PAUSE_MILLIS = 500;
+    private static final long RECORDING_POLL_MILLIS = 5000; // Wait for a recording to finish
+    private static final long MIN_INTERVAL_MILLIS = 5 * 60 * 1000; // Between scans while space is plentiful
+
+    private final Context context;
+    private final EventIndex index;
+    private final File directory;
+    private final RetentionPolicy policy;
+    private final RecordingState recording;
+    private final ScheduledExecutorService executor;
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+    private volatile long lastRunMillis;
+
+    /**
+     * @param directory
+     *            Where the clips are recorded, for the free space.
+     */
+    public ClipRetention(Context context, EventIndex index, File directory, RetentionPolicy policy,
+                         RecordingState recording) {
+        if (context == null || index == null || directory == null || policy == null || recording == null) {
+            throw new NullPointerException();
+        }
+
+        this.context = context.getApplicationContext();
+        this.index = index;
+        this.directory = directory;
+        this.policy = policy;
+        this.recording = recording;
+        this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "ClipRetention");
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
+    }
+
+    /**
+     * Check the limits soon: at once when space is low, otherwise no more often than every few
+     * minutes. Any thread.
+     */
+    public void schedule() {
+        if (!scheduled.compareAndSet(false, true)) return;
+        long delay = Math.max(0, lastRunMillis + MIN_INTERVAL_MILLIS - System.currentTimeMillis());
+        if (isLowOnSpace()) delay = 0;
+        try {
+            executor.schedule(this::run, delay, TimeUnit.MILLISECONDS);
+        } catch (RuntimeException e) {
+            // Shut down
+            scheduled.set(false);
+        }
+    }
+
+    private boolean isLowOnSpace() {
+        return directory.getUsableSpace() < policy.getMinFreeBytes();
+    }
+
+    private void run() {
+        scheduled.set(false);
+        long now = System.currentTimeMillis();
+        lastRunMillis = now;
+        List<RetentionPolicy.Clip> victims;
+        try {
+            EventLog log = index.getLog();
+            victims = policy.select(new LogCursor(log), log.getLiveBytes(), now, directory.getUsableSpace());
+        } catch (IOException e) {
+            Log.e(TAG, "Failed to read the event log: " + e.getMessage());
+            return;
+        }
+        if (victims.isEmpty()) return;
+
+        int deleted = 0;
+        long freed = 0;
+        try {
+            for (int start = 0; start < victims.size(); start += BATCH_SIZE) {
+                // The disk belongs to an active recording unless it is about to fill up
+                while (recording.isRecording() && !isLowOnSpace()) {
+                    Thread.sleep(RECORDING_POLL_MILLIS);
+                }
+                List<RetentionPolicy.Clip> batch = victims.subList(start, Math.min(victims.size(), start + BATCH_SIZE));
+                List<String> paths = delete(batch);
+                deleted += paths.size();
+                for (RetentionPolicy.Clip clip : batch) {
+                    if (paths.contains(clip.getPath())) freed += clip.getBytes();
+                }
+                removeFromMediaStore(paths);
+                Thread.sleep(BATCH_PAUSE_MILLIS);
+            }
+        } catch (InterruptedException e) {
+            Log.d(TAG, "Stopped after deleting " + deleted + " clips");
+            return;
+        }
+        Log.d(TAG, "Deleted " + deleted + " of " + victims.size() + " clips, " + freed + " bytes");
+    }
+
+    // Live events oldest first; events without a clip are marked deleted on the way
+    private class LogCursor implements RetentionPolicy.Cursor {
+        private final EventLog log;
+        private int next;
+
+        LogCursor(EventLog log) {
+            this.log = log;
+            this.next = log.getOldestLive();
+        }
+
+        @Override
+        public RetentionPolicy.Clip next() throws IOException {
+            for (; next < log.size(); next++) {
+                EventRecord record = log.get(next);
+                if (record.isDeleted()) continue;
+                String path = log.getClipPath(record);
+                if (path == null) {
+                    index.markDeleted(next);
+                    continue;
+                }
+                return new RetentionPolicy.Clip(next++, path, record.getBytes(), record.getEndMillis(),
+                        record.isImportant());
+            }
+            return null;
+        }
+    }
+
+    private List<String> delete(List<RetentionPolicy.Clip> batch) {
+        List<String> paths = new ArrayList<>();
+        for (RetentionPolicy.Clip clip : batch) {
+            File file = new File(clip.getPath());
+            // A clip already removed by other means is only marked deleted
+            if (!file.delete() && file.exists()) {
+                Log.w(TAG, "Could not delete " + file);
+                continue;
+            }
+            paths.add(clip.getPath());
+            ClipThumbnails.get(context).remove(file);
+            try {
+                index.markDeleted(clip.getIndex());
+            } catch (IOException e) {
+                Log.w(TAG, "Failed to mark " + file.getName() + " deleted: " + e.getMessage());
+            }
+        }
+        return paths;
+    }
+
+    // One media store update for the whole batch
+    private void removeFromMediaStore(List<String> paths) {
+        if (paths.isEmpty()) return;
+        StringBuilder where = new StringBuilder(MediaStore.Video.Media.DATA).append(" IN (?");
+        for (int i = 1; i < paths.size(); i++) {
+            where.append(",?");
+        }
+        where.append(')');
+        try {
+            context.getContentResolver().delete(MediaStore.Video.Media.EXTERNAL_CONTENT_URI, where.toString(),
+                    paths.toArray(new String[0]));
+        } catch (RuntimeException e) {
+            Log.w(TAG, "Failed to update the media store: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Stop checking; a batch in progress is abandoned between deletes.
+     */
+    public void release() {
+        executor.shutdownNow();
+    }
+}
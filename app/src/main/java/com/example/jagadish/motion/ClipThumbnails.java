@@ -0,0 +1,307 @@
+package com.example.jagadish.motion;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.media.MediaMetadataRetriever;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+import android.util.LruCache;
+import android.widget.ImageView;
+import android.widget.TextView;
+
+import com.bumptech.glide.disklrucache.DiskLruCache;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Locale;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Thumbnails and metadata of recorded clips for the gallery. Each clip gets a small JPEG and a
+ * {@link ClipInfo} sidecar, written in the background when the clip is finished, so scrolling the
+ * gallery never opens an MP4. Sidecars live in a size-bounded disk LRU and decoded thumbnails in
+ * an in-memory LRU; an evicted or stale sidecar is generated again from its clip.
+ */
+
+public class ClipThumbnails {
+    private static final String TAG = "ClipThumbnails";
+    private static final int CACHE_VERSION = 1; // Change to drop sidecars in an older layout
+    private static final int THUMBNAIL = 0; // Disk cache value index of the JPEG
+    private static final int INFO = 1; // Disk cache value index of the metadata
+    private static final int JPEG_QUALITY = 80;
+    private static final int MAX_KEY_NAME = 100; // DiskLruCache keys are at most 120 characters
+
+    private static ClipThumbnails instance;
+
+    private final File directory;
+    private final int width;
+    private final long maxDiskBytes;
+    private final LruCache<String, Entry> memory;
+    private final ExecutorService executor;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    // The clip each view was last bound to, so a recycled row skips work it no longer needs
+    private final Map<ImageView, String> targets = new WeakHashMap<>();
+    private DiskLruCache disk;
+    private boolean diskFailed;
+
+    private static class Entry {
+        final Bitmap bitmap;
+        final ClipInfo info;
+
+        Entry(Bitmap bitmap, ClipInfo info) {
+            this.bitmap = bitmap;
+            this.info = info;
+        }
+    }
+
+    /**
+     * @return The application's thumbnails, in its cache directory.
+     */
+    public static synchronized ClipThumbnails get(Context context) {
+        if (instance == null) {
+            File directory = new File(context.getApplicationContext().getCacheDir(), "thumbnails");
+            // A sixteenth of the heap holds a few hundred thumbnails
+            int memoryBytes = (int) Math.min(Integer.MAX_VALUE, Runtime.getRuntime().maxMemory() / 16);
+            instance = new ClipThumbnails(directory, Preferences.THUMBNAIL_WIDTH, Preferences.THUMBNAIL_DISK_BYTES,
+                    memoryBytes);
+        }
+        return instance;
+    }
+
+    /**
+     * @param width
+     *            Thumbnail width in pixels; the height keeps the clip's aspect ratio.
+     * @param maxDiskBytes
+     *            Size limit of the sidecars on disk.
+     * @param maxMemoryBytes
+     *            Size limit of the decoded thumbnails in memory.
+     */
+    public ClipThumbnails(File directory, int width, long maxDiskBytes, int maxMemoryBytes) {
+        if (directory == null) throw new NullPointerException();
+        if (width <= 0) throw new IllegalArgumentException("Invalid thumbnail width " + width);
+
+        this.directory = directory;
+        this.width = width;
+        this.maxDiskBytes = maxDiskBytes;
+        this.memory = new LruCache<String, Entry>(maxMemoryBytes) {
+            @Override
+            protected int sizeOf(String key, Entry entry) {
+                return entry.bitmap.getByteCount();
+            }
+        };
+        this.executor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "ClipThumbnails");
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
+    }
+
+    // Opened on the worker thread, since reading the journal is I/O
+    private synchronized DiskLruCache disk() {
+        if (disk == null && !diskFailed) {
+            try {
+                disk = DiskLruCache.open(directory, CACHE_VERSION, 2, maxDiskBytes);
+            } catch (IOException e) {
+                Log.e(TAG, "Thumbnail cache unavailable: " + e.getMessage());
+                diskFailed = true;
+            }
+        }
+        return disk;
+    }
+
+    // Lower case letters, digits, '_' and '-' only, and unique per path
+    static String key(File clip) {
+        String name = clip.getName().toLowerCase(Locale.US).replaceAll("[^a-z0-9_-]", "_");
+        if (name.length() > MAX_KEY_NAME) name = name.substring(0, MAX_KEY_NAME);
+        return name + "_" + Integer.toHexString(clip.getAbsolutePath().hashCode());
+    }
+
+    /**
+     * Write a finished clip's sidecar in the background, ready for the gallery.
+     */
+    public void generate(File clip) {
+        executor.execute(() -> {
+            if (load(clip, false) == null) Log.w(TAG, "No thumbnail for " + clip.getName());
+        });
+    }
+
+    /**
+     * Show a clip's thumbnail, and its duration after the name. Cached thumbnails are shown at
+     * once; others are loaded in the background and shown if the view still shows the clip.
+     * Call on the main thread.
+     *
+     * @param label
+     *            View showing the clip name, or null.
+     */
+    public void bind(ImageView view, TextView label, File clip) {
+        String key = key(clip);
+        if (label != null) label.setText(clip.getName());
+        Entry entry = memory.get(key);
+        if (entry != null) {
+            synchronized (targets) {
+                targets.remove(view);
+            }
+            show(view, label, clip, entry);
+            return;
+        }
+
+        view.setImageDrawable(null);
+        synchronized (targets) {
+            targets.put(view, key);
+        }
+        executor.execute(() -> {
+            if (!isWanted(view, key)) return;
+            Entry loaded = load(clip, true);
+            if (loaded == null) return;
+            handler.post(() -> {
+                synchronized (targets) {
+                    if (!key.equals(targets.get(view))) return;
+                    targets.remove(view);
+                }
+                show(view, label, clip, loaded);
+            });
+        });
+    }
+
+    private boolean isWanted(ImageView view, String key) {
+        synchronized (targets) {
+            return key.equals(targets.get(view));
+        }
+    }
+
+    private static void show(ImageView view, TextView label, File clip, Entry entry) {
+        view.setImageBitmap(entry.bitmap);
+        if (label != null) label.setText(clip.getName() + "  " + entry.info.formatDuration());
+    }
+
+    /**
+     * @return The clip's metadata, generating its sidecar if needed, or null if the clip cannot
+     *         be read. Blocks; call off the main thread.
+     */
+    public ClipInfo getInfo(File clip) {
+        Entry entry = load(clip, false);
+        return entry != null ? entry.info : null;
+    }
+
+    /**
+     * Drop a deleted clip's sidecar.
+     */
+    public void remove(File clip) {
+        String key = key(clip);
+        memory.remove(key);
+        executor.execute(() -> {
+            DiskLruCache cache = disk();
+            if (cache == null) return;
+            try {
+                cache.remove(key);
+            } catch (IOException e) {
+                Log.w(TAG, "Failed to remove thumbnail of " + clip.getName() + ": " + e.getMessage());
+            }
+        });
+    }
+
+    // Memory, then the disk sidecar, then the clip itself
+    private Entry load(File clip, boolean keepInMemory) {
+        String key = key(clip);
+        Entry entry = memory.get(key);
+        if (entry != null) return entry;
+
+        DiskLruCache cache = disk();
+        if (cache != null) {
+            entry = read(cache, key, clip);
+        }
+        if (entry == null) {
+            entry = extract(clip);
+            if (entry == null) return null;
+            if (cache != null) write(cache, key, entry);
+        }
+        if (keepInMemory) memory.put(key, entry);
+        return entry;
+    }
+
+    private Entry read(DiskLruCache cache, String key, File clip) {
+        try {
+            DiskLruCache.Value value = cache.get(key);
+            if (value == null) return null;
+            ClipInfo info = ClipInfo.parse(value.getString(INFO));
+            // A clip replaced under the same name gets a new sidecar
+            if (info == null || !info.matches(clip.length(), clip.lastModified())) return null;
+            Bitmap bitmap = BitmapFactory.decodeFile(value.getFile(THUMBNAIL).getPath());
+            return bitmap != null ? new Entry(bitmap, info) : null;
+        } catch (IOException e) {
+            Log.w(TAG, "Failed to read thumbnail of " + clip.getName() + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    private void write(DiskLruCache cache, String key, Entry entry) {
+        DiskLruCache.Editor editor = null;
+        try {
+            editor = cache.edit(key);
+            if (editor == null) return; // Being written already
+            try (OutputStream out = new FileOutputStream(editor.getFile(THUMBNAIL))) {
+                entry.bitmap.compress(Bitmap.CompressFormat.JPEG, JPEG_QUALITY, out);
+            }
+            editor.set(INFO, entry.info.format());
+            editor.commit();
+        } catch (IOException e) {
+            Log.w(TAG, "Failed to write thumbnail " + key + ": " + e.getMessage());
+        } finally {
+            if (editor != null) editor.abortUnlessCommitted();
+        }
+    }
+
+    // Decode one frame at the trigger moment, just after the pre-roll
+    private Entry extract(File clip) {
+        if (!clip.isFile()) return null;
+        MediaMetadataRetriever retriever = new MediaMetadataRetriever();
+        try {
+            retriever.setDataSource(clip.getPath());
+            long duration = parse(retriever.extractMetadata(MediaMetadataRetriever.METADATA_KEY_DURATION));
+            int videoWidth = (int) parse(retriever.extractMetadata(MediaMetadataRetriever.METADATA_KEY_VIDEO_WIDTH));
+            int videoHeight = (int) parse(retriever.extractMetadata(MediaMetadataRetriever.METADATA_KEY_VIDEO_HEIGHT));
+            long atUs = Math.min(Preferences.PRE_ROLL_MILLIS, duration / 2) * 1000;
+            Bitmap frame = retriever.getFrameAtTime(atUs, MediaMetadataRetriever.OPTION_CLOSEST_SYNC);
+            if (frame == null) return null;
+
+            int height = Math.max(1, width * frame.getHeight() / frame.getWidth());
+            Bitmap thumbnail = Bitmap.createScaledBitmap(frame, width, height, true);
+            if (thumbnail != frame) frame.recycle();
+            return new Entry(thumbnail, new ClipInfo(duration, videoWidth, videoHeight, clip.length(), clip.lastModified()));
+        } catch (RuntimeException e) {
+            Log.w(TAG, "Failed to read " + clip.getName() + ": " + e.getMessage());
+            return null;
+        } finally {
+            try {
+                retriever.release();
+            } catch (IOException | RuntimeException e) {
+                Log.w(TAG, "Failed to release retriever: " + e.getMessage());
+            }
+        }
+    }
+
+    private static long parse(String value) {
+        if (value == null) return 0;
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    @Override
+    public String toString() {
+        DiskLruCache cache;
+        synchronized (this) {
+            cache = disk;
+        }
+        return memory + ", disk " + (cache != null ? cache.size() : 0) + " of " + maxDiskBytes + " bytes";
+    }
+}
@@ -0,0 +1,118 @@
+package com.example.jagadish.motion;
+
+import android.content.Context;
+import android.os.Environment;
+import android.util.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * The application's event log, shared by the recorder that appends to it and the gallery that
+ * pages through it, with notification of new events. Clips recorded before the log existed are
+ * imported once, when the log is first created.
+ */
+
+public class EventIndex {
+    public interface Listener {
+        /**
+         * An event was appended. Called on the appending thread.
+         */
+        public void onEventAdded(EventRecord event);
+    }
+
+    private static final String TAG = "EventIndex";
+    private static final Pattern CLIP_NAME = Pattern.compile("^MOTION_.*?(?:_E(\\d+)_S(\\d+))?\\.mp4$");
+
+    private static EventIndex instance;
+
+    private final EventLog log;
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * @return The application's event index, opened on first use.
+     */
+    public static synchronized EventIndex get(Context context) throws IOException {
+        if (instance == null) {
+            Context application = context.getApplicationContext();
+            EventLog log = new EventLog(new File(application.getFilesDir(), "events.log"));
+            if (log.size() == 0) {
+                importClips(log, application.getExternalFilesDir(Environment.DIRECTORY_MOVIES));
+            }
+            Log.d(TAG, "Event log holds " + log.size() + " events");
+            instance = new EventIndex(log);
+        }
+        return instance;
+    }
+
+    private EventIndex(EventLog log) {
+        this.log = log;
+    }
+
+    // Oldest first, so the log stays in recording order
+    private static void importClips(EventLog log, File directory) throws IOException {
+        File[] files = directory != null ? directory.listFiles() : null;
+        if (files == null) return;
+        Arrays.sort(files, (a, b) -> Long.compare(a.lastModified(), b.lastModified()));
+
+        for (File file : files) {
+            Matcher matcher = CLIP_NAME.matcher(file.getName());
+            if (!matcher.matches()) continue;
+            long modified = file.lastModified();
+            long eventId = matcher.group(1) != null ? Long.parseLong(matcher.group(1)) : modified;
+            int segment = matcher.group(2) != null ? Integer.parseInt(matcher.group(2)) : 0;
+            EventRecord event = new EventRecord(eventId, segment, modified, modified);
+            event.setBytes(file.length());
+            log.append(event, file.getAbsolutePath());
+        }
+        Log.d(TAG, "Imported " + log.size() + " existing clips");
+    }
+
+    public EventLog getLog() {
+        return log;
+    }
+
+    /**
+     * Log a finished clip with its size and tell the listeners.
+     */
+    public void append(EventRecord event, File clip) throws IOException {
+        event.setBytes(clip.length());
+        log.append(event, clip.getAbsolutePath());
+        for (Listener listener : listeners) {
+            listener.onEventAdded(event);
+        }
+    }
+
+    /**
+     * Mark an event important, so retention keeps its clip, or clear the mark.
+     */
+    public void setImportant(int index, boolean important) throws IOException {
+        synchronized (log) {
+            int flags = log.get(index).getFlags();
+            log.setFlags(index, important ? flags | EventRecord.FLAG_IMPORTANT : flags & ~EventRecord.FLAG_IMPORTANT);
+        }
+    }
+
+    /**
+     * Record that an event's clip has been removed.
+     */
+    public void markDeleted(int index) throws IOException {
+        synchronized (log) {
+            log.setFlags(index, log.get(index).getFlags() | EventRecord.FLAG_DELETED);
+        }
+    }
+
+    public void addListener(Listener listener) {
+        if (listener == null) throw new NullPointerException();
+        listeners.add(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+}
@@ -107,6 +107,16 @@ public class Mail extends javax.mail.Authenticator {
         _auth = true; // smtp authentication - default on
 
         multipart = new MimeMultipart();
+        installMailcap();
+    }
+
+    private static boolean mailcapInstalled;
+
+    /**
+     * Register the content handlers JavaMail needs on Android, once.
+     */
+    static synchronized void installMailcap() {
+        if (mailcapInstalled) return;
         // handler for the multipart/mixed part, so this bit needs to be added.
         MailcapCommandMap mc = (MailcapCommandMap) CommandMap
                 .getDefaultCommandMap();
@@ -116,8 +126,21 @@ public class Mail extends javax.mail.Authenticator {
         mc.addMailcap("multipart/*;; x-java-content-handler=com.sun.mail.handlers.multipart_mixed");
         mc.addMailcap("message/rfc822;; x-java-content-handler=com.sun.mail.handlers.message_rfc822");
         CommandMap.setDefaultCommandMap(mc);
+        mailcapInstalled = true;
+    }
+
+    public String getUser() {
+        return user;
+    }
+
+    public int getPort() {
+        return Integer.parseInt(port);
     }
 
+    /**
+     * Send the mail with a new connection, blocking until it is sent. Alerts go through an
+     * AlertDispatcher with an SmtpSender instead, which keeps its connection.
+     */
 
     public boolean send() throws Exception {
         Properties props = _setProperties();
@@ -139,13 +162,17 @@ public class Mail extends javax.mail.Authenticator {
             msg.setSubject(subject);
             msg.setSentDate(new Date());
 
-            // setup message body
+            // setup message body, in a new multipart so sending again does not repeat it
+            Multipart content = new MimeMultipart();
             BodyPart messageBodyPart = new MimeBodyPart();
             messageBodyPart.setText(body);
-            multipart.addBodyPart(messageBodyPart);
+            content.addBodyPart(messageBodyPart);
+            for (int i = 0; i < multipart.getCount(); i++) {
+                content.addBodyPart(multipart.getBodyPart(i));
+            }
 
             // Put parts in message
-            msg.setContent(multipart);
+            msg.setContent(content);
 
             // send email
             Transport.send(msg);
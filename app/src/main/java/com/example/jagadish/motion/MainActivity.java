@@ -13,7 +13,6 @@ import android.graphics.Color;
 import android.graphics.ImageFormat;
 import android.hardware.Camera;
 import android.media.MediaPlayer;
-import android.media.MediaRecorder;
 import android.net.Uri;
 import android.os.Build;
 import android.os.Bundle;
@@ -45,24 +44,41 @@ public class MainActivity extends AppCompatActivity implements SurfaceHolder.Cal
 
     private static final String TAG = "MainActivity";
     private static final int PERMISSIONS_REQUEST_CODE = 10;
-    private static final long CAPTURE_DURATION = 4000; // 4 seconds in milliseconds
+    private static final long CAPTURE_DURATION = 4000; // Shortest event recording, in milliseconds
     private static final String CHANNEL_ID = "MotionDetectionChannel";
     private static final int NOTIFICATION_ID = 1;
     private static final int NOTIFICATION_PROGRESS_MAX = 100;
 
     private SurfaceView surfaceView;
     private SurfaceHolder surfaceHolder;
-    private Camera camera;
-    private MediaRecorder mediaRecorder;
-    private File videoFile;
-    private Uri videoUri;
-    private boolean isRecording = false;
-    private long recordingStartTime = 0;
+    private volatile Camera camera;
+    private ClipRecorder clipRecorder;
+    private volatile long pendingTriggerNanos;
+    private final ClipSchedule clipSchedule = new ClipSchedule(CAPTURE_DURATION, Preferences.POST_ROLL_MILLIS,
+            Preferences.MAX_SEGMENT_MILLIS);
+    private volatile boolean isRecording = false;
     private MediaPlayer mediaPlayer;
-    private int[] lastPixels;
     private int motionThreshold = 25;
     private int motionCount = 0;
     private static final int MOTION_DETECTION_THRESHOLD = 5;
+    private static final int PREVIEW_BUFFER_COUNT = 4; // Filling, pending and analysing, plus one spare
+    private static final int STATS_LOG_INTERVAL = 300; // Frames between capture statistics logs
+
+    private volatile FrameBufferPool framePool; // Also used by the analysis thread to recycle
+    private FrameAnalyzer frameAnalyzer;
+    private final FrameScheduler frameScheduler = new FrameScheduler();
+    private CapturingDetection frameCapture;
+    private PreRollEncoder preRollEncoder;
+    private EventIndex eventIndex;
+    private ClipRetention clipRetention;
+    private AlertDispatcher alertDispatcher;
+    private final JpegEncoder jpegEncoder = new YuvJpegEncoder();
+    private volatile ContactSheet contactSheet; // Of the event being recorded, when alerts are mailed
+    private final EventStats eventStats = new EventStats();
+    private int previewWidth;
+    private int previewHeight;
+    private long frameCount = 0;
+    private long loggedAnalysisErrors = 0;
 
     private NotificationManager notificationManager;
     private Handler handler = new Handler(Looper.getMainLooper());
@@ -75,15 +91,21 @@ public class MainActivity extends AppCompatActivity implements SurfaceHolder.Cal
         @Override
         public void run() {
             if (isRecording) {
-                long elapsedTime = System.currentTimeMillis() - recordingStartTime;
-                int progress = (int) ((elapsedTime * 100) / CAPTURE_DURATION);
-
-                if (progress >= 100) {
+                long now = System.currentTimeMillis();
+                int action = clipSchedule.poll(now);
+                if (action == ClipSchedule.STOP) {
                     stopRecording();
-                } else {
-                    showRecordingProgress(progress);
-                    handler.postDelayed(this, 100);
+                    return;
+                }
+                if (action == ClipSchedule.ROLL_OVER) {
+                    rollOverRecording();
                 }
+
+                // Progress towards the planned end, which moves out while motion continues
+                long start = clipSchedule.getEventStartMillis();
+                long length = Math.max(1, clipSchedule.getPlannedEndMillis() - start);
+                showRecordingProgress((int) Math.min(99, (now - start) * 100 / length));
+                handler.postDelayed(this, 100);
             }
         }
     };
@@ -103,6 +125,8 @@ public class MainActivity extends AppCompatActivity implements SurfaceHolder.Cal
 
         notificationManager = (NotificationManager) getSystemService(Context.NOTIFICATION_SERVICE);
         createNotificationChannel();
+        openEventLog();
+        startMailAlerts();
 
         // Initialize alert sound
         // alertSound = MediaPlayer.create(this, R.raw.alert_sound);
@@ -112,6 +136,32 @@ public class MainActivity extends AppCompatActivity implements SurfaceHolder.Cal
         }
     }
 
+    private void openEventLog() {
+        try {
+            eventIndex = EventIndex.get(this);
+        } catch (IOException e) {
+            Log.e(TAG, "Event log unavailable: " + e.getMessage());
+            return;
+        }
+
+        File storageDir = getExternalFilesDir(Environment.DIRECTORY_MOVIES);
+        if (storageDir != null) {
+            RetentionPolicy policy = new RetentionPolicy(Preferences.RETENTION_QUOTA_BYTES,
+                    Preferences.RETENTION_MAX_AGE_MILLIS, Preferences.RETENTION_MIN_FREE_BYTES);
+            clipRetention = new ClipRetention(this, eventIndex, storageDir, policy, () -> isRecording);
+            clipRetention.schedule();
+        }
+    }
+
+    private void startMailAlerts() {
+        if (!Preferences.MAIL_ALERTS || Preferences.ALERT_RECIPIENTS.length == 0) return;
+        Mail mail = new Mail();
+        mail.setTo(Preferences.ALERT_RECIPIENTS);
+        // Retries from 5 s up to 5 min; the server drops idle connections after a few minutes
+        alertDispatcher = new AlertDispatcher(SmtpSender.fromMail(mail), Preferences.ALERT_DIGEST_MILLIS, 5000,
+                300000, 8, 120000, 100, 50);
+    }
+
     private void toggleDetection() {
         isDetectionActive = !isDetectionActive;
 
@@ -218,7 +268,50 @@ public class MainActivity extends AppCompatActivity implements SurfaceHolder.Cal
                 Toast.makeText(this, "Failed to open camera", Toast.LENGTH_LONG).show();
                 return;
             }
-            camera.setPreviewCallback(this);
+            // Detection reads the Y plane directly, which relies on NV21 layout
+            Camera.Parameters parameters = camera.getParameters();
+            parameters.setPreviewFormat(ImageFormat.NV21);
+            camera.setParameters(parameters);
+
+            // Cycle a fixed set of buffers instead of letting the framework allocate one per frame
+            Camera.Size previewSize = camera.getParameters().getPreviewSize();
+            previewWidth = previewSize.width;
+            previewHeight = previewSize.height;
+            int bufferSize = previewWidth * previewHeight * ImageFormat.getBitsPerPixel(ImageFormat.NV21) / 8;
+            framePool = new FrameBufferPool(bufferSize, PREVIEW_BUFFER_COUNT);
+            for (int i = 0; i < PREVIEW_BUFFER_COUNT; i++) {
+                camera.addCallbackBuffer(framePool.acquire());
+            }
+            camera.setPreviewCallbackWithBuffer(this);
+
+            // Analyse on a dedicated thread; the preview callback only hands frames over
+            if (motionDetectionHelper == null || motionDetectionHelper.getFrameWidth() != previewWidth
+                    || motionDetectionHelper.getFrameHeight() != previewHeight) {
+                if (motionDetectionHelper != null) {
+                    motionDetectionHelper.shutdown();
+                }
+                motionDetectionHelper = new MotionDetection(previewWidth, previewHeight);
+                motionDetectionHelper.setParallelism(ParallelBands.defaultWorkers());
+                motionDetectionHelper.setZoneMask(Preferences.DETECTION_ZONES);
+            }
+            InterMotionDetection detector = motionDetectionHelper;
+            if (Preferences.CAPTURE_FRAMES) {
+                frameCapture = startFrameCapture();
+                if (frameCapture != null) {
+                    detector = frameCapture;
+                }
+            }
+            frameAnalyzer = new FrameAnalyzer(detector, previewWidth, previewHeight,
+                    this::onFrameAnalyzed, this::recycleFrame);
+            frameAnalyzer.setFrameSink(this::sampleFrame);
+            loggedAnalysisErrors = 0;
+            frameAnalyzer.start();
+            if (Preferences.PRE_ROLL_MILLIS > 0) {
+                preRollEncoder = startPreRoll();
+            }
+            // The MediaRecorder limit is only a backstop; the schedule rolls segments over first
+            clipRecorder = new ClipRecorder(getExternalFilesDir(Environment.DIRECTORY_MOVIES), preRollEncoder,
+                    (int) (2 * Preferences.MAX_SEGMENT_MILLIS), this::onClipFinished);
             if (surfaceHolder != null) {
                 try {
                     camera.setPreviewDisplay(surfaceHolder);
@@ -267,103 +360,162 @@ public class MainActivity extends AppCompatActivity implements SurfaceHolder.Cal
 
     @Override
     public void onPreviewFrame(byte[] data, Camera camera) {
-        if (!isDetectionActive || camera == null) return;
+        if (data == null || camera == null) return;
 
-        Camera.Parameters parameters = camera.getParameters();
-        int width = parameters.getPreviewSize().width;
-        int height = parameters.getPreviewSize().height;
-
-        // Initialize helper if needed
-        if (motionDetectionHelper == null) {
-            motionDetectionHelper = new MotionDetection(width, height);
+        // The encoder copies the frame here, before the analyzer or camera can reuse the buffer
+        if (preRollEncoder != null) {
+            preRollEncoder.encode(data, System.nanoTime() / 1000);
+        }
+        if (isDetectionActive && frameAnalyzer != null && frameScheduler.shouldAnalyse()) {
+            // The analyzer recycles the buffer once it is done with it, or drops it for a newer frame
+            frameAnalyzer.submit(data);
+        } else {
+            returnBuffer(camera, data);
         }
 
-        // Convert YUV to RGB
-        int[] pixels = new int[width * height];
-        decodeYUV420SP(pixels, data, width, height);
+        // The analysis thread carries on past a failed frame; report each new failure here
+        if (frameAnalyzer != null && frameAnalyzer.getFailedFrames() != loggedAnalysisErrors) {
+            loggedAnalysisErrors = frameAnalyzer.getFailedFrames();
+            Log.e(TAG, "Frame analysis failed, " + loggedAnalysisErrors + " frames so far", frameAnalyzer.getLastError());
+        }
+        if (++frameCount % STATS_LOG_INTERVAL == 0 && framePool != null && frameAnalyzer != null) {
+            Log.d(TAG, "Frames: " + frameCount
+                    + ", analysed: " + frameAnalyzer.getProcessedFrames()
+                    + ", dropped: " + frameAnalyzer.getDroppedFrames()
+                    + ", failed: " + frameAnalyzer.getFailedFrames()
+                    + ", preview buffers allocated: " + framePool.getAllocationCount()
+                    + ", cascade: " + motionDetectionHelper.getCascadeStats()
+                    + ", scheduler: " + frameScheduler);
+        }
+    }
 
-        // Detect motion using improved algorithm
-        if (motionDetectionHelper.detectMotion(pixels)) {
+    // Called on the analysis thread
+    private void onFrameAnalyzed(boolean motion) {
+        frameScheduler.onAnalysed(motion, motionDetectionHelper.getActivityScore(), frameAnalyzer.getLastAnalysisNanos());
+        if (isRecording) {
+            eventStats.add(motionDetectionHelper);
+        }
+        if (motion) {
             motionCount++;
-            if (motionCount >= MOTION_DETECTION_THRESHOLD && !isRecording) {
-                runOnUiThread(() -> {
-                    Toast.makeText(MainActivity.this, "Motion Detected!", Toast.LENGTH_SHORT).show();
-                    playAlertSound();
-                });
-                startRecording();
+            if (motionCount >= MOTION_DETECTION_THRESHOLD && isRecording) {
+                // Confirmed motion keeps the event going
+                clipSchedule.onMotion(System.currentTimeMillis());
+            } else if (motionCount >= MOTION_DETECTION_THRESHOLD && pendingTriggerNanos == 0) {
+                // The decision time is where the start latency is measured from
+                pendingTriggerNanos = System.nanoTime();
+                handler.post(motionTriggered);
             }
         } else {
             motionCount = Math.max(0, motionCount - 1); // Gradual decrease
         }
     }
 
-    private void playAlertSound() {
-        if (alertSound != null) {
-            alertSound.start();
+    // Called on the analysis thread before the frame is recycled; motion frames go on the contact sheet
+    private void sampleFrame(byte[] frame, boolean motion) {
+        ContactSheet sheet = contactSheet;
+        if (!motion || sheet == null) return;
+        long now = System.currentTimeMillis();
+        if (sheet.wantsFrame(now)) {
+            sheet.addFrame(frame, previewWidth, previewHeight, now, motionDetectionHelper);
         }
     }
 
-    private void decodeYUV420SP(int[] rgb, byte[] yuv420sp, int width, int height) {
-        final int frameSize = width * height;
-        for (int j = 0, yp = 0; j < height; j++) {
-            int uvp = frameSize + (j >> 1) * width, u = 0, v = 0;
-            for (int i = 0; i < width; i++, yp++) {
-                int y = (0xff & ((int) yuv420sp[yp])) - 16;
-                if (y < 0) y = 0;
-                if ((i & 1) == 0) {
-                    v = (0xff & yuv420sp[uvp++]) - 128;
-                    u = (0xff & yuv420sp[uvp++]) - 128;
-                }
-
-                int y1192 = 1192 * y;
-                int r = (y1192 + 1634 * v);
-                int g = (y1192 - 833 * v - 400 * u);
-                int b = (y1192 + 2066 * u);
+    // Called on the analysis thread, never after frameAnalyzer.stop() has returned
+    private void recycleFrame(byte[] frame) {
+        Camera current = camera;
+        if (current != null) {
+            returnBuffer(current, frame);
+        }
+    }
 
-                if (r < 0) r = 0; else if (r > 262143) r = 262143;
-                if (g < 0) g = 0; else if (g > 262143) g = 262143;
-                if (b < 0) b = 0; else if (b > 262143) b = 262143;
+    // Through the pool, which swaps a buffer it did not hand out for a counted new one
+    private void returnBuffer(Camera camera, byte[] buffer) {
+        FrameBufferPool pool = framePool;
+        pool.release(buffer);
+        camera.addCallbackBuffer(pool.acquire());
+    }
 
-                rgb[yp] = 0xff000000 | ((r << 6) & 0xff0000) | ((g >> 2) & 0xff00) | ((b >> 10) & 0xff);
+    private final Runnable motionTriggered = new Runnable() {
+        @Override
+        public void run() {
+            long triggerNanos = pendingTriggerNanos;
+            pendingTriggerNanos = 0;
+            if (isRecording || !isDetectionActive || clipRecorder == null) return;
+
+            // Recording first; the alerts can wait a few milliseconds
+            startRecording(triggerNanos);
+            Toast.makeText(MainActivity.this, "Motion Detected!", Toast.LENGTH_SHORT).show();
+            playAlertSound();
+            if (alertDispatcher != null) {
+                long eventId = clipSchedule.getEventId();
+                Alert alert = new Alert(System.currentTimeMillis(), "Motion detected, event " + eventId);
+                ContactSheet sheet = contactSheet;
+                if (sheet != null) {
+                    // The sheet keeps filling until the digest goes out
+                    alert.addAttachment(new ContactSheetAttachment(sheet, jpegEncoder, "event_" + eventId + ".jpg"));
+                }
+                alertDispatcher.post(alert);
             }
         }
+    };
+
+    private void playAlertSound() {
+        if (alertSound != null) {
+            alertSound.start();
+        }
     }
 
-    private void startRecording() {
+    private void startRecording(long triggerNanos) {
         if (isRecording) return;
 
+        long now = System.currentTimeMillis();
+        long eventId = clipSchedule.start(now);
+        eventStats.reset(now);
+        if (alertDispatcher != null) {
+            int tileHeight = Preferences.CONTACT_SHEET_TILE_WIDTH * previewHeight / previewWidth & ~1;
+            contactSheet = new ContactSheet(Preferences.CONTACT_SHEET_COLUMNS, Preferences.CONTACT_SHEET_ROWS,
+                    Preferences.CONTACT_SHEET_TILE_WIDTH, tileHeight, Preferences.CONTACT_SHEET_INTERVAL_MILLIS);
+        }
         try {
-            prepareVideoRecorder();
-            mediaRecorder.start();
+            File file = clipRecorder.start(camera, eventId, triggerNanos);
             isRecording = true;
-            recordingStartTime = System.currentTimeMillis();
-            Log.d(TAG, "Started recording");
+            Log.d(TAG, "Started recording event " + eventId + " to " + file.getName());
 
             showRecordingProgress(0);
             handler.postDelayed(updateRecordingProgress, 100);
 
         } catch (IOException e) {
+            clipSchedule.cancel();
+            contactSheet = null;
             Log.e(TAG, "Failed to start recording: " + e.getMessage());
             Toast.makeText(this, "Failed to start recording", Toast.LENGTH_SHORT).show();
         }
     }
 
+    // Long events continue in a new file with the same event id
+    private void rollOverRecording() {
+        try {
+            File file = clipRecorder.rollOver(camera);
+            Log.d(TAG, "Event " + clipSchedule.getEventId() + " continues in " + file.getName());
+        } catch (IOException | IllegalStateException e) {
+            Log.e(TAG, "Failed to roll over recording: " + e.getMessage());
+            stopRecording();
+        }
+    }
+
     private void stopRecording() {
         if (!isRecording) return;
 
         try {
             handler.removeCallbacks(updateRecordingProgress);
 
-            mediaRecorder.stop();
-            mediaRecorder.reset();
-            mediaRecorder.release();
-            mediaRecorder = null;
+            // The recorder is released even when the clip fails, so there is nothing left to stop
             isRecording = false;
+            contactSheet = null;
+            clipSchedule.cancel();
+            clipRecorder.stop();
 
-            Log.d(TAG, "Stopped recording");
-
-            showCompletionNotification();
-            addVideoToMediaStore();
+            Log.d(TAG, "Stopped recording, " + clipRecorder);
 
         } catch (Exception e) {
             Log.e(TAG, "Error stopping recording: " + e.getMessage());
@@ -371,56 +523,30 @@ public class MainActivity extends AppCompatActivity implements SurfaceHolder.Cal
         }
     }
 
-    private void prepareVideoRecorder() throws IOException {
-        mediaRecorder = new MediaRecorder();
-        if (camera != null) {
-            camera.unlock();
-            mediaRecorder.setCamera(camera);
-        }
-
-        mediaRecorder.setAudioSource(MediaRecorder.AudioSource.CAMCORDER);
-        mediaRecorder.setVideoSource(MediaRecorder.VideoSource.CAMERA);
-        mediaRecorder.setOutputFormat(MediaRecorder.OutputFormat.MPEG_4);
-        mediaRecorder.setVideoEncoder(MediaRecorder.VideoEncoder.H264);
-        mediaRecorder.setAudioEncoder(MediaRecorder.AudioEncoder.AAC);
-        mediaRecorder.setVideoEncodingBitRate(10000000);
-        mediaRecorder.setVideoFrameRate(30);
-        mediaRecorder.setVideoSize(1280, 720);
-
-        videoFile = createVideoFile();
-        mediaRecorder.setOutputFile(videoFile.getAbsolutePath());
-        mediaRecorder.setMaxDuration((int)CAPTURE_DURATION);
-        mediaRecorder.setMaxFileSize(50000000);
-
+    // Continuous encoder whose recent output starts every clip
+    private PreRollEncoder startPreRoll() {
+        PreRollBuffer buffer = new PreRollBuffer(Preferences.PRE_ROLL_MILLIS * 1000L, Preferences.PRE_ROLL_MAX_BYTES);
         try {
-            mediaRecorder.prepare();
-            Log.d(TAG, "MediaRecorder prepared successfully");
+            return new PreRollEncoder(previewWidth, previewHeight, Preferences.PRE_ROLL_BIT_RATE, buffer);
         } catch (IOException e) {
-            Log.e(TAG, "Error preparing MediaRecorder: " + e.getMessage());
-            throw e;
+            Log.e(TAG, "Pre-roll unavailable, recording from the trigger: " + e.getMessage());
+            return null;
         }
     }
 
-    private File createVideoFile() throws IOException {
+    // Raw preview frames for offline replay, written next to the recordings
+    private CapturingDetection startFrameCapture() {
         String timeStamp = new SimpleDateFormat("yyyyMMdd_HHmmss", Locale.getDefault()).format(new Date());
-        String videoFileName = "MOTION_" + timeStamp + "_";
-
         File storageDir = getExternalFilesDir(Environment.DIRECTORY_MOVIES);
-        if (!storageDir.exists()) {
-            storageDir.mkdirs();
+        File file = new File(storageDir, "CAPTURE_" + timeStamp + ".frames");
+        try {
+            FrameFileWriter writer = new FrameFileWriter(file, previewWidth, previewHeight, ImageProcessing.NV21);
+            Log.d(TAG, "Capturing frames to " + file);
+            return new CapturingDetection(motionDetectionHelper, writer);
+        } catch (IOException e) {
+            Log.e(TAG, "Failed to start frame capture: " + e.getMessage());
+            return null;
         }
-
-        File video = File.createTempFile(
-                videoFileName,
-                ".mp4",
-                storageDir
-        );
-
-        videoUri = FileProvider.getUriForFile(this,
-                "com.example.jagadish.motiondetectionjaga.fileprovider",
-                video);
-
-        return video;
     }
 
     private void showRecordingProgress(int progress) {
@@ -435,7 +561,37 @@ public class MainActivity extends AppCompatActivity implements SurfaceHolder.Cal
         notificationManager.notify(NOTIFICATION_ID, builder.build());
     }
 
-    private void showCompletionNotification() {
+    // Called for every finished segment, on the main thread or the encoder's drain thread
+    private void onClipFinished(File file, long eventId, int segment, IOException error) {
+        // Taken here so a roll-over's next segment starts counting where this one ends
+        EventRecord event = eventStats.take(eventId, segment, System.currentTimeMillis());
+        handler.post(() -> {
+            if (error != null) {
+                Log.e(TAG, "Segment " + segment + " of event " + eventId + " failed: " + error.getMessage());
+                if (!file.delete()) Log.w(TAG, "Could not delete " + file);
+                return;
+            }
+            Log.d(TAG, "Segment " + segment + " of event " + eventId + " saved: " + file.getName());
+            logEvent(event, file);
+            ClipThumbnails.get(this).generate(file);
+            addVideoToMediaStore(file);
+            showCompletionNotification(FileProvider.getUriForFile(this,
+                    "com.example.jagadish.motiondetectionjaga.fileprovider",
+                    file));
+        });
+    }
+
+    private void logEvent(EventRecord event, File file) {
+        if (eventIndex == null) return;
+        try {
+            eventIndex.append(event, file);
+        } catch (IOException e) {
+            Log.e(TAG, "Failed to log " + event + ": " + e.getMessage());
+        }
+        if (clipRetention != null) clipRetention.schedule();
+    }
+
+    private void showCompletionNotification(Uri videoUri) {
         if (videoUri == null) return;
 
         Intent intent = new Intent(Intent.ACTION_VIEW);
@@ -456,7 +612,7 @@ public class MainActivity extends AppCompatActivity implements SurfaceHolder.Cal
         notificationManager.notify(NOTIFICATION_ID, builder.build());
     }
 
-    private void addVideoToMediaStore() {
+    private void addVideoToMediaStore(File videoFile) {
         if (videoFile != null && videoFile.exists()) {
             ContentValues values = new ContentValues();
             values.put(MediaStore.Video.Media.TITLE, videoFile.getName());
@@ -503,6 +659,28 @@ public class MainActivity extends AppCompatActivity implements SurfaceHolder.Cal
     }
 
     private void releaseCamera() {
+        if (frameAnalyzer != null) {
+            frameAnalyzer.stop();
+            frameAnalyzer = null;
+        }
+        if (frameCapture != null) {
+            frameCapture.close();
+            if (frameCapture.getError() != null) {
+                Log.e(TAG, "Frame capture failed: " + frameCapture.getError().getMessage());
+            }
+            frameCapture = null;
+        }
+        if (clipRecorder != null) {
+            // The clip ends with the camera that feeds it
+            stopRecording();
+            clipRecorder.release();
+            clipRecorder = null;
+        }
+        if (preRollEncoder != null) {
+            preRollEncoder.release();
+            preRollEncoder = null;
+        }
+
         if (camera != null) {
             try {
                 camera.setPreviewCallback(null);
@@ -522,21 +700,28 @@ public class MainActivity extends AppCompatActivity implements SurfaceHolder.Cal
         super.onDestroy();
         releaseCamera();
 
+        if (motionDetectionHelper != null) {
+            motionDetectionHelper.shutdown();
+            motionDetectionHelper = null;
+        }
+
         if (handler != null) {
             handler.removeCallbacks(updateRecordingProgress);
+            handler.removeCallbacks(motionTriggered);
         }
 
-        if (isRecording && mediaRecorder != null) {
-            try {
-                mediaRecorder.stop();
-                mediaRecorder.release();
-            } catch (Exception e) {
-                Log.e(TAG, "Error releasing MediaRecorder: " + e.getMessage());
-            }
-            mediaRecorder = null;
+        notificationManager.cancel(NOTIFICATION_ID);
+
+        if (clipRetention != null) {
+            clipRetention.release();
+            clipRetention = null;
         }
 
-        notificationManager.cancel(NOTIFICATION_ID);
+        if (alertDispatcher != null) {
+            Log.d(TAG, "Mail alerts: " + alertDispatcher);
+            alertDispatcher.shutdown();
+            alertDispatcher = null;
+        }
 
         if (mediaPlayer != null) {
             mediaPlayer.release();
@@ -0,0 +1,468 @@
+package com.example.jagadish.motion;
+
+import android.media.MediaCodec;
+import android.media.MediaCodecInfo;
+import android.media.MediaFormat;
+import android.media.MediaMuxer;
+import android.os.Bundle;
+import android.util.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps an H.264 encoder running on the preview frames and hands its packets to a PreRollRecorder,
+ * so a clip can begin seconds before the motion that triggered it. Clips are written with
+ * MediaMuxer and carry video only. All clip state is guarded by the recorder's lock, which the
+ * drain thread also holds while it writes. A clip closed by a roll-over is finished on a separate
+ * thread, since stopping a muxer writes the file's index and the drain thread must keep going.
+ * Preview frames are copied on the caller's thread and converted and queued to the encoder on an
+ * input thread; a frame still waiting when the next arrives is dropped.
+ */
+
+public class PreRollEncoder {
+    private static final String TAG = "PreRollEncoder";
+    private static final String MIME_TYPE = "video/avc";
+    private static final int FRAME_RATE = 30;
+    private static final int KEY_FRAME_INTERVAL = 1; // Seconds; also the granularity of the pre-roll
+    private static final long DEQUEUE_TIMEOUT_US = 10000;
+    private static final long FORMAT_TIMEOUT_MS = 3000; // Wait for the encoder's first output when preparing a clip
+    private static final long FINISH_TIMEOUT_MS = 10000; // Wait on release for closed clips to be finished
+
+    public interface ClipListener {
+        /**
+         * A roll-over has moved recording to the next clip; the closed one is now being finished.
+         * Called on the drain thread with the recorder's lock held, so it must not block.
+         */
+        public void onClipSwitched(PreparedClip closed, PreparedClip next);
+
+        /**
+         * A clip closed by a roll-over has been finished. Called on the finishing thread, in the
+         * order the clips were closed.
+         *
+         * @param error
+         *            Why the clip is unusable, or null.
+         */
+        public void onClipFinished(PreparedClip clip, int packets, IOException error);
+    }
+
+    // Writes the recorder's packets into one MP4 track
+    private static class MuxerSink implements PacketSink {
+        private final PreparedClip clip;
+        private final MediaMuxer muxer;
+        private final int track;
+        private final MediaCodec.BufferInfo info = new MediaCodec.BufferInfo();
+
+        MuxerSink(PreparedClip clip) {
+            this.clip = clip;
+            this.muxer = clip.muxer;
+            this.track = clip.track;
+        }
+
+        @Override
+        public void writePacket(byte[] data, int offset, int size, long presentationTimeUs, boolean keyFrame)
+                throws IOException {
+            info.set(offset, size, presentationTimeUs, keyFrame ? MediaCodec.BUFFER_FLAG_SYNC_FRAME : 0);
+            try {
+                muxer.writeSampleData(track, ByteBuffer.wrap(data, offset, size), info);
+            } catch (IllegalStateException | IllegalArgumentException e) {
+                throw new IOException("Muxer rejected packet: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Clip file with its muxer opened and started, ready for the first packet.
+     */
+    public static class PreparedClip {
+        private volatile File file;
+        private final MediaMuxer muxer;
+        private final int track;
+
+        PreparedClip(File file, MediaMuxer muxer, int track) {
+            this.file = file;
+            this.muxer = muxer;
+            this.track = track;
+        }
+
+        public File getFile() {
+            return file;
+        }
+
+        /**
+         * Rename the file, which may be open and being written.
+         */
+        public boolean renameTo(File target) {
+            if (!file.renameTo(target)) return false;
+            file = target;
+            return true;
+        }
+
+        /**
+         * Release a clip that was never started and delete its file.
+         */
+        public void discard() {
+            muxer.release();
+            if (!file.delete()) {
+                Log.w(TAG, "Could not delete unused clip " + file);
+            }
+        }
+    }
+
+    private final int width;
+    private final int height;
+    private final int inputFormat;
+    private final MediaCodec codec;
+    private final PreRollRecorder recorder;
+    private final byte[] converted;
+    private final ByteBuffer[] inputBuffers;
+    private final Bundle syncRequest = new Bundle();
+    private final Thread inputThread;
+    private final Thread drainThread;
+    private final ExecutorService finisher;
+    private volatile boolean running = true;
+    private volatile MediaFormat outputFormat;
+    private final CountDownLatch formatReady = new CountDownLatch(1);
+    private PreparedClip clip;
+    private PreparedClip nextClip;
+    private ClipListener clipListener;
+    private final AtomicLong droppedFrames = new AtomicLong();
+    // Frame copies: one may wait for the input thread while it converts another
+    private final Object inputLock = new Object();
+    private final ArrayDeque<byte[]> freeFrames = new ArrayDeque<>(2);
+    private byte[] pendingFrame;
+    private long pendingTimestampUs;
+
+    /**
+     * @param bitRate
+     *            Encoder bit rate in bits per second; with the pre-roll it sets the memory the ring needs.
+     */
+    public PreRollEncoder(int width, int height, int bitRate, PreRollBuffer buffer) throws IOException {
+        this.width = width;
+        this.height = height;
+        this.recorder = new PreRollRecorder(buffer);
+        recorder.setSegmentListener(this::onSegmentFinished);
+        this.converted = new byte[width * height * 3 / 2];
+        freeFrames.push(new byte[width * height * 3 / 2]);
+        freeFrames.push(new byte[width * height * 3 / 2]);
+        syncRequest.putInt(MediaCodec.PARAMETER_KEY_REQUEST_SYNC_FRAME, 0);
+
+        codec = MediaCodec.createEncoderByType(MIME_TYPE);
+        int colorFormat = 0;
+        int layout = -1;
+        for (int format : codec.getCodecInfo().getCapabilitiesForType(MIME_TYPE).colorFormats) {
+            if (format == MediaCodecInfo.CodecCapabilities.COLOR_FormatYUV420SemiPlanar) {
+                colorFormat = format;
+                layout = ImageProcessing.NV12;
+                break;
+            }
+            if (format == MediaCodecInfo.CodecCapabilities.COLOR_FormatYUV420Planar && layout < 0) {
+                colorFormat = format;
+                layout = ImageProcessing.I420;
+            }
+        }
+        if (layout < 0) {
+            codec.release();
+            throw new IOException("Encoder takes no 4:2:0 byte buffer format");
+        }
+        inputFormat = layout;
+
+        MediaFormat format = MediaFormat.createVideoFormat(MIME_TYPE, width, height);
+        format.setInteger(MediaFormat.KEY_COLOR_FORMAT, colorFormat);
+        format.setInteger(MediaFormat.KEY_BIT_RATE, bitRate);
+        format.setInteger(MediaFormat.KEY_FRAME_RATE, FRAME_RATE);
+        format.setInteger(MediaFormat.KEY_I_FRAME_INTERVAL, KEY_FRAME_INTERVAL);
+        try {
+            codec.configure(format, null, null, MediaCodec.CONFIGURE_FLAG_ENCODE);
+            codec.start();
+        } catch (RuntimeException e) {
+            codec.release();
+            throw new IOException("Failed to start encoder: " + e.getMessage());
+        }
+        inputBuffers = codec.getInputBuffers();
+
+        finisher = Executors.newSingleThreadExecutor(runnable -> new Thread(runnable, "PreRollFinisher"));
+        drainThread = new Thread(this::drain, "PreRollEncoder");
+        drainThread.start();
+        inputThread = new Thread(this::feed, "PreRollInput");
+        inputThread.start();
+    }
+
+    /**
+     * Hand one NV21 preview frame to the input thread. Called on the preview thread before the
+     * buffer is recycled; only a copy is kept, and a frame the input thread has not yet taken is
+     * replaced and counted as dropped.
+     */
+    public void encode(byte[] nv21, long timestampUs) {
+        byte[] copy;
+        synchronized (inputLock) {
+            if (!running) return;
+            copy = freeFrames.poll();
+            if (copy == null) {
+                copy = pendingFrame;
+                pendingFrame = null;
+                droppedFrames.incrementAndGet();
+            }
+        }
+        System.arraycopy(nv21, 0, copy, 0, copy.length);
+        synchronized (inputLock) {
+            pendingFrame = copy;
+            pendingTimestampUs = timestampUs;
+            inputLock.notifyAll();
+        }
+    }
+
+    // Runs on the input thread until release(): converts each frame and queues it to the encoder
+    private void feed() {
+        while (true) {
+            byte[] frame;
+            long timestampUs;
+            synchronized (inputLock) {
+                while (running && pendingFrame == null) {
+                    try {
+                        inputLock.wait();
+                    } catch (InterruptedException e) {
+                        // Only release() ends the loop
+                    }
+                }
+                if (!running) return;
+                frame = pendingFrame;
+                timestampUs = pendingTimestampUs;
+                pendingFrame = null;
+            }
+            try {
+                queue(frame, timestampUs);
+            } finally {
+                synchronized (inputLock) {
+                    freeFrames.push(frame);
+                }
+            }
+        }
+    }
+
+    // A codec that failed or was stopped only costs the frame
+    private void queue(byte[] nv21, long timestampUs) {
+        try {
+            int index = codec.dequeueInputBuffer(DEQUEUE_TIMEOUT_US);
+            if (index < 0) {
+                droppedFrames.incrementAndGet();
+                return;
+            }
+            ImageProcessing.convertNV21(nv21, width, height, inputFormat, converted);
+            ByteBuffer input = inputBuffers[index];
+            input.clear();
+            input.put(converted);
+            codec.queueInputBuffer(index, 0, converted.length, timestampUs, 0);
+
+            if (recorder.isWaitingForKeyFrame()) {
+                codec.setParameters(syncRequest);
+            }
+        } catch (IllegalStateException e) {
+            droppedFrames.incrementAndGet();
+        }
+    }
+
+    // Runs on the drain thread until release()
+    private void drain() {
+        MediaCodec.BufferInfo info = new MediaCodec.BufferInfo();
+        ByteBuffer[] outputBuffers = codec.getOutputBuffers();
+        byte[] packet = new byte[0];
+        try {
+            while (running) {
+                int index = codec.dequeueOutputBuffer(info, DEQUEUE_TIMEOUT_US);
+                if (index == MediaCodec.INFO_OUTPUT_BUFFERS_CHANGED) {
+                    outputBuffers = codec.getOutputBuffers();
+                } else if (index == MediaCodec.INFO_OUTPUT_FORMAT_CHANGED) {
+                    outputFormat = codec.getOutputFormat();
+                    formatReady.countDown();
+                } else if (index >= 0) {
+                    // Codec configuration travels in the output format, not as a packet
+                    if ((info.flags & MediaCodec.BUFFER_FLAG_CODEC_CONFIG) == 0 && info.size > 0) {
+                        if (packet.length < info.size) {
+                            packet = new byte[info.size + info.size / 4];
+                        }
+                        ByteBuffer output = outputBuffers[index];
+                        output.position(info.offset);
+                        output.get(packet, 0, info.size);
+                        recorder.onPacket(packet, 0, info.size, info.presentationTimeUs,
+                                (info.flags & MediaCodec.BUFFER_FLAG_SYNC_FRAME) != 0);
+                    }
+                    codec.releaseOutputBuffer(index, false);
+                }
+            }
+        } catch (IllegalStateException e) {
+            Log.e(TAG, "Encoder stopped: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Open a clip file ahead of time. Safe to call from any thread; waits briefly for the
+     * encoder's first output, which carries the stream format the muxer needs.
+     */
+    public PreparedClip prepareClip(File file) throws IOException {
+        try {
+            if (!formatReady.await(FORMAT_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                throw new IOException("Encoder has not produced any output yet");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted waiting for the encoder");
+        }
+
+        MediaMuxer muxer = new MediaMuxer(file.getAbsolutePath(), MediaMuxer.OutputFormat.MUXER_OUTPUT_MPEG_4);
+        try {
+            int track = muxer.addTrack(outputFormat);
+            muxer.start();
+            return new PreparedClip(file, muxer, track);
+        } catch (RuntimeException e) {
+            muxer.release();
+            throw new IOException("Failed to start muxer: " + e.getMessage());
+        }
+    }
+
+    public void setClipListener(ClipListener listener) {
+        synchronized (recorder) {
+            clipListener = listener;
+        }
+    }
+
+    /**
+     * Start writing a prepared clip: the buffered pre-roll first, then the live frames.
+     *
+     * @param triggerNanos
+     *            System.nanoTime() of the motion decision, for the start latency.
+     */
+    public void startClip(PreparedClip prepared, long triggerNanos) {
+        synchronized (recorder) {
+            if (clip != null) throw new IllegalStateException("Already recording");
+
+            recorder.start(new MuxerSink(prepared), triggerNanos);
+            clip = prepared;
+        }
+    }
+
+    /**
+     * Continue the current clip in a prepared one from the next key frame, which is requested
+     * now. The finished clip is reported to the clip listener.
+     */
+    public void rollOver(PreparedClip next) {
+        synchronized (recorder) {
+            if (clip == null) throw new IllegalStateException("Not recording");
+            if (nextClip != null) throw new IllegalStateException("Roll-over already pending");
+
+            recorder.rollOver(new MuxerSink(next));
+            nextClip = next;
+        }
+    }
+
+    // Called on the drain thread with the recorder's lock held; only the switch happens here
+    private void onSegmentFinished(PacketSink finished, int packets) {
+        PreparedClip done = ((MuxerSink) finished).clip;
+        clip = nextClip;
+        nextClip = null;
+        ClipListener listener = clipListener;
+        if (listener != null) listener.onClipSwitched(done, clip);
+        finisher.execute(() -> {
+            IOException error = finish(done, null);
+            if (listener != null) listener.onClipFinished(done, packets, error);
+        });
+    }
+
+    private static IOException finish(PreparedClip done, IOException error) {
+        try {
+            done.muxer.stop();
+        } catch (IllegalStateException e) {
+            if (error == null) error = new IOException("Failed to finish clip: " + e.getMessage());
+        } finally {
+            done.muxer.release();
+        }
+        return error;
+    }
+
+    /**
+     * Finish the current clip. A pending roll-over clip that never received a packet is discarded.
+     *
+     * @return Number of packets in the clip.
+     * @throws IOException
+     *             If writing failed or the clip is empty; the file is then unusable.
+     */
+    public int stopClip() throws IOException {
+        synchronized (recorder) {
+            if (clip == null) return 0;
+
+            int packets = recorder.stop();
+            IOException error = finish(clip, recorder.getError());
+            clip = null;
+            if (nextClip != null) {
+                nextClip.discard();
+                nextClip = null;
+            }
+            if (error != null) throw error;
+            Log.d(TAG, "Clip of " + packets + " packets with " + recorder.getLastPreRollUs() / 1000 + " ms pre-roll");
+            return packets;
+        }
+    }
+
+    public boolean isRecording() {
+        synchronized (recorder) {
+            return clip != null;
+        }
+    }
+
+    /**
+     * @param tracker
+     *            Receives the time from each trigger to the clip's first packet written.
+     */
+    public void setStartLatency(LatencyTracker tracker) {
+        recorder.setStartLatency(tracker);
+    }
+
+    public PreRollBuffer getBuffer() {
+        return recorder.getBuffer();
+    }
+
+    /**
+     * @return Preview frames skipped because the encoder was busy or failed.
+     */
+    public long getDroppedFrames() {
+        return droppedFrames.get();
+    }
+
+    /**
+     * Stop the encoder, finishing any clip in progress.
+     */
+    public void release() {
+        try {
+            stopClip();
+        } catch (IOException e) {
+            Log.e(TAG, "Error finishing clip: " + e.getMessage());
+        }
+        synchronized (inputLock) {
+            running = false;
+            inputLock.notifyAll();
+        }
+        try {
+            inputThread.join();
+            drainThread.join();
+            finisher.shutdown();
+            if (!finisher.awaitTermination(FINISH_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                Log.w(TAG, "Closed clips still being finished");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            codec.stop();
+        } catch (IllegalStateException e) {
+            // Already stopped after an encoder error
+        }
+        codec.release();
+    }
+}
@@ -15,4 +15,41 @@ public abstract class Preferences {
 
     // Time between saving photos
     public static int PICTURE_DELAY = 3000;
+
+    // Write raw preview frames to a file for offline replay; about 14 MB per second at 640x480
+    public static boolean CAPTURE_FRAMES = false;
+
+    // Areas to analyse or ignore, empty for the whole frame
+    public static final ZoneMask DETECTION_ZONES = new ZoneMask();
+
+    // Video kept from before each trigger; 0 records with MediaRecorder from the trigger on, with audio
+    public static int PRE_ROLL_MILLIS = 3000;
+    public static int PRE_ROLL_MAX_BYTES = 4 * 1024 * 1024;
+    public static int PRE_ROLL_BIT_RATE = 2000000;
+
+    // Recording kept after the last motion, and the longest file before an event rolls over
+    public static long POST_ROLL_MILLIS = 3000;
+    public static long MAX_SEGMENT_MILLIS = 60000;
+
+    // Gallery thumbnails, generated when each clip is finished
+    public static int THUMBNAIL_WIDTH = 240;
+    public static long THUMBNAIL_DISK_BYTES = 32 * 1024 * 1024;
+
+    // Oldest clips not marked important are deleted beyond these limits; 0 for no limit
+    public static long RETENTION_QUOTA_BYTES = 4L * 1024 * 1024 * 1024;
+    public static long RETENTION_MAX_AGE_MILLIS = 30L * 24 * 3600 * 1000;
+    // Free space kept for recording, a few maximum-length segments
+    public static long RETENTION_MIN_FREE_BYTES = 300L * 1024 * 1024;
+
+    // Mail an alert for each event; alerts within the window go out as one digest
+    public static boolean MAIL_ALERTS = false;
+    public static String[] ALERT_RECIPIENTS = {};
+    public static long ALERT_DIGEST_MILLIS = 60000;
+    // Each alert carries a contact sheet of the event's motion frames instead of the clip
+    public static int CONTACT_SHEET_COLUMNS = 4;
+    public static int CONTACT_SHEET_ROWS = 3;
+    public static int CONTACT_SHEET_TILE_WIDTH = 160;
+    public static long CONTACT_SHEET_INTERVAL_MILLIS = 500; // Between frames, doubled as the sheet fills
+    // Attachments are shrunk or left out to keep each message under this, encoding included
+    public static long ALERT_MESSAGE_BYTES = 512 * 1024;
 }
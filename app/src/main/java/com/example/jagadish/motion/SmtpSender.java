@@ -0,0 +1,259 @@
+package com.example.jagadish.motion;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.Properties;
+
+import javax.activation.DataHandler;
+import javax.mail.Authenticator;
+import javax.mail.MessagingException;
+import javax.mail.Part;
+import javax.mail.PasswordAuthentication;
+import javax.mail.Session;
+import javax.mail.internet.AddressException;
+import javax.mail.internet.InternetAddress;
+import javax.mail.internet.MimeBodyPart;
+import javax.mail.internet.MimeMessage;
+import javax.mail.internet.MimeMultipart;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.SSLSocketFactory;
+
+import com.sun.mail.smtp.SMTPTransport;
+
+/**
+ * Sends alert digests over one authenticated SMTP connection, opened on the first send and kept
+ * for the following ones, so each alert costs a message rather than a connection and a TLS
+ * handshake. The session is created once. The socket is opened here rather than by JavaMail, so
+ * a failed send can drop it without a QUIT the server would read as part of the message; the next
+ * send reconnects. Every part writes its own content, without JavaMail's mailcap content
+ * handlers, which are neither needed for a fixed layout nor loadable on a desktop JVM for tests.
+ * Attachments are fitted to a per-message byte budget, and left out with a note when
+ * they cannot be made small enough; each is streamed into the message as it is written.
+ */
+
+public class SmtpSender implements AlertDispatcher.Sender {
+    private static final int CONNECT_TIMEOUT_MILLIS = 15000;
+    private static final int READ_TIMEOUT_MILLIS = 30000;
+    private static final int HEADER_BYTES = 2048; // Allowance for message and part headers
+
+    private final Session session;
+    private final String host;
+    private final int port;
+    private final boolean ssl;
+    private final InternetAddress from;
+    private final InternetAddress[] to;
+    private SMTPTransport transport;
+    private volatile Socket socket;
+    private int connections;
+    private long messageBytes = Preferences.ALERT_MESSAGE_BYTES;
+
+    /**
+     * @param ssl
+     *            Whether to connect with implicit TLS, as on port 465.
+     */
+    public SmtpSender(String host, int port, boolean ssl, String user, String password, String from, String[] to) {
+        if (host == null || user == null || password == null || from == null || to == null) {
+            throw new NullPointerException();
+        }
+        if (to.length == 0) throw new IllegalArgumentException("No recipients");
+
+        this.host = host;
+        this.port = port;
+        this.ssl = ssl;
+        try {
+            this.from = new InternetAddress(from);
+            this.to = new InternetAddress[to.length];
+            for (int i = 0; i < to.length; i++) {
+                this.to[i] = new InternetAddress(to[i]);
+            }
+        } catch (AddressException e) {
+            throw new IllegalArgumentException("Invalid address: " + e.getMessage());
+        }
+
+        Properties props = new Properties();
+        props.put("mail.smtp.auth", "true");
+        props.put("mail.smtp.host", host);
+        props.put("mail.smtp.user", user);
+        // Asked for when JavaMail connects over the socket given to it
+        PasswordAuthentication login = new PasswordAuthentication(user, password);
+        this.session = Session.getInstance(props, new Authenticator() {
+            @Override
+            protected PasswordAuthentication getPasswordAuthentication() {
+                return login;
+            }
+        });
+    }
+
+    /**
+     * Uses the server, account and recipients of a mail.
+     */
+    public static SmtpSender fromMail(Mail mail) {
+        return new SmtpSender(mail.getHost(), mail.getPort(), true, mail.getUser(), mail.getPassword(),
+                mail.getFrom(), mail.getTo());
+    }
+
+    /**
+     * @param bytes
+     *            Largest message to send, attachments encoded.
+     */
+    public synchronized void setMessageBytes(long bytes) {
+        if (bytes <= 0) throw new IllegalArgumentException("Invalid message size: " + bytes);
+        messageBytes = bytes;
+    }
+
+    @Override
+    public synchronized void send(List<Alert> digest) throws IOException {
+        try {
+            // isConnected() checks the server is still there, much cheaper than a new handshake
+            if (transport == null || !transport.isConnected()) {
+                abort();
+                socket = openSocket();
+                transport = (SMTPTransport) session.getTransport("smtp");
+                transport.connect(socket);
+                connections++;
+            }
+            MimeMessage message = createMessage(digest);
+            transport.sendMessage(message, to);
+        } catch (MessagingException | IOException e) {
+            abort();
+            throw new IOException("SMTP send failed: " + e.getMessage(), e);
+        } catch (RuntimeException | Error e) {
+            abort();
+            throw e;
+        }
+    }
+
+    private Socket openSocket() throws IOException {
+        Socket s = ssl ? SSLSocketFactory.getDefault().createSocket() : new Socket();
+        try {
+            s.connect(new InetSocketAddress(host, port), CONNECT_TIMEOUT_MILLIS);
+            s.setSoTimeout(READ_TIMEOUT_MILLIS);
+            if (ssl) ((SSLSocket) s).startHandshake();
+            return s;
+        } catch (IOException e) {
+            s.close();
+            throw e;
+        }
+    }
+
+    MimeMessage createMessage(List<Alert> digest) throws MessagingException, IOException {
+        MimeMessage message = new MimeMessage(session);
+        message.setFrom(from);
+        message.setRecipients(MimeMessage.RecipientType.TO, to);
+        message.setSubject(digest.size() == 1 ? "Motion detected" : "Motion detected (" + digest.size() + " events)");
+        message.setSentDate(new Date());
+
+        SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss", Locale.getDefault());
+        StringBuilder text = new StringBuilder();
+        int count = 0;
+        for (Alert alert : digest) {
+            text.append(format.format(new Date(alert.getTimeMillis()))).append("  ").append(alert.getMessage())
+                    .append('\n');
+            count += alert.getAttachments().size();
+        }
+
+        // Base64 turns every 57 bytes into a 76 character line and its CRLF
+        long left = Math.max(0, messageBytes - HEADER_BYTES * (count + 1) - 2 * text.length()) * 57 / 78;
+        MimeMultipart content = new MimeMultipart();
+        for (Alert alert : digest) {
+            for (AlertAttachment attachment : alert.getAttachments()) {
+                // An attachment that comes out smaller leaves its share to the ones after it
+                long size = attachment.fit(left / count--);
+                if (size < 0) {
+                    text.append("\n").append(attachment.getName()).append(" left out, over the size limit");
+                    continue;
+                }
+                left -= size;
+                MimeBodyPart part = new MimeBodyPart();
+                // Streamed straight into the encoder of the message being sent
+                part.setDataHandler(new PartHandler(attachment, attachment.getContentType(), attachment::writeTo));
+                part.setFileName(attachment.getName());
+                part.setDisposition(Part.ATTACHMENT);
+                // Set up front, so JavaMail does not read the content through once to choose one
+                part.setHeader("Content-Transfer-Encoding", "base64");
+                content.addBodyPart(part);
+            }
+        }
+
+        String plain = text.toString();
+        byte[] bytes = plain.getBytes(StandardCharsets.UTF_8);
+        MimeBodyPart body = new MimeBodyPart();
+        body.setDataHandler(new PartHandler(plain, "text/plain; charset=UTF-8", out -> out.write(bytes)));
+        body.setHeader("Content-Transfer-Encoding", "quoted-printable");
+        content.addBodyPart(body, 0);
+
+        message.setDataHandler(new PartHandler(content, content.getContentType(), out -> {
+            try {
+                content.writeTo(out);
+            } catch (MessagingException e) {
+                throw new IOException(e.getMessage(), e);
+            }
+        }));
+        return message;
+    }
+
+    private interface PartWriter {
+        void writeTo(OutputStream out) throws IOException;
+    }
+
+    // Content written by the part itself; getContent() still returns the object, which JavaMail
+    // needs to update the headers of a multipart
+    private static class PartHandler extends DataHandler {
+        private final PartWriter writer;
+
+        PartHandler(Object content, String type, PartWriter writer) {
+            super(content, type);
+            this.writer = writer;
+        }
+
+        @Override
+        public void writeTo(OutputStream out) throws IOException {
+            writer.writeTo(out);
+        }
+    }
+
+    @Override
+    public synchronized void disconnect() {
+        if (transport == null) return;
+        try {
+            transport.close();
+        } catch (MessagingException e) {
+            // The connection is gone either way
+        }
+        transport = null;
+        socket = null;
+    }
+
+    /**
+     * Close the socket without a QUIT; safe to call while a send is blocked on it.
+     */
+    @Override
+    public void abort() {
+        Socket current = socket;
+        if (current != null) {
+            try {
+                current.close();
+            } catch (IOException e) {
+                // Closed either way
+            }
+        }
+        synchronized (this) {
+            transport = null;
+            socket = null;
+        }
+    }
+
+    /**
+     * @return Connections opened so far.
+     */
+    public synchronized int getConnections() {
+        return connections;
+    }
+}
@@ -1,6 +1,9 @@
 package com.example.jagadish.motion;
 
 import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
@@ -8,27 +11,172 @@ import android.widget.ImageView;
 import android.widget.TextView;
 
 import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.DiffUtil;
+import androidx.recyclerview.widget.ListAdapter;
 import androidx.recyclerview.widget.RecyclerView;
 
-import com.bumptech.glide.Glide;
-
 import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
-
-public class Video extends RecyclerView.Adapter<Video.VideoViewHolder> {
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Gallery of recorded clips, newest first, paged from the event index as the user scrolls so
+ * opening it costs the same however many clips there are. New clips are inserted at the top;
+ * ListAdapter computes the difference on a background thread, so only changed rows are bound.
+ * Rows come from the log's deleted flags alone; whether a clip is still on disk is checked only
+ * when it is opened, and a missing one is then marked deleted and removed.
+ */
+
+public class Video extends ListAdapter<Video.Item, Video.VideoViewHolder> implements EventIndex.Listener {
+    private static final String TAG = "Video";
+    private static final int PAGE_SIZE = 50;
+    private static final int PREFETCH = 20; // Rows from the end at which the next page loads
+    private static final long LOADER_IDLE_SECONDS = 30; // Before the shared loader thread exits
+
+    // Shared by all galleries; its thread ends when idle, so nothing needs shutting down
+    private static final ExecutorService LOADER = createLoader();
 
     private Context context;
-    private List<String> videoList;
     private OnVideoClickListener listener;
+    private final EventIndex index;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    // Main thread only
+    private final List<Item> items = new ArrayList<>();
+    private boolean loading;
+    private boolean complete;
+    // Loader thread only: the log index below which the next page starts, and the log size when
+    // the newest events were read
+    private int nextIndex = -1;
+    private int newestIndex;
 
     public interface OnVideoClickListener {
         void onVideoClick(String videoPath);
     }
 
-    public Video(Context context, List<String> videoList, OnVideoClickListener listener) {
+    /**
+     * One clip in the gallery, identified by its position in the event log.
+     */
+    public static class Item {
+        final int index;
+        final String path;
+        final int flags;
+
+        Item(int index, String path, int flags) {
+            this.index = index;
+            this.path = path;
+            this.flags = flags;
+        }
+
+        public String getPath() {
+            return path;
+        }
+    }
+
+    private static final DiffUtil.ItemCallback<Item> DIFF = new DiffUtil.ItemCallback<Item>() {
+        @Override
+        public boolean areItemsTheSame(@NonNull Item a, @NonNull Item b) {
+            return a.index == b.index;
+        }
+
+        @Override
+        public boolean areContentsTheSame(@NonNull Item a, @NonNull Item b) {
+            return a.path.equals(b.path) && a.flags == b.flags;
+        }
+    };
+
+    public Video(Context context, OnVideoClickListener listener) throws IOException {
+        super(DIFF);
         this.context = context;
-        this.videoList = videoList;
         this.listener = listener;
+        this.index = EventIndex.get(context);
+    }
+
+    private static ExecutorService createLoader() {
+        ThreadPoolExecutor loader = new ThreadPoolExecutor(1, 1, LOADER_IDLE_SECONDS, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), runnable -> new Thread(runnable, "ClipGallery"));
+        loader.allowCoreThreadTimeOut(true);
+        return loader;
+    }
+
+    @Override
+    public void onAttachedToRecyclerView(@NonNull RecyclerView recyclerView) {
+        super.onAttachedToRecyclerView(recyclerView);
+        index.addListener(this);
+        loadMore();
+    }
+
+    @Override
+    public void onDetachedFromRecyclerView(@NonNull RecyclerView recyclerView) {
+        super.onDetachedFromRecyclerView(recyclerView);
+        index.removeListener(this);
+    }
+
+    // Read the next older page in the background and append it
+    private void loadMore() {
+        if (loading || complete) return;
+        loading = true;
+        LOADER.execute(() -> {
+            EventLog log = index.getLog();
+            List<Item> page = new ArrayList<>();
+            try {
+                if (nextIndex < 0) {
+                    nextIndex = newestIndex = log.size();
+                }
+                // Pages whose clips were all deleted are skipped
+                while (page.isEmpty() && nextIndex > 0) {
+                    List<EventRecord> records = log.readBackward(nextIndex, PAGE_SIZE);
+                    nextIndex -= records.size();
+                    addExisting(log, records, page);
+                }
+            } catch (IOException e) {
+                Log.e(TAG, "Failed to read the event log: " + e.getMessage());
+            }
+            boolean more = nextIndex > 0;
+            handler.post(() -> {
+                items.addAll(page);
+                loading = false;
+                complete = !more;
+                submitList(new ArrayList<>(items));
+            });
+        });
+    }
+
+    private static void addExisting(EventLog log, List<EventRecord> records, List<Item> page) throws IOException {
+        for (EventRecord record : records) {
+            if (record.isDeleted()) continue;
+            String path = log.getClipPath(record);
+            if (path != null) {
+                page.add(new Item(record.getIndex(), path, record.getFlags()));
+            }
+        }
+    }
+
+    @Override
+    public void onEventAdded(EventRecord event) {
+        LOADER.execute(() -> {
+            // Nothing to insert until the first page has been read
+            if (nextIndex < 0) return;
+            EventLog log = index.getLog();
+            List<Item> added = new ArrayList<>();
+            try {
+                int size = log.size();
+                addExisting(log, log.readBackward(size, size - newestIndex), added);
+                newestIndex = size;
+            } catch (IOException e) {
+                Log.e(TAG, "Failed to read the event log: " + e.getMessage());
+                return;
+            }
+            if (added.isEmpty()) return;
+            handler.post(() -> {
+                items.addAll(0, added);
+                submitList(new ArrayList<>(items));
+            });
+        });
     }
 
     @NonNull
@@ -40,20 +188,38 @@ public class Video extends RecyclerView.Adapter<Video.VideoViewHolder> {
 
     @Override
     public void onBindViewHolder(@NonNull VideoViewHolder holder, int position) {
-        String videoPath = videoList.get(position);
-        File videoFile = new File(videoPath);
-        holder.videoNameTextView.setText(videoFile.getName());
+        String videoPath = getItem(position).getPath();
+
+        // Sidecar thumbnails, so scrolling never opens the clips
+        ClipThumbnails.get(context).bind(holder.thumbnailImageView, holder.videoNameTextView, new File(videoPath));
 
-        Glide.with(context)
-                .load(videoPath)
-                .into(holder.thumbnailImageView);
+        holder.itemView.setOnClickListener(v -> {
+            int current = holder.getAdapterPosition();
+            if (current != RecyclerView.NO_POSITION) open(getItem(current));
+        });
 
-        holder.itemView.setOnClickListener(v -> listener.onVideoClick(videoPath));
+        if (position >= getItemCount() - PREFETCH) {
+            loadMore();
+        }
     }
 
-    @Override
-    public int getItemCount() {
-        return videoList.size();
+    // Check the clip is still there before handing it on; one removed behind the log's back is dropped
+    private void open(Item item) {
+        LOADER.execute(() -> {
+            if (new File(item.path).isFile()) {
+                handler.post(() -> listener.onVideoClick(item.path));
+                return;
+            }
+            try {
+                index.markDeleted(item.index);
+            } catch (IOException e) {
+                Log.w(TAG, "Failed to mark " + item.path + " deleted: " + e.getMessage());
+            }
+            handler.post(() -> {
+                items.remove(item);
+                submitList(new ArrayList<>(items));
+            });
+        });
     }
 
     static class VideoViewHolder extends RecyclerView.ViewHolder {
@@ -67,4 +233,3 @@ public class Video extends RecyclerView.Adapter<Video.VideoViewHolder> {
         }
     }
 }
-
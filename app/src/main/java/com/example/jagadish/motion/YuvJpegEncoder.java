@@ -0,0 +1,22 @@
+package com.example.jagadish.motion;
+
+import android.graphics.ImageFormat;
+import android.graphics.Rect;
+import android.graphics.YuvImage;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Encodes NV21 straight to JPEG with the platform encoder, without going through a Bitmap.
+ */
+
+public class YuvJpegEncoder implements JpegEncoder {
+    @Override
+    public void encode(byte[] nv21, int width, int height, int quality, OutputStream out) throws IOException {
+        YuvImage image = new YuvImage(nv21, ImageFormat.NV21, width, height, null);
+        if (!image.compressToJpeg(new Rect(0, 0, width, height), quality, out)) {
+            throw new IOException("JPEG encoding failed for " + width + "x" + height);
+        }
+    }
+}
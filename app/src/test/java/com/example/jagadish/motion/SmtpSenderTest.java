@@ -0,0 +1,165 @@
+package com.example.jagadish.motion;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class SmtpSenderTest {
+    // Fixed content that records how often it is fitted and written
+    private static class FakeAttachment implements AlertAttachment {
+        final byte[] content;
+        int writes;
+        RuntimeException failure;
+
+        FakeAttachment(int size) {
+            content = new byte[size];
+            for (int i = 0; i < size; i++) {
+                content[i] = (byte) (i * 31);
+            }
+        }
+
+        @Override
+        public String getName() {
+            return "event.jpg";
+        }
+
+        @Override
+        public String getContentType() {
+            return "image/jpeg";
+        }
+
+        @Override
+        public long fit(long maxBytes) {
+            return content.length <= maxBytes ? content.length : -1;
+        }
+
+        @Override
+        public void writeTo(OutputStream out) throws IOException {
+            writes++;
+            out.write(content, 0, content.length / 2);
+            if (failure != null) throw failure;
+            out.write(content, content.length / 2, content.length - content.length / 2);
+        }
+    }
+
+    private SmtpStandIn server;
+    private SmtpSender sender;
+
+    @Before
+    public void setUp() throws IOException {
+        server = new SmtpStandIn();
+        sender = new SmtpSender("127.0.0.1", server.getPort(), false, "user", "secret", "camera@example.com",
+                new String[] { "owner@example.com" });
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        sender.disconnect();
+        server.close();
+    }
+
+    @Test
+    public void digestsShareOneConnection() throws IOException {
+        sender.send(Collections.singletonList(new Alert(0, "front door")));
+        sender.send(Arrays.asList(new Alert(1000, "garden"), new Alert(2000, "garage")));
+
+        assertEquals(1, server.getConnections());
+        assertEquals(1, sender.getConnections());
+        List<String> messages = server.getMessages();
+        assertEquals(2, messages.size());
+        assertTrue(messages.get(1).contains("Motion detected (2 events)"));
+        assertTrue(messages.get(1).contains("garden"));
+        assertTrue(messages.get(1).contains("garage"));
+        assertFalse(messages.get(1).contains("front door"));
+    }
+
+    @Test
+    public void reconnectsAfterServerDropsConnection() throws IOException {
+        sender.send(Collections.singletonList(new Alert(0, "first")));
+        server.dropClients();
+        sender.send(Collections.singletonList(new Alert(1000, "second")));
+
+        assertEquals(2, server.getConnections());
+        assertEquals(2, server.getMessages().size());
+    }
+
+    @Test
+    public void dispatcherDeliversThroughStandIn() throws Exception {
+        AlertDispatcher dispatcher = new AlertDispatcher(sender, 100, 20, 1000, 3, 60000, 100, 10);
+        for (int i = 0; i < 5; i++) {
+            dispatcher.post(new Alert(i * 1000L, "event " + i));
+        }
+        assertTrue(dispatcher.close(5000));
+
+        assertEquals(5, dispatcher.getAlertsSent());
+        assertEquals(0, dispatcher.getFailures());
+        assertEquals(1, server.getMessages().size());
+        assertTrue(server.getMessages().get(0).contains("event 4"));
+    }
+
+    @Test
+    public void attachmentIsStreamedOnce() throws IOException {
+        FakeAttachment attachment = new FakeAttachment(3000);
+        sender.send(Collections.singletonList(new Alert(0, "porch").addAttachment(attachment)));
+
+        assertEquals(1, attachment.writes);
+        String message = server.getMessages().get(0);
+        assertTrue(message.contains("Content-Type: image/jpeg"));
+        assertTrue(message.contains("filename=event.jpg"));
+        String encoded = Base64.getEncoder().encodeToString(attachment.content);
+        assertTrue(message.replace("\n", "").contains(encoded));
+    }
+
+    @Test
+    public void attachmentOverBudgetIsLeftOut() throws IOException {
+        sender.setMessageBytes(20000);
+        FakeAttachment small = new FakeAttachment(3000);
+        FakeAttachment large = new FakeAttachment(30000);
+        sender.send(Arrays.asList(new Alert(0, "porch").addAttachment(large),
+                new Alert(1000, "drive").addAttachment(small)));
+
+        assertEquals(0, large.writes);
+        assertEquals(1, small.writes);
+        String message = server.getMessages().get(0);
+        assertTrue(message.contains("event.jpg left out, over the size limit"));
+        assertTrue(message.length() < 20000);
+    }
+
+    @Test
+    public void failedSendDropsConnectionWithoutQuit() throws IOException {
+        FakeAttachment broken = new FakeAttachment(3000);
+        broken.failure = new IllegalStateException("Encoder failed");
+        try {
+            sender.send(Collections.singletonList(new Alert(0, "porch").addAttachment(broken)));
+            fail();
+        } catch (IllegalStateException e) {
+            // Passed on as it is
+        }
+        sender.send(Collections.singletonList(new Alert(1000, "drive")));
+
+        assertEquals(2, server.getConnections());
+        assertEquals(0, server.getQuits());
+        assertEquals(1, server.getMessages().size());
+        assertTrue(server.getMessages().get(0).contains("drive"));
+    }
+
+    @Test
+    public void unreachableServerFails() throws IOException {
+        server.close();
+        try {
+            sender.send(Collections.singletonList(new Alert(0, "lost")));
+            fail();
+        } catch (IOException e) {
+            assertTrue(e.getMessage().startsWith("SMTP send failed"));
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package com.example.jagadish.motion;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Minimal local SMTP server for tests: accepts any login, records each message and the number
+ * of connections, and can drop connections to simulate a server timing out idle clients.
+ */
+
+class SmtpStandIn implements Closeable {
+    private final ServerSocket server;
+    private final Thread thread;
+    private final List<String> messages = new ArrayList<>();
+    private final List<Socket> clients = new ArrayList<>();
+    private int connections;
+    private int quits;
+
+    SmtpStandIn() throws IOException {
+        server = new ServerSocket(0, 10, InetAddress.getLoopbackAddress());
+        thread = new Thread(this::accept, "SmtpStandIn");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    int getPort() {
+        return server.getLocalPort();
+    }
+
+    synchronized int getConnections() {
+        return connections;
+    }
+
+    synchronized int getQuits() {
+        return quits;
+    }
+
+    synchronized List<String> getMessages() {
+        return new ArrayList<>(messages);
+    }
+
+    /**
+     * Close every open client connection.
+     */
+    synchronized void dropClients() throws IOException {
+        for (Socket client : clients) {
+            client.close();
+        }
+        clients.clear();
+    }
+
+    private void accept() {
+        while (!server.isClosed()) {
+            try {
+                Socket client = server.accept();
+                synchronized (this) {
+                    connections++;
+                    clients.add(client);
+                }
+                Thread session = new Thread(() -> serve(client), "SmtpStandInSession");
+                session.setDaemon(true);
+                session.start();
+            } catch (IOException e) {
+                return;
+            }
+        }
+    }
+
+    private void serve(Socket client) {
+        try (Socket socket = client) {
+            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+            OutputStream out = socket.getOutputStream();
+            reply(out, "220 localhost SMTP stand-in");
+            String line;
+            while ((line = in.readLine()) != null) {
+                String command = line.toUpperCase();
+                if (command.startsWith("EHLO")) {
+                    reply(out, "250-localhost\r\n250-AUTH PLAIN LOGIN\r\n250 8BITMIME");
+                } else if (command.startsWith("AUTH LOGIN")) {
+                    if (line.trim().split(" ").length < 3) {
+                        reply(out, "334 VXNlcm5hbWU6");
+                        in.readLine();
+                    }
+                    reply(out, "334 UGFzc3dvcmQ6");
+                    in.readLine();
+                    reply(out, "235 Authenticated");
+                } else if (command.startsWith("AUTH PLAIN")) {
+                    if (line.trim().split(" ").length < 3) {
+                        reply(out, "334 ");
+                        in.readLine();
+                    }
+                    reply(out, "235 Authenticated");
+                } else if (command.startsWith("DATA")) {
+                    reply(out, "354 End with .");
+                    StringBuilder message = new StringBuilder();
+                    while ((line = in.readLine()) != null && !line.equals(".")) {
+                        message.append(line).append('\n');
+                    }
+                    if (line == null) return; // Cut off before the end of the message
+                    synchronized (this) {
+                        messages.add(message.toString());
+                    }
+                    reply(out, "250 Queued");
+                } else if (command.startsWith("QUIT")) {
+                    synchronized (this) {
+                        quits++;
+                    }
+                    reply(out, "221 Bye");
+                    return;
+                } else {
+                    // HELO, MAIL, RCPT, RSET and NOOP
+                    reply(out, "250 OK");
+                }
+            }
+        } catch (IOException e) {
+            // Dropped
+        }
+    }
+
+    private static void reply(OutputStream out, String reply) throws IOException {
+        out.write((reply + "\r\n").getBytes(StandardCharsets.US_ASCII));
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        server.close();
+        // The socket only stops listening once the accept thread has left accept()
+        try {
+            thread.join(1000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        dropClients();
+    }
+}
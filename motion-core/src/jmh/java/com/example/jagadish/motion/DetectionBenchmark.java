@@ -0,0 +1,139 @@
+package com.example.jagadish.motion;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-frame cost of each detection stage on synthetic NV21 frames: a noisy static scene that
+ * alternates with the same scene plus two moving rectangles, so every stage has work to do.
+ */
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DetectionBenchmark {
+    private static final int FRAMES = 8;
+
+    @Param({ "640x480", "1280x720", "1920x1080" })
+    public String resolution;
+
+    private int width;
+    private int height;
+    private byte[][] frames;
+    private int next;
+
+    private int[] rgb;
+    private BackgroundModel backgroundModel;
+    private MotionDetection fullScan;
+    private MotionDetection cascade;
+    private AdaptiveBackgroundDetection adaptive;
+    private BlobLabeler labeler;
+    private byte[] changeMask;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        String[] size = resolution.split("x");
+        width = Integer.parseInt(size[0]);
+        height = Integer.parseInt(size[1]);
+
+        Random random = new Random(1);
+        frames = new byte[FRAMES][];
+        for (int n = 0; n < FRAMES; n++) {
+            byte[] frame = new byte[width * height * 3 / 2];
+            for (int i = 0; i < width * height; i++) {
+                frame[i] = (byte) (96 + (i % width) / 16 + random.nextInt(6));
+            }
+            for (int i = width * height; i < frame.length; i++) {
+                frame[i] = (byte) (128 + random.nextInt(8));
+            }
+            if (n % 2 == 1) {
+                int step = n * width / (4 * FRAMES);
+                fillRect(frame, width / 8 + step, height / 4, width / 5, height / 3, 200);
+                fillRect(frame, width / 2, height / 2 + step / 4, width / 6, height / 4, 30);
+            }
+            frames[n] = frame;
+        }
+
+        rgb = new int[width * height];
+        backgroundModel = new BackgroundModel(width * height, 0.1f);
+        backgroundModel.update(frames[0]);
+
+        fullScan = new MotionDetection(width, height);
+        fullScan.setCascade(false, 1);
+        cascade = new MotionDetection(width, height);
+        adaptive = new AdaptiveBackgroundDetection(width, height);
+        for (int n = 0; n < 40; n++) {
+            fullScan.detect(frames[n % FRAMES], width, height);
+            cascade.detect(frames[n % FRAMES], width, height);
+            adaptive.detect(frames[n % FRAMES], width, height);
+        }
+
+        // A change mask with real blobs for the labeller
+        labeler = new BlobLabeler(width * height);
+        changeMask = new byte[width * height];
+        for (int i = 0; i < changeMask.length; i++) {
+            changeMask[i] = (byte) (Math.abs((frames[1][i] & 0xff) - (frames[0][i] & 0xff)) > 25 ? 1 : 0);
+        }
+    }
+
+    private void fillRect(byte[] frame, int left, int top, int w, int h, int value) {
+        for (int y = top; y < Math.min(height, top + h); y++) {
+            for (int x = left; x < Math.min(width, left + w); x++) {
+                frame[y * width + x] = (byte) value;
+            }
+        }
+    }
+
+    private byte[] nextFrame() {
+        next = (next + 1) % FRAMES;
+        return frames[next];
+    }
+
+    @Benchmark
+    public int[] decode() {
+        ImageProcessing.decodeYUV420(nextFrame(), ImageProcessing.NV21, width, height, rgb);
+        return rgb;
+    }
+
+    @Benchmark
+    public int[] backgroundUpdate() {
+        backgroundModel.update(nextFrame());
+        return backgroundModel.getBackground();
+    }
+
+    @Benchmark
+    public boolean regionScan() {
+        return fullScan.detect(nextFrame(), width, height);
+    }
+
+    @Benchmark
+    public boolean cascadeScan() {
+        return cascade.detect(nextFrame(), width, height);
+    }
+
+    @Benchmark
+    public boolean adaptiveDetect() {
+        return adaptive.detect(nextFrame(), width, height);
+    }
+
+    @Benchmark
+    public int blobExtraction() {
+        return labeler.label(changeMask, null, width, 0, 0, width, height);
+    }
+}
@@ -0,0 +1,359 @@
+package com.example.jagadish.motion;
+
+/**
+ * Motion detector that models every pixel, or every block of a downscaled image, as a running
+ * Gaussian: a mean and a variance learned from the frames where the pixel looked like background.
+ * A pixel is foreground when it is further from its mean than a number of its own standard deviations,
+ * so noisy low-light pixels need a larger change than pixels of a flat, well-lit wall.
+ * <p>
+ * All per-pixel state is two int arrays and all arithmetic is fixed point. The per-frame budget
+ * is {@link #FRAME_BUDGET_NANOS} at 640x480 per pixel on one mid-range core; a block scale of 4
+ * models a sixteenth of the pixels for about a third of the cost, the rest being the downscale.
+ */
+
+public class AdaptiveBackgroundDetection implements InterMotionDetection {
+    public static final long FRAME_BUDGET_NANOS = 4000000L;
+
+    private static final float DEFAULT_LEARNING_RATE = 0.02f; // Background pixels blend this much per frame
+    private static final float DEFAULT_DEVIATIONS = 3f; // Distance from the mean, in deviations, that is foreground
+    private static final int WARM_UP_FRAMES = 30; // Frames learned as background before detecting, about a second
+    private static final int DEFAULT_GRID_SIZE = 10; // Foreground is summed over a 10x10 grid
+    private static final int DEFAULT_MIN_BLOB_REGIONS = 3; // Connected active regions needed to report motion
+    private static final float MIN_REGION_THRESHOLD = 0.02f; // Never fewer than 2% foreground pixels per region
+    private static final float NOISE_FACTOR = 4f; // Region threshold rises with the foreground rate of quiet frames
+
+    // Mean in luma levels with 8 fractional bits, variance in squared levels with 8 fractional bits
+    private static final int MEAN_BITS = 8;
+    private static final int ERROR_SHIFT = 4;
+    private static final int RATE_BITS = 12;
+    private static final int DEVIATION_BITS = 4;
+    private static final int SLOW_RATE_SHIFT = 4; // Foreground still blends in at 1/16 of the rate
+    private static final int MIN_VARIANCE = (3 * 3) << 8; // Sensor noise floor of 3 levels
+    private static final int MAX_VARIANCE = (40 * 40) << 8;
+    private static final int INITIAL_VARIANCE = (10 * 10) << 8;
+
+    private final int frameWidth;
+    private final int frameHeight;
+    private final LumaPyramid pyramid;
+    private final int modelWidth;
+    private final int modelHeight;
+
+    private final int[] mean;
+    private final int[] variance;
+    private final byte[] foreground;
+    private final byte[] lumaFrame;
+    private final byte[] previousFrame;
+
+    private final int[] gridLeft;
+    private final int[] gridTop;
+    private final int[] regionForeground;
+    private final byte[] activeCells;
+    private final BlobLabeler labeler;
+    private int minBlobRegions = DEFAULT_MIN_BLOB_REGIONS;
+
+    private int rate;
+    private int deviationsSquared;
+    private int frames;
+    private int foregroundCount;
+    private float noiseFraction;
+
+    private long measuredFrames;
+    private long measuredNanos;
+    private long overBudgetFrames;
+
+    public AdaptiveBackgroundDetection(int width, int height) {
+        this(width, height, 1);
+    }
+
+    /**
+     * @param width
+     *            Width of the frames.
+     * @param height
+     *            Height of the frames.
+     * @param scale
+     *            1 to model every pixel, or a power of two to model the averages of scale x scale blocks.
+     */
+    public AdaptiveBackgroundDetection(int width, int height, int scale) {
+        if (width < DEFAULT_GRID_SIZE * scale || height < DEFAULT_GRID_SIZE * scale) {
+            throw new IllegalArgumentException("Frame " + width + "x" + height + " too small for scale " + scale);
+        }
+        this.frameWidth = width;
+        this.frameHeight = height;
+        this.pyramid = scale == 1 ? null : new LumaPyramid(width, height, scale);
+        this.modelWidth = pyramid != null ? pyramid.getLevelWidth() : width;
+        this.modelHeight = pyramid != null ? pyramid.getLevelHeight() : height;
+
+        int size = modelWidth * modelHeight;
+        this.mean = new int[size];
+        this.variance = new int[size];
+        this.foreground = new byte[size];
+        this.lumaFrame = new byte[width * height];
+        this.previousFrame = new byte[width * height];
+
+        int cells = DEFAULT_GRID_SIZE * DEFAULT_GRID_SIZE;
+        this.gridLeft = new int[DEFAULT_GRID_SIZE + 1];
+        this.gridTop = new int[DEFAULT_GRID_SIZE + 1];
+        for (int i = 0; i <= DEFAULT_GRID_SIZE; i++) {
+            gridLeft[i] = i * modelWidth / DEFAULT_GRID_SIZE;
+            gridTop[i] = i * modelHeight / DEFAULT_GRID_SIZE;
+        }
+        this.regionForeground = new int[cells];
+        this.activeCells = new byte[cells];
+        this.labeler = new BlobLabeler(cells);
+
+        setLearningRate(DEFAULT_LEARNING_RATE);
+        setSensitivity(DEFAULT_DEVIATIONS);
+    }
+
+    @Override
+    public boolean detect(byte[] yuv, int width, int height) {
+        if (yuv == null) throw new NullPointerException();
+        checkSize(width, height);
+        return detectLuma(yuv);
+    }
+
+    @Override
+    public boolean detect(int[] data, int width, int height) {
+        if (data == null) throw new NullPointerException();
+        checkSize(width, height);
+
+        byte[] luma = lumaFrame;
+        for (int i = 0; i < luma.length; i++) {
+            int pixel = data[i];
+            int r = (pixel >> 16) & 0xff;
+            int g = (pixel >> 8) & 0xff;
+            int b = pixel & 0xff;
+            luma[i] = (byte) (((66 * r + 129 * g + 25 * b + 128) >> 8) + 16);
+        }
+        return detectLuma(luma);
+    }
+
+    @Override
+    public int[] getPrevious() {
+        if (frames == 0) return null;
+
+        int[] argb = new int[previousFrame.length];
+        for (int i = 0; i < argb.length; i++) {
+            int y = previousFrame[i] & 0xff;
+            argb[i] = 0xff000000 | (y << 16) | (y << 8) | y;
+        }
+        return argb;
+    }
+
+    /**
+     * @param learningRate
+     *            Fraction of each background pixel's error absorbed per frame, between 0 and 1.
+     */
+    public void setLearningRate(float learningRate) {
+        if (learningRate <= 0f || learningRate > 1f) {
+            throw new IllegalArgumentException("Learning rate must be in (0, 1]: " + learningRate);
+        }
+        rate = Math.max(1, Math.round(learningRate * (1 << RATE_BITS)));
+    }
+
+    public float getLearningRate() {
+        return (float) rate / (1 << RATE_BITS);
+    }
+
+    /**
+     * @param deviations
+     *            How many standard deviations from its mean a pixel must be to count as foreground.
+     */
+    public void setSensitivity(float deviations) {
+        if (deviations < 1f || deviations > 8f) {
+            throw new IllegalArgumentException("Deviations must be in [1, 8]: " + deviations);
+        }
+        deviationsSquared = Math.round(deviations * deviations * (1 << DEVIATION_BITS));
+    }
+
+    public float getSensitivity() {
+        return (float) Math.sqrt((float) deviationsSquared / (1 << DEVIATION_BITS));
+    }
+
+    public void setMinBlobRegions(int regions) {
+        if (regions < 1) throw new IllegalArgumentException("Need at least one region: " + regions);
+        minBlobRegions = regions;
+    }
+
+    public int getMinBlobRegions() {
+        return minBlobRegions;
+    }
+
+    public int getModelWidth() {
+        return modelWidth;
+    }
+
+    public int getModelHeight() {
+        return modelHeight;
+    }
+
+    /**
+     * Foreground of the last frame at model resolution, 1 per foreground pixel. The array is live.
+     */
+    public byte[] getForeground() {
+        return foreground;
+    }
+
+    public int getForegroundCount() {
+        return foregroundCount;
+    }
+
+    /**
+     * @return Standard deviation of a model pixel in luma levels.
+     */
+    public float getDeviation(int x, int y) {
+        return (float) Math.sqrt((float) variance[y * modelWidth + x] / (1 << 8));
+    }
+
+    /**
+     * @return Foreground fraction a region currently needs to become active.
+     */
+    public float getRegionThreshold() {
+        return Math.max(MIN_REGION_THRESHOLD, NOISE_FACTOR * noiseFraction);
+    }
+
+    public long getAverageFrameNanos() {
+        return measuredFrames == 0 ? 0 : measuredNanos / measuredFrames;
+    }
+
+    /**
+     * @return Frames that took longer than {@link #FRAME_BUDGET_NANOS}.
+     */
+    public long getOverBudgetFrames() {
+        return overBudgetFrames;
+    }
+
+    /**
+     * Forget the model and the timing counters; the next frame seeds a new background.
+     */
+    public void reset() {
+        frames = 0;
+        noiseFraction = 0f;
+        foregroundCount = 0;
+        measuredFrames = 0;
+        measuredNanos = 0;
+        overBudgetFrames = 0;
+    }
+
+    private boolean detectLuma(byte[] currentFrame) {
+        long start = System.nanoTime();
+        byte[] model = currentFrame;
+        if (pyramid != null) {
+            pyramid.build(currentFrame);
+            model = pyramid.getLevel();
+        }
+
+        boolean motion = false;
+        if (frames == 0) {
+            seed(model);
+        } else if (frames < WARM_UP_FRAMES) {
+            // Cumulative average while warming up so the model converges in a few frames
+            learn(model, Math.max(rate, (1 << RATE_BITS) / (frames + 1)));
+        } else {
+            motion = classify(model);
+        }
+        frames++;
+        System.arraycopy(currentFrame, 0, previousFrame, 0, previousFrame.length);
+
+        long elapsed = System.nanoTime() - start;
+        measuredFrames++;
+        measuredNanos += elapsed;
+        if (elapsed > FRAME_BUDGET_NANOS) {
+            overBudgetFrames++;
+        }
+        return motion;
+    }
+
+    private void seed(byte[] luma) {
+        for (int i = 0; i < mean.length; i++) {
+            mean[i] = (luma[i] & 0xff) << MEAN_BITS;
+            variance[i] = INITIAL_VARIANCE;
+        }
+    }
+
+    private void learn(byte[] luma, int learnRate) {
+        final int[] m = mean;
+        final int[] v = variance;
+        for (int i = 0; i < m.length; i++) {
+            int d = ((luma[i] & 0xff) << MEAN_BITS) - m[i];
+            int e = d >> ERROR_SHIFT;
+            m[i] += (d * learnRate) >> RATE_BITS;
+            v[i] = clampVariance(v[i] + ((((e * e) - v[i]) >> 6) * learnRate >> (RATE_BITS - 6)));
+        }
+    }
+
+    private boolean classify(byte[] luma) {
+        final int[] m = mean;
+        final int[] v = variance;
+        final byte[] fg = foreground;
+        final int r = rate;
+        final int slow = Math.max(1, r >> SLOW_RATE_SHIFT);
+        final int k2 = deviationsSquared;
+        int total = 0;
+
+        for (int gridY = 0; gridY < DEFAULT_GRID_SIZE; gridY++) {
+            for (int gridX = 0; gridX < DEFAULT_GRID_SIZE; gridX++) {
+                regionForeground[gridY * DEFAULT_GRID_SIZE + gridX] = 0;
+            }
+            for (int y = gridTop[gridY]; y < gridTop[gridY + 1]; y++) {
+                for (int gridX = 0; gridX < DEFAULT_GRID_SIZE; gridX++) {
+                    int count = 0;
+                    for (int i = y * modelWidth + gridLeft[gridX], end = y * modelWidth + gridLeft[gridX + 1]; i < end; i++) {
+                        int d = ((luma[i] & 0xff) << MEAN_BITS) - m[i];
+                        int e = d >> ERROR_SHIFT;
+                        int e2 = e * e;
+                        int vi = v[i];
+                        if (e2 > (vi * k2) >> DEVIATION_BITS) {
+                            // Foreground: the mean creeps towards it so parked objects fade into the background
+                            fg[i] = 1;
+                            count++;
+                            m[i] += (d * slow) >> RATE_BITS;
+                        } else {
+                            fg[i] = 0;
+                            m[i] += (d * r) >> RATE_BITS;
+                            v[i] = clampVariance(vi + (((e2 - vi) >> 6) * r >> (RATE_BITS - 6)));
+                        }
+                    }
+                    regionForeground[gridY * DEFAULT_GRID_SIZE + gridX] += count;
+                }
+            }
+        }
+
+        float threshold = getRegionThreshold();
+        for (int gridY = 0; gridY < DEFAULT_GRID_SIZE; gridY++) {
+            for (int gridX = 0; gridX < DEFAULT_GRID_SIZE; gridX++) {
+                int region = gridY * DEFAULT_GRID_SIZE + gridX;
+                int pixels = (gridLeft[gridX + 1] - gridLeft[gridX]) * (gridTop[gridY + 1] - gridTop[gridY]);
+                activeCells[region] = (byte) ((float) regionForeground[region] / pixels > threshold ? 1 : 0);
+                total += regionForeground[region];
+            }
+        }
+        foregroundCount = total;
+
+        boolean motion = false;
+        int blobs = labeler.label(activeCells, null, DEFAULT_GRID_SIZE, 0, 0, DEFAULT_GRID_SIZE, DEFAULT_GRID_SIZE);
+        for (int i = 0; i < blobs; i++) {
+            if (labeler.getBlob(i).getCellCount() >= minBlobRegions) {
+                motion = true;
+                break;
+            }
+        }
+
+        if (!motion) {
+            // Track how much foreground quiet frames produce; flicker and noise raise the region threshold
+            noiseFraction += ((float) total / mean.length - noiseFraction) * getLearningRate();
+        }
+        return motion;
+    }
+
+    private static int clampVariance(int value) {
+        return value < MIN_VARIANCE ? MIN_VARIANCE : value > MAX_VARIANCE ? MAX_VARIANCE : value;
+    }
+
+    private void checkSize(int width, int height) {
+        if (width != frameWidth || height != frameHeight) {
+            throw new IllegalArgumentException("Expected " + frameWidth + "x" + frameHeight
+                    + " frame but got " + width + "x" + height);
+        }
+    }
+}
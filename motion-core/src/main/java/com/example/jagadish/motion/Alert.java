@@ -0,0 +1,46 @@
+package com.example.jagadish.motion;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * One motion alert waiting to be sent, possibly together with others in a digest.
+ */
+
+public class Alert {
+    private final long timeMillis;
+    private final String message;
+    private final List<AlertAttachment> attachments = new ArrayList<>();
+    long queuedNanos; // Set by the dispatcher, for the delivery latency
+
+    public Alert(long timeMillis, String message) {
+        if (message == null) throw new NullPointerException();
+
+        this.timeMillis = timeMillis;
+        this.message = message;
+    }
+
+    public long getTimeMillis() {
+        return timeMillis;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    public Alert addAttachment(AlertAttachment attachment) {
+        if (attachment == null) throw new NullPointerException();
+        attachments.add(attachment);
+        return this;
+    }
+
+    public List<AlertAttachment> getAttachments() {
+        return Collections.unmodifiableList(attachments);
+    }
+
+    @Override
+    public String toString() {
+        return timeMillis + " " + message;
+    }
+}
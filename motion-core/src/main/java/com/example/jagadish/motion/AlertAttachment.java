@@ -0,0 +1,27 @@
+package com.example.jagadish.motion;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Content attached to an alert, produced when the message is written rather than held in memory.
+ * The sender first asks it to fit a byte budget, then streams it into the message.
+ */
+
+public interface AlertAttachment {
+    public String getName();
+
+    public String getContentType();
+
+    /**
+     * Prepare the content to be at most the given size, shrinking it if it can.
+     *
+     * @return Size writeTo() will produce, or -1 if the content cannot be made small enough.
+     */
+    public long fit(long maxBytes) throws IOException;
+
+    /**
+     * Write the content as last fitted.
+     */
+    public void writeTo(OutputStream out) throws IOException;
+}
@@ -0,0 +1,334 @@
+package com.example.jagadish.motion;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Sends alerts from a queue on its own thread, so raising one never blocks. Alerts arriving
+ * within a window of the first one go out together as one digest, a failed send is retried with
+ * exponential backoff, and the sender keeps its connection open between digests until the queue
+ * has been idle for a while. Queue depth, retries, drops and latencies are kept for monitoring.
+ */
+
+public class AlertDispatcher implements Closeable {
+    public interface Sender {
+        /**
+         * Send one digest, connecting first if needed and keeping the connection for the next.
+         * Throw to have the digest retried.
+         */
+        public void send(List<Alert> digest) throws IOException;
+
+        /**
+         * Close the connection; the next send opens a new one.
+         */
+        public void disconnect();
+
+        /**
+         * Drop the connection without the closing handshake, after a send was cut short and the
+         * server may still be waiting for the rest of it.
+         */
+        public void abort();
+    }
+
+    private static final int LATENCY_SAMPLES = 64;
+    private static final long CLOSE_TIMEOUT_MILLIS = 10000; // Flushing the queue on close()
+
+    private final Sender sender;
+    private final long windowMillis;
+    private final long initialBackoffMillis;
+    private final long maxBackoffMillis;
+    private final int maxAttempts;
+    private final long idleMillis;
+    private final int maxQueue;
+    private final int maxDigest;
+    private final ArrayDeque<Alert> queue = new ArrayDeque<>();
+    private final Thread thread;
+    private final LatencyTracker sendLatency;
+    private final LatencyTracker deliveryLatency;
+    // Guarded by queue
+    private boolean closed;
+    private int digests;
+    private int alertsSent;
+    private int failures;
+    private int dropped;
+    private int retrying;
+
+    /**
+     * @param windowMillis
+     *            How long to wait after an alert for others to join its digest.
+     * @param initialBackoffMillis
+     *            Wait before the first retry, doubled for each further one.
+     * @param maxAttempts
+     *            Sends of a digest before it is dropped.
+     * @param idleMillis
+     *            Idle time after which the sender's connection is closed.
+     * @param maxQueue
+     *            Alerts kept waiting; the oldest are dropped beyond this.
+     * @param maxDigest
+     *            Most alerts in one digest.
+     */
+    public AlertDispatcher(Sender sender, long windowMillis, long initialBackoffMillis, long maxBackoffMillis,
+                           int maxAttempts, long idleMillis, int maxQueue, int maxDigest) {
+        if (sender == null) throw new NullPointerException();
+        if (windowMillis < 0 || initialBackoffMillis <= 0 || maxBackoffMillis < initialBackoffMillis || maxAttempts < 1
+                || idleMillis <= 0 || maxQueue < 1 || maxDigest < 1) {
+            throw new IllegalArgumentException("Invalid dispatcher settings");
+        }
+
+        this.sender = sender;
+        this.windowMillis = windowMillis;
+        this.initialBackoffMillis = initialBackoffMillis;
+        this.maxBackoffMillis = maxBackoffMillis;
+        this.maxAttempts = maxAttempts;
+        this.idleMillis = idleMillis;
+        this.maxQueue = maxQueue;
+        this.maxDigest = maxDigest;
+        this.sendLatency = new LatencyTracker(LATENCY_SAMPLES, 10 * 1000000000L);
+        this.deliveryLatency = new LatencyTracker(LATENCY_SAMPLES, (windowMillis + 10000) * 1000000L);
+        this.thread = new Thread(this::run, "AlertDispatcher");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Queue an alert. Never blocks.
+     *
+     * @return False if the dispatcher is closed.
+     */
+    public boolean post(Alert alert) {
+        if (alert == null) throw new NullPointerException();
+        synchronized (queue) {
+            if (closed) return false;
+            alert.queuedNanos = System.nanoTime();
+            queue.addLast(alert);
+            while (queue.size() > maxQueue) {
+                queue.removeFirst();
+                dropped++;
+            }
+            queue.notifyAll();
+        }
+        return true;
+    }
+
+    private void run() {
+        boolean connected = false;
+        boolean drained = false;
+        try {
+            while (true) {
+                List<Alert> digest = nextDigest(connected);
+                if (digest == null) {
+                    drained = true;
+                    break;
+                }
+                if (digest.isEmpty()) {
+                    // Not worth holding a connection the server will drop anyway
+                    disconnect();
+                    connected = false;
+                    continue;
+                }
+                deliver(digest);
+                connected = true;
+            }
+        } catch (InterruptedException e) {
+            // Closed without waiting for the queue
+        } finally {
+            synchronized (queue) {
+                // However the loop ended, nothing posted from now on would be sent
+                closed = true;
+                dropped += queue.size();
+                queue.clear();
+            }
+            if (drained) {
+                disconnect();
+            } else {
+                sender.abort();
+            }
+        }
+    }
+
+    // A close that fails drops the connection instead; it must never end the loop
+    private void disconnect() {
+        try {
+            sender.disconnect();
+        } catch (Throwable e) {
+            sender.abort();
+        }
+    }
+
+    private static long nowMillis() {
+        return System.nanoTime() / 1000000;
+    }
+
+    // Waits for the first alert, then for the window to fill. Empty when an open connection has
+    // been idle too long, null once closed and drained. The sender is never called under the lock.
+    private List<Alert> nextDigest(boolean connected) throws InterruptedException {
+        synchronized (queue) {
+            long idleUntil = nowMillis() + idleMillis;
+            while (queue.isEmpty()) {
+                if (closed) return null;
+                if (!connected) {
+                    queue.wait();
+                    continue;
+                }
+                long left = idleUntil - nowMillis();
+                if (left <= 0) return new ArrayList<>();
+                queue.wait(left);
+            }
+
+            long deadline = queue.peekFirst().queuedNanos / 1000000 + windowMillis;
+            long now;
+            while (!closed && queue.size() < maxDigest && (now = nowMillis()) < deadline) {
+                queue.wait(deadline - now);
+            }
+
+            List<Alert> digest = new ArrayList<>();
+            while (!queue.isEmpty() && digest.size() < maxDigest) {
+                digest.add(queue.removeFirst());
+            }
+            return digest;
+        }
+    }
+
+    private void deliver(List<Alert> digest) throws InterruptedException {
+        long backoff = initialBackoffMillis;
+        for (int attempt = 1; ; attempt++) {
+            long start = System.nanoTime();
+            try {
+                sender.send(digest);
+                long end = System.nanoTime();
+                sendLatency.record(end - start);
+                for (Alert alert : digest) {
+                    deliveryLatency.record(end - alert.queuedNanos);
+                }
+                synchronized (queue) {
+                    digests++;
+                    alertsSent += digest.size();
+                    retrying = 0;
+                }
+                return;
+            } catch (Throwable e) {
+                // Anything but an IOException may leave the sender part way through a message
+                if (!(e instanceof IOException)) sender.abort();
+                synchronized (queue) {
+                    failures++;
+                    // Closing cuts the backoff short and leaves one last try
+                    if (attempt >= maxAttempts || closed) {
+                        dropped += digest.size();
+                        retrying = 0;
+                        return;
+                    }
+                    retrying = digest.size();
+                    long until = nowMillis() + backoff;
+                    long left;
+                    while (!closed && (left = until - nowMillis()) > 0) {
+                        queue.wait(left);
+                    }
+                }
+                backoff = Math.min(maxBackoffMillis, backoff * 2);
+            }
+        }
+    }
+
+    /**
+     * @return Alerts waiting, including a digest being retried.
+     */
+    public int getQueueDepth() {
+        synchronized (queue) {
+            return queue.size() + retrying;
+        }
+    }
+
+    /**
+     * @return Digest messages sent.
+     */
+    public int getDigestsSent() {
+        synchronized (queue) {
+            return digests;
+        }
+    }
+
+    public int getAlertsSent() {
+        synchronized (queue) {
+            return alertsSent;
+        }
+    }
+
+    /**
+     * @return Failed send attempts.
+     */
+    public int getFailures() {
+        synchronized (queue) {
+            return failures;
+        }
+    }
+
+    /**
+     * @return Alerts given up on, after the retries or because the queue was full.
+     */
+    public int getDropped() {
+        synchronized (queue) {
+            return dropped;
+        }
+    }
+
+    /**
+     * @return Duration of each successful send.
+     */
+    public LatencyTracker getSendLatency() {
+        return sendLatency;
+    }
+
+    /**
+     * @return Time from posting an alert to its digest being sent, window included.
+     */
+    public LatencyTracker getDeliveryLatency() {
+        return deliveryLatency;
+    }
+
+    /**
+     * Stop taking alerts and send what is queued without waiting for the window, in the
+     * background. The connection is closed once the queue is empty.
+     */
+    public void shutdown() {
+        synchronized (queue) {
+            closed = true;
+            queue.notifyAll();
+        }
+    }
+
+    /**
+     * Shut down and wait for the queue to be sent.
+     *
+     * @param timeoutMillis
+     *            Longest wait before abandoning the queue.
+     * @return Whether the queue was flushed in time.
+     */
+    public boolean close(long timeoutMillis) throws InterruptedException {
+        shutdown();
+        thread.join(timeoutMillis);
+        if (thread.isAlive()) {
+            thread.interrupt();
+            return false;
+        }
+        return true;
+    }
+
+    @Override
+    public void close() {
+        try {
+            close(CLOSE_TIMEOUT_MILLIS);
+        } catch (InterruptedException e) {
+            thread.interrupt();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "queue " + getQueueDepth() + ", sent " + getAlertsSent() + " in " + getDigestsSent() + " digests, "
+                + getFailures() + " failures, " + getDropped() + " dropped; send " + sendLatency;
+    }
+}
@@ -0,0 +1,176 @@
+package com.example.jagadish.motion;
+
+/**
+ * Exponential running average of the luma plane, used as the reference frame for motion detection.
+ * Each update moves every pixel a fixed fraction of the way towards the new frame, so the cost is
+ * O(1) per pixel and the state lives in a single int array allocated once.
+ */
+
+public class BackgroundModel {
+    // Background values are kept in fixed point with this many fractional bits
+    public static final int FRACTION_BITS = 8;
+    // Learning rate resolution, 1/4096; keeps delta * rate inside an int
+    private static final int RATE_BITS = 12;
+
+    private final int[] background;
+    private int rate;
+    private int frames;
+
+    /**
+     * @param size
+     *            Number of pixels in a frame.
+     * @param learningRate
+     *            Fraction of the difference absorbed per frame, between 0 and 1.
+     */
+    public BackgroundModel(int size, float learningRate) {
+        this.background = new int[size];
+        setLearningRate(learningRate);
+    }
+
+    public void setLearningRate(float learningRate) {
+        if (learningRate <= 0f || learningRate > 1f) {
+            throw new IllegalArgumentException("Learning rate must be in (0, 1]: " + learningRate);
+        }
+        this.rate = Math.max(1, Math.round(learningRate * (1 << RATE_BITS)));
+    }
+
+    public float getLearningRate() {
+        return (float) rate / (1 << RATE_BITS);
+    }
+
+    /**
+     * @return Number of frames absorbed since construction or the last reset.
+     */
+    public int getFrameCount() {
+        return frames;
+    }
+
+    /**
+     * Background in fixed point, shift right by {@link #FRACTION_BITS} for luma levels.
+     * The array is live and must not be modified.
+     *
+     * @return int array of background values.
+     */
+    public int[] getBackground() {
+        return background;
+    }
+
+    /**
+     * Absorb a luma frame into the model. The first frame seeds the background directly.
+     *
+     * @param luma
+     *            Byte array whose first size entries are the luma plane.
+     */
+    public void update(byte[] luma) {
+        update(luma, null);
+    }
+
+    /**
+     * As update, but only pixels inside spans are seeded or absorbed; the rest of the model is left as is.
+     *
+     * @param spans
+     *            Pixels to update, rows as long as the span list is wide, or null for the whole frame.
+     */
+    public void update(byte[] luma, SpanList spans) {
+        if (luma == null) throw new NullPointerException();
+
+        if (spans == null) {
+            if (frames == 0) {
+                seed(luma, 0, background.length);
+            } else {
+                blend(luma, 0, background.length);
+            }
+        } else {
+            int stride = spans.getWidth();
+            for (int y = 0; y < spans.getHeight(); y++) {
+                for (int i = spans.getRowStart(y), end = spans.getRowStart(y + 1); i < end; i++) {
+                    int from = y * stride + spans.getSpanStart(i);
+                    int to = y * stride + spans.getSpanEnd(i);
+                    if (frames == 0) {
+                        seed(luma, from, to);
+                    } else {
+                        blend(luma, from, to);
+                    }
+                }
+            }
+        }
+        frames++;
+    }
+
+    /**
+     * Absorb one rectangle of a frame, leaving the rest of the model and the frame count untouched.
+     * The model must already have been seeded by a full update.
+     *
+     * @param luma
+     *            Byte array holding the luma plane.
+     * @param stride
+     *            Row length of both the luma plane and the model.
+     */
+    public void updateRegion(byte[] luma, int stride, int left, int top, int right, int bottom) {
+        updateRegion(luma, stride, left, top, right, bottom, null);
+    }
+
+    /**
+     * As updateRegion, but only pixels inside spans are absorbed.
+     *
+     * @param spans
+     *            Pixels to update, or null for the whole rectangle.
+     */
+    public void updateRegion(byte[] luma, int stride, int left, int top, int right, int bottom, SpanList spans) {
+        updateRegion(luma, stride, left, top, right, bottom, spans, 1);
+    }
+
+    /**
+     * As updateRegion, but absorbing the frame as if it had been seen the given number of times,
+     * so a region updated only every few frames still follows slow changes at the learning rate.
+     *
+     * @param count
+     *            Frames since the region was last updated, at least 1.
+     */
+    public void updateRegion(byte[] luma, int stride, int left, int top, int right, int bottom, SpanList spans,
+                             int count) {
+        if (luma == null) throw new NullPointerException();
+        if (frames == 0) throw new IllegalStateException("Background has not been seeded");
+        if (count < 1) throw new IllegalArgumentException("Invalid frame count: " + count);
+
+        // Keeping 1 - rate of the difference per frame keeps (1 - rate)^count over count frames
+        int r = count == 1 ? rate
+                : (int) Math.round((1 - Math.pow(1 - getLearningRate(), count)) * (1 << RATE_BITS));
+        for (int y = top; y < bottom; y++) {
+            if (spans == null) {
+                blend(luma, y * stride + left, y * stride + right, r);
+                continue;
+            }
+            for (int i = spans.getRowStart(y), end = spans.getRowStart(y + 1); i < end; i++) {
+                int start = Math.max(left, spans.getSpanStart(i));
+                int stop = Math.min(right, spans.getSpanEnd(i));
+                if (stop > start) {
+                    blend(luma, y * stride + start, y * stride + stop, r);
+                }
+            }
+        }
+    }
+
+    private void seed(byte[] luma, int from, int to) {
+        final int[] bg = background;
+        for (int i = from; i < to; i++) {
+            bg[i] = (luma[i] & 0xff) << FRACTION_BITS;
+        }
+    }
+
+    private void blend(byte[] luma, int from, int to) {
+        blend(luma, from, to, rate);
+    }
+
+    private void blend(byte[] luma, int from, int to, int r) {
+        final int[] bg = background;
+        for (int i = from; i < to; i++) {
+            int delta = ((luma[i] & 0xff) << FRACTION_BITS) - bg[i];
+            bg[i] += (delta * r) >> RATE_BITS;
+        }
+    }
+
+    public void reset() {
+        frames = 0;
+    }
+}
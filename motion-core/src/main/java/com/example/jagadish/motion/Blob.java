@@ -0,0 +1,84 @@
+package com.example.jagadish.motion;
+
+/**
+ * A connected group of changed cells with its size, centroid and bounding box.
+ * Instances are pooled and overwritten on the next frame, so copy what must be kept.
+ */
+
+public class Blob {
+    private int cellCount;
+    private int changedPixels;
+    private float centroidX;
+    private float centroidY;
+    private int left;
+    private int top;
+    private int right;
+    private int bottom;
+
+    void set(int cellCount, int changedPixels, float centroidX, float centroidY,
+             int left, int top, int right, int bottom) {
+        this.cellCount = cellCount;
+        this.changedPixels = changedPixels;
+        this.centroidX = centroidX;
+        this.centroidY = centroidY;
+        this.left = left;
+        this.top = top;
+        this.right = right;
+        this.bottom = bottom;
+    }
+
+    /**
+     * @return Number of labelled cells, grid regions or pixels depending on the source.
+     */
+    public int getCellCount() {
+        return cellCount;
+    }
+
+    public int getChangedPixels() {
+        return changedPixels;
+    }
+
+    public float getCentroidX() {
+        return centroidX;
+    }
+
+    public float getCentroidY() {
+        return centroidY;
+    }
+
+    public int getLeft() {
+        return left;
+    }
+
+    public int getTop() {
+        return top;
+    }
+
+    /**
+     * @return Exclusive right edge of the bounding box.
+     */
+    public int getRight() {
+        return right;
+    }
+
+    /**
+     * @return Exclusive bottom edge of the bounding box.
+     */
+    public int getBottom() {
+        return bottom;
+    }
+
+    public int getWidth() {
+        return right - left;
+    }
+
+    public int getHeight() {
+        return bottom - top;
+    }
+
+    @Override
+    public String toString() {
+        return "Blob[" + left + "," + top + " " + getWidth() + "x" + getHeight()
+                + ", cells=" + cellCount + ", changed=" + changedPixels + "]";
+    }
+}
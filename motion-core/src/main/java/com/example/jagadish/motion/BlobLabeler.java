@@ -0,0 +1,225 @@
+package com.example.jagadish.motion;
+
+import java.util.ArrayList;
+
+/**
+ * Eight-connected component labelling over a byte mask using a flat-array union-find.
+ * All working arrays are sized for the largest mask at construction and Blob objects are pooled,
+ * so labelling a frame allocates nothing once the pool has grown to the largest blob count seen.
+ */
+
+public class BlobLabeler {
+    private final int capacity;
+    private final int[] labels;
+    private final int[] parent;
+    private final int[] compact;
+
+    private final int[] cells;
+    private final int[] weights;
+    private final long[] sumX;
+    private final long[] sumY;
+    private final int[] minX;
+    private final int[] minY;
+    private final int[] maxX;
+    private final int[] maxY;
+
+    private final ArrayList<Blob> blobs = new ArrayList<>();
+    private int blobCount;
+    private int labelWidth;
+
+    /**
+     * @param capacity
+     *            Largest number of cells a single call may label.
+     */
+    public BlobLabeler(int capacity) {
+        if (capacity <= 0) throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+
+        this.capacity = capacity;
+        this.labels = new int[capacity];
+        // New labels only start on cells with no set neighbour already visited, which bounds them
+        // to an independent set of the grid: about a quarter of the cells plus the edges
+        int maxLabels = capacity / 2 + 2;
+        this.parent = new int[maxLabels];
+        this.compact = new int[maxLabels];
+        this.cells = new int[maxLabels];
+        this.weights = new int[maxLabels];
+        this.sumX = new long[maxLabels];
+        this.sumY = new long[maxLabels];
+        this.minX = new int[maxLabels];
+        this.minY = new int[maxLabels];
+        this.maxX = new int[maxLabels];
+        this.maxY = new int[maxLabels];
+    }
+
+    /**
+     * @return Largest number of cells a single call may label.
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Label the non-zero cells of a rectangle of mask.
+     *
+     * @param mask
+     *            Cells, non-zero where set.
+     * @param weights
+     *            Optional weight per cell, indexed like mask, summed into getChangedPixels(); null counts 1 per cell.
+     * @param stride
+     *            Row length of mask.
+     * @return Number of blobs found; blob coordinates are in mask cells, relative to the whole mask.
+     */
+    public int label(byte[] mask, int[] weights, int stride, int left, int top, int right, int bottom) {
+        if (mask == null) throw new NullPointerException();
+        int width = right - left;
+        int height = bottom - top;
+        if (width < 0 || height < 0 || (long) width * height > capacity) {
+            throw new IllegalArgumentException("Rectangle " + width + "x" + height + " exceeds capacity " + capacity);
+        }
+
+        labelWidth = width;
+        int next = firstPass(mask, stride, left, top, width, height);
+        resolve(next);
+        accumulate(weights, stride, left, top, width, height);
+        return blobCount;
+    }
+
+    public int getBlobCount() {
+        return blobCount;
+    }
+
+    public Blob getBlob(int index) {
+        if (index < 0 || index >= blobCount) throw new IndexOutOfBoundsException("Blob " + index + " of " + blobCount);
+        return blobs.get(index);
+    }
+
+    /**
+     * @return Index of the blob containing the cell at (x, y) relative to the labelled rectangle, or -1.
+     */
+    public int getBlobIndex(int x, int y) {
+        int label = labels[y * labelWidth + x];
+        return label == 0 ? -1 : compact[label];
+    }
+
+    private int firstPass(byte[] mask, int stride, int left, int top, int width, int height) {
+        int next = 1;
+        for (int y = 0; y < height; y++) {
+            int row = y * width;
+            int src = (top + y) * stride + left;
+            for (int x = 0; x < width; x++) {
+                if (mask[src + x] == 0) {
+                    labels[row + x] = 0;
+                    continue;
+                }
+
+                // Already visited neighbours: west, north-west, north, north-east
+                int label = 0;
+                if (x > 0) label = merge(label, labels[row + x - 1]);
+                if (y > 0) {
+                    int up = row - width + x;
+                    if (x > 0) label = merge(label, labels[up - 1]);
+                    label = merge(label, labels[up]);
+                    if (x + 1 < width) label = merge(label, labels[up + 1]);
+                }
+                if (label == 0) {
+                    label = next++;
+                    parent[label] = label;
+                }
+                labels[row + x] = label;
+            }
+        }
+        return next;
+    }
+
+    private int merge(int label, int neighbour) {
+        if (neighbour == 0) return label;
+        if (label == 0) return find(neighbour);
+
+        int a = find(label);
+        int b = find(neighbour);
+        if (a == b) return a;
+        // Keep the smaller root so labels stay in scan order
+        if (a < b) {
+            parent[b] = a;
+            return a;
+        }
+        parent[a] = b;
+        return b;
+    }
+
+    private int find(int label) {
+        int root = label;
+        while (parent[root] != root) {
+            root = parent[root];
+        }
+        // Path compression
+        while (parent[label] != root) {
+            int up = parent[label];
+            parent[label] = root;
+            label = up;
+        }
+        return root;
+    }
+
+    private void resolve(int next) {
+        blobCount = 0;
+        for (int label = 1; label < next; label++) {
+            int root = find(label);
+            if (root == label) {
+                int id = blobCount++;
+                compact[label] = id;
+                cells[id] = 0;
+                weights[id] = 0;
+                sumX[id] = 0;
+                sumY[id] = 0;
+                minX[id] = Integer.MAX_VALUE;
+                minY[id] = Integer.MAX_VALUE;
+                maxX[id] = Integer.MIN_VALUE;
+                maxY[id] = Integer.MIN_VALUE;
+            } else {
+                // Roots are always smaller, so they are already numbered
+                compact[label] = compact[root];
+            }
+        }
+        while (blobs.size() < blobCount) {
+            blobs.add(new Blob());
+        }
+    }
+
+    private void accumulate(int[] cellWeights, int stride, int left, int top, int width, int height) {
+        for (int y = 0; y < height; y++) {
+            int row = y * width;
+            int src = (top + y) * stride + left;
+            for (int x = 0; x < width; x++) {
+                int label = labels[row + x];
+                if (label == 0) continue;
+
+                int id = compact[label];
+                int w = cellWeights != null ? cellWeights[src + x] : 1;
+                cells[id]++;
+                weights[id] += w;
+                sumX[id] += (long) w * (2 * x + 1);
+                sumY[id] += (long) w * (2 * y + 1);
+                if (x < minX[id]) minX[id] = x;
+                if (x > maxX[id]) maxX[id] = x;
+                if (y < minY[id]) minY[id] = y;
+                if (y > maxY[id]) maxY[id] = y;
+            }
+        }
+
+        for (int id = 0; id < blobCount; id++) {
+            // Centroids are at cell centres; fall back to the box centre when all weights are zero
+            float cx;
+            float cy;
+            if (weights[id] > 0) {
+                cx = left + sumX[id] / (2f * weights[id]);
+                cy = top + sumY[id] / (2f * weights[id]);
+            } else {
+                cx = left + (minX[id] + maxX[id] + 1) / 2f;
+                cy = top + (minY[id] + maxY[id] + 1) / 2f;
+            }
+            blobs.get(id).set(cells[id], weights[id], cx, cy,
+                    left + minX[id], top + minY[id], left + maxX[id] + 1, top + maxY[id] + 1);
+        }
+    }
+}
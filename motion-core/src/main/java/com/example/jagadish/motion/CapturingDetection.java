@@ -0,0 +1,77 @@
+package com.example.jagadish.motion;
+
+import java.io.IOException;
+
+/**
+ * Passes frames to a detector while appending them to a raw frame file, to build a replay corpus
+ * from a live camera. A write failure stops the capture but never the detection.
+ */
+
+public class CapturingDetection implements InterMotionDetection {
+    private final InterMotionDetection detector;
+    private FrameFileWriter writer;
+    private IOException error;
+
+    public CapturingDetection(InterMotionDetection detector, FrameFileWriter writer) {
+        if (detector == null || writer == null) throw new NullPointerException();
+
+        this.detector = detector;
+        this.writer = writer;
+    }
+
+    @Override
+    public int[] getPrevious() {
+        return detector.getPrevious();
+    }
+
+    @Override
+    public boolean detect(int[] data, int width, int height) {
+        return detector.detect(data, width, height);
+    }
+
+    @Override
+    public boolean detect(byte[] yuv, int width, int height) {
+        FrameFileWriter current;
+        synchronized (this) {
+            current = writer;
+        }
+        if (current != null) {
+            try {
+                current.append(yuv, System.nanoTime());
+            } catch (IOException e) {
+                synchronized (this) {
+                    error = e;
+                }
+                close();
+            }
+        }
+        return detector.detect(yuv, width, height);
+    }
+
+    /**
+     * @return The write failure that stopped the capture, or null.
+     */
+    public synchronized IOException getError() {
+        return error;
+    }
+
+    /**
+     * Finish the capture file. Call only once the analysis thread has stopped.
+     */
+    public void close() {
+        FrameFileWriter current;
+        synchronized (this) {
+            current = writer;
+            writer = null;
+        }
+        if (current == null) return;
+
+        try {
+            current.close();
+        } catch (IOException e) {
+            synchronized (this) {
+                if (error == null) error = e;
+            }
+        }
+    }
+}
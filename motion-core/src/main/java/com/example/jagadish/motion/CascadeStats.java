@@ -0,0 +1,78 @@
+package com.example.jagadish.motion;
+
+import java.util.Locale;
+
+/**
+ * Timing and hit-rate counters for the coarse-then-fine detection cascade.
+ * Written by the analysis thread only; readers get a best-effort snapshot.
+ */
+
+public class CascadeStats {
+    private volatile long frames;
+    private volatile long coarseNanos;
+    private volatile long refineNanos;
+    private volatile long tilesScanned;
+    private volatile long candidateTiles;
+    private volatile long confirmedTiles;
+
+    void record(long coarse, long refine, int tiles, int candidates, int confirmed) {
+        frames++;
+        coarseNanos += coarse;
+        refineNanos += refine;
+        tilesScanned += tiles;
+        candidateTiles += candidates;
+        confirmedTiles += confirmed;
+    }
+
+    public void reset() {
+        frames = 0;
+        coarseNanos = 0;
+        refineNanos = 0;
+        tilesScanned = 0;
+        candidateTiles = 0;
+        confirmedTiles = 0;
+    }
+
+    public long getFrames() {
+        return frames;
+    }
+
+    /**
+     * @return Mean time per frame spent building and scanning the coarse level.
+     */
+    public long getAverageCoarseNanos() {
+        long n = frames;
+        return n == 0 ? 0 : coarseNanos / n;
+    }
+
+    /**
+     * @return Mean time per frame spent re-examining candidate tiles at full resolution.
+     */
+    public long getAverageRefineNanos() {
+        long n = frames;
+        return n == 0 ? 0 : refineNanos / n;
+    }
+
+    /**
+     * @return Fraction of tiles the coarse level passed on to full resolution.
+     */
+    public float getCandidateRate() {
+        long n = tilesScanned;
+        return n == 0 ? 0f : (float) candidateTiles / n;
+    }
+
+    /**
+     * @return Fraction of candidate tiles confirmed as active at full resolution.
+     */
+    public float getHitRate() {
+        long n = candidateTiles;
+        return n == 0 ? 0f : (float) confirmedTiles / n;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.US, "coarse %.2f ms, refine %.2f ms, candidates %.1f%%, hits %.1f%%",
+                getAverageCoarseNanos() / 1e6, getAverageRefineNanos() / 1e6,
+                getCandidateRate() * 100f, getHitRate() * 100f);
+    }
+}
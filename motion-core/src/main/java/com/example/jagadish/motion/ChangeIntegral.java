@@ -0,0 +1,144 @@
+package com.example.jagadish.motion;
+
+import java.util.Arrays;
+
+/**
+ * Per-pixel change mask of the last analysed frame and its summed-area table.
+ * Once built, the number of changed pixels in any rectangle is an O(1) lookup,
+ * whether the rectangle is a grid region, a user zone or a blob bounding box.
+ */
+
+public class ChangeIntegral {
+    private final int width;
+    private final int height;
+    private final int stride;
+    private final byte[] mask;
+    private final boolean[] rowChanged;
+    private final int[] table;
+    private boolean empty = true;
+    // Area where the mask can hold changes; the table is only built inside it
+    private int left;
+    private int top;
+    private int right;
+    private int bottom;
+
+    public ChangeIntegral(int width, int height) {
+        this.width = width;
+        this.height = height;
+        this.stride = width + 1;
+        this.mask = new byte[width * height];
+        this.rowChanged = new boolean[height];
+        // Row 0 and column 0 stay zero so queries need no edge checks
+        this.table = new int[stride * (height + 1)];
+        this.right = width;
+        this.bottom = height;
+    }
+
+    /**
+     * Limit the mask to [left, right) x [top, bottom), the bounding box of the analysed pixels.
+     * build() reads and accumulates only this area and queries are clipped to it. Clears the table.
+     */
+    public void setBounds(int left, int top, int right, int bottom) {
+        if (left < 0 || top < 0 || right > width || bottom > height || left > right || top > bottom) {
+            throw new IllegalArgumentException("Bounds [" + left + ", " + top + ", " + right + ", " + bottom
+                    + ") outside " + width + "x" + height);
+        }
+        this.left = left;
+        this.top = top;
+        this.right = right;
+        this.bottom = bottom;
+        // Columns left of the bounds and rows above them are never written again, so they must be zero
+        Arrays.fill(table, 0);
+        empty = true;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Change mask, one byte per pixel, 1 where the pixel changed. Writers fill it before build();
+     * only rows flagged through setRowChanged() are read.
+     */
+    public byte[] getMask() {
+        return mask;
+    }
+
+    /**
+     * Flag whether a mask row was written for the current frame. Unflagged rows count as unchanged.
+     */
+    public void setRowChanged(int y, boolean changed) {
+        rowChanged[y] = changed;
+    }
+
+    /**
+     * @return True if every mask row in [top, bottom) was written for the last frame.
+     */
+    public boolean isScanned(int top, int bottom) {
+        for (int y = top; y < bottom; y++) {
+            if (!rowChanged[y]) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Forget the last frame; every query returns 0 until the next build().
+     */
+    public void clear() {
+        empty = true;
+    }
+
+    public boolean isEmpty() {
+        return empty;
+    }
+
+    /**
+     * Accumulate the flagged mask rows within the bounds into the summed-area table.
+     */
+    public void build() {
+        final int[] t = table;
+        final int columns = right - left;
+        for (int y = top; y < bottom; y++) {
+            int above = y * stride + left + 1;
+            int row = above + stride;
+            if (!rowChanged[y]) {
+                System.arraycopy(t, above, t, row, columns);
+                continue;
+            }
+            int sum = 0;
+            for (int x = 0, m = y * width + left; x < columns; x++, m++) {
+                sum += mask[m];
+                t[row + x] = t[above + x] + sum;
+            }
+        }
+        empty = false;
+    }
+
+    /**
+     * Count changed pixels in [left, right) x [top, bottom).
+     *
+     * @return Number of changed pixels, 0 if nothing has been built.
+     */
+    public int count(int left, int top, int right, int bottom) {
+        if (empty) return 0;
+        if (left < 0 || top < 0 || right > width || bottom > height || left > right || top > bottom) {
+            throw new IllegalArgumentException("Rectangle [" + left + ", " + top + ", " + right + ", " + bottom
+                    + ") outside " + width + "x" + height);
+        }
+
+        // Nothing outside the bounds can have changed, and the table is not built there
+        left = Math.min(Math.max(left, this.left), this.right);
+        right = Math.min(Math.max(right, this.left), this.right);
+        top = Math.min(Math.max(top, this.top), this.bottom);
+        bottom = Math.min(Math.max(bottom, this.top), this.bottom);
+
+        final int[] t = table;
+        int b = bottom * stride;
+        int a = top * stride;
+        return t[b + right] - t[a + right] - t[b + left] + t[a + left];
+    }
+}
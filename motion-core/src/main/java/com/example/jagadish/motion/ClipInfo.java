@@ -0,0 +1,120 @@
+package com.example.jagadish.motion;
+
+import java.util.Locale;
+
+/**
+ * Metadata kept in a sidecar next to a clip's thumbnail, so the gallery can show a clip without
+ * opening it. Stored as "key=value" lines; unknown keys are ignored so fields can be added later.
+ */
+
+public class ClipInfo {
+    private final long durationMillis;
+    private final int width;
+    private final int height;
+    private final long bytes;
+    private final long modifiedMillis;
+
+    /**
+     * @param bytes
+     *            Clip file length, which with modifiedMillis tells whether the sidecar is stale.
+     * @param modifiedMillis
+     *            Clip file modification time.
+     */
+    public ClipInfo(long durationMillis, int width, int height, long bytes, long modifiedMillis) {
+        this.durationMillis = durationMillis;
+        this.width = width;
+        this.height = height;
+        this.bytes = bytes;
+        this.modifiedMillis = modifiedMillis;
+    }
+
+    public long getDurationMillis() {
+        return durationMillis;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public long getBytes() {
+        return bytes;
+    }
+
+    public long getModifiedMillis() {
+        return modifiedMillis;
+    }
+
+    /**
+     * @return Whether this describes a clip file of the given length and modification time.
+     */
+    public boolean matches(long bytes, long modifiedMillis) {
+        return this.bytes == bytes && this.modifiedMillis == modifiedMillis;
+    }
+
+    /**
+     * @return Duration as m:ss or h:mm:ss.
+     */
+    public String formatDuration() {
+        long seconds = (durationMillis + 500) / 1000;
+        if (seconds >= 3600) {
+            return String.format(Locale.US, "%d:%02d:%02d", seconds / 3600, seconds / 60 % 60, seconds % 60);
+        }
+        return String.format(Locale.US, "%d:%02d", seconds / 60, seconds % 60);
+    }
+
+    public String format() {
+        return "duration=" + durationMillis + "\nwidth=" + width + "\nheight=" + height + "\nbytes=" + bytes
+                + "\nmodified=" + modifiedMillis + "\n";
+    }
+
+    /**
+     * @return The metadata, or null if the text is not a complete sidecar.
+     */
+    public static ClipInfo parse(String text) {
+        long duration = -1;
+        long width = -1;
+        long height = -1;
+        long bytes = -1;
+        long modified = -1;
+        for (String line : text.split("\n")) {
+            int split = line.indexOf('=');
+            if (split < 0) continue;
+            long value;
+            try {
+                value = Long.parseLong(line.substring(split + 1).trim());
+            } catch (NumberFormatException e) {
+                return null;
+            }
+            switch (line.substring(0, split)) {
+                case "duration":
+                    duration = value;
+                    break;
+                case "width":
+                    width = value;
+                    break;
+                case "height":
+                    height = value;
+                    break;
+                case "bytes":
+                    bytes = value;
+                    break;
+                case "modified":
+                    modified = value;
+                    break;
+                default:
+                    // Written by a later version
+            }
+        }
+        if (duration < 0 || width < 0 || height < 0 || bytes < 0 || modified < 0) return null;
+        return new ClipInfo(duration, (int) width, (int) height, bytes, modified);
+    }
+
+    @Override
+    public String toString() {
+        return formatDuration() + ", " + width + "x" + height + ", " + bytes + " bytes";
+    }
+}
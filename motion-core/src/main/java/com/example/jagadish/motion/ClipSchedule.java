@@ -0,0 +1,118 @@
+package com.example.jagadish.motion;
+
+/**
+ * Decides when a motion event's recording stops or rolls over into a new segment. A clip runs for
+ * at least the minimum length, and keeps extending while motion continues plus a post-roll after
+ * the last motion. Segments longer than the maximum are split, and every segment of one event
+ * shares its event id. Times are wall-clock milliseconds supplied by the caller.
+ */
+
+public class ClipSchedule {
+    public static final int CONTINUE = 0; // Keep recording the current segment
+    public static final int ROLL_OVER = 1; // Close the current segment and continue in a new one
+    public static final int STOP = 2; // The event is over
+
+    private final long minClipMillis;
+    private final long postRollMillis;
+    private final long maxSegmentMillis;
+    private boolean recording;
+    private long eventId;
+    private long eventStart;
+    private long segmentStart;
+    private int segment;
+    private long lastMotion;
+
+    /**
+     * @param minClipMillis
+     *            Shortest event recording, counted from the trigger.
+     * @param postRollMillis
+     *            Recording kept after the last motion.
+     * @param maxSegmentMillis
+     *            Longest single file before rolling over.
+     */
+    public ClipSchedule(long minClipMillis, long postRollMillis, long maxSegmentMillis) {
+        if (minClipMillis <= 0 || postRollMillis < 0 || maxSegmentMillis <= 0) {
+            throw new IllegalArgumentException("Invalid clip lengths " + minClipMillis + ", " + postRollMillis
+                    + ", " + maxSegmentMillis);
+        }
+        this.minClipMillis = minClipMillis;
+        this.postRollMillis = postRollMillis;
+        this.maxSegmentMillis = maxSegmentMillis;
+    }
+
+    /**
+     * Begin a new event.
+     *
+     * @return The event id: the start time, kept strictly increasing.
+     */
+    public synchronized long start(long nowMillis) {
+        if (recording) throw new IllegalStateException("Event " + eventId + " still recording");
+
+        recording = true;
+        eventId = Math.max(nowMillis, eventId + 1);
+        eventStart = nowMillis;
+        segmentStart = nowMillis;
+        segment = 0;
+        lastMotion = nowMillis;
+        return eventId;
+    }
+
+    /**
+     * Report motion seen during the event, which extends it.
+     */
+    public synchronized void onMotion(long nowMillis) {
+        if (recording && nowMillis > lastMotion) lastMotion = nowMillis;
+    }
+
+    /**
+     * @return {@link #CONTINUE}, {@link #ROLL_OVER} or {@link #STOP}. After STOP the schedule is
+     *         idle; after ROLL_OVER the segment number has advanced.
+     */
+    public synchronized int poll(long nowMillis) {
+        if (!recording) return STOP;
+
+        if (nowMillis >= getPlannedEndMillis()) {
+            recording = false;
+            return STOP;
+        }
+        if (nowMillis - segmentStart >= maxSegmentMillis) {
+            segment++;
+            segmentStart = nowMillis;
+            return ROLL_OVER;
+        }
+        return CONTINUE;
+    }
+
+    /**
+     * Abandon the event, for example when its recording failed to start.
+     */
+    public synchronized void cancel() {
+        recording = false;
+    }
+
+    public synchronized boolean isRecording() {
+        return recording;
+    }
+
+    public synchronized long getEventId() {
+        return eventId;
+    }
+
+    /**
+     * @return Index of the current segment within the event, from 0.
+     */
+    public synchronized int getSegment() {
+        return segment;
+    }
+
+    public synchronized long getEventStartMillis() {
+        return eventStart;
+    }
+
+    /**
+     * @return When the event will stop unless more motion arrives.
+     */
+    public synchronized long getPlannedEndMillis() {
+        return Math.max(eventStart + minClipMillis, lastMotion + postRollMillis);
+    }
+}
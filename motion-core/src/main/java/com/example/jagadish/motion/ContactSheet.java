@@ -0,0 +1,206 @@
+package com.example.jagadish.motion;
+
+import java.util.Arrays;
+
+/**
+ * Collects downscaled frames of one event into a grid of tiles, with the detected blobs outlined,
+ * for a single small image that shows what happened. Frames are sampled at an interval; when the
+ * grid is full every other tile is dropped and the interval doubled, so the sheet always covers
+ * the whole event however long it runs. Frames are added on the analysis thread and the sheet is
+ * rendered on another.
+ */
+
+public class ContactSheet {
+    private static final int OUTLINE = 2; // Pixels
+    private static final byte OUTLINE_Y = (byte) 255;
+    private static final byte OUTLINE_V = (byte) 240; // With OUTLINE_U, red
+    private static final byte OUTLINE_U = (byte) 90;
+    private static final byte EMPTY_Y = 16; // Black
+    private static final byte EMPTY_UV = (byte) 128;
+
+    private final int columns;
+    private final int tileWidth;
+    private final int tileHeight;
+    private final byte[][] tiles;
+    private final long[] times;
+    private int count;
+    private long intervalMillis;
+
+    /**
+     * @param tileWidth
+     *            Even width of one tile in pixels; frames are scaled to the tile size.
+     * @param intervalMillis
+     *            Shortest time between sampled frames at first.
+     */
+    public ContactSheet(int columns, int rows, int tileWidth, int tileHeight, long intervalMillis) {
+        if (columns < 1 || rows < 1) throw new IllegalArgumentException("Invalid grid: " + columns + "x" + rows);
+        if (tileWidth <= 0 || tileHeight <= 0 || tileWidth % 2 != 0 || tileHeight % 2 != 0) {
+            throw new IllegalArgumentException("Tiles need an even size: " + tileWidth + "x" + tileHeight);
+        }
+        if (intervalMillis <= 0) throw new IllegalArgumentException("Invalid interval: " + intervalMillis);
+
+        this.columns = columns;
+        this.tileWidth = tileWidth;
+        this.tileHeight = tileHeight;
+        this.tiles = new byte[columns * rows][];
+        this.times = new long[columns * rows];
+        this.intervalMillis = intervalMillis;
+    }
+
+    /**
+     * @return Whether a frame at this time would be added; cheap, for skipping work on others.
+     */
+    public synchronized boolean wantsFrame(long timeMillis) {
+        return count == 0 || timeMillis - times[count - 1] >= intervalMillis;
+    }
+
+    /**
+     * Add a frame if it is due, outlining the blobs the detector found in it.
+     *
+     * @param detection
+     *            Detector that has just analysed this frame, or null for no outlines.
+     * @return Whether the frame was added.
+     */
+    public synchronized boolean addFrame(byte[] nv21, int width, int height, long timeMillis,
+                                         MotionDetection detection) {
+        if (nv21 == null) throw new NullPointerException();
+        if (width <= 0 || height <= 0 || nv21.length < width * height * 3 / 2) {
+            throw new IllegalArgumentException("Buffer too small for " + width + "x" + height);
+        }
+        if (!wantsFrame(timeMillis)) return false;
+        if (count == tiles.length) {
+            thin();
+            if (!wantsFrame(timeMillis)) return false;
+        }
+
+        if (tiles[count] == null) tiles[count] = new byte[tileWidth * tileHeight * 3 / 2];
+        byte[] tile = tiles[count];
+        scale(nv21, width, height, tile);
+        if (detection != null) {
+            for (int i = 0; i < detection.getBlobCount(); i++) {
+                Blob blob = detection.getBlob(i);
+                outline(tile, blob.getLeft() * tileWidth / width, blob.getTop() * tileHeight / height,
+                        (blob.getRight() * tileWidth + width - 1) / width,
+                        (blob.getBottom() * tileHeight + height - 1) / height);
+            }
+        }
+        times[count++] = timeMillis;
+        return true;
+    }
+
+    // Keeps the first tile and every other one after it, reusing the dropped buffers
+    private void thin() {
+        int kept = 0;
+        for (int i = 0; i < count; i += 2) {
+            byte[] tile = tiles[kept];
+            tiles[kept] = tiles[i];
+            tiles[i] = tile;
+            times[kept++] = times[i];
+        }
+        count = kept;
+        intervalMillis *= 2;
+    }
+
+    // Nearest neighbour; the sheet is small enough that filtering is not worth the time
+    private void scale(byte[] src, int width, int height, byte[] tile) {
+        for (int y = 0; y < tileHeight; y++) {
+            int row = y * height / tileHeight * width;
+            int out = y * tileWidth;
+            for (int x = 0; x < tileWidth; x++) {
+                tile[out + x] = src[row + x * width / tileWidth];
+            }
+        }
+
+        int frameSize = width * height;
+        int tileSize = tileWidth * tileHeight;
+        for (int y = 0; y < tileHeight / 2; y++) {
+            int row = frameSize + (y * height / tileHeight) * width;
+            int out = tileSize + y * tileWidth;
+            for (int x = 0; x < tileWidth; x += 2) {
+                int in = row + (x * width / tileWidth & ~1);
+                tile[out + x] = src[in];
+                tile[out + x + 1] = src[in + 1];
+            }
+        }
+    }
+
+    private void outline(byte[] tile, int left, int top, int right, int bottom) {
+        left = Math.max(0, left);
+        top = Math.max(0, top);
+        right = Math.min(tileWidth, right);
+        bottom = Math.min(tileHeight, bottom);
+        if (right <= left || bottom <= top) return;
+
+        for (int y = top; y < bottom; y++) {
+            boolean edgeRow = y < top + OUTLINE || y >= bottom - OUTLINE;
+            for (int x = left; x < right; x++) {
+                if (edgeRow || x < left + OUTLINE || x >= right - OUTLINE) {
+                    tile[y * tileWidth + x] = OUTLINE_Y;
+                    int uv = tileWidth * tileHeight + (y / 2) * tileWidth + (x & ~1);
+                    tile[uv] = OUTLINE_V;
+                    tile[uv + 1] = OUTLINE_U;
+                }
+            }
+        }
+    }
+
+    public synchronized int getFrameCount() {
+        return count;
+    }
+
+    public synchronized long getFrameTime(int index) {
+        if (index < 0 || index >= count) throw new IndexOutOfBoundsException("Frame " + index + " of " + count);
+        return times[index];
+    }
+
+    /**
+     * @return Width of the rendered sheet.
+     */
+    public synchronized int getWidth() {
+        return Math.min(Math.max(count, 1), columns) * tileWidth;
+    }
+
+    /**
+     * @return Height of the rendered sheet; only rows holding frames are rendered.
+     */
+    public synchronized int getHeight() {
+        return Math.max(1, (count + columns - 1) / columns) * tileHeight;
+    }
+
+    /**
+     * Draw the tiles in time order, left to right and top to bottom, as one NV21 image of
+     * getWidth() by getHeight(). Cells after the last frame are black. Synchronize on the sheet
+     * around the size calls and this one while frames are still being added.
+     */
+    public synchronized void render(byte[] dst) {
+        if (dst == null) throw new NullPointerException();
+        int width = getWidth();
+        int height = getHeight();
+        if (dst.length < width * height * 3 / 2) throw new IllegalArgumentException("Destination too small");
+
+        int frameSize = width * height;
+        int tileSize = tileWidth * tileHeight;
+        int cells = width / tileWidth * (height / tileHeight);
+        for (int i = 0; i < cells; i++) {
+            int left = i % columns * tileWidth;
+            int top = i / columns * tileHeight;
+            byte[] tile = i < count ? tiles[i] : null;
+            for (int y = 0; y < tileHeight; y++) {
+                int out = (top + y) * width + left;
+                if (tile != null) {
+                    System.arraycopy(tile, y * tileWidth, dst, out, tileWidth);
+                } else {
+                    Arrays.fill(dst, out, out + tileWidth, EMPTY_Y);
+                }
+            }
+            for (int y = 0; y < tileHeight / 2; y++) {
+                int out = frameSize + (top / 2 + y) * width + left;
+                if (tile != null) {
+                    System.arraycopy(tile, tileSize + y * tileWidth, dst, out, tileWidth);
+                } else {
+                    Arrays.fill(dst, out, out + tileWidth, EMPTY_UV);
+                }
+            }
+        }
+    }
+}
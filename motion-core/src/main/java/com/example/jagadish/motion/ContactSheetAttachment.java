@@ -0,0 +1,130 @@
+package com.example.jagadish.motion;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * A contact sheet attached to an alert as a JPEG. The sheet is copied when the sender fits it, so
+ * it includes every frame of the event up to then; the highest quality within the budget is
+ * searched for by encoding into a counter, and the sheet is halved in size if even the lowest
+ * quality is too large. The JPEG is encoded again straight into the message, never held whole.
+ */
+
+public class ContactSheetAttachment implements AlertAttachment {
+    static final int MIN_QUALITY = 20;
+    static final int MAX_QUALITY = 85;
+    private static final int MIN_WIDTH = 160; // Smallest sheet worth sending
+
+    private final ContactSheet sheet;
+    private final JpegEncoder encoder;
+    private final String name;
+    private byte[] image;
+    private int width;
+    private int height;
+    private int quality;
+
+    public ContactSheetAttachment(ContactSheet sheet, JpegEncoder encoder, String name) {
+        if (sheet == null || encoder == null || name == null) throw new NullPointerException();
+
+        this.sheet = sheet;
+        this.encoder = encoder;
+        this.name = name;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public String getContentType() {
+        return "image/jpeg";
+    }
+
+    @Override
+    public synchronized long fit(long maxBytes) throws IOException {
+        synchronized (sheet) {
+            width = sheet.getWidth();
+            height = sheet.getHeight();
+            image = new byte[width * height * 3 / 2];
+            sheet.render(image);
+        }
+
+        while (true) {
+            quality = MAX_QUALITY;
+            long size = encodedSize();
+            if (size <= maxBytes) return size;
+
+            // Size grows with quality, so the best one that fits is found in a few encodes
+            int low = MIN_QUALITY;
+            int high = MAX_QUALITY - 1;
+            long best = -1;
+            int bestQuality = 0;
+            while (low <= high) {
+                quality = (low + high) >>> 1;
+                size = encodedSize();
+                if (size <= maxBytes) {
+                    best = size;
+                    bestQuality = quality;
+                    low = quality + 1;
+                } else {
+                    high = quality - 1;
+                }
+            }
+            if (best >= 0) {
+                quality = bestQuality;
+                return best;
+            }
+
+            if (width / 2 < MIN_WIDTH || height / 2 < 2) {
+                image = null;
+                return -1;
+            }
+            byte[] half = new byte[(width / 2 & ~1) * (height / 2 & ~1) * 3 / 2];
+            ImageProcessing.downscaleNV21(image, width, height, 2, half);
+            image = half;
+            width = width / 2 & ~1;
+            height = height / 2 & ~1;
+        }
+    }
+
+    private long encodedSize() throws IOException {
+        CountingStream counter = new CountingStream();
+        encoder.encode(image, width, height, quality, counter);
+        return counter.count;
+    }
+
+    @Override
+    public synchronized void writeTo(OutputStream out) throws IOException {
+        if (image == null) throw new IllegalStateException("Not fitted");
+        encoder.encode(image, width, height, quality, out);
+    }
+
+    /**
+     * @return Width of the sheet as last fitted.
+     */
+    public synchronized int getWidth() {
+        return width;
+    }
+
+    /**
+     * @return JPEG quality chosen by the last fit.
+     */
+    public synchronized int getQuality() {
+        return quality;
+    }
+
+    private static class CountingStream extends OutputStream {
+        long count;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package com.example.jagadish.motion;
+
+import java.util.Locale;
+
+/**
+ * Frame-level detection quality of a detector on a scene with known ground truth, plus its cost.
+ */
+
+public class DetectionScore {
+    private final int truePositives;
+    private final int falsePositives;
+    private final int falseNegatives;
+    private final int trueNegatives;
+    private final int episodes;
+    private final int missedEpisodes;
+    private final int totalDelay;
+    private final int maxDelay;
+    private final double nanosPerPixel;
+
+    DetectionScore(int truePositives, int falsePositives, int falseNegatives, int trueNegatives,
+                   int episodes, int missedEpisodes, int totalDelay, int maxDelay, double nanosPerPixel) {
+        this.truePositives = truePositives;
+        this.falsePositives = falsePositives;
+        this.falseNegatives = falseNegatives;
+        this.trueNegatives = trueNegatives;
+        this.episodes = episodes;
+        this.missedEpisodes = missedEpisodes;
+        this.totalDelay = totalDelay;
+        this.maxDelay = maxDelay;
+        this.nanosPerPixel = nanosPerPixel;
+    }
+
+    public int getTruePositives() {
+        return truePositives;
+    }
+
+    public int getFalsePositives() {
+        return falsePositives;
+    }
+
+    public int getFalseNegatives() {
+        return falseNegatives;
+    }
+
+    public int getTrueNegatives() {
+        return trueNegatives;
+    }
+
+    /**
+     * @return Share of frames reported as motion that had motion, 1 if none were reported.
+     */
+    public double getPrecision() {
+        int reported = truePositives + falsePositives;
+        return reported == 0 ? 1 : (double) truePositives / reported;
+    }
+
+    /**
+     * @return Share of motion frames reported as motion, 1 if the scene had none.
+     */
+    public double getRecall() {
+        int actual = truePositives + falseNegatives;
+        return actual == 0 ? 1 : (double) truePositives / actual;
+    }
+
+    /**
+     * @return Runs of consecutive ground-truth motion frames that were scored.
+     */
+    public int getEpisodes() {
+        return episodes;
+    }
+
+    /**
+     * @return Motion runs that ended without a single detection.
+     */
+    public int getMissedEpisodes() {
+        return missedEpisodes;
+    }
+
+    /**
+     * @return Mean frames from the start of a motion run to its first detection, over detected runs.
+     */
+    public double getMeanFramesToDetect() {
+        int detected = episodes - missedEpisodes;
+        return detected == 0 ? 0 : (double) totalDelay / detected;
+    }
+
+    public int getMaxFramesToDetect() {
+        return maxDelay;
+    }
+
+    /**
+     * @return Detector time per pixel analysed, averaged over all frames.
+     */
+    public double getNanosPerPixel() {
+        return nanosPerPixel;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.US, "precision %.3f, recall %.3f, %d/%d runs detected, %.1f frames to detect (max %d), %.2f ns/pixel",
+                getPrecision(), getRecall(), episodes - missedEpisodes, episodes, getMeanFramesToDetect(), maxDelay,
+                nanosPerPixel);
+    }
+}
@@ -0,0 +1,125 @@
+package com.example.jagadish.motion;
+
+import java.util.Locale;
+
+/**
+ * Runs a detector over a synthetic scene and compares its output with the ground truth, so
+ * thresholds can be tuned against numbers instead of by eye.
+ */
+
+public abstract class DetectionScorer {
+    private static final int DEFAULT_WARM_UP_FRAMES = 30; // Frames given to the detector to learn the background
+
+    private DetectionScorer() {
+    }
+
+    public static DetectionScore score(SyntheticScene scene, InterMotionDetection detector) {
+        return score(scene, detector, DEFAULT_WARM_UP_FRAMES);
+    }
+
+    /**
+     * @param warmUpFrames
+     *            Leading frames fed to the detector but left out of the score.
+     */
+    public static DetectionScore score(SyntheticScene scene, InterMotionDetection detector, int warmUpFrames) {
+        if (scene == null || detector == null) throw new NullPointerException();
+
+        int width = scene.getWidth();
+        int height = scene.getHeight();
+        byte[] frame = new byte[width * height * 3 / 2];
+        int tp = 0;
+        int fp = 0;
+        int fn = 0;
+        int tn = 0;
+        int episodes = 0;
+        int missed = 0;
+        int totalDelay = 0;
+        int maxDelay = 0;
+        int episodeStart = -1;
+        boolean episodeDetected = false;
+        long nanos = 0;
+
+        for (int i = 0; i < scene.getFrameCount(); i++) {
+            scene.render(i, frame);
+            long start = System.nanoTime();
+            boolean reported = detector.detect(frame, width, height);
+            nanos += System.nanoTime() - start;
+            if (i < warmUpFrames) continue;
+
+            boolean actual = scene.isMotion(i);
+            if (actual && reported) tp++;
+            else if (reported) fp++;
+            else if (actual) fn++;
+            else tn++;
+
+            if (actual && episodeStart < 0) {
+                episodeStart = i;
+                episodeDetected = false;
+                episodes++;
+            }
+            if (actual && reported && !episodeDetected) {
+                episodeDetected = true;
+                int delay = i - episodeStart;
+                totalDelay += delay;
+                maxDelay = Math.max(maxDelay, delay);
+            }
+            if (!actual && episodeStart >= 0) {
+                if (!episodeDetected) missed++;
+                episodeStart = -1;
+            }
+        }
+        if (episodeStart >= 0 && !episodeDetected) missed++;
+
+        double nanosPerPixel = (double) nanos / ((long) scene.getFrameCount() * width * height);
+        return new DetectionScore(tp, fp, fn, tn, episodes, missed, totalDelay, maxDelay, nanosPerPixel);
+    }
+
+    /**
+     * Standard scenes at the given size, the same set the command line scores.
+     */
+    public static SyntheticScene[] standardScenes(int width, int height) {
+        SyntheticScene walker = new SyntheticScene(width, height, 300, 1);
+        walker.setNoise(3);
+        walker.addObject(width / 8, height / 3, -width / 8f, height / 3f, width / 120f, 0, 60, 240, 200);
+
+        SyntheticScene smallFast = new SyntheticScene(width, height, 300, 2);
+        smallFast.setNoise(3);
+        smallFast.addObject(width / 20, height / 20, 0, height / 2f, width / 30f, 0, 90, 120, 30);
+
+        SyntheticScene lowLight = new SyntheticScene(width, height, 300, 3);
+        lowLight.setNoise(14);
+        lowLight.addObject(width / 6, height / 4, width / 4f, height / 4f, width / 200f, height / 400f, 100, 220, 160);
+
+        SyntheticScene dusk = new SyntheticScene(width, height, 300, 4);
+        dusk.setNoise(3);
+        dusk.setLightingRamp(-0.15f);
+
+        SyntheticScene lightsOn = new SyntheticScene(width, height, 300, 5);
+        lightsOn.setNoise(3);
+        lightsOn.addLightStep(150, 40);
+
+        SyntheticScene flicker = new SyntheticScene(width, height, 300, 6);
+        flicker.setNoise(3);
+        flicker.addFlicker(width / 10, height / 10, width / 3, height / 3, 35, 4);
+
+        return new SyntheticScene[] { walker, smallFast, lowLight, dusk, lightsOn, flicker };
+    }
+
+    private static final String[] STANDARD_NAMES = { "walker", "small-fast", "low-light", "dusk", "lights-on", "flicker" };
+
+    /**
+     * Command line entry point: {@code DetectionScorer [width height]}, scores both detectors on the standard scenes.
+     */
+    public static void main(String[] args) {
+        int width = args.length == 2 ? Integer.parseInt(args[0]) : 640;
+        int height = args.length == 2 ? Integer.parseInt(args[1]) : 480;
+
+        SyntheticScene[] scenes = standardScenes(width, height);
+        for (int i = 0; i < scenes.length; i++) {
+            DetectionScore motion = score(scenes[i], new MotionDetection(width, height));
+            DetectionScore adaptive = score(scenes[i], new AdaptiveBackgroundDetection(width, height));
+            System.out.println(String.format(Locale.US, "%-10s motion:   %s%n%-10s adaptive: %s",
+                    STANDARD_NAMES[i], motion, "", adaptive));
+        }
+    }
+}
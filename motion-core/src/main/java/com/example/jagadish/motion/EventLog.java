@@ -0,0 +1,363 @@
+package com.example.jagadish.motion;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Append-only log of motion events in fixed-size binary records, read through a memory mapping.
+ * Clip paths are kept in a sibling ".paths" file and referenced by offset, so every record has the
+ * same size and record i is at a known position. A time range is found through a sparse index of
+ * one entry per block of records, built when the log is opened and kept up to date on append, so a
+ * query only decodes the blocks that can overlap it.
+ * <p>
+ * The log also keeps the total size of the clips not marked deleted and the oldest such record,
+ * so retention can start from the oldest clip without reading the records before it.
+ * <p>
+ * A path is written before the record that refers to it, and a trailing partial record left by a
+ * crash is ignored and overwritten by the next append.
+ */
+
+public class EventLog implements Closeable {
+    static final int MAGIC = 0x4d455654; // "MEVT"
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 16; // Magic, version, record size, reserved
+    static final int RECORD_SIZE = 72;
+    static final int BLOCK_SIZE = 64; // Records per sparse index entry
+
+    // Record layout
+    private static final int EVENT_ID = 0;
+    private static final int START = 8;
+    private static final int END = 16;
+    private static final int PATH_OFFSET = 24;
+    private static final int SEGMENT = 32;
+    private static final int PEAK_REGIONS = 36;
+    private static final int BOUNDS = 40; // Four shorts: left, top, right, bottom
+    private static final int FLAGS = 48;
+    private static final int SNAPSHOTS = 52; // MAX_SNAPSHOTS ints
+    private static final int BYTES = 64;
+
+    private final RandomAccessFile file;
+    private final RandomAccessFile paths;
+    private final FileChannel channel;
+    private final ByteBuffer record = ByteBuffer.allocate(RECORD_SIZE);
+    private MappedByteBuffer mapped;
+    private int mappedCount;
+    private int count;
+    private long liveBytes;
+    private int oldestLive;
+    // Sparse index: per block, the earliest start, the latest end, and the latest end up to it
+    private long[] blockStart = new long[16];
+    private long[] blockEnd = new long[16];
+    private long[] blockMaxEnd = new long[16];
+
+    public EventLog(File path) throws IOException {
+        if (path == null) throw new NullPointerException();
+
+        this.file = new RandomAccessFile(path, "rw");
+        RandomAccessFile pathFile = null;
+        try {
+            this.channel = file.getChannel();
+            if (channel.size() < HEADER_SIZE) {
+                ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+                header.putInt(MAGIC).putInt(VERSION).putInt(RECORD_SIZE).putInt(0).flip();
+                channel.truncate(0);
+                while (header.hasRemaining()) {
+                    channel.write(header, header.position());
+                }
+            } else {
+                ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+                while (header.hasRemaining() && channel.read(header, header.position()) > 0) {
+                    // Keep reading until the header is complete
+                }
+                header.flip();
+                if (header.getInt() != MAGIC) throw new IOException("Not an event log: " + path);
+                int version = header.getInt();
+                if (version != VERSION) throw new IOException("Unsupported event log version " + version);
+                int recordSize = header.getInt();
+                if (recordSize != RECORD_SIZE) throw new IOException("Unexpected event record size " + recordSize);
+            }
+
+            long records = (channel.size() - HEADER_SIZE) / RECORD_SIZE;
+            if (records > (Integer.MAX_VALUE - HEADER_SIZE) / RECORD_SIZE) {
+                throw new IOException("Event log too large: " + records + " records");
+            }
+            pathFile = new RandomAccessFile(new File(path.getPath() + ".paths"), "rw");
+            this.paths = pathFile;
+
+            this.count = (int) records;
+            remap();
+            oldestLive = count;
+            for (int i = 0; i < count; i++) {
+                int base = offset(i);
+                index(i, mapped.getLong(base + START), mapped.getLong(base + END));
+                if ((mapped.getInt(base + FLAGS) & EventRecord.FLAG_DELETED) == 0) {
+                    liveBytes += mapped.getLong(base + BYTES);
+                    oldestLive = Math.min(oldestLive, i);
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            if (pathFile != null) pathFile.close();
+            file.close();
+            throw e;
+        }
+    }
+
+    private static int offset(int index) {
+        return HEADER_SIZE + index * RECORD_SIZE;
+    }
+
+    // Map every complete record; the mapping is replaced when the log has grown
+    private void remap() throws IOException {
+        mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, offset(count));
+        mappedCount = count;
+    }
+
+    private void index(int index, long start, long end) {
+        int block = index / BLOCK_SIZE;
+        if (block == blockStart.length) {
+            blockStart = Arrays.copyOf(blockStart, block * 2);
+            blockEnd = Arrays.copyOf(blockEnd, block * 2);
+            blockMaxEnd = Arrays.copyOf(blockMaxEnd, block * 2);
+        }
+        long previousMax = block > 0 ? blockMaxEnd[block - 1] : Long.MIN_VALUE;
+        if (index % BLOCK_SIZE == 0) {
+            blockStart[block] = start;
+            blockEnd[block] = end;
+        } else {
+            blockStart[block] = Math.min(blockStart[block], start);
+            blockEnd[block] = Math.max(blockEnd[block], end);
+        }
+        blockMaxEnd[block] = Math.max(previousMax, blockEnd[block]);
+    }
+
+    /**
+     * Add an event at the end of the log. The record's index and path offset are set.
+     *
+     * @param clipPath
+     *            Path of the event's clip, or null.
+     * @return The record's index.
+     */
+    public synchronized int append(EventRecord event, String clipPath) throws IOException {
+        if (event == null) throw new NullPointerException();
+        if (count == (Integer.MAX_VALUE - HEADER_SIZE) / RECORD_SIZE) throw new IOException("Event log full");
+
+        long pathOffset = -1;
+        if (clipPath != null) {
+            pathOffset = paths.length();
+            paths.seek(pathOffset);
+            paths.writeUTF(clipPath);
+        }
+
+        record.clear();
+        record.putLong(EVENT_ID, event.getEventId());
+        record.putLong(START, event.getStartMillis());
+        record.putLong(END, event.getEndMillis());
+        record.putLong(PATH_OFFSET, pathOffset);
+        record.putInt(SEGMENT, event.getSegment());
+        record.putInt(PEAK_REGIONS, event.getPeakRegions());
+        record.putShort(BOUNDS, clamp(event.getLeft()));
+        record.putShort(BOUNDS + 2, clamp(event.getTop()));
+        record.putShort(BOUNDS + 4, clamp(event.getRight()));
+        record.putShort(BOUNDS + 6, clamp(event.getBottom()));
+        record.putInt(FLAGS, event.getFlags());
+        for (int i = 0; i < EventRecord.MAX_SNAPSHOTS; i++) {
+            record.putInt(SNAPSHOTS + i * 4, event.getSnapshot(i));
+        }
+        record.putLong(BYTES, event.getBytes());
+        // Overwrites a partial record left by a crash
+        long position = offset(count);
+        while (record.hasRemaining()) {
+            position += channel.write(record, position);
+        }
+
+        int index = count++;
+        index(index, event.getStartMillis(), event.getEndMillis());
+        if (!event.isDeleted()) {
+            liveBytes += event.getBytes();
+        } else if (oldestLive == index) {
+            oldestLive = count;
+        }
+        event.setLocation(index, pathOffset);
+        return index;
+    }
+
+    private static short clamp(int value) {
+        return (short) Math.max(0, Math.min(Short.MAX_VALUE, value));
+    }
+
+    public synchronized int size() {
+        return count;
+    }
+
+    /**
+     * Read one record.
+     */
+    public synchronized EventRecord get(int index) throws IOException {
+        if (index < 0 || index >= count) {
+            throw new IndexOutOfBoundsException("Event " + index + " of " + count);
+        }
+        if (index >= mappedCount) remap();
+        return decode(index);
+    }
+
+    /**
+     * Read a page of the log newest first, for paging back through it.
+     *
+     * @param before
+     *            Index below which to read; size() for the newest events.
+     * @return Up to count records with indices below before, in descending order.
+     */
+    public synchronized List<EventRecord> readBackward(int before, int count) throws IOException {
+        if (before < 0 || before > this.count) {
+            throw new IndexOutOfBoundsException("Event " + before + " of " + this.count);
+        }
+        if (before > mappedCount) remap();
+        List<EventRecord> result = new ArrayList<>(Math.min(count, before));
+        for (int i = before - 1; i >= 0 && result.size() < count; i--) {
+            result.add(decode(i));
+        }
+        return result;
+    }
+
+    private EventRecord decode(int index) {
+        int base = offset(index);
+        EventRecord event = new EventRecord(mapped.getLong(base + EVENT_ID), mapped.getInt(base + SEGMENT),
+                mapped.getLong(base + START), mapped.getLong(base + END));
+        event.setPeakRegions(mapped.getInt(base + PEAK_REGIONS));
+        event.setBounds(mapped.getShort(base + BOUNDS), mapped.getShort(base + BOUNDS + 2),
+                mapped.getShort(base + BOUNDS + 4), mapped.getShort(base + BOUNDS + 6));
+        event.setFlags(mapped.getInt(base + FLAGS));
+        int[] snapshots = new int[EventRecord.MAX_SNAPSHOTS];
+        for (int i = 0; i < snapshots.length; i++) {
+            snapshots[i] = mapped.getInt(base + SNAPSHOTS + i * 4);
+        }
+        event.setSnapshots(snapshots);
+        event.setBytes(mapped.getLong(base + BYTES));
+        event.setLocation(index, mapped.getLong(base + PATH_OFFSET));
+        return event;
+    }
+
+    /**
+     * Find the events that overlap a time range.
+     *
+     * @param fromMillis
+     *            Start of the range, inclusive.
+     * @param toMillis
+     *            End of the range, exclusive.
+     * @return Matching records in log order.
+     */
+    public synchronized List<EventRecord> query(long fromMillis, long toMillis) throws IOException {
+        List<EventRecord> result = new ArrayList<>();
+        if (count == 0 || toMillis <= fromMillis) return result;
+        if (count > mappedCount) remap();
+
+        // First block with any event ending after the range starts
+        int blocks = (count + BLOCK_SIZE - 1) / BLOCK_SIZE;
+        int low = 0;
+        int high = blocks;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (blockMaxEnd[middle] > fromMillis) {
+                high = middle;
+            } else {
+                low = middle + 1;
+            }
+        }
+
+        for (int block = low; block < blocks; block++) {
+            if (blockStart[block] >= toMillis || blockEnd[block] <= fromMillis) continue;
+            int end = Math.min(count, (block + 1) * BLOCK_SIZE);
+            for (int i = block * BLOCK_SIZE; i < end; i++) {
+                int base = offset(i);
+                if (mapped.getLong(base + START) < toMillis && mapped.getLong(base + END) > fromMillis) {
+                    result.add(decode(i));
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return The clip path stored with a record, or null if it has none or it was lost in a
+     *         crash.
+     */
+    public synchronized String getClipPath(EventRecord event) throws IOException {
+        long pathOffset = event.getPathOffset();
+        if (pathOffset < 0 || pathOffset >= paths.length()) return null;
+        paths.seek(pathOffset);
+        try {
+            return paths.readUTF();
+        } catch (EOFException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Replace the flags of a logged event, for example to mark it important.
+     */
+    public synchronized void setFlags(int index, int flags) throws IOException {
+        if (index < 0 || index >= count) {
+            throw new IndexOutOfBoundsException("Event " + index + " of " + count);
+        }
+        if (index >= mappedCount) remap();
+        int base = offset(index);
+        boolean wasDeleted = (mapped.getInt(base + FLAGS) & EventRecord.FLAG_DELETED) != 0;
+        boolean deleted = (flags & EventRecord.FLAG_DELETED) != 0;
+
+        ByteBuffer buffer = ByteBuffer.allocate(4);
+        buffer.putInt(flags).flip();
+        long position = base + FLAGS;
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+
+        if (deleted && !wasDeleted) {
+            liveBytes -= mapped.getLong(base + BYTES);
+            if (index == oldestLive) {
+                // The mapping shares the file, so it sees the flags just written
+                if (count > mappedCount) remap();
+                while (oldestLive < count && (mapped.getInt(offset(oldestLive) + FLAGS) & EventRecord.FLAG_DELETED) != 0) {
+                    oldestLive++;
+                }
+            }
+        } else if (wasDeleted && !deleted) {
+            liveBytes += mapped.getLong(base + BYTES);
+            oldestLive = Math.min(oldestLive, index);
+        }
+    }
+
+    /**
+     * @return Total size of the clips of the events not marked deleted.
+     */
+    public synchronized long getLiveBytes() {
+        return liveBytes;
+    }
+
+    /**
+     * @return Index of the oldest event not marked deleted, or size() if there is none.
+     */
+    public synchronized int getOldestLive() {
+        return oldestLive;
+    }
+
+    /**
+     * Close the files. The mapping is released by the garbage collector.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        try {
+            paths.close();
+        } finally {
+            file.close();
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package com.example.jagadish.motion;
+
+import java.util.Arrays;
+
+/**
+ * One recorded segment of a motion event as kept in the event log: when it ran, how much of the
+ * frame was active at the peak, where the motion was, and which clip and snapshots belong to it.
+ */
+
+public class EventRecord {
+    public static final int FLAG_IMPORTANT = 1; // Kept by retention regardless of age or quota
+    public static final int FLAG_DELETED = 2; // Clip removed; the record stays so indices do not move
+    public static final int MAX_SNAPSHOTS = 3;
+    public static final int NO_SNAPSHOT = -1;
+
+    private final long eventId;
+    private final int segment;
+    private final long startMillis;
+    private final long endMillis;
+    private int peakRegions;
+    private int left;
+    private int top;
+    private int right;
+    private int bottom;
+    private int flags;
+    private long bytes;
+    private final int[] snapshots = { NO_SNAPSHOT, NO_SNAPSHOT, NO_SNAPSHOT };
+    private int index = -1;
+    private long pathOffset = -1;
+
+    public EventRecord(long eventId, int segment, long startMillis, long endMillis) {
+        if (segment < 0) throw new IllegalArgumentException("Negative segment: " + segment);
+        if (endMillis < startMillis) throw new IllegalArgumentException("Ends before it starts: " + startMillis + " to " + endMillis);
+
+        this.eventId = eventId;
+        this.segment = segment;
+        this.startMillis = startMillis;
+        this.endMillis = endMillis;
+    }
+
+    public long getEventId() {
+        return eventId;
+    }
+
+    public int getSegment() {
+        return segment;
+    }
+
+    public long getStartMillis() {
+        return startMillis;
+    }
+
+    public long getEndMillis() {
+        return endMillis;
+    }
+
+    /**
+     * @return Most detection grid regions active in any one frame of the segment.
+     */
+    public int getPeakRegions() {
+        return peakRegions;
+    }
+
+    public void setPeakRegions(int peakRegions) {
+        this.peakRegions = peakRegions;
+    }
+
+    /**
+     * Bounding box of all motion in the segment, in preview pixels, right and bottom exclusive.
+     */
+    public void setBounds(int left, int top, int right, int bottom) {
+        this.left = left;
+        this.top = top;
+        this.right = right;
+        this.bottom = bottom;
+    }
+
+    public int getLeft() {
+        return left;
+    }
+
+    public int getTop() {
+        return top;
+    }
+
+    public int getRight() {
+        return right;
+    }
+
+    public int getBottom() {
+        return bottom;
+    }
+
+    public int getFlags() {
+        return flags;
+    }
+
+    public void setFlags(int flags) {
+        this.flags = flags;
+    }
+
+    public boolean isImportant() {
+        return (flags & FLAG_IMPORTANT) != 0;
+    }
+
+    public boolean isDeleted() {
+        return (flags & FLAG_DELETED) != 0;
+    }
+
+    /**
+     * @return Size of the event's clip when it was logged, or 0 if unknown.
+     */
+    public long getBytes() {
+        return bytes;
+    }
+
+    public void setBytes(long bytes) {
+        if (bytes < 0) throw new IllegalArgumentException("Negative size: " + bytes);
+        this.bytes = bytes;
+    }
+
+    /**
+     * @param ids
+     *            Up to MAX_SNAPSHOTS snapshot ids; the rest are cleared.
+     */
+    public void setSnapshots(int... ids) {
+        if (ids.length > MAX_SNAPSHOTS) throw new IllegalArgumentException("At most " + MAX_SNAPSHOTS + " snapshots");
+        Arrays.fill(snapshots, NO_SNAPSHOT);
+        System.arraycopy(ids, 0, snapshots, 0, ids.length);
+    }
+
+    /**
+     * @return Snapshot id in a slot, or NO_SNAPSHOT.
+     */
+    public int getSnapshot(int slot) {
+        return snapshots[slot];
+    }
+
+    /**
+     * @return Position in the event log, or -1 if the record has not been appended.
+     */
+    public int getIndex() {
+        return index;
+    }
+
+    long getPathOffset() {
+        return pathOffset;
+    }
+
+    void setLocation(int index, long pathOffset) {
+        this.index = index;
+        this.pathOffset = pathOffset;
+    }
+
+    @Override
+    public String toString() {
+        return "event " + eventId + "/" + segment + " " + startMillis + "-" + endMillis + ", " + peakRegions
+                + " regions at " + left + "," + top + "-" + right + "," + bottom;
+    }
+}
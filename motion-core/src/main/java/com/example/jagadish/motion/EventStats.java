@@ -0,0 +1,64 @@
+package com.example.jagadish.motion;
+
+/**
+ * Gathers what the event log keeps about a segment while it records: the peak number of active
+ * regions and the bounding box of all blobs. Frames are added on the analysis thread and the
+ * summary is taken on another.
+ */
+
+public class EventStats {
+    private long startMillis;
+    private int peakRegions;
+    private int left = Integer.MAX_VALUE;
+    private int top = Integer.MAX_VALUE;
+    private int right;
+    private int bottom;
+
+    /**
+     * Start a new segment.
+     */
+    public synchronized void reset(long nowMillis) {
+        startMillis = nowMillis;
+        peakRegions = 0;
+        left = Integer.MAX_VALUE;
+        top = Integer.MAX_VALUE;
+        right = 0;
+        bottom = 0;
+    }
+
+    /**
+     * Add the result of the detector's last analysed frame.
+     */
+    public void add(MotionDetection detection) {
+        int active = 0;
+        for (boolean[] row : detection.getActiveRegions()) {
+            for (boolean region : row) {
+                if (region) active++;
+            }
+        }
+
+        synchronized (this) {
+            peakRegions = Math.max(peakRegions, active);
+            for (int i = 0; i < detection.getBlobCount(); i++) {
+                Blob blob = detection.getBlob(i);
+                left = Math.min(left, blob.getLeft());
+                top = Math.min(top, blob.getTop());
+                right = Math.max(right, blob.getRight());
+                bottom = Math.max(bottom, blob.getBottom());
+            }
+        }
+    }
+
+    /**
+     * Summarise the segment so far and start the next one.
+     */
+    public synchronized EventRecord take(long eventId, int segment, long nowMillis) {
+        EventRecord record = new EventRecord(eventId, segment, startMillis, Math.max(startMillis, nowMillis));
+        record.setPeakRegions(peakRegions);
+        if (right > left && bottom > top) {
+            record.setBounds(left, top, right, bottom);
+        }
+        reset(nowMillis);
+        return record;
+    }
+}
@@ -0,0 +1,211 @@
+package com.example.jagadish.motion;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs motion detection on a dedicated thread, fed through a single slot.
+ * A new frame replaces any frame still waiting in the slot, so a slow pass drops stale frames
+ * instead of building a queue. Every frame, analysed or dropped, is handed back to the recycler.
+ * A runtime exception from the detector, the sink or the listener fails only that frame: it is
+ * counted and kept for the owner to log, and the thread carries on with the next frame.
+ */
+
+public class FrameAnalyzer implements Runnable {
+
+    public interface Listener {
+        /**
+         * Called on the analysis thread after each frame; must not block.
+         *
+         * @param motion
+         *            True if the detector reported motion.
+         */
+        void onFrameAnalyzed(boolean motion);
+    }
+
+    public interface FrameRecycler {
+        void recycle(byte[] frame);
+    }
+
+    public interface FrameSink {
+        /**
+         * Called on the analysis thread with each analysed frame before it is recycled, while the
+         * detector still holds its results; copy what must be kept and do not block.
+         */
+        void onFrame(byte[] frame, boolean motion);
+    }
+
+    private final InterMotionDetection detector;
+    private final int width;
+    private final int height;
+    private final Listener listener;
+    private final FrameRecycler recycler;
+
+    private final Object lock = new Object();
+    private byte[] pending;
+    private boolean running;
+    private Thread thread;
+
+    private final AtomicLong processedFrames = new AtomicLong();
+    private final AtomicLong droppedFrames = new AtomicLong();
+    private final AtomicLong failedFrames = new AtomicLong();
+    private volatile RuntimeException lastError;
+    private volatile long lastAnalysisNanos;
+    private volatile FrameSink sink;
+
+    public FrameAnalyzer(InterMotionDetection detector, int width, int height,
+                         Listener listener, FrameRecycler recycler) {
+        if (detector == null || listener == null || recycler == null) throw new NullPointerException();
+
+        this.detector = detector;
+        this.width = width;
+        this.height = height;
+        this.listener = listener;
+        this.recycler = recycler;
+    }
+
+    public void start() {
+        synchronized (lock) {
+            if (running) return;
+            running = true;
+            thread = new Thread(this, "FrameAnalyzer");
+            thread.start();
+        }
+    }
+
+    /**
+     * Stop the analysis thread and wait for it to finish, recycling any frame still pending.
+     * No recycler call happens after this returns.
+     */
+    public void stop() {
+        Thread t;
+        byte[] stale;
+        synchronized (lock) {
+            if (!running) return;
+            running = false;
+            t = thread;
+            thread = null;
+            stale = pending;
+            pending = null;
+            lock.notifyAll();
+        }
+
+        boolean interrupted = false;
+        while (t.isAlive()) {
+            try {
+                t.join();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) Thread.currentThread().interrupt();
+
+        if (stale != null) recycler.recycle(stale);
+    }
+
+    /**
+     * Hand a frame to the analysis thread without blocking.
+     *
+     * @param frame
+     *            Preview buffer; ownership passes to the analyzer until it is recycled.
+     */
+    public void submit(byte[] frame) {
+        if (frame == null) throw new NullPointerException();
+
+        byte[] stale;
+        synchronized (lock) {
+            if (!running) {
+                stale = frame;
+            } else {
+                stale = pending;
+                pending = frame;
+                lock.notifyAll();
+            }
+        }
+
+        if (stale != null) {
+            droppedFrames.incrementAndGet();
+            recycler.recycle(stale);
+        }
+    }
+
+    /**
+     * @param sink
+     *            Receives analysed frames, or null for none.
+     */
+    public void setFrameSink(FrameSink sink) {
+        this.sink = sink;
+    }
+
+    public long getProcessedFrames() {
+        return processedFrames.get();
+    }
+
+    public long getDroppedFrames() {
+        return droppedFrames.get();
+    }
+
+    /**
+     * @return Frames whose analysis threw.
+     */
+    public long getFailedFrames() {
+        return failedFrames.get();
+    }
+
+    /**
+     * @return The exception of the most recent failed frame, or null.
+     */
+    public RuntimeException getLastError() {
+        return lastError;
+    }
+
+    /**
+     * @return Time the detector spent on the most recent frame; read it from the listener for that frame.
+     */
+    public long getLastAnalysisNanos() {
+        return lastAnalysisNanos;
+    }
+
+    @Override
+    public void run() {
+        while (true) {
+            byte[] frame;
+            synchronized (lock) {
+                while (running && pending == null) {
+                    try {
+                        lock.wait();
+                    } catch (InterruptedException e) {
+                        // Only stop() ends the loop
+                    }
+                }
+                if (!running) return;
+                frame = pending;
+                pending = null;
+            }
+
+            boolean motion;
+            long start = System.nanoTime();
+            try {
+                motion = detector.detect(frame, width, height);
+                lastAnalysisNanos = System.nanoTime() - start;
+                FrameSink current = sink;
+                if (current != null) current.onFrame(frame, motion);
+            } catch (RuntimeException e) {
+                fail(e);
+                continue;
+            } finally {
+                recycler.recycle(frame);
+            }
+            processedFrames.incrementAndGet();
+            try {
+                listener.onFrameAnalyzed(motion);
+            } catch (RuntimeException e) {
+                fail(e);
+            }
+        }
+    }
+
+    private void fail(RuntimeException e) {
+        lastError = e;
+        failedFrames.incrementAndGet();
+    }
+}
@@ -0,0 +1,83 @@
+package com.example.jagadish.motion;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+
+/**
+ * Fixed pool of preview buffers handed to the camera through addCallbackBuffer.
+ * Every buffer goes back through the pool after its frame, so once the pool is primed the capture
+ * path allocates nothing. A buffer the pool did not hand out is not taken back, and the one that
+ * replaces it is counted as an allocation; the allocation counter shows whether that holds in practice.
+ */
+
+public class FrameBufferPool {
+    private final int bufferSize;
+    private final ArrayDeque<byte[]> free;
+    private final Set<byte[]> owned = Collections.newSetFromMap(new IdentityHashMap<>());
+    private long allocations;
+
+    /**
+     * @param bufferSize
+     *            Size in bytes of one preview frame.
+     * @param count
+     *            Number of buffers to allocate up front.
+     */
+    public FrameBufferPool(int bufferSize, int count) {
+        if (bufferSize <= 0 || count <= 0) {
+            throw new IllegalArgumentException("Invalid pool of " + count + " x " + bufferSize + " bytes");
+        }
+        this.bufferSize = bufferSize;
+        this.free = new ArrayDeque<>(count);
+        for (int i = 0; i < count; i++) {
+            free.push(allocate());
+        }
+    }
+
+    public int getBufferSize() {
+        return bufferSize;
+    }
+
+    /**
+     * Take a buffer from the pool, allocating only if the pool has run dry.
+     *
+     * @return byte array of getBufferSize() bytes.
+     */
+    public synchronized byte[] acquire() {
+        byte[] buffer = free.poll();
+        return buffer != null ? buffer : allocate();
+    }
+
+    /**
+     * Return a buffer to the pool. Buffers the pool did not hand out are dropped.
+     *
+     * @param buffer
+     *            Buffer previously obtained from acquire().
+     */
+    public synchronized void release(byte[] buffer) {
+        if (buffer == null) throw new NullPointerException();
+
+        if (owned.contains(buffer)) {
+            free.push(buffer);
+        }
+    }
+
+    public synchronized int getFreeCount() {
+        return free.size();
+    }
+
+    /**
+     * @return Total number of buffers this pool has ever allocated, including the initial ones.
+     */
+    public synchronized long getAllocationCount() {
+        return allocations;
+    }
+
+    private byte[] allocate() {
+        allocations++;
+        byte[] buffer = new byte[bufferSize];
+        owned.add(buffer);
+        return buffer;
+    }
+}
@@ -0,0 +1,26 @@
+package com.example.jagadish.motion;
+
+/**
+ * Layout of a raw frame file, a capture of preview frames for offline replay.
+ * <p>
+ * A 32 byte big-endian header holds the magic, the version, width, height, the YUV layout as one of
+ * the ImageProcessing format constants and the frame size in bytes. Fixed-size records follow,
+ * each a timestamp in nanoseconds and then the frame. A record cut short by a crash is ignored.
+ */
+
+public final class FrameFile {
+    public static final int MAGIC = 0x4d46524d; // "MFRM"
+    public static final int VERSION = 1;
+    public static final int HEADER_SIZE = 32;
+    public static final int TIMESTAMP_SIZE = 8;
+
+    private FrameFile() {
+    }
+
+    /**
+     * @return Bytes in one frame of a 4:2:0 layout.
+     */
+    public static int frameSize(int width, int height) {
+        return width * height + 2 * (((width + 1) / 2) * ((height + 1) / 2));
+    }
+}
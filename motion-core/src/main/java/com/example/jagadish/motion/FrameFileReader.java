@@ -0,0 +1,134 @@
+package com.example.jagadish.motion;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Memory-mapped, random access reader of a raw frame file. Frames are copied straight from the
+ * page cache into a caller buffer, so replay is limited by the detector rather than by I/O.
+ * Files over 2 GB are mapped as several windows, each holding whole records.
+ */
+
+public class FrameFileReader implements Closeable {
+    private final RandomAccessFile file;
+    private final int width;
+    private final int height;
+    private final int format;
+    private final int frameSize;
+    private final int recordSize;
+    private final int frameCount;
+    private final int framesPerWindow;
+    private final MappedByteBuffer[] windows;
+
+    public FrameFileReader(File path) throws IOException {
+        if (path == null) throw new NullPointerException();
+
+        this.file = new RandomAccessFile(path, "r");
+        try {
+            FileChannel channel = file.getChannel();
+            ByteBuffer header = ByteBuffer.allocate(FrameFile.HEADER_SIZE);
+            while (header.hasRemaining() && channel.read(header, header.position()) > 0) {
+                // Keep reading until the header is complete or the file ends
+            }
+            header.flip();
+            if (header.remaining() < FrameFile.HEADER_SIZE || header.getInt() != FrameFile.MAGIC) {
+                throw new IOException("Not a frame file: " + path);
+            }
+            int version = header.getInt();
+            if (version != FrameFile.VERSION) throw new IOException("Unsupported frame file version " + version);
+            this.width = header.getInt();
+            this.height = header.getInt();
+            this.format = header.getInt();
+            this.frameSize = header.getInt();
+            if (width <= 0 || height <= 0 || frameSize != FrameFile.frameSize(width, height)) {
+                throw new IOException("Corrupt frame file header: " + width + "x" + height + ", " + frameSize + " bytes");
+            }
+
+            this.recordSize = FrameFile.TIMESTAMP_SIZE + frameSize;
+            long records = (channel.size() - FrameFile.HEADER_SIZE) / recordSize;
+            this.frameCount = (int) Math.min(Integer.MAX_VALUE, Math.max(0, records));
+            this.framesPerWindow = Math.max(1, Integer.MAX_VALUE / recordSize);
+
+            int windowCount = (frameCount + framesPerWindow - 1) / framesPerWindow;
+            this.windows = new MappedByteBuffer[windowCount];
+            for (int i = 0; i < windowCount; i++) {
+                long first = (long) i * framesPerWindow;
+                int frames = (int) Math.min(framesPerWindow, frameCount - first);
+                windows[i] = channel.map(FileChannel.MapMode.READ_ONLY,
+                        FrameFile.HEADER_SIZE + first * recordSize, (long) frames * recordSize);
+            }
+        } catch (IOException | RuntimeException e) {
+            file.close();
+            throw e;
+        }
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * @return Layout of the frames, one of the ImageProcessing format constants.
+     */
+    public int getFormat() {
+        return format;
+    }
+
+    public int getFrameSize() {
+        return frameSize;
+    }
+
+    public int getFrameCount() {
+        return frameCount;
+    }
+
+    public long getTimestamp(int index) {
+        checkIndex(index);
+        return windows[index / framesPerWindow].getLong((index % framesPerWindow) * recordSize);
+    }
+
+    /**
+     * Copy one frame into a buffer.
+     *
+     * @param dst
+     *            Buffer of at least getFrameSize() bytes, or null to allocate one.
+     * @return The buffer holding the frame.
+     */
+    public byte[] readFrame(int index, byte[] dst) {
+        checkIndex(index);
+        if (dst == null) {
+            dst = new byte[frameSize];
+        } else if (dst.length < frameSize) {
+            throw new IllegalArgumentException("Buffer of " + dst.length + " bytes, expected " + frameSize);
+        }
+
+        // Duplicate so concurrent readers do not share a position
+        ByteBuffer window = windows[index / framesPerWindow].duplicate();
+        window.position((index % framesPerWindow) * recordSize + FrameFile.TIMESTAMP_SIZE);
+        window.get(dst, 0, frameSize);
+        return dst;
+    }
+
+    /**
+     * Close the file. Mapped windows are released by the garbage collector.
+     */
+    @Override
+    public void close() throws IOException {
+        file.close();
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= frameCount) {
+            throw new IndexOutOfBoundsException("Frame " + index + " of " + frameCount);
+        }
+    }
+}
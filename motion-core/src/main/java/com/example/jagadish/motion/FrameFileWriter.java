@@ -0,0 +1,66 @@
+package com.example.jagadish.motion;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/**
+ * Appends preview frames to a raw frame file. Not thread safe; feed it from one thread.
+ */
+
+public class FrameFileWriter implements Closeable {
+    private final DataOutputStream out;
+    private final int frameSize;
+    private int frameCount;
+
+    /**
+     * @param format
+     *            Layout of the frames, one of the ImageProcessing format constants.
+     */
+    public FrameFileWriter(File file, int width, int height, int format) throws IOException {
+        if (file == null) throw new NullPointerException();
+        if (width <= 0 || height <= 0) throw new IllegalArgumentException("Invalid size " + width + "x" + height);
+        if (format < ImageProcessing.NV21 || format > ImageProcessing.I420) {
+            throw new IllegalArgumentException("Unknown YUV format " + format);
+        }
+
+        this.frameSize = FrameFile.frameSize(width, height);
+        this.out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16));
+        out.writeInt(FrameFile.MAGIC);
+        out.writeInt(FrameFile.VERSION);
+        out.writeInt(width);
+        out.writeInt(height);
+        out.writeInt(format);
+        out.writeInt(frameSize);
+        out.write(new byte[FrameFile.HEADER_SIZE - 6 * 4]);
+    }
+
+    /**
+     * @param frame
+     *            Frame whose first frame size bytes are written; camera buffers may be longer.
+     * @param timestampNanos
+     *            Capture time of the frame.
+     */
+    public void append(byte[] frame, long timestampNanos) throws IOException {
+        if (frame == null) throw new NullPointerException();
+        if (frame.length < frameSize) {
+            throw new IllegalArgumentException("Frame of " + frame.length + " bytes, expected " + frameSize);
+        }
+
+        out.writeLong(timestampNanos);
+        out.write(frame, 0, frameSize);
+        frameCount++;
+    }
+
+    public int getFrameCount() {
+        return frameCount;
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+}
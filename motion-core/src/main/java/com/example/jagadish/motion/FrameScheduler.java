@@ -0,0 +1,154 @@
+package com.example.jagadish.motion;
+
+import java.util.Locale;
+
+/**
+ * Decides which preview frames are analysed. While the scene is quiet only every Nth frame is
+ * analysed; as soon as an analysed frame shows motion or coarse activity every frame is analysed
+ * again, so detection is delayed by at most N - 1 frame periods.
+ * Frames are offered on the camera thread and results reported on the analysis thread.
+ */
+
+public class FrameScheduler {
+    private static final int DEFAULT_IDLE_INTERVAL = 5; // Analyse one frame in five while idle
+    private static final int DEFAULT_QUIET_FRAMES = 150; // Quiet analysed frames before idling, 5 s at 30 fps
+    private static final float DEFAULT_ACTIVITY_THRESHOLD = 0.02f; // Coarse activity that restores full rate
+    private static final long WINDOW_NANOS = 5000000000L; // Effective frame rate is measured over 5 s
+
+    private final int idleInterval;
+    private final int quietFramesBeforeIdle;
+    private final float activityThreshold;
+
+    private boolean idle;
+    private int quietFrames;
+    private int sinceAnalysed;
+
+    private long offeredFrames;
+    private long analysedFrames;
+    private long skippedFrames;
+    private long averageAnalysisNanos;
+    private long savedNanos;
+
+    private long windowStart = -1;
+    private int windowFrames;
+    private float effectiveFps;
+
+    public FrameScheduler() {
+        this(DEFAULT_IDLE_INTERVAL, DEFAULT_QUIET_FRAMES, DEFAULT_ACTIVITY_THRESHOLD);
+    }
+
+    /**
+     * @param idleInterval
+     *            While idle, analyse one frame out of this many.
+     * @param quietFramesBeforeIdle
+     *            Consecutive quiet analysed frames before dropping to the idle rate.
+     * @param activityThreshold
+     *            Activity score, as reported by the detector, that restores the full rate.
+     */
+    public FrameScheduler(int idleInterval, int quietFramesBeforeIdle, float activityThreshold) {
+        if (idleInterval < 1) throw new IllegalArgumentException("Idle interval must be positive: " + idleInterval);
+        if (quietFramesBeforeIdle < 1) {
+            throw new IllegalArgumentException("Quiet frames must be positive: " + quietFramesBeforeIdle);
+        }
+        this.idleInterval = idleInterval;
+        this.quietFramesBeforeIdle = quietFramesBeforeIdle;
+        this.activityThreshold = activityThreshold;
+    }
+
+    /**
+     * Called for every preview frame before it is handed to the analyzer.
+     *
+     * @return True if the frame should be analysed, false to recycle it straight away.
+     */
+    public boolean shouldAnalyse() {
+        return shouldAnalyse(System.nanoTime());
+    }
+
+    synchronized boolean shouldAnalyse(long now) {
+        offeredFrames++;
+        boolean analyse = !idle || ++sinceAnalysed >= idleInterval;
+        if (analyse) {
+            sinceAnalysed = 0;
+            windowFrames++;
+        } else {
+            skippedFrames++;
+            savedNanos += averageAnalysisNanos;
+        }
+
+        if (windowStart < 0) {
+            windowStart = now;
+        } else if (now - windowStart >= WINDOW_NANOS) {
+            effectiveFps = windowFrames * 1e9f / (now - windowStart);
+            windowStart = now;
+            windowFrames = 0;
+        }
+        return analyse;
+    }
+
+    /**
+     * Report the result of an analysed frame.
+     *
+     * @param motion
+     *            True if the detector reported motion.
+     * @param activity
+     *            Coarse activity score of the frame, 0 for a still scene.
+     * @param analysisNanos
+     *            Time the analysis took, used to estimate the CPU time skipped frames save.
+     */
+    public synchronized void onAnalysed(boolean motion, float activity, long analysisNanos) {
+        analysedFrames++;
+        // Running average over about 16 frames
+        averageAnalysisNanos += (analysisNanos - averageAnalysisNanos) / 16;
+
+        if (motion || activity > activityThreshold) {
+            idle = false;
+            quietFrames = 0;
+        } else if (!idle && ++quietFrames >= quietFramesBeforeIdle) {
+            idle = true;
+            sinceAnalysed = 0;
+        }
+    }
+
+    public synchronized boolean isIdle() {
+        return idle;
+    }
+
+    /**
+     * @return Preview frames that may pass before one is analysed, the bound on added detection latency.
+     */
+    public int getMaxSkippedFrames() {
+        return idleInterval - 1;
+    }
+
+    public synchronized long getOfferedFrames() {
+        return offeredFrames;
+    }
+
+    public synchronized long getAnalysedFrames() {
+        return analysedFrames;
+    }
+
+    public synchronized long getSkippedFrames() {
+        return skippedFrames;
+    }
+
+    /**
+     * @return Frames analysed per second over the last complete measurement window.
+     */
+    public synchronized float getEffectiveFps() {
+        return effectiveFps;
+    }
+
+    /**
+     * @return Estimated analysis time not spent because frames were skipped.
+     */
+    public synchronized long getSavedNanos() {
+        return savedNanos;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format(Locale.US, "%s, %.1f fps analysed, %d skipped, %d ms saved",
+                idle ? "idle" : "full rate", effectiveFps, skippedFrames, savedNanos / 1000000L);
+    }
+}
@@ -0,0 +1,152 @@
+package com.example.jagadish.motion;
+
+import java.io.IOException;
+import java.util.concurrent.Executor;
+
+/**
+ * Keeps one expensive resource, such as an opened clip file, prepared ahead of the moment it is
+ * needed. take() hands over the prepared one without waiting and starts preparing the next in the
+ * background. Only when nothing is ready does the caller pay for preparation itself.
+ */
+
+public class HotStandby<T> {
+    public interface Factory<T> {
+        /**
+         * Build a ready-to-use resource. Runs on the background executor, or on the caller after a miss.
+         */
+        public T prepare() throws IOException;
+
+        /**
+         * Free a prepared resource that will never be used.
+         */
+        public void discard(T item);
+    }
+
+    private final Factory<T> factory;
+    private final Executor executor;
+    private T ready;
+    private boolean preparing;
+    private boolean closed;
+    private IOException lastError;
+    private long hits;
+    private long misses;
+
+    /**
+     * @param executor
+     *            Runs the background preparation, typically a single low-priority thread.
+     */
+    public HotStandby(Factory<T> factory, Executor executor) {
+        if (factory == null || executor == null) throw new NullPointerException();
+
+        this.factory = factory;
+        this.executor = executor;
+    }
+
+    /**
+     * Start preparing in the background unless a resource is ready or on its way.
+     */
+    public synchronized void arm() {
+        if (closed || ready != null || preparing) return;
+
+        preparing = true;
+        executor.execute(this::prepareInBackground);
+    }
+
+    private void prepareInBackground() {
+        T item = null;
+        IOException error = null;
+        boolean unwanted;
+        try {
+            item = prepare();
+        } catch (IOException e) {
+            error = e;
+        } finally {
+            // Even an error escaping prepare() must not leave take() waiting for this preparation
+            synchronized (this) {
+                preparing = false;
+                lastError = error;
+                unwanted = closed;
+                if (!unwanted) ready = item;
+                notifyAll();
+            }
+        }
+        if (unwanted && item != null) factory.discard(item);
+    }
+
+    // Unchecked failures of the factory are reported like any other
+    private T prepare() throws IOException {
+        try {
+            return factory.prepare();
+        } catch (RuntimeException e) {
+            throw new IOException("Preparation failed: " + e, e);
+        }
+    }
+
+    /**
+     * Take the prepared resource and re-arm. If none is ready, waits for one in progress or prepares
+     * one on the calling thread.
+     */
+    public T take() throws IOException {
+        T item;
+        synchronized (this) {
+            if (closed) throw new IllegalStateException("Standby closed");
+            if (ready != null) {
+                hits++;
+            } else {
+                misses++;
+                // A preparation already under way is closer to done than a fresh one
+                while (preparing && ready == null) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        break;
+                    }
+                }
+            }
+            item = ready;
+            ready = null;
+        }
+        if (item == null) item = prepare();
+        arm();
+        return item;
+    }
+
+    public synchronized boolean isReady() {
+        return ready != null;
+    }
+
+    /**
+     * @return Takes served without waiting.
+     */
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    /**
+     * @return Takes that found nothing ready.
+     */
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * @return The failure of the last background preparation, or null.
+     */
+    public synchronized IOException getLastError() {
+        return lastError;
+    }
+
+    /**
+     * Stop re-arming and discard the prepared resource. A preparation in progress is discarded when it finishes.
+     */
+    public void close() {
+        T item;
+        synchronized (this) {
+            closed = true;
+            item = ready;
+            ready = null;
+        }
+        if (item != null) factory.discard(item);
+    }
+}
@@ -0,0 +1,396 @@
+package com.example.jagadish.motion;
+
+/**
+ * Created by jagadish on 3/13/2017.
+ */
+
+public abstract class ImageProcessing {
+    /**
+     * Decode a YUV420SP image to RGB.
+     * Reference : https://code.google.com/p/android/issues/detail?id=823
+     *
+     * @param yuv420sp
+     *            Byte array representing a YUV420SP image.
+     * @param width
+     *            Width of the image.
+     * @param height
+     *            Height of the image.
+     * @return Integer array representing the RGB image.
+     * @throws NullPointerException
+     *             if yuv420sp byte array is NULL.
+     */
+
+    public static final int A = 0;
+    public static final int R = 1;
+    public static final int G = 2;
+    public static final int B = 3;
+
+    public static final int H = 0;
+    public static final int S = 1;
+    public static final int L = 2;
+
+    // YUV 4:2:0 layouts understood by decodeYUV420
+    public static final int NV21 = 0; // Y plane, then interleaved V and U
+    public static final int NV12 = 1; // Y plane, then interleaved U and V
+    public static final int YV12 = 2; // Y plane, then V plane, then U plane
+    public static final int I420 = 3; // Y plane, then U plane, then V plane
+
+    // BT.601 coefficients scaled by 1024, one entry per sample value
+    private static final int[] RV_TABLE = table(1634, 128);
+    private static final int[] GV_TABLE = table(833, 128);
+    private static final int[] GU_TABLE = table(400, 128);
+    private static final int[] BU_TABLE = table(2066, 128);
+    private static final int[] Y_TABLE = new int[256];
+    // Channel values scaled by 1024 and shifted down land in [-259, 534]
+    private static final int CLAMP_OFFSET = 384;
+    private static final int[] CLAMP_TABLE = new int[1024];
+
+    static {
+        for (int i = 0; i < 256; i++) {
+            Y_TABLE[i] = 1192 * Math.max(0, i - 16);
+        }
+        for (int i = 0; i < CLAMP_TABLE.length; i++) {
+            CLAMP_TABLE[i] = Math.max(0, Math.min(255, i - CLAMP_OFFSET));
+        }
+    }
+
+    private ImageProcessing() {
+    }
+
+    /**
+     * Get RGB values from pixel.
+     *
+     * @param pixel
+     *            Integer representation of a pixel.
+     * @return float array of a,r,g,b values.
+     */
+    public static float[] getARGB(int pixel) {
+        int a = (pixel >> 24) & 0xff;
+        int r = (pixel >> 16) & 0xff;
+        int g = (pixel >> 8) & 0xff;
+        int b = (pixel) & 0xff;
+        return (new float[] { a, r, g, b });
+    }
+    /**
+     * Decode a YUV420SP (NV21) image to RGB into a new array. Prefer
+     * {@link #decodeYUV420(byte[], int, int, int, int, int, int[], int, int)} with a reused buffer.
+     */
+    public static int[] decodeYUV420SPtoRGB(byte[] yuv420sp, int width, int height) {
+        if (yuv420sp == null) throw new NullPointerException();
+
+        int[] rgb = new int[width * height];
+        decodeYUV420(yuv420sp, NV21, width, height, rgb);
+        return rgb;
+    }
+
+    /**
+     * Decode a tightly packed YUV 4:2:0 image to opaque ARGB.
+     *
+     * @param yuv
+     *            Byte array holding the image.
+     * @param format
+     *            One of {@link #NV21}, {@link #NV12}, {@link #YV12} or {@link #I420}.
+     * @param rgb
+     *            Destination of at least width * height pixels, row after row.
+     */
+    public static void decodeYUV420(byte[] yuv, int format, int width, int height, int[] rgb) {
+        int uvStride = format == NV21 || format == NV12 ? width : (width + 1) / 2;
+        decodeYUV420(yuv, format, width, height, width, uvStride, rgb, 0, height);
+    }
+
+    /**
+     * Decode rows [top, bottom) of a YUV 4:2:0 image to opaque ARGB using BT.601 studio swing.
+     * Nothing is allocated, and disjoint row ranges may be decoded on different threads.
+     * Camera YV12 previews pad both strides to multiples of 16.
+     *
+     * @param yuv
+     *            Byte array holding the image.
+     * @param format
+     *            One of {@link #NV21}, {@link #NV12}, {@link #YV12} or {@link #I420}.
+     * @param yStride
+     *            Bytes per row of the Y plane.
+     * @param uvStride
+     *            Bytes per row of the chroma plane, or of each chroma plane for planar formats.
+     * @param rgb
+     *            Destination of at least width * height pixels, row after row; only the range is written.
+     * @throws NullPointerException
+     *             if yuv or rgb is NULL.
+     */
+    public static void decodeYUV420(byte[] yuv, int format, int width, int height, int yStride, int uvStride,
+                                    int[] rgb, int top, int bottom) {
+        if (yuv == null || rgb == null) throw new NullPointerException();
+        if (top < 0 || bottom > height || top > bottom) {
+            throw new IllegalArgumentException("Rows " + top + " to " + bottom + " outside height " + height);
+        }
+
+        int chromaWidth = (width + 1) / 2;
+        int chromaHeight = (height + 1) / 2;
+        int ySize = yStride * height;
+        // Offset of the first U and V sample and the distance between neighbouring samples
+        int uOffset;
+        int vOffset;
+        int step;
+        switch (format) {
+            case NV21:
+                vOffset = ySize;
+                uOffset = ySize + 1;
+                step = 2;
+                break;
+            case NV12:
+                uOffset = ySize;
+                vOffset = ySize + 1;
+                step = 2;
+                break;
+            case YV12:
+                vOffset = ySize;
+                uOffset = ySize + uvStride * chromaHeight;
+                step = 1;
+                break;
+            case I420:
+                uOffset = ySize;
+                vOffset = ySize + uvStride * chromaHeight;
+                step = 1;
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown YUV format " + format);
+        }
+        if (yStride < width || uvStride < chromaWidth * step) {
+            throw new IllegalArgumentException("Strides " + yStride + ", " + uvStride + " too small for width " + width);
+        }
+        if (yuv.length < Math.max(uOffset, vOffset) + uvStride * (chromaHeight - 1) + step * (chromaWidth - 1) + 1
+                || rgb.length < width * height) {
+            throw new IllegalArgumentException("Buffers too small for " + width + "x" + height);
+        }
+
+        final int[] luma = Y_TABLE;
+        final int[] clamp = CLAMP_TABLE;
+        for (int j = top; j < bottom; j++) {
+            int yp = j * yStride;
+            int out = j * width;
+            int chromaRow = (j >> 1) * uvStride;
+            int up = uOffset + chromaRow;
+            int vp = vOffset + chromaRow;
+            for (int i = 0; i < width; i += 2, up += step, vp += step) {
+                int u = yuv[up] & 0xff;
+                int v = yuv[vp] & 0xff;
+                int rv = RV_TABLE[v];
+                int guv = GV_TABLE[v] + GU_TABLE[u];
+                int bu = BU_TABLE[u];
+
+                int y = luma[yuv[yp++] & 0xff];
+                rgb[out++] = 0xff000000 | (clamp[((y + rv) >> 10) + CLAMP_OFFSET] << 16)
+                        | (clamp[((y - guv) >> 10) + CLAMP_OFFSET] << 8) | clamp[((y + bu) >> 10) + CLAMP_OFFSET];
+                if (i + 1 < width) {
+                    y = luma[yuv[yp++] & 0xff];
+                    rgb[out++] = 0xff000000 | (clamp[((y + rv) >> 10) + CLAMP_OFFSET] << 16)
+                            | (clamp[((y - guv) >> 10) + CLAMP_OFFSET] << 8) | clamp[((y + bu) >> 10) + CLAMP_OFFSET];
+                }
+            }
+        }
+    }
+
+    private static int[] table(int scale, int bias) {
+        int[] table = new int[256];
+        for (int i = 0; i < 256; i++) {
+            table[i] = scale * (i - bias);
+        }
+        return table;
+    }
+
+    /**
+     * Rotate an NV21 image clockwise without leaving the YUV domain.
+     *
+     * @param src
+     *            NV21 image of even width and height.
+     * @param degrees
+     *            0, 90, 180 or 270. For 90 and 270 the result is height wide and width high.
+     * @param dst
+     *            Destination of at least width * height * 3 / 2 bytes; must not be src.
+     */
+    public static void rotateNV21(byte[] src, int width, int height, int degrees, byte[] dst) {
+        checkNV21(src, width, height);
+        if (dst == null) throw new NullPointerException();
+        if (dst == src) throw new IllegalArgumentException("Cannot rotate in place");
+        if (dst.length < nv21Size(width, height)) throw new IllegalArgumentException("Destination too small");
+        if (degrees != 0 && degrees != 90 && degrees != 180 && degrees != 270) {
+            throw new IllegalArgumentException("Rotation must be a multiple of 90 degrees: " + degrees);
+        }
+
+        int frameSize = width * height;
+        rotatePlane(src, 0, width, height, 1, degrees, dst, 0);
+        // VU pairs rotate as units so the byte order within each pair is kept
+        rotatePlane(src, frameSize, width / 2, height / 2, 2, degrees, dst, frameSize);
+    }
+
+    private static void rotatePlane(byte[] src, int srcOffset, int width, int height, int pixelBytes, int degrees,
+                                    byte[] dst, int dstOffset) {
+        if (degrees == 0) {
+            System.arraycopy(src, srcOffset, dst, dstOffset, width * height * pixelBytes);
+            return;
+        }
+        if (degrees == 180) {
+            int out = dstOffset;
+            for (int in = srcOffset + (width * height - 1) * pixelBytes; in >= srcOffset; in -= pixelBytes) {
+                for (int b = 0; b < pixelBytes; b++) {
+                    dst[out++] = src[in + b];
+                }
+            }
+            return;
+        }
+
+        // Write the destination row by row; a destination row is a source column
+        int out = dstOffset;
+        for (int row = 0; row < width; row++) {
+            int x = degrees == 90 ? row : width - 1 - row;
+            int y = degrees == 90 ? height - 1 : 0;
+            int step = degrees == 90 ? -width * pixelBytes : width * pixelBytes;
+            int in = srcOffset + (y * width + x) * pixelBytes;
+            for (int col = 0; col < height; col++, in += step) {
+                for (int b = 0; b < pixelBytes; b++) {
+                    dst[out++] = src[in + b];
+                }
+            }
+        }
+    }
+
+    /**
+     * Copy a rectangle out of an NV21 image at full resolution. The rectangle is moved to even
+     * coordinates and must have an even size, so chroma samples stay aligned.
+     *
+     * @param dst
+     *            Destination of at least cropWidth * cropHeight * 3 / 2 bytes, an NV21 image of the crop.
+     */
+    public static void cropNV21(byte[] src, int width, int height, int left, int top, int cropWidth, int cropHeight,
+                                byte[] dst) {
+        checkNV21(src, width, height);
+        if (dst == null) throw new NullPointerException();
+        left &= ~1;
+        top &= ~1;
+        if (cropWidth <= 0 || cropHeight <= 0 || cropWidth % 2 != 0 || cropHeight % 2 != 0
+                || left < 0 || top < 0 || left + cropWidth > width || top + cropHeight > height) {
+            throw new IllegalArgumentException("Crop " + cropWidth + "x" + cropHeight + " at " + left + "," + top
+                    + " does not fit " + width + "x" + height);
+        }
+        if (dst.length < nv21Size(cropWidth, cropHeight)) throw new IllegalArgumentException("Destination too small");
+
+        for (int y = 0; y < cropHeight; y++) {
+            System.arraycopy(src, (top + y) * width + left, dst, y * cropWidth, cropWidth);
+        }
+        int srcChroma = width * height;
+        int dstChroma = cropWidth * cropHeight;
+        for (int y = 0; y < cropHeight / 2; y++) {
+            System.arraycopy(src, srcChroma + (top / 2 + y) * width + left, dst, dstChroma + y * cropWidth, cropWidth);
+        }
+    }
+
+    /**
+     * Box filter an NV21 image down by 2 or 4 in each direction. Columns and rows that do not fill
+     * a whole output chroma sample are dropped, so the result is an even-sized NV21 image of
+     * (width / factor) & ~1 by (height / factor) & ~1 pixels.
+     *
+     * @param dst
+     *            Destination of at least the output size * 3 / 2 bytes.
+     */
+    public static void downscaleNV21(byte[] src, int width, int height, int factor, byte[] dst) {
+        checkNV21(src, width, height);
+        if (dst == null) throw new NullPointerException();
+        if (factor != 2 && factor != 4) throw new IllegalArgumentException("Factor must be 2 or 4: " + factor);
+        int outWidth = (width / factor) & ~1;
+        int outHeight = (height / factor) & ~1;
+        if (outWidth == 0 || outHeight == 0) {
+            throw new IllegalArgumentException("Factor " + factor + " too large for " + width + "x" + height);
+        }
+        if (dst.length < nv21Size(outWidth, outHeight)) throw new IllegalArgumentException("Destination too small");
+
+        int shift = factor == 2 ? 2 : 4;
+        int round = 1 << (shift - 1);
+        for (int y = 0; y < outHeight; y++) {
+            int out = y * outWidth;
+            for (int x = 0; x < outWidth; x++) {
+                int sum = 0;
+                for (int dy = 0; dy < factor; dy++) {
+                    for (int i = (y * factor + dy) * width + x * factor, end = i + factor; i < end; i++) {
+                        sum += src[i] & 0xff;
+                    }
+                }
+                dst[out + x] = (byte) ((sum + round) >> shift);
+            }
+        }
+
+        // Chroma is already half resolution, so the same factor applies to its V and U samples separately
+        int srcChroma = width * height;
+        int dstChroma = outWidth * outHeight;
+        for (int y = 0; y < outHeight / 2; y++) {
+            int out = dstChroma + y * outWidth;
+            for (int x = 0; x < outWidth / 2; x++) {
+                int v = 0;
+                int u = 0;
+                for (int dy = 0; dy < factor; dy++) {
+                    int in = srcChroma + (y * factor + dy) * width + 2 * x * factor;
+                    for (int dx = 0; dx < factor; dx++, in += 2) {
+                        v += src[in] & 0xff;
+                        u += src[in + 1] & 0xff;
+                    }
+                }
+                dst[out + 2 * x] = (byte) ((v + round) >> shift);
+                dst[out + 2 * x + 1] = (byte) ((u + round) >> shift);
+            }
+        }
+    }
+
+    /**
+     * Repack an NV21 image into another 4:2:0 layout, such as the input format a video encoder accepts.
+     * The Y plane is copied unchanged; only chroma is reordered.
+     *
+     * @param format
+     *            One of {@link #NV21}, {@link #NV12}, {@link #YV12} or {@link #I420}.
+     * @param dst
+     *            Destination of at least width * height * 3 / 2 bytes; must not be src.
+     */
+    public static void convertNV21(byte[] src, int width, int height, int format, byte[] dst) {
+        checkNV21(src, width, height);
+        if (dst == null) throw new NullPointerException();
+        if (dst == src) throw new IllegalArgumentException("Cannot convert in place");
+        if (dst.length < nv21Size(width, height)) throw new IllegalArgumentException("Destination too small");
+
+        int frameSize = width * height;
+        int quarter = frameSize / 4;
+        System.arraycopy(src, 0, dst, 0, frameSize);
+        switch (format) {
+            case NV21:
+                System.arraycopy(src, frameSize, dst, frameSize, 2 * quarter);
+                break;
+            case NV12:
+                for (int i = frameSize, end = frameSize + 2 * quarter; i < end; i += 2) {
+                    dst[i] = src[i + 1];
+                    dst[i + 1] = src[i];
+                }
+                break;
+            case YV12:
+            case I420:
+                int u = format == I420 ? frameSize : frameSize + quarter;
+                int v = format == I420 ? frameSize + quarter : frameSize;
+                for (int i = 0, in = frameSize; i < quarter; i++, in += 2) {
+                    dst[v + i] = src[in];
+                    dst[u + i] = src[in + 1];
+                }
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown YUV format: " + format);
+        }
+    }
+
+    private static int nv21Size(int width, int height) {
+        return width * height * 3 / 2;
+    }
+
+    private static void checkNV21(byte[] nv21, int width, int height) {
+        if (nv21 == null) throw new NullPointerException();
+        if (width <= 0 || height <= 0 || width % 2 != 0 || height % 2 != 0) {
+            throw new IllegalArgumentException("NV21 needs an even size: " + width + "x" + height);
+        }
+        if (nv21.length < nv21Size(width, height)) {
+            throw new IllegalArgumentException("Buffer too small for " + width + "x" + height);
+        }
+    }
+}
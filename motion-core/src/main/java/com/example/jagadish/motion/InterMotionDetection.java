@@ -23,4 +23,18 @@ public interface InterMotionDetection {
      * @return boolean True is there is motion.
      */
     public boolean detect(int[] data, int width, int height);
+
+    /**
+     * Detect motion straight from a camera preview frame, without converting it to RGB.
+     *
+     * @param yuv
+     *            NV21 byte array as delivered by the camera preview callback.
+     *            Only the leading Y plane is read.
+     * @param width
+     *            Width of the image.
+     * @param height
+     *            Height of the image.
+     * @return boolean True is there is motion.
+     */
+    public boolean detect(byte[] yuv, int width, int height);
 }
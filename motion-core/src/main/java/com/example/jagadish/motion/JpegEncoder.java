@@ -0,0 +1,18 @@
+package com.example.jagadish.motion;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Compresses an NV21 image to JPEG, supplied by the platform.
+ */
+
+public interface JpegEncoder {
+    /**
+     * @param quality
+     *            JPEG quality from 0 to 100.
+     * @param out
+     *            Receives the JPEG as it is encoded; not closed.
+     */
+    public void encode(byte[] nv21, int width, int height, int quality, OutputStream out) throws IOException;
+}
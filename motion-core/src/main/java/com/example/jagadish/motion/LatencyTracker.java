@@ -0,0 +1,85 @@
+package com.example.jagadish.motion;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Rolling record of the most recent latencies against a target, such as the time from a motion
+ * decision to the first frame written to the clip.
+ */
+
+public class LatencyTracker {
+    private final long[] samples;
+    private final long targetNanos;
+    private int next;
+    private long count;
+    private long overTarget;
+
+    /**
+     * @param capacity
+     *            Number of recent samples the percentiles are taken over.
+     * @param targetNanos
+     *            Latency above which a sample counts as a miss.
+     */
+    public LatencyTracker(int capacity, long targetNanos) {
+        if (capacity <= 0) throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+
+        this.samples = new long[capacity];
+        this.targetNanos = targetNanos;
+    }
+
+    public synchronized void record(long nanos) {
+        samples[next] = nanos;
+        next = (next + 1) % samples.length;
+        count++;
+        if (nanos > targetNanos) overTarget++;
+    }
+
+    public long getTargetNanos() {
+        return targetNanos;
+    }
+
+    /**
+     * @return Samples recorded since creation, including those no longer in the window.
+     */
+    public synchronized long getCount() {
+        return count;
+    }
+
+    /**
+     * @return Samples since creation that exceeded the target.
+     */
+    public synchronized long getOverTarget() {
+        return overTarget;
+    }
+
+    /**
+     * @return The most recent sample, or 0 if there is none.
+     */
+    public synchronized long getLastNanos() {
+        return count == 0 ? 0 : samples[(next + samples.length - 1) % samples.length];
+    }
+
+    /**
+     * @param percentile
+     *            Between 0 and 100, for example 50 for the median.
+     * @return Latency at that percentile over the recent window, nearest rank.
+     */
+    public synchronized long getPercentileNanos(double percentile) {
+        if (percentile < 0 || percentile > 100) throw new IllegalArgumentException("Percentile " + percentile);
+        int size = (int) Math.min(count, samples.length);
+        if (size == 0) return 0;
+
+        long[] sorted = Arrays.copyOf(samples, size);
+        Arrays.sort(sorted);
+        int rank = (int) Math.ceil(percentile / 100 * size);
+        return sorted[Math.max(0, rank - 1)];
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format(Locale.US, "%d samples, last %.1f ms, p50 %.1f ms, p95 %.1f ms, max %.1f ms, %d over %.0f ms",
+                count, getLastNanos() / 1e6, getPercentileNanos(50) / 1e6, getPercentileNanos(95) / 1e6,
+                getPercentileNanos(100) / 1e6, overTarget, targetNanos / 1e6);
+    }
+}
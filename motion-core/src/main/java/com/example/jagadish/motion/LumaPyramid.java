@@ -0,0 +1,108 @@
+package com.example.jagadish.motion;
+
+/**
+ * Box-filtered, downscaled copy of a luma plane, built in a single pass over the preview buffer.
+ * Used for the cheap first pass of motion detection.
+ */
+
+public class LumaPyramid {
+    private final int width;
+    private final int height;
+    private final int shift;
+    private final int levelWidth;
+    private final int levelHeight;
+    private final byte[] level;
+
+    /**
+     * @param width
+     *            Width of the full resolution image.
+     * @param height
+     *            Height of the full resolution image.
+     * @param scale
+     *            Downscale factor, a power of two such as 4 or 8.
+     */
+    public LumaPyramid(int width, int height, int scale) {
+        if (scale < 2 || Integer.bitCount(scale) != 1) {
+            throw new IllegalArgumentException("Scale must be a power of two: " + scale);
+        }
+        this.width = width;
+        this.height = height;
+        this.shift = Integer.numberOfTrailingZeros(scale);
+        this.levelWidth = width >> shift;
+        this.levelHeight = height >> shift;
+        if (levelWidth == 0 || levelHeight == 0) {
+            throw new IllegalArgumentException("Scale " + scale + " too large for " + width + "x" + height);
+        }
+        this.level = new byte[levelWidth * levelHeight];
+    }
+
+    public int getScale() {
+        return 1 << shift;
+    }
+
+    public int getLevelWidth() {
+        return levelWidth;
+    }
+
+    public int getLevelHeight() {
+        return levelHeight;
+    }
+
+    /**
+     * The downscaled image from the last build. The array is live and reused.
+     */
+    public byte[] getLevel() {
+        return level;
+    }
+
+    /**
+     * Average each scale x scale block of the luma plane into one pixel.
+     * Rows and columns past the last whole block are ignored.
+     *
+     * @param luma
+     *            Byte array whose first width * height entries are the luma plane.
+     */
+    public void build(byte[] luma) {
+        build(luma, null);
+    }
+
+    /**
+     * Average only the level pixels inside the spans; the others keep their old values and should
+     * not be read.
+     *
+     * @param spans
+     *            Spans compiled for the level size, or null for every pixel.
+     */
+    public void build(byte[] luma, SpanList spans) {
+        if (luma == null) throw new NullPointerException();
+        if (spans != null && (spans.getWidth() != levelWidth || spans.getHeight() != levelHeight)) {
+            throw new IllegalArgumentException("Spans are " + spans.getWidth() + "x" + spans.getHeight()
+                    + ", level is " + levelWidth + "x" + levelHeight);
+        }
+
+        for (int ly = 0; ly < levelHeight; ly++) {
+            if (spans == null) {
+                average(luma, ly, 0, levelWidth);
+                continue;
+            }
+            for (int i = spans.getRowStart(ly), end = spans.getRowStart(ly + 1); i < end; i++) {
+                average(luma, ly, spans.getSpanStart(i), spans.getSpanEnd(i));
+            }
+        }
+    }
+
+    private void average(byte[] luma, int ly, int from, int to) {
+        final int scale = 1 << shift;
+        final int areaShift = shift << 1;
+        int blockRow = (ly << shift) * width;
+        for (int lx = from, out = ly * levelWidth + from; lx < to; lx++) {
+            int sum = 0;
+            for (int y = 0, idx = blockRow + (lx << shift); y < scale; y++, idx += width) {
+                for (int i = 0; i < scale; i++) {
+                    sum += luma[idx + i] & 0xff;
+                }
+            }
+            level[out++] = (byte) (sum >> areaShift);
+        }
+    }
+}
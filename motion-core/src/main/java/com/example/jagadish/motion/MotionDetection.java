@@ -0,0 +1,677 @@
+package com.example.jagadish.motion;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+public class MotionDetection implements InterMotionDetection {
+    private static final int WARM_UP_FRAMES = 3; // Frames absorbed before the background is trusted
+    private static final float DEFAULT_LEARNING_RATE = 0.1f; // Fraction of each frame blended into the background
+    private static final float MOTION_REGION_THRESHOLD = 0.02f; // 2% change required in a region
+    private static final int DEFAULT_GRID_SIZE = 10; // Split frame into 10x10 grid
+    private static final int PIXEL_THRESHOLD = 25; // Luma levels a pixel must change by
+    private static final int DEFAULT_COARSE_SCALE = 4; // First pass runs on a 1/4 scale luma image
+    // Block averaging dilutes small changes, so the coarse pass is deliberately more sensitive
+    private static final int COARSE_PIXEL_THRESHOLD = PIXEL_THRESHOLD / 2;
+    private static final float COARSE_REGION_THRESHOLD = MOTION_REGION_THRESHOLD / 2;
+    private static final int DEFAULT_MIN_BLOB_REGIONS = 3; // Connected active regions needed to report motion
+
+    // History is a running average of the Y plane plus the last frame seen
+    private BackgroundModel backgroundModel;
+    private byte[] previousFrame;
+    private byte[] lumaFrame;
+    private int frameWidth;
+    private int frameHeight;
+
+    // Region boundaries, gridSize + 1 entries each so edge pixels always belong to a region
+    private int gridSize;
+    private int[] gridLeft;
+    private int[] gridTop;
+    private boolean[][] activeRegions;
+    private int[] regionChanges;
+    private int activeRegionCount;
+    private float activityScore;
+
+    // Connected groups of active regions, in pixel coordinates
+    private byte[] activeCells;
+    private BlobLabeler regionLabeler;
+    private final ArrayList<Blob> blobs = new ArrayList<>();
+    private int blobCount;
+    private int minBlobRegions = DEFAULT_MIN_BLOB_REGIONS;
+    private BlobLabeler pixelLabeler;
+
+    // Changed pixels of the last frame, queryable for any rectangle
+    private ChangeIntegral changes;
+
+    // Coarse-first cascade; only candidate regions are examined at full resolution
+    private LumaPyramid pyramid;
+    private BackgroundModel coarseModel;
+    private boolean[] candidateRegions;
+    private int[] coarseLeft;
+    private int[] coarseTop;
+    private int refreshRow;
+    private int[] regionAge; // Frames each region has gone without learning
+    private final CascadeStats cascadeStats = new CascadeStats();
+
+    // Detection zones compiled for both resolutions; null spans analyse every pixel
+    private ZoneMask zoneMask;
+    private SpanList zoneSpans;
+    private SpanList coarseZoneSpans;
+    private int[] regionPixels;
+    private int[] coarseRegionPixels;
+
+    // Optional worker pool; null scans on the calling thread
+    private ParallelBands scanner;
+    private int[] scanBackground;
+    private byte[] scanFrame;
+    private final ParallelBands.BandTask scanGridRows = new ParallelBands.BandTask() {
+        @Override
+        public void run(int start, int end) {
+            for (int gridY = start; gridY < end; gridY++) {
+                markRegionRow(scanBackground, scanFrame, gridY);
+            }
+        }
+    };
+
+    public MotionDetection(int width, int height) {
+        this(width, height, DEFAULT_LEARNING_RATE);
+    }
+
+    public MotionDetection(int width, int height, float learningRate) {
+        this.frameWidth = width;
+        this.frameHeight = height;
+        this.backgroundModel = new BackgroundModel(width * height, learningRate);
+        this.previousFrame = new byte[width * height];
+        this.lumaFrame = new byte[width * height];
+        this.changes = new ChangeIntegral(width, height);
+        setGridSize(DEFAULT_GRID_SIZE);
+        setCascade(width / gridSize >= DEFAULT_COARSE_SCALE && height / gridSize >= DEFAULT_COARSE_SCALE,
+                DEFAULT_COARSE_SCALE);
+    }
+
+    @Override
+    public boolean detect(byte[] yuv, int width, int height) {
+        if (yuv == null) throw new NullPointerException();
+        checkSize(width, height);
+
+        // NV21 starts with the full resolution Y plane, so the buffer is read in place
+        return detectLuma(yuv);
+    }
+
+    @Override
+    public boolean detect(int[] data, int width, int height) {
+        checkSize(width, height);
+        return detectMotion(data);
+    }
+
+    /**
+     * @return Last analysed frame as grey ARGB, or null before the first one. With a zone mask only
+     *         the analysed pixels are kept up to date; masked ones show the frame before the mask.
+     */
+    @Override
+    public int[] getPrevious() {
+        if (backgroundModel.getFrameCount() == 0) return null;
+
+        // Only needed when a snapshot is saved, so expand to grey ARGB on demand
+        int[] argb = new int[previousFrame.length];
+        for (int i = 0; i < argb.length; i++) {
+            int y = previousFrame[i] & 0xff;
+            argb[i] = 0xff000000 | (y << 16) | (y << 8) | y;
+        }
+        return argb;
+    }
+
+    public boolean detectMotion(int[] currentFrame) {
+        if (currentFrame == null) throw new NullPointerException();
+
+        byte[] luma = lumaFrame;
+        for (int i = 0; i < luma.length; i++) {
+            int pixel = currentFrame[i];
+            int r = (pixel >> 16) & 0xff;
+            int g = (pixel >> 8) & 0xff;
+            int b = pixel & 0xff;
+            // BT.601 studio swing, the inverse of ImageProcessing.decodeYUV420
+            luma[i] = (byte) (((66 * r + 129 * g + 25 * b + 128) >> 8) + 16);
+        }
+        return detectLuma(luma);
+    }
+
+    public int getFrameWidth() {
+        return frameWidth;
+    }
+
+    public int getFrameHeight() {
+        return frameHeight;
+    }
+
+    /**
+     * Change the region grid. Region counts of the last frame are recomputed from the
+     * change table, so no pixels are rescanned.
+     *
+     * @param size
+     *            Number of regions along each axis.
+     */
+    public void setGridSize(int size) {
+        if (size < 2 || size > frameWidth || size > frameHeight) {
+            throw new IllegalArgumentException("Grid size " + size + " does not fit " + frameWidth + "x" + frameHeight);
+        }
+        if (pyramid != null && (frameWidth / size < pyramid.getScale() || frameHeight / size < pyramid.getScale())) {
+            throw new IllegalArgumentException("Grid size " + size + " too fine for coarse scale " + pyramid.getScale());
+        }
+
+        gridSize = size;
+        gridLeft = new int[size + 1];
+        gridTop = new int[size + 1];
+        for (int i = 0; i <= size; i++) {
+            gridLeft[i] = (int) ((long) i * frameWidth / size);
+            gridTop[i] = (int) ((long) i * frameHeight / size);
+        }
+        activeRegions = new boolean[size][size];
+        activeCells = new byte[size * size];
+        regionLabeler = new BlobLabeler(size * size);
+        regionChanges = new int[size * size];
+        candidateRegions = new boolean[size * size];
+        regionAge = new int[size * size];
+        regionPixels = new int[size * size];
+        coarseRegionPixels = new int[size * size];
+        coarseLeft = new int[size + 1];
+        coarseTop = new int[size + 1];
+        if (pyramid != null) {
+            mapCoarseBounds(pyramid);
+        }
+        refreshRow = 0;
+        countRegionPixels();
+
+        if (!changes.isEmpty()) {
+            countActiveRegions();
+            labelRegionBlobs();
+        }
+    }
+
+    public int getGridSize() {
+        return gridSize;
+    }
+
+    /**
+     * Number of pixels that changed in the last analysed frame within [left, right) x [top, bottom).
+     */
+    public int countChanges(int left, int top, int right, int bottom) {
+        return changes.count(left, top, right, bottom);
+    }
+
+    /**
+     * @return Active regions of the last analysed frame, indexed [gridY][gridX]. The array is live.
+     */
+    public boolean[][] getActiveRegions() {
+        return activeRegions;
+    }
+
+    /**
+     * @return Number of blobs of connected active regions in the last analysed frame.
+     */
+    public int getBlobCount() {
+        return blobCount;
+    }
+
+    /**
+     * Blob of connected active regions from the last analysed frame, in pixel coordinates.
+     * The instance is reused on the next frame.
+     */
+    public Blob getBlob(int index) {
+        if (index < 0 || index >= blobCount) throw new IndexOutOfBoundsException("Blob " + index + " of " + blobCount);
+        return blobs.get(index);
+    }
+
+    /**
+     * @param regions
+     *            Number of connected active regions a blob needs before it counts as motion.
+     */
+    public void setMinBlobRegions(int regions) {
+        if (regions < 1) throw new IllegalArgumentException("Need at least one region: " + regions);
+        minBlobRegions = regions;
+    }
+
+    public int getMinBlobRegions() {
+        return minBlobRegions;
+    }
+
+    /**
+     * Label individual changed pixels of the last analysed frame inside a rectangle, typically the
+     * bounding box of a region blob. Results are read with getPixelBlob().
+     *
+     * @return Number of pixel blobs found.
+     */
+    public int labelChangedPixels(int left, int top, int right, int bottom) {
+        if (changes.isEmpty()) return 0;
+        if (!changes.isScanned(top, bottom)) {
+            throw new IllegalArgumentException("Rows " + top + " to " + bottom + " were not scanned in the last frame");
+        }
+
+        // Sized for the largest rectangle so far rather than the frame, grown by doubling
+        long area = (long) Math.max(0, right - left) * Math.max(0, bottom - top);
+        if (pixelLabeler == null || area > pixelLabeler.getCapacity()) {
+            long capacity = pixelLabeler == null ? area : Math.max(area, 2L * pixelLabeler.getCapacity());
+            pixelLabeler = new BlobLabeler((int) Math.max(1, Math.min(capacity, (long) frameWidth * frameHeight)));
+        }
+        return pixelLabeler.label(changes.getMask(), null, frameWidth, left, top, right, bottom);
+    }
+
+    public Blob getPixelBlob(int index) {
+        if (pixelLabeler == null) throw new IndexOutOfBoundsException("No pixel blobs labelled");
+        return pixelLabeler.getBlob(index);
+    }
+
+    /**
+     * Spread the region scan over a worker pool. Results are identical to the sequential scan.
+     *
+     * @param workers
+     *            Threads to use including the caller, 1 for a sequential scan.
+     */
+    public void setParallelism(int workers) {
+        if (scanner != null) {
+            scanner.shutdown();
+            scanner = null;
+        }
+        if (workers > 1) {
+            scanner = new ParallelBands(workers);
+        }
+    }
+
+    public int getParallelism() {
+        return scanner != null ? scanner.getWorkers() : 1;
+    }
+
+    /**
+     * Stop any scan workers. Detection keeps working sequentially afterwards.
+     */
+    public void shutdown() {
+        setParallelism(1);
+    }
+
+    /**
+     * Run a cheap pass on a downscaled image first and re-examine only the regions it flags.
+     * The coarse background is rebuilt from scratch whenever this is called.
+     *
+     * @param enabled
+     *            False to scan every region at full resolution.
+     * @param scale
+     *            Downscale factor of the coarse pass, a power of two no larger than a region.
+     */
+    public void setCascade(boolean enabled, int scale) {
+        pyramid = null;
+        coarseModel = null;
+        cascadeStats.reset();
+        if (!enabled) return;
+
+        if (scale > frameWidth / gridSize || scale > frameHeight / gridSize) {
+            throw new IllegalArgumentException("Scale " + scale + " larger than a region of a " + gridSize + "x" + gridSize + " grid");
+        }
+        LumaPyramid coarse = new LumaPyramid(frameWidth, frameHeight, scale);
+        mapCoarseBounds(coarse);
+        coarseModel = new BackgroundModel(coarse.getLevelWidth() * coarse.getLevelHeight(), backgroundModel.getLearningRate());
+        pyramid = coarse;
+        compileCoarseZones();
+        countRegionPixels();
+    }
+
+    public boolean isCascadeEnabled() {
+        return pyramid != null;
+    }
+
+    /**
+     * @return Per-level timing and hit-rate statistics of the cascade.
+     */
+    public CascadeStats getCascadeStats() {
+        return cascadeStats;
+    }
+
+    /**
+     * Restrict detection to the analysed area of a zone mask. Masked pixels are never read, compared
+     * or learned: the coarse image, the change table and the copy of the last frame are only built
+     * over the analysed spans or their bounding box. The mask is compiled when this is called, so later edits need another call, and
+     * the background is relearned from the next frame.
+     *
+     * @param mask
+     *            Zones to apply, null or empty to analyse the whole frame.
+     */
+    public void setZoneMask(ZoneMask mask) {
+        zoneMask = mask != null && !mask.isEmpty() ? mask : null;
+        zoneSpans = zoneMask != null ? zoneMask.compile(frameWidth, frameHeight) : null;
+        compileCoarseZones();
+        countRegionPixels();
+
+        // Pixels that were masked until now hold no usable background
+        backgroundModel.reset();
+        if (coarseModel != null) {
+            coarseModel.reset();
+        }
+        if (zoneSpans != null) {
+            changes.setBounds(zoneSpans.getLeft(), zoneSpans.getTop(), zoneSpans.getRight(), zoneSpans.getBottom());
+        } else {
+            changes.setBounds(0, 0, frameWidth, frameHeight);
+        }
+        blobCount = 0;
+    }
+
+    /**
+     * @return Number of pixels analysed per frame.
+     */
+    public int getAnalysedPixelCount() {
+        return zoneSpans != null ? zoneSpans.getPixelCount() : frameWidth * frameHeight;
+    }
+
+    public void setLearningRate(float learningRate) {
+        backgroundModel.setLearningRate(learningRate);
+        if (coarseModel != null) {
+            coarseModel.setLearningRate(learningRate);
+        }
+    }
+
+    BackgroundModel getBackgroundModel() {
+        return backgroundModel;
+    }
+
+    public float getLearningRate() {
+        return backgroundModel.getLearningRate();
+    }
+
+    /**
+     * Cheap measure of how busy the last frame was: the fraction of regions the coarse pass flagged,
+     * or of active regions when no coarse pass ran.
+     */
+    public float getActivityScore() {
+        return activityScore;
+    }
+
+    private void mapCoarseBounds(LumaPyramid coarse) {
+        int scale = coarse.getScale();
+        for (int i = 0; i <= gridSize; i++) {
+            // A coarse pixel belongs to the region holding its first full resolution column or row
+            coarseLeft[i] = Math.min(coarse.getLevelWidth(), (gridLeft[i] + scale - 1) / scale);
+            coarseTop[i] = Math.min(coarse.getLevelHeight(), (gridTop[i] + scale - 1) / scale);
+        }
+        coarseLeft[0] = 0;
+        coarseTop[0] = 0;
+    }
+
+    private void compileCoarseZones() {
+        coarseZoneSpans = zoneMask != null && pyramid != null
+                ? zoneMask.compile(pyramid.getLevelWidth(), pyramid.getLevelHeight()) : null;
+    }
+
+    private void countRegionPixels() {
+        for (int gridY = 0; gridY < gridSize; gridY++) {
+            for (int gridX = 0; gridX < gridSize; gridX++) {
+                int region = gridY * gridSize + gridX;
+                regionPixels[region] = zoneSpans != null
+                        ? zoneSpans.count(gridLeft[gridX], gridTop[gridY], gridLeft[gridX + 1], gridTop[gridY + 1])
+                        : (gridLeft[gridX + 1] - gridLeft[gridX]) * (gridTop[gridY + 1] - gridTop[gridY]);
+                if (pyramid == null) continue;
+                coarseRegionPixels[region] = coarseZoneSpans != null
+                        ? coarseZoneSpans.count(coarseLeft[gridX], coarseTop[gridY], coarseLeft[gridX + 1], coarseTop[gridY + 1])
+                        : (coarseLeft[gridX + 1] - coarseLeft[gridX]) * (coarseTop[gridY + 1] - coarseTop[gridY]);
+            }
+        }
+    }
+
+    private boolean detectLuma(byte[] currentFrame) {
+        boolean motion = false;
+        boolean warm = backgroundModel.getFrameCount() >= WARM_UP_FRAMES;
+        LumaPyramid coarse = pyramid;
+
+        long start = System.nanoTime();
+        if (coarse != null) {
+            coarse.build(currentFrame, coarseZoneSpans);
+        }
+        boolean gated = warm && coarse != null && coarseModel.getFrameCount() >= WARM_UP_FRAMES;
+        int candidates = gated ? markCandidates(coarse.getLevel(), coarse.getLevelWidth()) : markAllCandidates();
+        long coarseDone = System.nanoTime();
+
+        // Wait until the background has settled
+        if (warm) {
+            motion = scanRegions(backgroundModel.getBackground(), currentFrame, candidates);
+        } else {
+            changes.clear();
+            blobCount = 0;
+        }
+        activityScore = (float) (gated ? candidates : activeRegionCount) / (gridSize * gridSize);
+        if (gated) {
+            cascadeStats.record(coarseDone - start, System.nanoTime() - coarseDone,
+                    gridSize * gridSize, candidates, activeRegionCount);
+        }
+
+        if (coarse != null) {
+            coarseModel.update(coarse.getLevel(), coarseZoneSpans);
+        }
+        if (gated) {
+            updateCandidateBackground(currentFrame);
+        } else {
+            backgroundModel.update(currentFrame, zoneSpans);
+            Arrays.fill(regionAge, 0);
+        }
+        if (zoneSpans != null) {
+            zoneSpans.copy(currentFrame, previousFrame);
+        } else {
+            System.arraycopy(currentFrame, 0, previousFrame, 0, previousFrame.length);
+        }
+        return motion;
+    }
+
+    private int markAllCandidates() {
+        int candidates = 0;
+        for (int i = 0; i < candidateRegions.length; i++) {
+            // Fully masked regions are never scanned
+            candidateRegions[i] = regionPixels[i] > 0;
+            if (candidateRegions[i]) {
+                candidates++;
+            }
+        }
+        return candidates;
+    }
+
+    private int markCandidates(byte[] level, int levelWidth) {
+        final int[] background = coarseModel.getBackground();
+        final SpanList spans = coarseZoneSpans;
+        int candidates = 0;
+
+        for (int gridY = 0; gridY < gridSize; gridY++) {
+            int top = coarseTop[gridY];
+            int bottom = coarseTop[gridY + 1];
+            for (int gridX = 0; gridX < gridSize; gridX++) {
+                int changedPixels = 0;
+                int left = coarseLeft[gridX];
+                int right = coarseLeft[gridX + 1];
+                for (int y = top; y < bottom; y++) {
+                    int row = y * levelWidth;
+                    if (spans == null) {
+                        changedPixels += countCoarseChanges(background, level, row + left, row + right);
+                        continue;
+                    }
+                    for (int i = spans.getRowStart(y), end = spans.getRowStart(y + 1); i < end; i++) {
+                        int from = Math.max(left, spans.getSpanStart(i));
+                        int to = Math.min(right, spans.getSpanEnd(i));
+                        if (to > from) {
+                            changedPixels += countCoarseChanges(background, level, row + from, row + to);
+                        }
+                    }
+                }
+
+                int totalPixels = coarseRegionPixels[gridY * gridSize + gridX];
+                // A zone thinner than a coarse pixel leaves nothing to sample, so send it straight to the fine pass
+                boolean candidate = totalPixels > 0
+                        ? (float) changedPixels / totalPixels > COARSE_REGION_THRESHOLD
+                        : regionPixels[gridY * gridSize + gridX] > 0;
+                candidateRegions[gridY * gridSize + gridX] = candidate;
+                if (candidate) {
+                    candidates++;
+                }
+            }
+        }
+
+        return candidates;
+    }
+
+    private static int countCoarseChanges(int[] background, byte[] level, int from, int to) {
+        int changedPixels = 0;
+        for (int idx = from; idx < to; idx++) {
+            int luminanceDiff = Math.abs((background[idx] >> BackgroundModel.FRACTION_BITS) - (level[idx] & 0xff));
+            if (luminanceDiff > COARSE_PIXEL_THRESHOLD) {
+                changedPixels++;
+            }
+        }
+        return changedPixels;
+    }
+
+    private void updateCandidateBackground(byte[] currentFrame) {
+        // Candidate regions learn every frame; quiet ones are refreshed one grid row per frame, catching
+        // up on the frames they skipped so they follow slow changes at the same rate
+        for (int gridY = 0; gridY < gridSize; gridY++) {
+            for (int gridX = 0; gridX < gridSize; gridX++) {
+                int region = gridY * gridSize + gridX;
+                if (gridY == refreshRow || candidateRegions[region]) {
+                    backgroundModel.updateRegion(currentFrame, frameWidth, gridLeft[gridX], gridTop[gridY],
+                            gridLeft[gridX + 1], gridTop[gridY + 1], zoneSpans, regionAge[region] + 1);
+                    regionAge[region] = 0;
+                } else {
+                    regionAge[region]++;
+                }
+            }
+        }
+        refreshRow = (refreshRow + 1) % gridSize;
+    }
+
+    private boolean scanRegions(int[] background, byte[] currentFrame, int candidates) {
+        if (candidates == 0) {
+            // Nothing for the fine pass to look at
+            changes.clear();
+        } else {
+            // Build the change mask, in grid row bands when a pool is set
+            scanBackground = background;
+            scanFrame = currentFrame;
+            if (scanner != null) {
+                scanner.run(gridSize, scanGridRows);
+            } else {
+                scanGridRows.run(0, gridSize);
+            }
+            scanBackground = null;
+            scanFrame = null;
+            changes.build();
+        }
+
+        countActiveRegions();
+        labelRegionBlobs();
+
+        // Check if connected regions show significant motion
+        return hasSignificantMotion();
+    }
+
+    private void markRegionRow(int[] background, byte[] currentFrame, int gridY) {
+        final byte[] mask = changes.getMask();
+        final SpanList spans = zoneSpans;
+        boolean rowHasCandidates = false;
+        for (int gridX = 0; gridX < gridSize; gridX++) {
+            rowHasCandidates |= candidateRegions[gridY * gridSize + gridX];
+        }
+
+        for (int y = gridTop[gridY]; y < gridTop[gridY + 1]; y++) {
+            changes.setRowChanged(y, rowHasCandidates);
+            if (!rowHasCandidates) continue;
+
+            int row = y * frameWidth;
+            for (int gridX = 0; gridX < gridSize; gridX++) {
+                int left = gridLeft[gridX];
+                int right = gridLeft[gridX + 1];
+                if (!candidateRegions[gridY * gridSize + gridX]) {
+                    Arrays.fill(mask, row + left, row + right, (byte) 0);
+                    continue;
+                }
+                if (spans == null) {
+                    markPixels(background, currentFrame, mask, row + left, row + right);
+                    continue;
+                }
+
+                // Masked pixels are cleared, never compared
+                int x = left;
+                for (int i = spans.getRowStart(y), end = spans.getRowStart(y + 1); i < end && x < right; i++) {
+                    int from = Math.max(x, spans.getSpanStart(i));
+                    int to = Math.min(right, spans.getSpanEnd(i));
+                    if (to <= from) continue;
+                    Arrays.fill(mask, row + x, row + from, (byte) 0);
+                    markPixels(background, currentFrame, mask, row + from, row + to);
+                    x = to;
+                }
+                Arrays.fill(mask, row + x, row + right, (byte) 0);
+            }
+        }
+    }
+
+    private static void markPixels(int[] background, byte[] currentFrame, byte[] mask, int from, int to) {
+        for (int idx = from; idx < to; idx++) {
+            int luminanceDiff = Math.abs((background[idx] >> BackgroundModel.FRACTION_BITS) - (currentFrame[idx] & 0xff));
+            mask[idx] = (byte) (luminanceDiff > PIXEL_THRESHOLD ? 1 : 0);
+        }
+    }
+
+    private void countActiveRegions() {
+        // Detect motion in regions
+        activeRegionCount = 0;
+
+        for (int gridY = 0; gridY < gridSize; gridY++) {
+            for (int gridX = 0; gridX < gridSize; gridX++) {
+                int left = gridLeft[gridX];
+                int top = gridTop[gridY];
+                int right = gridLeft[gridX + 1];
+                int bottom = gridTop[gridY + 1];
+                int changedPixels = changes.count(left, top, right, bottom);
+                int totalPixels = regionPixels[gridY * gridSize + gridX];
+
+                boolean active = totalPixels > 0 && (float) changedPixels / totalPixels > MOTION_REGION_THRESHOLD;
+                regionChanges[gridY * gridSize + gridX] = changedPixels;
+                activeRegions[gridY][gridX] = active;
+                activeCells[gridY * gridSize + gridX] = (byte) (active ? 1 : 0);
+                if (active) {
+                    activeRegionCount++;
+                }
+            }
+        }
+    }
+
+    private void checkSize(int width, int height) {
+        if (width != frameWidth || height != frameHeight) {
+            throw new IllegalArgumentException("Expected " + frameWidth + "x" + frameHeight
+                    + " frame but got " + width + "x" + height);
+        }
+    }
+
+    private void labelRegionBlobs() {
+        // Weight each region by its changed pixels so centroids follow the motion
+        int found = regionLabeler.label(activeCells, regionChanges, gridSize, 0, 0, gridSize, gridSize);
+        while (blobs.size() < found) {
+            blobs.add(new Blob());
+        }
+
+        for (int i = 0; i < found; i++) {
+            Blob region = regionLabeler.getBlob(i);
+            blobs.get(i).set(region.getCellCount(), region.getChangedPixels(),
+                    toPixel(region.getCentroidX(), gridLeft), toPixel(region.getCentroidY(), gridTop),
+                    gridLeft[region.getLeft()], gridTop[region.getTop()],
+                    gridLeft[region.getRight()], gridTop[region.getBottom()]);
+        }
+        blobCount = found;
+    }
+
+    private static float toPixel(float cell, int[] bounds) {
+        int index = Math.min((int) cell, bounds.length - 2);
+        return bounds[index] + (cell - index) * (bounds[index + 1] - bounds[index]);
+    }
+
+    private boolean hasSignificantMotion() {
+        // Scattered single regions are noise; motion needs a large enough connected blob
+        for (int i = 0; i < blobCount; i++) {
+            if (blobs.get(i).getCellCount() >= minBlobRegions) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+}
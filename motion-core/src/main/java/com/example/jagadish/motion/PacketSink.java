@@ -0,0 +1,20 @@
+package com.example.jagadish.motion;
+
+import java.io.IOException;
+
+/**
+ * Destination for encoded video packets, such as a muxer writing a clip file.
+ */
+
+public interface PacketSink {
+    /**
+     * @param data
+     *            Encoded access unit; only valid for the duration of the call.
+     * @param presentationTimeUs
+     *            Timestamp relative to the start of the clip.
+     * @param keyFrame
+     *            True if the packet can be decoded on its own.
+     */
+    public void writePacket(byte[] data, int offset, int size, long presentationTimeUs, boolean keyFrame)
+            throws IOException;
+}
@@ -0,0 +1,121 @@
+package com.example.jagadish.motion;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Splits a range of rows into contiguous bands and runs them on a fixed worker pool.
+ * The calling thread takes the last band itself and returns once every band has finished.
+ * Band tasks are allocated once, so a run costs no garbage beyond the executor's own bookkeeping.
+ */
+
+public class ParallelBands {
+
+    public interface BandTask {
+        /**
+         * Process rows [start, end). Called concurrently for disjoint ranges.
+         */
+        void run(int start, int end);
+    }
+
+    private final int workers;
+    private final ExecutorService executor;
+    private final Band[] bands;
+    private final Semaphore finished = new Semaphore(0);
+    private volatile Throwable failure;
+
+    /**
+     * @param workers
+     *            Number of bands per run, including the calling thread.
+     */
+    public ParallelBands(int workers) {
+        if (workers < 1) throw new IllegalArgumentException("Need at least one worker: " + workers);
+
+        this.workers = workers;
+        this.executor = workers > 1 ? Executors.newFixedThreadPool(workers - 1, new WorkerFactory()) : null;
+        this.bands = new Band[workers];
+        for (int i = 0; i < workers; i++) {
+            bands[i] = new Band();
+        }
+    }
+
+    /**
+     * @return Worker count matching the cores available to this process.
+     */
+    public static int defaultWorkers() {
+        return Math.max(1, Runtime.getRuntime().availableProcessors());
+    }
+
+    public int getWorkers() {
+        return workers;
+    }
+
+    /**
+     * Run task over [0, count) split into at most getWorkers() bands, blocking until all are done.
+     * Not reentrant; callers serialise runs.
+     */
+    public void run(int count, BandTask task) {
+        if (task == null) throw new NullPointerException();
+
+        int used = Math.min(workers, count);
+        if (used <= 1) {
+            if (count > 0) task.run(0, count);
+            return;
+        }
+
+        failure = null;
+        for (int i = 0; i < used; i++) {
+            Band band = bands[i];
+            band.task = task;
+            band.start = (int) ((long) count * i / used);
+            band.end = (int) ((long) count * (i + 1) / used);
+        }
+        for (int i = 0; i < used - 1; i++) {
+            executor.execute(bands[i]);
+        }
+        bands[used - 1].run();
+        finished.acquireUninterruptibly(used);
+
+        Throwable t = failure;
+        if (t != null) {
+            if (t instanceof RuntimeException) throw (RuntimeException) t;
+            if (t instanceof Error) throw (Error) t;
+            throw new RuntimeException(t);
+        }
+    }
+
+    public void shutdown() {
+        if (executor != null) executor.shutdown();
+    }
+
+    private class Band implements Runnable {
+        BandTask task;
+        int start;
+        int end;
+
+        @Override
+        public void run() {
+            try {
+                task.run(start, end);
+            } catch (Throwable t) {
+                failure = t;
+            } finally {
+                finished.release();
+            }
+        }
+    }
+
+    private static class WorkerFactory implements ThreadFactory {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "MotionScan-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,189 @@
+package com.example.jagadish.motion;
+
+import java.io.IOException;
+
+/**
+ * Bounded ring of encoded video packets covering the last few seconds before now. The ring always
+ * starts on a key frame, so its contents can be written to a clip as they are. Whole groups of
+ * pictures are dropped from the front once the rest still covers the pre-roll, or when the byte
+ * cap is exceeded. Packet slots and their byte arrays are reused, so a warmed up ring allocates nothing.
+ */
+
+public class PreRollBuffer {
+    private static class Packet {
+        byte[] data = new byte[0];
+        int size;
+        long presentationTimeUs;
+        boolean keyFrame;
+    }
+
+    private final long preRollUs;
+    private final int maxBytes;
+    private Packet[] ring = new Packet[64];
+    private int head;
+    private int count;
+    private int bufferedBytes;
+    private long rejectedPackets;
+    private long memoryEvictions;
+
+    /**
+     * @param preRollUs
+     *            How far back the ring should reach, in microseconds.
+     * @param maxBytes
+     *            Memory cap for the packet data; older groups of pictures are dropped to stay under it.
+     */
+    public PreRollBuffer(long preRollUs, int maxBytes) {
+        if (preRollUs < 0) throw new IllegalArgumentException("Pre-roll must not be negative: " + preRollUs);
+        if (maxBytes <= 0) throw new IllegalArgumentException("Memory cap must be positive: " + maxBytes);
+
+        this.preRollUs = preRollUs;
+        this.maxBytes = maxBytes;
+        for (int i = 0; i < ring.length; i++) {
+            ring[i] = new Packet();
+        }
+    }
+
+    public long getPreRollUs() {
+        return preRollUs;
+    }
+
+    public int getMaxBytes() {
+        return maxBytes;
+    }
+
+    /**
+     * Copy a packet into the ring.
+     *
+     * @return False if the packet was dropped because the ring is empty and it is not a key frame.
+     */
+    public synchronized boolean add(byte[] data, int offset, int size, long presentationTimeUs, boolean keyFrame) {
+        if (data == null) throw new NullPointerException();
+        if (offset < 0 || size < 0 || offset + size > data.length) {
+            throw new IndexOutOfBoundsException("Packet of " + size + " bytes at " + offset + " in " + data.length);
+        }
+        if (count == 0 && !keyFrame) {
+            rejectedPackets++;
+            return false;
+        }
+
+        if (count == ring.length) grow();
+        Packet packet = ring[(head + count) % ring.length];
+        if (packet.data.length < size) {
+            packet.data = new byte[size + size / 4];
+        }
+        System.arraycopy(data, offset, packet.data, 0, size);
+        packet.size = size;
+        packet.presentationTimeUs = presentationTimeUs;
+        packet.keyFrame = keyFrame;
+        count++;
+        bufferedBytes += size;
+
+        trim(presentationTimeUs);
+        return true;
+    }
+
+    private void trim(long newestUs) {
+        // Drop the oldest group of pictures while the next one alone still reaches back far enough
+        int next;
+        while ((next = nextKeyFrame()) > 0 && newestUs - packet(next).presentationTimeUs >= preRollUs) {
+            dropFront(next);
+        }
+        while (bufferedBytes > maxBytes) {
+            next = nextKeyFrame();
+            // A single group larger than the cap cannot be kept at all
+            dropFront(next > 0 ? next : count);
+            memoryEvictions++;
+        }
+    }
+
+    // Index of the first key frame after the head, or -1
+    private int nextKeyFrame() {
+        for (int i = 1; i < count; i++) {
+            if (packet(i).keyFrame) return i;
+        }
+        return -1;
+    }
+
+    private Packet packet(int index) {
+        return ring[(head + index) % ring.length];
+    }
+
+    private void dropFront(int packets) {
+        for (int i = 0; i < packets; i++) {
+            bufferedBytes -= ring[head].size;
+            head = (head + 1) % ring.length;
+        }
+        count -= packets;
+        if (count == 0) head = 0;
+    }
+
+    private void grow() {
+        Packet[] larger = new Packet[ring.length * 2];
+        for (int i = 0; i < count; i++) {
+            larger[i] = packet(i);
+        }
+        for (int i = count; i < larger.length; i++) {
+            larger[i] = new Packet();
+        }
+        ring = larger;
+        head = 0;
+    }
+
+    /**
+     * Write the buffered packets to a sink, oldest first. The ring keeps its contents.
+     *
+     * @param baseUs
+     *            Subtracted from every timestamp.
+     * @return Number of packets written.
+     */
+    public synchronized int writeTo(PacketSink sink, long baseUs) throws IOException {
+        if (sink == null) throw new NullPointerException();
+
+        for (int i = 0; i < count; i++) {
+            Packet packet = packet(i);
+            sink.writePacket(packet.data, 0, packet.size, packet.presentationTimeUs - baseUs, packet.keyFrame);
+        }
+        return count;
+    }
+
+    public synchronized void clear() {
+        dropFront(count);
+    }
+
+    public synchronized int getPacketCount() {
+        return count;
+    }
+
+    public synchronized int getBufferedBytes() {
+        return bufferedBytes;
+    }
+
+    /**
+     * @return Timestamp of the oldest buffered packet, a key frame, or -1 if the ring is empty.
+     */
+    public synchronized long getOldestTimestampUs() {
+        return count == 0 ? -1 : ring[head].presentationTimeUs;
+    }
+
+    /**
+     * @return Time span from the oldest to the newest buffered packet.
+     */
+    public synchronized long getDurationUs() {
+        return count == 0 ? 0 : packet(count - 1).presentationTimeUs - ring[head].presentationTimeUs;
+    }
+
+    /**
+     * @return Packets dropped because they did not follow a key frame.
+     */
+    public synchronized long getRejectedPackets() {
+        return rejectedPackets;
+    }
+
+    /**
+     * @return Groups of pictures dropped for the memory cap before they aged out. A steady rise
+     *         means the cap is too small for the pre-roll at the current bit rate.
+     */
+    public synchronized long getMemoryEvictions() {
+        return memoryEvictions;
+    }
+}
@@ -0,0 +1,204 @@
+package com.example.jagadish.motion;
+
+import java.io.IOException;
+
+/**
+ * Routes the packets of a continuously running encoder. Between clips they only fill the pre-roll
+ * ring; once a clip starts, the ring is written to the clip first and the live packets follow, so
+ * the clip begins before the trigger. A clip can roll over into a new sink at the next key frame
+ * without losing a packet. Clip timestamps start at zero. Packets arrive on the encoder's thread
+ * while clips are started and stopped from another.
+ */
+
+public class PreRollRecorder {
+    public interface SegmentListener {
+        /**
+         * A sink has received its last packet after a roll-over and may be closed. Called on the
+         * encoder's thread with the recorder's lock held.
+         */
+        public void onSegmentFinished(PacketSink finished, int packets);
+    }
+
+    private final PreRollBuffer buffer;
+    private PacketSink sink;
+    private PacketSink nextSink;
+    private SegmentListener segmentListener;
+    private boolean flushPending;
+    private boolean waitingForKeyFrame;
+    private long baseUs;
+    private long lastPreRollUs;
+    private int clipPackets;
+    private IOException error;
+    private long triggerNanos;
+    private LatencyTracker startLatency;
+
+    public PreRollRecorder(PreRollBuffer buffer) {
+        if (buffer == null) throw new NullPointerException();
+
+        this.buffer = buffer;
+    }
+
+    public PreRollBuffer getBuffer() {
+        return buffer;
+    }
+
+    /**
+     * @param tracker
+     *            Receives the time from each clip's trigger to its first packet written, or null.
+     */
+    public synchronized void setStartLatency(LatencyTracker tracker) {
+        startLatency = tracker;
+    }
+
+    public synchronized void setSegmentListener(SegmentListener listener) {
+        segmentListener = listener;
+    }
+
+    /**
+     * Hand over one encoded packet. Codec configuration data is not a packet and must not be passed.
+     */
+    public synchronized void onPacket(byte[] data, int offset, int size, long presentationTimeUs, boolean keyFrame) {
+        if (sink != null && flushPending) {
+            flush(presentationTimeUs);
+        }
+        // The ring keeps filling during a clip, so the next clip has its own pre-roll
+        buffer.add(data, offset, size, presentationTimeUs, keyFrame);
+        if (sink == null) return;
+
+        if (waitingForKeyFrame) {
+            if (!keyFrame) return;
+            waitingForKeyFrame = false;
+            baseUs = presentationTimeUs;
+        } else if (nextSink != null && keyFrame) {
+            // Every packet so far went to the old segment, and the new one starts decodable
+            PacketSink finished = sink;
+            int packets = clipPackets;
+            sink = nextSink;
+            nextSink = null;
+            baseUs = presentationTimeUs;
+            clipPackets = 0;
+            if (segmentListener != null) segmentListener.onSegmentFinished(finished, packets);
+        }
+        write(data, offset, size, presentationTimeUs, keyFrame);
+    }
+
+    /**
+     * Start a clip. The ring is written out with the next packet, on the encoder's thread.
+     */
+    public void start(PacketSink sink) {
+        start(sink, System.nanoTime());
+    }
+
+    /**
+     * @param triggerNanos
+     *            System.nanoTime() of the motion decision, for the start latency.
+     */
+    public synchronized void start(PacketSink sink, long triggerNanos) {
+        if (sink == null) throw new NullPointerException();
+        if (this.sink != null) throw new IllegalStateException("Already recording");
+
+        this.sink = sink;
+        nextSink = null;
+        flushPending = true;
+        waitingForKeyFrame = false;
+        lastPreRollUs = 0;
+        clipPackets = 0;
+        error = null;
+        this.triggerNanos = triggerNanos;
+    }
+
+    /**
+     * Continue the clip in a new sink from the next key frame; the encoder should be asked for one.
+     * Until then packets still go to the current sink.
+     */
+    public synchronized void rollOver(PacketSink next) {
+        if (next == null) throw new NullPointerException();
+        if (sink == null) throw new IllegalStateException("Not recording");
+        if (nextSink != null) throw new IllegalStateException("Roll-over already pending");
+
+        nextSink = next;
+    }
+
+    /**
+     * Finish the clip. No packet is written to its sink after this returns, so the caller may close
+     * it. A pending roll-over is abandoned and its sink never written.
+     *
+     * @return Number of packets written to the clip.
+     */
+    public synchronized int stop() {
+        if (sink != null && flushPending) {
+            long newest = buffer.getOldestTimestampUs() + buffer.getDurationUs();
+            flush(newest);
+        }
+        sink = null;
+        nextSink = null;
+        flushPending = false;
+        waitingForKeyFrame = false;
+        return clipPackets;
+    }
+
+    private void flush(long nowUs) {
+        flushPending = false;
+        if (buffer.getPacketCount() == 0) {
+            // Nothing decodable buffered yet, so the clip starts at the next key frame
+            waitingForKeyFrame = true;
+            return;
+        }
+        baseUs = buffer.getOldestTimestampUs();
+        lastPreRollUs = nowUs - baseUs;
+        try {
+            clipPackets += buffer.writeTo(sink, baseUs);
+            recordStart();
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    private void recordStart() {
+        if (startLatency != null) startLatency.record(System.nanoTime() - triggerNanos);
+    }
+
+    private void write(byte[] data, int offset, int size, long presentationTimeUs, boolean keyFrame) {
+        try {
+            sink.writePacket(data, offset, size, presentationTimeUs - baseUs, keyFrame);
+            if (clipPackets++ == 0) recordStart();
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    private void fail(IOException e) {
+        error = e;
+        sink = null;
+        nextSink = null;
+    }
+
+    public synchronized boolean isRecording() {
+        return sink != null;
+    }
+
+    /**
+     * @return True while a clip start or roll-over is waiting for a key frame; the encoder should be asked for one.
+     */
+    public synchronized boolean isWaitingForKeyFrame() {
+        return waitingForKeyFrame || nextSink != null;
+    }
+
+    public synchronized boolean isRollOverPending() {
+        return nextSink != null;
+    }
+
+    /**
+     * @return How much video before the start of the current or last clip it includes.
+     */
+    public synchronized long getLastPreRollUs() {
+        return lastPreRollUs;
+    }
+
+    /**
+     * @return The write failure that ended the current or last clip, or null.
+     */
+    public synchronized IOException getError() {
+        return error;
+    }
+}
@@ -0,0 +1,67 @@
+package com.example.jagadish.motion;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Replays a raw frame file through a detector as fast as it will go.
+ * Frames are fed back to back, so time-based behaviour sees the capture's frame order but not its pacing.
+ */
+
+public abstract class ReplayHarness {
+
+    private ReplayHarness() {
+    }
+
+    public static ReplayReport replay(FrameFileReader reader, InterMotionDetection detector) {
+        if (reader == null || detector == null) throw new NullPointerException();
+
+        int count = reader.getFrameCount();
+        int width = reader.getWidth();
+        int height = reader.getHeight();
+        byte[] frame = new byte[reader.getFrameSize()];
+        long[] latencies = new long[count];
+        int[] triggered = new int[count];
+        int triggerCount = 0;
+
+        long start = System.nanoTime();
+        for (int i = 0; i < count; i++) {
+            reader.readFrame(i, frame);
+            long before = System.nanoTime();
+            boolean motion = detector.detect(frame, width, height);
+            latencies[i] = System.nanoTime() - before;
+            if (motion) {
+                triggered[triggerCount++] = i;
+            }
+        }
+        long wall = System.nanoTime() - start;
+
+        return new ReplayReport(wall, latencies, Arrays.copyOf(triggered, triggerCount));
+    }
+
+    /**
+     * Command line entry point: {@code ReplayHarness <frame file> [motion|adaptive]}.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1 || args.length > 2) {
+            System.err.println("Usage: ReplayHarness <frame file> [motion|adaptive]");
+            System.exit(2);
+        }
+
+        try (FrameFileReader reader = new FrameFileReader(new File(args[0]))) {
+            String kind = args.length > 1 ? args[1] : "motion";
+            InterMotionDetection detector;
+            if (kind.equals("motion")) {
+                detector = new MotionDetection(reader.getWidth(), reader.getHeight());
+            } else if (kind.equals("adaptive")) {
+                detector = new AdaptiveBackgroundDetection(reader.getWidth(), reader.getHeight());
+            } else {
+                throw new IllegalArgumentException("Unknown detector " + kind);
+            }
+
+            System.out.println(reader.getWidth() + "x" + reader.getHeight() + " " + kind);
+            System.out.println(replay(reader, detector));
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package com.example.jagadish.motion;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Result of replaying a frame file through a detector: throughput, detection latency percentiles
+ * and the frames on which the detector reported motion.
+ */
+
+public class ReplayReport {
+    private final long wallNanos;
+    private final long[] sortedLatencies;
+    private final int[] triggeredFrames;
+
+    ReplayReport(long wallNanos, long[] latencies, int[] triggeredFrames) {
+        this.wallNanos = wallNanos;
+        this.sortedLatencies = latencies.clone();
+        Arrays.sort(sortedLatencies);
+        this.triggeredFrames = triggeredFrames;
+    }
+
+    public int getFrameCount() {
+        return sortedLatencies.length;
+    }
+
+    /**
+     * @return Frames replayed per second of wall time, including copying frames out of the file.
+     */
+    public double getFramesPerSecond() {
+        return wallNanos == 0 ? 0 : sortedLatencies.length * 1e9 / wallNanos;
+    }
+
+    /**
+     * @param percentile
+     *            Between 0 and 100, for example 50 for the median or 99.
+     * @return Detector time per frame at that percentile, nearest rank.
+     */
+    public long getLatencyNanos(double percentile) {
+        if (percentile < 0 || percentile > 100) throw new IllegalArgumentException("Percentile " + percentile);
+        if (sortedLatencies.length == 0) return 0;
+
+        int rank = (int) Math.ceil(percentile / 100 * sortedLatencies.length);
+        return sortedLatencies[Math.max(0, rank - 1)];
+    }
+
+    /**
+     * @return Indices of the frames that reported motion, in order.
+     */
+    public int[] getTriggeredFrames() {
+        return triggeredFrames.clone();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder ranges = new StringBuilder();
+        for (int i = 0; i < triggeredFrames.length; ) {
+            int start = triggeredFrames[i];
+            int end = start;
+            while (++i < triggeredFrames.length && triggeredFrames[i] == end + 1) {
+                end++;
+            }
+            if (ranges.length() > 0) ranges.append(", ");
+            ranges.append(start);
+            if (end > start) ranges.append('-').append(end);
+        }
+
+        return String.format(Locale.US, "%d frames, %.1f fps, latency p50 %.2f ms, p90 %.2f ms, p99 %.2f ms, max %.2f ms%n"
+                        + "%d triggered: %s",
+                getFrameCount(), getFramesPerSecond(), getLatencyNanos(50) / 1e6, getLatencyNanos(90) / 1e6,
+                getLatencyNanos(99) / 1e6, getLatencyNanos(100) / 1e6, triggeredFrames.length, ranges);
+    }
+}
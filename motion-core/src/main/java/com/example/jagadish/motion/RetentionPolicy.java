@@ -0,0 +1,146 @@
+package com.example.jagadish.motion;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Chooses which clips to delete to keep recordings within a byte quota and a maximum age, and to
+ * leave enough free space for the next recording. Clips go oldest first; important clips are
+ * never chosen but still count against the quota.
+ */
+
+public class RetentionPolicy {
+    /**
+     * The kept clips oldest first, read only as far as the policy needs them.
+     */
+    public interface Cursor {
+        /**
+         * @return The next clip, or null after the last.
+         */
+        public Clip next() throws IOException;
+    }
+
+    /**
+     * A recorded clip as seen by the policy.
+     */
+    public static class Clip {
+        private final int index;
+        private final String path;
+        private final long bytes;
+        private final long timeMillis;
+        private final boolean important;
+
+        /**
+         * @param index
+         *            Position in the event log.
+         * @param timeMillis
+         *            When the clip was recorded, for its age.
+         */
+        public Clip(int index, String path, long bytes, long timeMillis, boolean important) {
+            this.index = index;
+            this.path = path;
+            this.bytes = bytes;
+            this.timeMillis = timeMillis;
+            this.important = important;
+        }
+
+        public int getIndex() {
+            return index;
+        }
+
+        public String getPath() {
+            return path;
+        }
+
+        public long getBytes() {
+            return bytes;
+        }
+
+        public long getTimeMillis() {
+            return timeMillis;
+        }
+
+        public boolean isImportant() {
+            return important;
+        }
+    }
+
+    private final long quotaBytes;
+    private final long maxAgeMillis;
+    private final long minFreeBytes;
+
+    /**
+     * @param quotaBytes
+     *            Most space all clips may use, or 0 for no quota.
+     * @param maxAgeMillis
+     *            Oldest clip kept, or 0 to keep clips of any age.
+     * @param minFreeBytes
+     *            Free space to keep on the volume for recording.
+     */
+    public RetentionPolicy(long quotaBytes, long maxAgeMillis, long minFreeBytes) {
+        if (quotaBytes < 0 || maxAgeMillis < 0 || minFreeBytes < 0) {
+            throw new IllegalArgumentException("Invalid retention limits " + quotaBytes + ", " + maxAgeMillis + ", "
+                    + minFreeBytes);
+        }
+        this.quotaBytes = quotaBytes;
+        this.maxAgeMillis = maxAgeMillis;
+        this.minFreeBytes = minFreeBytes;
+    }
+
+    public long getMinFreeBytes() {
+        return minFreeBytes;
+    }
+
+    /**
+     * @param clips
+     *            Every clip kept, in any order.
+     * @param freeBytes
+     *            Space left on the volume.
+     * @return The clips to delete, oldest first.
+     */
+    public List<Clip> select(List<Clip> clips, long nowMillis, long freeBytes) {
+        List<Clip> sorted = new ArrayList<>(clips);
+        Collections.sort(sorted, (a, b) -> a.timeMillis != b.timeMillis
+                ? Long.compare(a.timeMillis, b.timeMillis) : Integer.compare(a.index, b.index));
+
+        long total = 0;
+        for (Clip clip : sorted) {
+            total += clip.bytes;
+        }
+        Iterator<Clip> oldest = sorted.iterator();
+        try {
+            return select(() -> oldest.hasNext() ? oldest.next() : null, total, nowMillis, freeBytes);
+        } catch (IOException e) {
+            throw new AssertionError(e); // A list does not fail to read
+        }
+    }
+
+    /**
+     * Choose clips without reading all of them: the cursor is advanced only until the limits are
+     * met, so a pass reads the clips it deletes and the important ones among them.
+     *
+     * @param oldestFirst
+     *            Every clip kept, oldest first.
+     * @param totalBytes
+     *            Size of all clips kept.
+     * @param freeBytes
+     *            Space left on the volume.
+     * @return The clips to delete, oldest first.
+     */
+    public List<Clip> select(Cursor oldestFirst, long totalBytes, long nowMillis, long freeBytes) throws IOException {
+        long excess = Math.max(quotaBytes > 0 ? totalBytes - quotaBytes : 0, minFreeBytes - freeBytes);
+        long cutoff = maxAgeMillis > 0 ? nowMillis - maxAgeMillis : Long.MIN_VALUE;
+
+        List<Clip> victims = new ArrayList<>();
+        for (Clip clip = oldestFirst.next(); clip != null; clip = oldestFirst.next()) {
+            if (excess <= 0 && clip.timeMillis >= cutoff) break;
+            if (clip.important) continue;
+            victims.add(clip);
+            excess -= clip.bytes;
+        }
+        return victims;
+    }
+}
@@ -0,0 +1,126 @@
+package com.example.jagadish.motion;
+
+/**
+ * Horizontal runs of analysed pixels, one list per row, compiled from a ZoneMask for one frame size.
+ * Row y owns spans [getRowStart(y), getRowStart(y + 1)); span i covers [getSpanStart(i), getSpanEnd(i)).
+ */
+
+public class SpanList {
+    private final int width;
+    private final int height;
+    private final int[] rowOffsets;
+    private final int[] spans;
+    private final int pixelCount;
+    private final int left;
+    private final int top;
+    private final int right;
+    private final int bottom;
+
+    SpanList(int width, int height, int[] rowOffsets, int[] spans) {
+        this.width = width;
+        this.height = height;
+        this.rowOffsets = rowOffsets;
+        this.spans = spans;
+
+        int pixels = 0;
+        int minX = width;
+        int maxX = 0;
+        for (int i = 0; i < rowOffsets[height]; i++) {
+            pixels += spans[2 * i + 1] - spans[2 * i];
+            minX = Math.min(minX, spans[2 * i]);
+            maxX = Math.max(maxX, spans[2 * i + 1]);
+        }
+        this.pixelCount = pixels;
+
+        int minY = 0;
+        while (minY < height && rowOffsets[minY + 1] == rowOffsets[minY]) minY++;
+        int maxY = height;
+        while (maxY > minY && rowOffsets[maxY] == rowOffsets[maxY - 1]) maxY--;
+        boolean empty = pixels == 0;
+        this.left = empty ? 0 : minX;
+        this.top = empty ? 0 : minY;
+        this.right = empty ? 0 : maxX;
+        this.bottom = empty ? 0 : maxY;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public int getRowStart(int y) {
+        return rowOffsets[y];
+    }
+
+    public int getSpanStart(int span) {
+        return spans[2 * span];
+    }
+
+    public int getSpanEnd(int span) {
+        return spans[2 * span + 1];
+    }
+
+    /**
+     * @return Total number of analysed pixels.
+     */
+    public int getPixelCount() {
+        return pixelCount;
+    }
+
+    /**
+     * @return Left edge of the bounding box of all spans; the box is empty when there are none.
+     */
+    public int getLeft() {
+        return left;
+    }
+
+    public int getTop() {
+        return top;
+    }
+
+    /**
+     * @return Exclusive right edge of the bounding box.
+     */
+    public int getRight() {
+        return right;
+    }
+
+    /**
+     * @return Exclusive bottom edge of the bounding box.
+     */
+    public int getBottom() {
+        return bottom;
+    }
+
+    /**
+     * Copy the analysed pixels of one plane into another of the same size; the rest of dst is left as it was.
+     */
+    public void copy(byte[] src, byte[] dst) {
+        for (int y = top; y < bottom; y++) {
+            int row = y * width;
+            for (int i = rowOffsets[y], end = rowOffsets[y + 1]; i < end; i++) {
+                System.arraycopy(src, row + spans[2 * i], dst, row + spans[2 * i], spans[2 * i + 1] - spans[2 * i]);
+            }
+        }
+    }
+
+    /**
+     * Count analysed pixels in [left, right) x [top, bottom). Walks the spans, so meant for setup rather than per frame.
+     */
+    public int count(int left, int top, int right, int bottom) {
+        int pixels = 0;
+        for (int y = top; y < bottom; y++) {
+            for (int i = rowOffsets[y], end = rowOffsets[y + 1]; i < end; i++) {
+                int start = Math.max(left, spans[2 * i]);
+                int stop = Math.min(right, spans[2 * i + 1]);
+                if (stop > start) {
+                    pixels += stop - start;
+                }
+            }
+        }
+        return pixels;
+    }
+}
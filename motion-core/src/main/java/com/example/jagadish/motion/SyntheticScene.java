@@ -0,0 +1,278 @@
+package com.example.jagadish.motion;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Deterministic NV21 test sequence with known ground truth. A textured static background is
+ * combined with moving rectangles, Gaussian sensor noise, a slow lighting ramp, sudden lighting
+ * steps and flickering regions. Only the rectangles count as motion; lighting and flicker are the
+ * distractions a detector should ignore. The same seed always renders the same frames.
+ */
+
+public class SyntheticScene {
+    private static final int NOISE_TABLE_SIZE = 1 << 16;
+
+    private static class MovingObject {
+        final int width;
+        final int height;
+        final float x;
+        final float y;
+        final float dx;
+        final float dy;
+        final int firstFrame;
+        final int lastFrame;
+        final int luma;
+
+        MovingObject(int width, int height, float x, float y, float dx, float dy, int firstFrame, int lastFrame, int luma) {
+            this.width = width;
+            this.height = height;
+            this.x = x;
+            this.y = y;
+            this.dx = dx;
+            this.dy = dy;
+            this.firstFrame = firstFrame;
+            this.lastFrame = lastFrame;
+            this.luma = luma;
+        }
+
+        boolean isVisible(int frame) {
+            return frame >= firstFrame && frame <= lastFrame;
+        }
+
+        int getLeft(int frame) {
+            return Math.round(x + dx * (frame - firstFrame));
+        }
+
+        int getTop(int frame) {
+            return Math.round(y + dy * (frame - firstFrame));
+        }
+    }
+
+    private static class Flicker {
+        final int left;
+        final int top;
+        final int right;
+        final int bottom;
+        final int amplitude;
+        final int period;
+
+        Flicker(int left, int top, int right, int bottom, int amplitude, int period) {
+            this.left = left;
+            this.top = top;
+            this.right = right;
+            this.bottom = bottom;
+            this.amplitude = amplitude;
+            this.period = period;
+        }
+    }
+
+    private final int width;
+    private final int height;
+    private final int frameCount;
+    private final long seed;
+    private final byte[] background;
+    private final List<MovingObject> objects = new ArrayList<>();
+    private final List<Flicker> flickers = new ArrayList<>();
+    private final List<int[]> lightSteps = new ArrayList<>();
+    private float noise;
+    private float rampPerFrame;
+    private byte[] noiseTable;
+
+    /**
+     * @param frameCount
+     *            Length of the sequence.
+     * @param seed
+     *            Seed for the background texture and the noise.
+     */
+    public SyntheticScene(int width, int height, int frameCount, long seed) {
+        if (width <= 0 || height <= 0 || width % 2 != 0 || height % 2 != 0) {
+            throw new IllegalArgumentException("NV21 needs an even size: " + width + "x" + height);
+        }
+        if (frameCount <= 0) throw new IllegalArgumentException("Need at least one frame: " + frameCount);
+
+        this.width = width;
+        this.height = height;
+        this.frameCount = frameCount;
+        this.seed = seed;
+
+        // Mid-grey gradient with a fixed grain so the background is not flat
+        Random random = new Random(seed);
+        this.background = new byte[width * height];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                background[y * width + x] = (byte) (70 + 60 * x / width + 30 * y / height + random.nextInt(12));
+            }
+        }
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public int getFrameCount() {
+        return frameCount;
+    }
+
+    /**
+     * @param sigma
+     *            Standard deviation of the per-pixel sensor noise, in luma levels.
+     */
+    public void setNoise(float sigma) {
+        if (sigma < 0) throw new IllegalArgumentException("Noise must not be negative: " + sigma);
+
+        noise = sigma;
+        noiseTable = null;
+        if (sigma > 0) {
+            Random random = new Random(seed ^ 0x5deece66dL);
+            noiseTable = new byte[NOISE_TABLE_SIZE];
+            for (int i = 0; i < noiseTable.length; i++) {
+                noiseTable[i] = (byte) Math.max(-128, Math.min(127, Math.round(random.nextGaussian() * sigma)));
+            }
+        }
+    }
+
+    public float getNoise() {
+        return noise;
+    }
+
+    /**
+     * @param levelsPerFrame
+     *            Brightness change of the whole scene per frame, such as dusk or dawn.
+     */
+    public void setLightingRamp(float levelsPerFrame) {
+        rampPerFrame = levelsPerFrame;
+    }
+
+    /**
+     * Sudden brightness change of the whole scene from a frame on, such as lights switching on.
+     */
+    public void addLightStep(int frame, int delta) {
+        lightSteps.add(new int[] { frame, delta });
+    }
+
+    /**
+     * Region whose brightness swings by amplitude with a square wave, such as a screen or a fluorescent tube.
+     */
+    public void addFlicker(int left, int top, int right, int bottom, int amplitude, int periodFrames) {
+        if (periodFrames < 2) throw new IllegalArgumentException("Period must be at least 2 frames: " + periodFrames);
+        flickers.add(new Flicker(Math.max(0, left), Math.max(0, top), Math.min(width, right), Math.min(height, bottom),
+                amplitude, periodFrames));
+    }
+
+    /**
+     * Solid rectangle visible from firstFrame to lastFrame inclusive, moving by dx, dy pixels per frame.
+     *
+     * @param x
+     *            Left edge at firstFrame.
+     * @param y
+     *            Top edge at firstFrame.
+     */
+    public void addObject(int objectWidth, int objectHeight, float x, float y, float dx, float dy,
+                          int firstFrame, int lastFrame, int luma) {
+        if (objectWidth <= 0 || objectHeight <= 0) throw new IllegalArgumentException("Empty object");
+        objects.add(new MovingObject(objectWidth, objectHeight, x, y, dx, dy, firstFrame, lastFrame, luma));
+    }
+
+    /**
+     * Ground truth: a frame has motion if a moving object is in view, or an object appears or disappears in it.
+     */
+    public boolean isMotion(int frame) {
+        for (MovingObject object : objects) {
+            boolean moving = (object.dx != 0 || object.dy != 0) && isInView(object, frame);
+            boolean appears = frame == object.firstFrame && isInView(object, frame);
+            boolean disappears = frame == object.lastFrame + 1 && isInView(object, object.lastFrame);
+            if (moving || appears || disappears) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean isInView(MovingObject object, int frame) {
+        if (!object.isVisible(frame)) return false;
+        int left = object.getLeft(frame);
+        int top = object.getTop(frame);
+        return left < width && left + object.width > 0 && top < height && top + object.height > 0;
+    }
+
+    /**
+     * Render one frame.
+     *
+     * @param dst
+     *            Buffer of at least width * height * 3 / 2 bytes.
+     */
+    public void render(int frame, byte[] dst) {
+        if (frame < 0 || frame >= frameCount) throw new IndexOutOfBoundsException("Frame " + frame + " of " + frameCount);
+        int size = width * height;
+        if (dst.length < size * 3 / 2) throw new IllegalArgumentException("Buffer too small for " + width + "x" + height);
+
+        int light = Math.round(rampPerFrame * frame);
+        for (int[] step : lightSteps) {
+            if (frame >= step[0]) light += step[1];
+        }
+        for (int i = 0; i < size; i++) {
+            dst[i] = clamp((background[i] & 0xff) + light);
+        }
+
+        for (Flicker flicker : flickers) {
+            if ((frame % flicker.period) * 2 < flicker.period) continue;
+            for (int y = flicker.top; y < flicker.bottom; y++) {
+                for (int i = y * width + flicker.left, end = y * width + flicker.right; i < end; i++) {
+                    dst[i] = clamp((dst[i] & 0xff) + flicker.amplitude);
+                }
+            }
+        }
+
+        for (MovingObject object : objects) {
+            if (!object.isVisible(frame)) continue;
+            int left = object.getLeft(frame);
+            int top = object.getTop(frame);
+            byte value = clamp(object.luma + light);
+            for (int y = Math.max(0, top); y < Math.min(height, top + object.height); y++) {
+                int from = y * width + Math.max(0, left);
+                int to = y * width + Math.min(width, left + object.width);
+                if (to > from) Arrays.fill(dst, from, to, value);
+            }
+        }
+
+        if (noiseTable != null) {
+            // A frame-dependent walk through the table keeps noise deterministic but uncorrelated between frames
+            Random random = new Random(seed * 31 + frame);
+            int index = random.nextInt(NOISE_TABLE_SIZE);
+            int stride = 2 * random.nextInt(NOISE_TABLE_SIZE / 2) + 1;
+            for (int i = 0; i < size; i++) {
+                dst[i] = clamp((dst[i] & 0xff) + noiseTable[index]);
+                index = (index + stride) & (NOISE_TABLE_SIZE - 1);
+            }
+        }
+
+        Arrays.fill(dst, size, size * 3 / 2, (byte) 128);
+    }
+
+    /**
+     * Write the whole sequence to a raw frame file for the replay harness.
+     */
+    public void writeTo(File file) throws IOException {
+        byte[] frame = new byte[width * height * 3 / 2];
+        try (FrameFileWriter writer = new FrameFileWriter(file, width, height, ImageProcessing.NV21)) {
+            for (int i = 0; i < frameCount; i++) {
+                render(i, frame);
+                // 30 fps timestamps
+                writer.append(frame, i * 33333333L);
+            }
+        }
+    }
+
+    private static byte clamp(int value) {
+        return (byte) (value < 0 ? 0 : value > 255 ? 255 : value);
+    }
+}
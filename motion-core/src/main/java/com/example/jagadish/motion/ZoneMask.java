@@ -0,0 +1,145 @@
+package com.example.jagadish.motion;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * User-defined inclusion and exclusion zones for motion detection.
+ * Zones are polygons in normalised coordinates, 0 to 1 across the frame, so one mask fits any preview size.
+ * If there are inclusion zones only their area is analysed, otherwise the whole frame is;
+ * exclusion zones are then removed from that area.
+ */
+
+public class ZoneMask {
+
+    private static class Zone {
+        final boolean include;
+        final float[] xs;
+        final float[] ys;
+
+        Zone(boolean include, float[] xs, float[] ys) {
+            this.include = include;
+            this.xs = xs;
+            this.ys = ys;
+        }
+    }
+
+    private final List<Zone> zones = new ArrayList<>();
+
+    /**
+     * @param include
+     *            True to analyse only inside zones like this one, false to never analyse it.
+     */
+    public synchronized void addRectangle(boolean include, float left, float top, float right, float bottom) {
+        addPolygon(include, new float[] { left, top, right, top, right, bottom, left, bottom });
+    }
+
+    /**
+     * @param points
+     *            Vertices as x0, y0, x1, y1, ... in normalised coordinates.
+     */
+    public synchronized void addPolygon(boolean include, float[] points) {
+        if (points == null) throw new NullPointerException();
+        if (points.length < 6 || points.length % 2 != 0) {
+            throw new IllegalArgumentException("A polygon needs at least three x, y pairs");
+        }
+
+        int n = points.length / 2;
+        float[] xs = new float[n];
+        float[] ys = new float[n];
+        for (int i = 0; i < n; i++) {
+            xs[i] = points[2 * i];
+            ys[i] = points[2 * i + 1];
+        }
+        zones.add(new Zone(include, xs, ys));
+    }
+
+    public synchronized void clear() {
+        zones.clear();
+    }
+
+    public synchronized boolean isEmpty() {
+        return zones.isEmpty();
+    }
+
+    /**
+     * Rasterise the zones for one frame size. A pixel belongs to a zone if its centre lies inside it.
+     *
+     * @return Spans of pixels to analyse.
+     */
+    public synchronized SpanList compile(int width, int height) {
+        if (width <= 0 || height <= 0) throw new IllegalArgumentException("Invalid size " + width + "x" + height);
+
+        boolean hasInclude = false;
+        for (Zone zone : zones) {
+            hasInclude |= zone.include;
+        }
+
+        byte[] row = new byte[width];
+        float[] crossings = new float[16];
+        int[] rowOffsets = new int[height + 1];
+        int[] spans = new int[64];
+        int spanCount = 0;
+
+        for (int y = 0; y < height; y++) {
+            Arrays.fill(row, (byte) (hasInclude ? 0 : 1));
+            float centreY = (y + 0.5f) / height;
+            // Inclusions first so exclusions always win
+            for (int pass = 0; pass < 2; pass++) {
+                boolean include = pass == 0;
+                for (Zone zone : zones) {
+                    if (zone.include != include) continue;
+                    crossings = fillZoneRow(zone, centreY, width, row, include ? (byte) 1 : (byte) 0, crossings);
+                }
+            }
+
+            rowOffsets[y] = spanCount;
+            for (int x = 0; x < width; ) {
+                if (row[x] == 0) {
+                    x++;
+                    continue;
+                }
+                int start = x;
+                while (x < width && row[x] != 0) x++;
+                if (2 * spanCount + 2 > spans.length) {
+                    spans = Arrays.copyOf(spans, spans.length * 2);
+                }
+                spans[2 * spanCount] = start;
+                spans[2 * spanCount + 1] = x;
+                spanCount++;
+            }
+        }
+        rowOffsets[height] = spanCount;
+
+        return new SpanList(width, height, rowOffsets, Arrays.copyOf(spans, 2 * spanCount));
+    }
+
+    private static float[] fillZoneRow(Zone zone, float centreY, int width, byte[] row, byte value, float[] crossings) {
+        int n = zone.xs.length;
+        int count = 0;
+        for (int i = 0, j = n - 1; i < n; j = i++) {
+            float y1 = zone.ys[j];
+            float y2 = zone.ys[i];
+            if ((y1 <= centreY && centreY < y2) || (y2 <= centreY && centreY < y1)) {
+                float x1 = zone.xs[j];
+                float x2 = zone.xs[i];
+                if (count == crossings.length) {
+                    crossings = Arrays.copyOf(crossings, count * 2);
+                }
+                crossings[count++] = x1 + (centreY - y1) * (x2 - x1) / (y2 - y1);
+            }
+        }
+        Arrays.sort(crossings, 0, count);
+
+        // Even-odd rule: pixels whose centre lies between a pair of crossings
+        for (int k = 0; k + 1 < count; k += 2) {
+            int start = Math.max(0, (int) Math.ceil(crossings[k] * width - 0.5f));
+            int end = Math.min(width, (int) Math.ceil(crossings[k + 1] * width - 0.5f));
+            if (end > start) {
+                Arrays.fill(row, start, end, value);
+            }
+        }
+        return crossings;
+    }
+}
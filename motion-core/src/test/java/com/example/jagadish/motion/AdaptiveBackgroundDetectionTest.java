@@ -0,0 +1,104 @@
+package com.example.jagadish.motion;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class AdaptiveBackgroundDetectionTest {
+    private static final int WIDTH = 320;
+    private static final int HEIGHT = 240;
+
+    private static void fill(byte[] frame, int level, double noise, Random random) {
+        for (int i = 0; i < frame.length; i++) {
+            int value = (int) Math.round(level + random.nextGaussian() * noise);
+            frame[i] = (byte) Math.max(0, Math.min(255, value));
+        }
+    }
+
+    private static void square(byte[] frame, int left, int top, int size, int delta) {
+        for (int y = top; y < top + size; y++) {
+            for (int x = left; x < left + size; x++) {
+                int value = (frame[y * WIDTH + x] & 0xff) + delta;
+                frame[y * WIDTH + x] = (byte) Math.max(0, Math.min(255, value));
+            }
+        }
+    }
+
+    @Test
+    public void noisyStaticSceneStaysQuiet() throws Exception {
+        // Low light: noise well above the fixed 25 level threshold of MotionDetection
+        Random random = new Random(1);
+        AdaptiveBackgroundDetection detector = new AdaptiveBackgroundDetection(WIDTH, HEIGHT);
+        byte[] frame = new byte[WIDTH * HEIGHT];
+        int alarms = 0;
+        for (int n = 0; n < 200; n++) {
+            fill(frame, 60, 14, random);
+            if (detector.detect(frame, WIDTH, HEIGHT) && n > 50) {
+                alarms++;
+            }
+        }
+        assertEquals(0, alarms);
+        assertTrue(detector.getDeviation(WIDTH / 2, HEIGHT / 2) > 8f);
+    }
+
+    @Test
+    public void subtleChangeInFlatSceneIsDetected() throws Exception {
+        Random random = new Random(2);
+        AdaptiveBackgroundDetection detector = new AdaptiveBackgroundDetection(WIDTH, HEIGHT);
+        byte[] frame = new byte[WIDTH * HEIGHT];
+        for (int n = 0; n < 60; n++) {
+            fill(frame, 128, 1, random);
+            assertFalse(detector.detect(frame, WIDTH, HEIGHT));
+        }
+
+        // 15 levels is below the fixed threshold but many deviations away here
+        fill(frame, 128, 1, random);
+        square(frame, 80, 60, 96, 15);
+        assertTrue(detector.detect(frame, WIDTH, HEIGHT));
+        assertTrue(detector.getForegroundCount() >= 96 * 96 * 9 / 10);
+    }
+
+    @Test
+    public void blockModelDetectsLargeMotion() throws Exception {
+        Random random = new Random(3);
+        AdaptiveBackgroundDetection detector = new AdaptiveBackgroundDetection(WIDTH, HEIGHT, 4);
+        assertEquals(WIDTH / 4, detector.getModelWidth());
+        assertEquals(HEIGHT / 4, detector.getModelHeight());
+
+        byte[] frame = new byte[WIDTH * HEIGHT];
+        for (int n = 0; n < 30; n++) {
+            fill(frame, 90, 4, random);
+            assertFalse(detector.detect(frame, WIDTH, HEIGHT));
+        }
+        fill(frame, 90, 4, random);
+        square(frame, 120, 80, 100, 80);
+        assertTrue(detector.detect(frame, WIDTH, HEIGHT));
+    }
+
+    @Test
+    public void parkedObjectFadesIntoBackground() throws Exception {
+        Random random = new Random(4);
+        AdaptiveBackgroundDetection detector = new AdaptiveBackgroundDetection(WIDTH, HEIGHT);
+        detector.setLearningRate(0.1f);
+        byte[] frame = new byte[WIDTH * HEIGHT];
+        for (int n = 0; n < 30; n++) {
+            fill(frame, 100, 2, random);
+            detector.detect(frame, WIDTH, HEIGHT);
+        }
+
+        boolean motion = true;
+        for (int n = 0; n < 500 && motion; n++) {
+            fill(frame, 100, 2, random);
+            square(frame, 80, 60, 96, 60);
+            motion = detector.detect(frame, WIDTH, HEIGHT);
+        }
+        assertFalse(motion);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsWrongFrameSize() throws Exception {
+        new AdaptiveBackgroundDetection(WIDTH, HEIGHT).detect(new byte[WIDTH * HEIGHT], WIDTH / 2, HEIGHT);
+    }
+}
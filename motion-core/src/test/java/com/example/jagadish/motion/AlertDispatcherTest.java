@@ -0,0 +1,183 @@
+package com.example.jagadish.motion;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class AlertDispatcherTest {
+    // Fails the first sends, then records digests
+    private static class FakeSender implements AlertDispatcher.Sender {
+        final List<List<Alert>> digests = new ArrayList<>();
+        final List<Long> attempts = new ArrayList<>();
+        final CountDownLatch sent = new CountDownLatch(1);
+        volatile CountDownLatch gate;
+        volatile Error error;
+        int failuresLeft;
+        int disconnects;
+        int aborts;
+
+        FakeSender(int failures) {
+            this.failuresLeft = failures;
+        }
+
+        @Override
+        public void send(List<Alert> digest) throws IOException {
+            if (gate != null) {
+                try {
+                    gate.await();
+                } catch (InterruptedException e) {
+                    throw new IOException(e);
+                }
+            }
+            synchronized (this) {
+                attempts.add(System.nanoTime() / 1000000);
+                if (failuresLeft-- > 0) {
+                    if (error != null) throw error;
+                    throw new IOException("Connection refused");
+                }
+                digests.add(new ArrayList<>(digest));
+            }
+            sent.countDown();
+        }
+
+        @Override
+        public synchronized void disconnect() {
+            disconnects++;
+        }
+
+        @Override
+        public synchronized void abort() {
+            aborts++;
+        }
+    }
+
+    private static int abortCount(FakeSender sender) {
+        synchronized (sender) {
+            return sender.aborts;
+        }
+    }
+
+    private static AlertDispatcher dispatcher(FakeSender sender, long windowMillis, int maxAttempts) {
+        return new AlertDispatcher(sender, windowMillis, 20, 1000, maxAttempts, 60000, 100, 10);
+    }
+
+    @Test
+    public void alertsWithinWindowShareDigest() throws Exception {
+        FakeSender sender = new FakeSender(0);
+        AlertDispatcher dispatcher = dispatcher(sender, 200, 3);
+        for (int i = 0; i < 3; i++) {
+            assertTrue(dispatcher.post(new Alert(i, "event " + i)));
+        }
+        assertTrue(sender.sent.await(5, TimeUnit.SECONDS));
+        assertTrue(dispatcher.close(5000));
+
+        assertEquals(1, sender.digests.size());
+        assertEquals(3, sender.digests.get(0).size());
+        assertEquals("event 2", sender.digests.get(0).get(2).getMessage());
+        assertEquals(1, dispatcher.getDigestsSent());
+        assertEquals(3, dispatcher.getAlertsSent());
+        assertEquals(3, dispatcher.getDeliveryLatency().getCount());
+        assertFalse(dispatcher.post(new Alert(4, "late")));
+    }
+
+    @Test
+    public void failedSendBacksOff() throws Exception {
+        FakeSender sender = new FakeSender(2);
+        AlertDispatcher dispatcher = dispatcher(sender, 0, 5);
+        dispatcher.post(new Alert(0, "event"));
+        assertTrue(sender.sent.await(5, TimeUnit.SECONDS));
+        dispatcher.close();
+
+        assertEquals(3, sender.attempts.size());
+        assertTrue(sender.attempts.get(1) - sender.attempts.get(0) >= 20);
+        assertTrue(sender.attempts.get(2) - sender.attempts.get(1) >= 40);
+        assertEquals(2, dispatcher.getFailures());
+        assertEquals(1, dispatcher.getAlertsSent());
+        assertEquals(0, dispatcher.getDropped());
+    }
+
+    @Test
+    public void errorInSendIsRetried() throws Exception {
+        FakeSender sender = new FakeSender(1);
+        sender.error = new VerifyError("Bad handler");
+        AlertDispatcher dispatcher = dispatcher(sender, 0, 3);
+        dispatcher.post(new Alert(0, "event"));
+        assertTrue(sender.sent.await(5, TimeUnit.SECONDS));
+        assertTrue(dispatcher.post(new Alert(1, "next")));
+        assertTrue(dispatcher.close(5000));
+
+        assertEquals(1, dispatcher.getFailures());
+        assertEquals(2, dispatcher.getAlertsSent());
+        assertEquals(1, sender.aborts);
+    }
+
+    @Test
+    public void failedIdleCloseKeepsAlerting() throws Exception {
+        FakeSender sender = new FakeSender(0) {
+            @Override
+            public synchronized void disconnect() {
+                throw new IllegalStateException("Broken transport");
+            }
+        };
+        AlertDispatcher dispatcher = new AlertDispatcher(sender, 0, 20, 1000, 3, 20, 100, 10);
+        dispatcher.post(new Alert(0, "event"));
+        assertTrue(sender.sent.await(5, TimeUnit.SECONDS));
+
+        // The idle disconnect throws, so the connection is aborted instead
+        long deadline = System.currentTimeMillis() + 5000;
+        while (abortCount(sender) == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(1, abortCount(sender));
+
+        assertTrue(dispatcher.post(new Alert(2, "late")));
+        while (dispatcher.getAlertsSent() < 2 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(2, dispatcher.getAlertsSent());
+        synchronized (sender) {
+            assertEquals(2, sender.digests.size());
+        }
+        dispatcher.close();
+    }
+
+    @Test
+    public void digestIsDroppedAfterLastAttempt() throws Exception {
+        FakeSender sender = new FakeSender(Integer.MAX_VALUE);
+        AlertDispatcher dispatcher = dispatcher(sender, 0, 3);
+        dispatcher.post(new Alert(0, "a"));
+        long deadline = System.currentTimeMillis() + 5000;
+        while (dispatcher.getDropped() == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        dispatcher.close();
+
+        assertEquals(1, dispatcher.getDropped());
+        assertEquals(3, dispatcher.getFailures());
+        assertEquals(0, dispatcher.getQueueDepth());
+    }
+
+    @Test
+    public void closeFlushesWithoutWaitingForWindow() throws Exception {
+        FakeSender sender = new FakeSender(0);
+        sender.gate = new CountDownLatch(1);
+        AlertDispatcher dispatcher = dispatcher(sender, 60000, 3);
+        dispatcher.post(new Alert(0, "a"));
+        dispatcher.post(new Alert(1, "b"));
+        assertEquals(2, dispatcher.getQueueDepth());
+
+        sender.gate.countDown();
+        long start = System.nanoTime();
+        assertTrue(dispatcher.close(5000));
+        assertTrue(System.nanoTime() - start < 5000000000L);
+        assertEquals(2, dispatcher.getAlertsSent());
+        assertEquals(0, dispatcher.getQueueDepth());
+        assertTrue(sender.disconnects >= 1);
+    }
+}
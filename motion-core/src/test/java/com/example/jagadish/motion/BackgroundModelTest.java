@@ -0,0 +1,45 @@
+package com.example.jagadish.motion;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class BackgroundModelTest {
+    @Test
+    public void firstFrameSeedsBackground() throws Exception {
+        BackgroundModel model = new BackgroundModel(2, 0.1f);
+        model.update(new byte[] { 40, (byte) 200 });
+
+        assertEquals(1, model.getFrameCount());
+        assertEquals(40, model.getBackground()[0] >> BackgroundModel.FRACTION_BITS);
+        assertEquals(200, model.getBackground()[1] >> BackgroundModel.FRACTION_BITS);
+    }
+
+    @Test
+    public void convergesTowardsNewScene() throws Exception {
+        BackgroundModel model = new BackgroundModel(1, 0.25f);
+        model.update(new byte[] { 0 });
+        for (int i = 0; i < 40; i++) {
+            model.update(new byte[] { (byte) 160 });
+        }
+
+        int value = model.getBackground()[0] >> BackgroundModel.FRACTION_BITS;
+        assertTrue("background was " + value, value >= 158 && value <= 160);
+    }
+
+    @Test
+    public void stateIsReusedAcrossUpdates() throws Exception {
+        BackgroundModel model = new BackgroundModel(4, 0.5f);
+        int[] background = model.getBackground();
+        model.update(new byte[4]);
+        model.update(new byte[] { 10, 10, 10, 10 });
+
+        assertSame(background, model.getBackground());
+        assertEquals(0.5f, model.getLearningRate(), 0.001f);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsOutOfRangeLearningRate() throws Exception {
+        new BackgroundModel(1, 0f);
+    }
+}
@@ -0,0 +1,104 @@
+package com.example.jagadish.motion;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class BlobLabelerTest {
+    private static byte[] mask(String... rows) {
+        int width = rows[0].length();
+        byte[] mask = new byte[width * rows.length];
+        for (int y = 0; y < rows.length; y++) {
+            for (int x = 0; x < width; x++) {
+                mask[y * width + x] = (byte) (rows[y].charAt(x) == '#' ? 1 : 0);
+            }
+        }
+        return mask;
+    }
+
+    @Test
+    public void diagonalCellsAreConnected() throws Exception {
+        byte[] cells = mask(
+                "#...",
+                ".#..",
+                "..#.",
+                "....");
+        BlobLabeler labeler = new BlobLabeler(16);
+
+        assertEquals(1, labeler.label(cells, null, 4, 0, 0, 4, 4));
+        Blob blob = labeler.getBlob(0);
+        assertEquals(3, blob.getCellCount());
+        assertEquals(0, blob.getLeft());
+        assertEquals(0, blob.getTop());
+        assertEquals(3, blob.getRight());
+        assertEquals(3, blob.getBottom());
+        assertEquals(1.5f, blob.getCentroidX(), 1e-6f);
+        assertEquals(1.5f, blob.getCentroidY(), 1e-6f);
+    }
+
+    @Test
+    public void uShapeMergesIntoOneBlob() throws Exception {
+        byte[] cells = mask(
+                "#..#",
+                "#..#",
+                "####");
+        BlobLabeler labeler = new BlobLabeler(12);
+
+        assertEquals(1, labeler.label(cells, null, 4, 0, 0, 4, 3));
+        assertEquals(8, labeler.getBlob(0).getCellCount());
+        assertEquals(labeler.getBlobIndex(0, 0), labeler.getBlobIndex(3, 0));
+    }
+
+    @Test
+    public void separateBlobsAndWeights() throws Exception {
+        byte[] cells = mask(
+                "##..#",
+                ".....",
+                "....#");
+        int[] weights = new int[15];
+        weights[0] = 10;
+        weights[1] = 30;
+        weights[4] = 5;
+        weights[14] = 7;
+        BlobLabeler labeler = new BlobLabeler(15);
+
+        assertEquals(3, labeler.label(cells, weights, 5, 0, 0, 5, 3));
+        Blob pair = labeler.getBlob(0);
+        assertEquals(2, pair.getCellCount());
+        assertEquals(40, pair.getChangedPixels());
+        // Weighted towards the heavier right cell: (10 * 0.5 + 30 * 1.5) / 40
+        assertEquals(1.25f, pair.getCentroidX(), 1e-6f);
+        assertEquals(-1, labeler.getBlobIndex(2, 1));
+    }
+
+    @Test
+    public void labelsSubRectangleInMaskCoordinates() throws Exception {
+        byte[] cells = mask(
+                "#....",
+                "...##",
+                "...##");
+        BlobLabeler labeler = new BlobLabeler(6);
+
+        assertEquals(1, labeler.label(cells, null, 5, 2, 1, 5, 3));
+        Blob blob = labeler.getBlob(0);
+        assertEquals(3, blob.getLeft());
+        assertEquals(1, blob.getTop());
+        assertEquals(5, blob.getRight());
+        assertEquals(3, blob.getBottom());
+    }
+
+    @Test
+    public void checkerboardFitsLabelBound() throws Exception {
+        int width = 31;
+        int height = 17;
+        byte[] cells = new byte[width * height];
+        for (int y = 0; y < height; y += 2) {
+            for (int x = 0; x < width; x += 2) {
+                cells[y * width + x] = 1;
+            }
+        }
+        BlobLabeler labeler = new BlobLabeler(width * height);
+
+        assertEquals(16 * 9, labeler.label(cells, null, width, 0, 0, width, height));
+    }
+}
@@ -0,0 +1,94 @@
+package com.example.jagadish.motion;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class ChangeIntegralTest {
+    @Test
+    public void rectangleCountsMatchBruteForce() throws Exception {
+        int width = 37;
+        int height = 23;
+        Random random = new Random(3);
+        ChangeIntegral integral = new ChangeIntegral(width, height);
+        byte[] mask = integral.getMask();
+        for (int y = 0; y < height; y++) {
+            // Leave every third row unflagged; it must count as unchanged
+            boolean flagged = y % 3 != 0;
+            integral.setRowChanged(y, flagged);
+            for (int x = 0; x < width; x++) {
+                mask[y * width + x] = (byte) (random.nextInt(4) == 0 ? 1 : 0);
+            }
+        }
+        integral.build();
+
+        for (int n = 0; n < 500; n++) {
+            int left = random.nextInt(width + 1);
+            int right = left + random.nextInt(width - left + 1);
+            int top = random.nextInt(height + 1);
+            int bottom = top + random.nextInt(height - top + 1);
+
+            int expected = 0;
+            for (int y = top; y < bottom; y++) {
+                if (y % 3 == 0) continue;
+                for (int x = left; x < right; x++) {
+                    expected += mask[y * width + x];
+                }
+            }
+            assertEquals(expected, integral.count(left, top, right, bottom));
+        }
+    }
+
+    @Test
+    public void boundedTableIgnoresMaskOutside() throws Exception {
+        int width = 30;
+        int height = 20;
+        Random random = new Random(5);
+        ChangeIntegral integral = new ChangeIntegral(width, height);
+        integral.setBounds(7, 4, 21, 15);
+        byte[] mask = integral.getMask();
+        for (int y = 0; y < height; y++) {
+            integral.setRowChanged(y, true);
+            for (int x = 0; x < width; x++) {
+                mask[y * width + x] = (byte) (random.nextInt(3) == 0 ? 1 : 0);
+            }
+        }
+        integral.build();
+
+        for (int n = 0; n < 500; n++) {
+            int left = random.nextInt(width + 1);
+            int right = left + random.nextInt(width - left + 1);
+            int top = random.nextInt(height + 1);
+            int bottom = top + random.nextInt(height - top + 1);
+
+            int expected = 0;
+            for (int y = Math.max(top, 4); y < Math.min(bottom, 15); y++) {
+                for (int x = Math.max(left, 7); x < Math.min(right, 21); x++) {
+                    expected += mask[y * width + x];
+                }
+            }
+            assertEquals(expected, integral.count(left, top, right, bottom));
+        }
+    }
+
+    @Test
+    public void clearedTableCountsNothing() throws Exception {
+        ChangeIntegral integral = new ChangeIntegral(4, 4);
+        integral.getMask()[5] = 1;
+        integral.setRowChanged(1, true);
+        integral.build();
+        assertEquals(1, integral.count(0, 0, 4, 4));
+
+        integral.clear();
+        assertEquals(0, integral.count(0, 0, 4, 4));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsRectangleOutsideFrame() throws Exception {
+        ChangeIntegral integral = new ChangeIntegral(4, 4);
+        integral.build();
+        integral.count(0, 0, 5, 4);
+    }
+}
@@ -0,0 +1,40 @@
+package com.example.jagadish.motion;
+
+import org.junit.Test;
+
+import java.util.Locale;
+
+import static org.junit.Assert.*;
+
+public class ClipInfoTest {
+    @Test
+    public void sidecarRoundTrip() {
+        ClipInfo info = ClipInfo.parse(new ClipInfo(63400, 1280, 720, 5000000, 1700000000000L).format());
+        assertNotNull(info);
+        assertEquals(63400, info.getDurationMillis());
+        assertEquals(1280, info.getWidth());
+        assertEquals(720, info.getHeight());
+        assertTrue(info.matches(5000000, 1700000000000L));
+        assertFalse(info.matches(5000001, 1700000000000L));
+        assertEquals("1:03", info.formatDuration());
+        assertEquals("1:00:00", new ClipInfo(3600000, 0, 0, 0, 0).formatDuration());
+    }
+
+    @Test
+    public void durationUsesAsciiDigitsInAnyLocale() {
+        Locale original = Locale.getDefault();
+        try {
+            Locale.setDefault(Locale.forLanguageTag("hi-IN-u-nu-deva"));
+            assertEquals("1:03", new ClipInfo(63000, 0, 0, 0, 0).formatDuration());
+        } finally {
+            Locale.setDefault(original);
+        }
+    }
+
+    @Test
+    public void incompleteSidecarIsRejected() {
+        assertNull(ClipInfo.parse("duration=1000\nwidth=640\n"));
+        assertNull(ClipInfo.parse("duration=x\nwidth=640\nheight=480\nbytes=1\nmodified=1\n"));
+        assertNotNull(ClipInfo.parse("duration=1000\nwidth=640\nheight=480\nbytes=1\nmodified=1\nrotation=90\n"));
+    }
+}
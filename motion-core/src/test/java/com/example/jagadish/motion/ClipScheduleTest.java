@@ -0,0 +1,70 @@
+package com.example.jagadish.motion;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class ClipScheduleTest {
+    private static final long MIN = 4000;
+    private static final long POST_ROLL = 3000;
+    private static final long MAX_SEGMENT = 10000;
+
+    @Test
+    public void shortEventRunsMinimumLength() {
+        ClipSchedule schedule = new ClipSchedule(MIN, POST_ROLL, MAX_SEGMENT);
+        assertEquals(1000, schedule.start(1000));
+        assertEquals(ClipSchedule.CONTINUE, schedule.poll(4999));
+        assertEquals(ClipSchedule.STOP, schedule.poll(5000));
+        assertFalse(schedule.isRecording());
+    }
+
+    @Test
+    public void motionExtendsWithPostRoll() {
+        ClipSchedule schedule = new ClipSchedule(MIN, POST_ROLL, MAX_SEGMENT);
+        schedule.start(0);
+        schedule.onMotion(3500);
+        assertEquals(ClipSchedule.CONTINUE, schedule.poll(5000));
+        assertEquals(6500, schedule.getPlannedEndMillis());
+        // Motion out of order does not shorten the event
+        schedule.onMotion(2000);
+        assertEquals(ClipSchedule.CONTINUE, schedule.poll(6499));
+        assertEquals(ClipSchedule.STOP, schedule.poll(6500));
+    }
+
+    @Test
+    public void longEventRollsOverWithSameId() {
+        ClipSchedule schedule = new ClipSchedule(MIN, POST_ROLL, MAX_SEGMENT);
+        long id = schedule.start(0);
+        int rollOvers = 0;
+        for (long now = 0; now <= 25000; now += 100) {
+            schedule.onMotion(now);
+            int action = schedule.poll(now);
+            assertNotEquals(ClipSchedule.STOP, action);
+            if (action == ClipSchedule.ROLL_OVER) {
+                rollOvers++;
+                assertEquals(rollOvers * MAX_SEGMENT, now);
+            }
+        }
+        assertEquals(2, rollOvers);
+        assertEquals(2, schedule.getSegment());
+        assertEquals(id, schedule.getEventId());
+        assertEquals(ClipSchedule.STOP, schedule.poll(28000));
+    }
+
+    @Test
+    public void eventIdsIncrease() {
+        ClipSchedule schedule = new ClipSchedule(MIN, POST_ROLL, MAX_SEGMENT);
+        long first = schedule.start(500);
+        schedule.cancel();
+        long second = schedule.start(500);
+        assertTrue(second > first);
+        assertEquals(0, schedule.getSegment());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void rejectsOverlappingEvents() {
+        ClipSchedule schedule = new ClipSchedule(MIN, POST_ROLL, MAX_SEGMENT);
+        schedule.start(0);
+        schedule.start(100);
+    }
+}
@@ -0,0 +1,144 @@
+package com.example.jagadish.motion;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class ContactSheetTest {
+    // Writes one byte per 100 pixels per quality point, so the size grows with both
+    private static class FakeEncoder implements JpegEncoder {
+        int encodes;
+
+        @Override
+        public void encode(byte[] nv21, int width, int height, int quality, OutputStream out) throws IOException {
+            encodes++;
+            long size = (long) width * height * quality / 100;
+            for (long i = 0; i < size; i++) {
+                out.write(nv21[(int) (i % (width * height))]);
+            }
+        }
+    }
+
+    private static byte[] frame(int width, int height, int luma) {
+        byte[] frame = new byte[width * height * 3 / 2];
+        Arrays.fill(frame, 0, width * height, (byte) luma);
+        Arrays.fill(frame, width * height, frame.length, (byte) 128);
+        return frame;
+    }
+
+    @Test
+    public void sheetSpansWholeEvent() {
+        ContactSheet sheet = new ContactSheet(4, 3, 16, 12, 100);
+        byte[] frame = frame(64, 48, 100);
+        int added = 0;
+        for (long t = 0; t <= 10000; t += 50) {
+            if (sheet.addFrame(frame, 64, 48, t, null)) added++;
+        }
+
+        assertTrue(added > 12);
+        assertTrue(sheet.getFrameCount() <= 12);
+        assertTrue(sheet.getFrameCount() >= 6);
+        assertEquals(0, sheet.getFrameTime(0));
+        assertTrue(sheet.getFrameTime(sheet.getFrameCount() - 1) > 6000);
+        for (int i = 1; i < sheet.getFrameCount(); i++) {
+            assertTrue(sheet.getFrameTime(i) > sheet.getFrameTime(i - 1));
+        }
+    }
+
+    @Test
+    public void rendersOnlyFilledRows() {
+        ContactSheet sheet = new ContactSheet(4, 3, 16, 12, 100);
+        sheet.addFrame(frame(64, 48, 50), 64, 48, 0, null);
+        assertEquals(16, sheet.getWidth());
+        assertEquals(12, sheet.getHeight());
+
+        for (int i = 1; i < 6; i++) {
+            sheet.addFrame(frame(64, 48, 50 + i * 20), 64, 48, i * 100, null);
+        }
+        assertEquals(64, sheet.getWidth());
+        assertEquals(24, sheet.getHeight());
+        byte[] image = new byte[64 * 24 * 3 / 2];
+        sheet.render(image);
+        assertEquals(50, image[0] & 0xff);
+        assertEquals(110, image[48] & 0xff);
+        assertEquals(150, image[12 * 64 + 16] & 0xff);
+        assertEquals(16, image[12 * 64 + 32] & 0xff); // Empty cell
+        assertEquals(128, image[64 * 24] & 0xff);
+    }
+
+    @Test
+    public void blobsAreOutlined() {
+        SyntheticScene scene = new SyntheticScene(320, 240, 20, 3);
+        scene.addObject(40, 80, 20, 80, 3, 0, 10, 40, 220);
+        MotionDetection detection = new MotionDetection(320, 240);
+        ContactSheet sheet = new ContactSheet(2, 2, 80, 60, 1);
+        byte[] frame = new byte[320 * 240 * 3 / 2];
+        int blobs = 0;
+        for (int i = 0; i < scene.getFrameCount(); i++) {
+            scene.render(i, frame);
+            detection.detect(frame, 320, 240);
+            if (detection.getBlobCount() > 0) {
+                blobs++;
+                sheet.addFrame(frame, 320, 240, i, detection);
+            }
+        }
+        assertTrue(blobs > 0);
+
+        byte[] image = new byte[sheet.getWidth() * sheet.getHeight() * 3 / 2];
+        sheet.render(image);
+        int red = 0;
+        for (int i = sheet.getWidth() * sheet.getHeight(); i < image.length; i += 2) {
+            if ((image[i] & 0xff) == 240 && (image[i + 1] & 0xff) == 90) red++;
+        }
+        assertTrue(red > 0);
+    }
+
+    @Test
+    public void attachmentFitsBudget() throws IOException {
+        ContactSheet sheet = new ContactSheet(4, 3, 40, 30, 100);
+        for (int i = 0; i < 12; i++) {
+            sheet.addFrame(frame(160, 120, 100), 160, 120, i * 100, null);
+        }
+        FakeEncoder encoder = new FakeEncoder();
+        ContactSheetAttachment attachment = new ContactSheetAttachment(sheet, encoder, "event.jpg");
+
+        // 160x90 at full size: 144 bytes per quality point
+        assertEquals(12240, attachment.fit(100000));
+        assertEquals(ContactSheetAttachment.MAX_QUALITY, attachment.getQuality());
+
+        long size = attachment.fit(8000);
+        assertTrue(size <= 8000);
+        assertEquals(55, attachment.getQuality());
+        assertEquals(160, attachment.getWidth());
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        attachment.writeTo(out);
+        assertEquals(size, out.size());
+    }
+
+    @Test
+    public void attachmentShrinksThenGivesUp() throws IOException {
+        ContactSheet sheet = new ContactSheet(4, 3, 80, 60, 100);
+        for (int i = 0; i < 12; i++) {
+            sheet.addFrame(frame(160, 120, 100), 160, 120, i * 100, null);
+        }
+        ContactSheetAttachment attachment = new ContactSheetAttachment(sheet, new FakeEncoder(), "event.jpg");
+
+        // 320x180 is 11520 bytes at the lowest quality, 160x90 only 2880
+        long size = attachment.fit(5000);
+        assertTrue(size > 0 && size <= 5000);
+        assertEquals(160, attachment.getWidth());
+
+        assertEquals(-1, attachment.fit(100));
+        try {
+            attachment.writeTo(new ByteArrayOutputStream());
+            fail();
+        } catch (IllegalStateException e) {
+            // Nothing fitted
+        }
+    }
+}
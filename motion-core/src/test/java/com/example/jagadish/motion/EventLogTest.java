@@ -0,0 +1,188 @@
+package com.example.jagadish.motion;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class EventLogTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static EventRecord event(long id, long start, long end) {
+        EventRecord event = new EventRecord(id, 0, start, end);
+        event.setPeakRegions((int) (id % 50));
+        event.setBounds(10, 20, 110, 220);
+        return event;
+    }
+
+    @Test
+    public void recordsSurviveReopening() throws IOException {
+        File file = folder.newFile();
+        try (EventLog log = new EventLog(file)) {
+            EventRecord event = new EventRecord(7, 2, 1000, 5000);
+            event.setPeakRegions(12);
+            event.setBounds(3, 4, 300, 200);
+            event.setSnapshots(41, 42);
+            event.setFlags(EventRecord.FLAG_IMPORTANT);
+            assertEquals(0, log.append(event, "/clips/MOTION_7_S2.mp4"));
+            assertEquals(1, log.append(event(8, 6000, 7000), null));
+        }
+
+        try (EventLog log = new EventLog(file)) {
+            assertEquals(2, log.size());
+            EventRecord event = log.get(0);
+            assertEquals(7, event.getEventId());
+            assertEquals(2, event.getSegment());
+            assertEquals(1000, event.getStartMillis());
+            assertEquals(5000, event.getEndMillis());
+            assertEquals(12, event.getPeakRegions());
+            assertEquals(3, event.getLeft());
+            assertEquals(200, event.getBottom());
+            assertEquals(42, event.getSnapshot(1));
+            assertEquals(EventRecord.NO_SNAPSHOT, event.getSnapshot(2));
+            assertTrue(event.isImportant());
+            assertEquals("/clips/MOTION_7_S2.mp4", log.getClipPath(event));
+            assertNull(log.getClipPath(log.get(1)));
+
+            log.setFlags(0, 0);
+            assertFalse(log.get(0).isImportant());
+        }
+    }
+
+    @Test
+    public void queryMatchesScan() throws IOException {
+        Random random = new Random(3);
+        List<EventRecord> all = new ArrayList<>();
+        try (EventLog log = new EventLog(folder.newFile())) {
+            long time = 0;
+            for (int i = 0; i < 1000; i++) {
+                time += random.nextInt(60000);
+                // Segments finish out of start order now and then
+                long start = time - random.nextInt(120000);
+                EventRecord event = event(i, start, start + random.nextInt(180000));
+                log.append(event, null);
+                all.add(event);
+            }
+
+            for (int q = 0; q < 200; q++) {
+                long from = random.nextInt((int) time);
+                long to = from + random.nextInt(600000);
+                List<EventRecord> found = log.query(from, to);
+                int expected = 0;
+                for (EventRecord event : all) {
+                    if (event.getStartMillis() < to && event.getEndMillis() > from) {
+                        assertEquals(event.getEventId(), found.get(expected++).getEventId());
+                    }
+                }
+                assertEquals(expected, found.size());
+            }
+            assertTrue(log.query(time + 200000, time + 300000).isEmpty());
+        }
+    }
+
+    @Test
+    public void pagesNewestFirst() throws IOException {
+        try (EventLog log = new EventLog(folder.newFile())) {
+            for (int i = 0; i < 120; i++) {
+                log.append(event(i, i * 1000L, i * 1000L + 500), "clip" + i + ".mp4");
+            }
+
+            List<EventRecord> first = log.readBackward(log.size(), 50);
+            assertEquals(50, first.size());
+            assertEquals(119, first.get(0).getEventId());
+            assertEquals(70, first.get(49).getEventId());
+
+            int before = first.get(49).getIndex();
+            log.append(event(120, 200000, 200500), "clip120.mp4");
+            List<EventRecord> last = log.readBackward(before, 100);
+            assertEquals(70, last.size());
+            assertEquals(69, last.get(0).getEventId());
+            assertEquals("clip0.mp4", log.getClipPath(last.get(69)));
+            assertEquals(1, log.readBackward(log.size(), 1).size());
+            assertTrue(log.readBackward(0, 10).isEmpty());
+        }
+    }
+
+    @Test
+    public void partialRecordIsOverwritten() throws IOException {
+        File file = folder.newFile();
+        try (EventLog log = new EventLog(file)) {
+            log.append(event(1, 0, 10), "a.mp4");
+        }
+        // A crash in the middle of the second record
+        try (RandomAccessFile raw = new RandomAccessFile(file, "rw")) {
+            raw.setLength(raw.length() + EventLog.RECORD_SIZE / 2);
+        }
+
+        try (EventLog log = new EventLog(file)) {
+            assertEquals(1, log.size());
+            log.append(event(2, 20, 30), "b.mp4");
+            assertEquals(2, log.get(1).getEventId());
+            assertEquals("b.mp4", log.getClipPath(log.get(1)));
+            assertEquals(1, log.query(25, 26).size());
+        }
+        assertEquals(EventLog.HEADER_SIZE + 2 * EventLog.RECORD_SIZE, file.length());
+    }
+
+    @Test
+    public void liveBytesFollowDeletes() throws IOException {
+        File file = folder.newFile();
+        try (EventLog log = new EventLog(file)) {
+            for (int i = 0; i < 4; i++) {
+                EventRecord event = event(i, i * 1000L, i * 1000L + 500);
+                event.setBytes(100 + i);
+                log.append(event, "clip" + i + ".mp4");
+            }
+            assertEquals(406, log.getLiveBytes());
+            assertEquals(0, log.getOldestLive());
+
+            log.setFlags(1, EventRecord.FLAG_DELETED);
+            assertEquals(0, log.getOldestLive());
+            log.setFlags(0, EventRecord.FLAG_DELETED);
+            assertEquals(2, log.getOldestLive());
+            assertEquals(205, log.getLiveBytes());
+            log.setFlags(0, EventRecord.FLAG_DELETED | EventRecord.FLAG_IMPORTANT);
+            assertEquals(205, log.getLiveBytes());
+            assertEquals(103, log.get(3).getBytes());
+        }
+
+        try (EventLog log = new EventLog(file)) {
+            assertEquals(205, log.getLiveBytes());
+            assertEquals(2, log.getOldestLive());
+            log.setFlags(1, 0);
+            assertEquals(306, log.getLiveBytes());
+            assertEquals(1, log.getOldestLive());
+        }
+    }
+
+    @Test
+    public void statsSummariseSegment() {
+        SyntheticScene scene = new SyntheticScene(320, 240, 40, 3);
+        scene.addObject(40, 80, 20, 80, 3, 0, 10, 40, 220);
+        MotionDetection detection = new MotionDetection(320, 240);
+        EventStats stats = new EventStats();
+        stats.reset(1000);
+        byte[] frame = new byte[320 * 240 * 3 / 2];
+        for (int i = 0; i < scene.getFrameCount(); i++) {
+            scene.render(i, frame);
+            detection.detect(frame, 320, 240);
+            stats.add(detection);
+        }
+
+        EventRecord event = stats.take(5, 1, 4000);
+        assertEquals(1000, event.getStartMillis());
+        assertEquals(4000, event.getEndMillis());
+        assertTrue(event.getPeakRegions() > 0);
+        assertTrue(event.getRight() > event.getLeft());
+        assertEquals(4000, stats.take(5, 2, 5000).getStartMillis());
+    }
+}
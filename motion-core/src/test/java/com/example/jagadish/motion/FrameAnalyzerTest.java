@@ -0,0 +1,116 @@
+package com.example.jagadish.motion;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class FrameAnalyzerTest {
+
+    // Detector that holds the first frame until released
+    private static class BlockingDetector implements InterMotionDetection {
+        final CountDownLatch entered = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final List<byte[]> seen = Collections.synchronizedList(new ArrayList<>());
+
+        @Override
+        public int[] getPrevious() {
+            return null;
+        }
+
+        @Override
+        public boolean detect(int[] data, int width, int height) {
+            return false;
+        }
+
+        @Override
+        public boolean detect(byte[] yuv, int width, int height) {
+            seen.add(yuv);
+            entered.countDown();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return yuv[0] != 0;
+        }
+    }
+
+    @Test
+    public void slowPassKeepsOnlyLatestFrame() throws Exception {
+        BlockingDetector detector = new BlockingDetector();
+        List<byte[]> recycled = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch analysed = new CountDownLatch(2);
+        FrameAnalyzer analyzer = new FrameAnalyzer(detector, 1, 1, motion -> analysed.countDown(), recycled::add);
+        analyzer.start();
+
+        byte[] first = { 0 };
+        analyzer.submit(first);
+        assertTrue(detector.entered.await(5, TimeUnit.SECONDS));
+
+        byte[] stale = { 1 };
+        byte[] latest = { 2 };
+        analyzer.submit(stale);
+        analyzer.submit(latest);
+        detector.release.countDown();
+
+        assertTrue(analysed.await(5, TimeUnit.SECONDS));
+        analyzer.stop();
+
+        assertEquals(2, analyzer.getProcessedFrames());
+        assertEquals(1, analyzer.getDroppedFrames());
+        assertSame(latest, detector.seen.get(1));
+        assertEquals(3, recycled.size());
+        assertTrue(recycled.contains(first) && recycled.contains(stale) && recycled.contains(latest));
+    }
+
+    @Test
+    public void framesAfterStopAreRecycledImmediately() throws Exception {
+        List<byte[]> recycled = new ArrayList<>();
+        FrameAnalyzer analyzer = new FrameAnalyzer(new BlockingDetector(), 1, 1, motion -> { }, recycled::add);
+        analyzer.start();
+        analyzer.stop();
+
+        byte[] frame = { 0 };
+        analyzer.submit(frame);
+
+        assertEquals(1, recycled.size());
+        assertEquals(0, analyzer.getProcessedFrames());
+    }
+
+    @Test(timeout = 5000)
+    public void failedFrameDoesNotStopAnalysis() throws Exception {
+        InterMotionDetection detector = new BlockingDetector() {
+            @Override
+            public boolean detect(byte[] yuv, int width, int height) {
+                if (yuv[0] == 0) throw new IllegalStateException("Bad frame");
+                return true;
+            }
+        };
+        List<byte[]> recycled = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch analysed = new CountDownLatch(1);
+        FrameAnalyzer analyzer = new FrameAnalyzer(detector, 1, 1, motion -> analysed.countDown(), recycled::add);
+        analyzer.setFrameSink((frame, motion) -> {
+            if (frame[0] == 1) throw new IllegalArgumentException("Sink failed");
+        });
+        analyzer.start();
+
+        analyzer.submit(new byte[] { 0 });
+        while (analyzer.getFailedFrames() < 1) Thread.sleep(1);
+        analyzer.submit(new byte[] { 1 });
+        while (analyzer.getFailedFrames() < 2) Thread.sleep(1);
+        analyzer.submit(new byte[] { 2 });
+        assertTrue(analysed.await(5, TimeUnit.SECONDS));
+        analyzer.stop();
+
+        assertEquals(2, analyzer.getFailedFrames());
+        assertTrue(analyzer.getLastError() instanceof IllegalArgumentException);
+        assertEquals(1, analyzer.getProcessedFrames());
+        assertEquals(3, recycled.size());
+    }
+}
@@ -0,0 +1,58 @@
+package com.example.jagadish.motion;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class FrameBufferPoolTest {
+    @Test
+    public void steadyStateAllocatesNothing() throws Exception {
+        FrameBufferPool pool = new FrameBufferPool(640 * 480 * 3 / 2, 3);
+        assertEquals(3, pool.getAllocationCount());
+
+        for (int frame = 0; frame < 1000; frame++) {
+            byte[] a = pool.acquire();
+            byte[] b = pool.acquire();
+            pool.release(a);
+            pool.release(b);
+        }
+
+        assertEquals(3, pool.getAllocationCount());
+        assertEquals(3, pool.getFreeCount());
+    }
+
+    @Test
+    public void allocatesWhenDrainedAndCountsIt() throws Exception {
+        FrameBufferPool pool = new FrameBufferPool(16, 1);
+        byte[] first = pool.acquire();
+        byte[] second = pool.acquire();
+
+        assertNotSame(first, second);
+        assertEquals(2, pool.getAllocationCount());
+    }
+
+    @Test
+    public void dropsForeignBuffers() throws Exception {
+        FrameBufferPool pool = new FrameBufferPool(16, 1);
+        pool.release(new byte[8]);
+        pool.release(new byte[16]);
+
+        assertEquals(1, pool.getFreeCount());
+    }
+
+    @Test
+    public void foreignBufferCostsAnAllocation() throws Exception {
+        FrameBufferPool pool = new FrameBufferPool(16, 1);
+        byte[] own = pool.acquire();
+
+        // A frame in a buffer from elsewhere goes back to the camera as a new pooled buffer
+        pool.release(new byte[16]);
+        byte[] replacement = pool.acquire();
+        assertNotSame(own, replacement);
+        assertEquals(2, pool.getAllocationCount());
+
+        pool.release(own);
+        assertSame(own, pool.acquire());
+        assertEquals(2, pool.getAllocationCount());
+    }
+}
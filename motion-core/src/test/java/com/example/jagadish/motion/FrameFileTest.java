@@ -0,0 +1,130 @@
+package com.example.jagadish.motion;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class FrameFileTest {
+    private static final int WIDTH = 8;
+    private static final int HEIGHT = 4;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    // Reports motion when the first luma byte is set
+    private static class MarkerDetector implements InterMotionDetection {
+        int frames;
+
+        @Override
+        public int[] getPrevious() {
+            return null;
+        }
+
+        @Override
+        public boolean detect(int[] data, int width, int height) {
+            return false;
+        }
+
+        @Override
+        public boolean detect(byte[] yuv, int width, int height) {
+            assertEquals(WIDTH, width);
+            assertEquals(HEIGHT, height);
+            frames++;
+            return yuv[0] != 0;
+        }
+    }
+
+    private static byte[] frame(int value) {
+        byte[] frame = new byte[FrameFile.frameSize(WIDTH, HEIGHT) + 5];
+        Arrays.fill(frame, (byte) value);
+        return frame;
+    }
+
+    private File write(int... values) throws IOException {
+        File file = folder.newFile();
+        try (FrameFileWriter writer = new FrameFileWriter(file, WIDTH, HEIGHT, ImageProcessing.NV21)) {
+            for (int i = 0; i < values.length; i++) {
+                writer.append(frame(values[i]), 1000L * i);
+            }
+            assertEquals(values.length, writer.getFrameCount());
+        }
+        return file;
+    }
+
+    @Test
+    public void framesRoundTrip() throws Exception {
+        File file = write(0, 7, 0, 9);
+        try (FrameFileReader reader = new FrameFileReader(file)) {
+            assertEquals(WIDTH, reader.getWidth());
+            assertEquals(HEIGHT, reader.getHeight());
+            assertEquals(ImageProcessing.NV21, reader.getFormat());
+            assertEquals(4, reader.getFrameCount());
+            assertEquals(3000L, reader.getTimestamp(3));
+
+            byte[] buffer = reader.readFrame(1, null);
+            assertEquals(WIDTH * HEIGHT * 3 / 2, buffer.length);
+            assertEquals(7, buffer[buffer.length - 1]);
+            assertSame(buffer, reader.readFrame(3, buffer));
+            assertEquals(9, buffer[0]);
+        }
+    }
+
+    @Test
+    public void truncatedRecordIsIgnored() throws Exception {
+        File file = write(1, 2);
+        try (FileOutputStream out = new FileOutputStream(file, true)) {
+            out.write(new byte[20]);
+        }
+        try (FrameFileReader reader = new FrameFileReader(file)) {
+            assertEquals(2, reader.getFrameCount());
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsOtherFiles() throws Exception {
+        File file = folder.newFile();
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            out.write(new byte[64]);
+        }
+        new FrameFileReader(file).close();
+    }
+
+    @Test
+    public void replayReportsTriggersAndLatency() throws Exception {
+        File file = write(0, 1, 1, 0, 0, 1);
+        MarkerDetector detector = new MarkerDetector();
+        try (FrameFileReader reader = new FrameFileReader(file)) {
+            ReplayReport report = ReplayHarness.replay(reader, detector);
+            assertEquals(6, detector.frames);
+            assertEquals(6, report.getFrameCount());
+            assertArrayEquals(new int[] { 1, 2, 5 }, report.getTriggeredFrames());
+            assertTrue(report.getLatencyNanos(50) <= report.getLatencyNanos(99));
+            assertTrue(report.getFramesPerSecond() > 0);
+            assertTrue(report.toString().contains("3 triggered: 1-2, 5"));
+        }
+    }
+
+    @Test
+    public void captureFeedsDetectorAndFile() throws Exception {
+        File file = folder.newFile();
+        MarkerDetector detector = new MarkerDetector();
+        CapturingDetection capture = new CapturingDetection(detector,
+                new FrameFileWriter(file, WIDTH, HEIGHT, ImageProcessing.NV21));
+        assertTrue(capture.detect(frame(3), WIDTH, HEIGHT));
+        assertFalse(capture.detect(frame(0), WIDTH, HEIGHT));
+        capture.close();
+        assertNull(capture.getError());
+
+        try (FrameFileReader reader = new FrameFileReader(file)) {
+            assertEquals(2, reader.getFrameCount());
+            assertEquals(3, reader.readFrame(0, null)[0]);
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package com.example.jagadish.motion;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class FrameSchedulerTest {
+    private static final long FRAME_NANOS = 33333333L;
+
+    @Test
+    public void idlesAfterQuietFramesAndWakesOnActivity() throws Exception {
+        FrameScheduler scheduler = new FrameScheduler(4, 10, 0.05f);
+        long now = 0;
+        for (int n = 0; n < 10; n++) {
+            assertTrue(scheduler.shouldAnalyse(now += FRAME_NANOS));
+            scheduler.onAnalysed(false, 0f, 1000000L);
+        }
+        assertTrue(scheduler.isIdle());
+
+        // One frame in four while idle, so at most three are skipped before the next look
+        int analysed = 0;
+        for (int n = 0; n < 40; n++) {
+            if (scheduler.shouldAnalyse(now += FRAME_NANOS)) {
+                analysed++;
+                scheduler.onAnalysed(false, 0.01f, 1000000L);
+            }
+        }
+        assertEquals(10, analysed);
+        assertEquals(30, scheduler.getSkippedFrames());
+        assertEquals(3, scheduler.getMaxSkippedFrames());
+        assertTrue(scheduler.getSavedNanos() > 0);
+
+        int skipped = 0;
+        while (!scheduler.shouldAnalyse(now += FRAME_NANOS)) {
+            skipped++;
+        }
+        assertTrue(skipped <= scheduler.getMaxSkippedFrames());
+        scheduler.onAnalysed(false, 0.2f, 1000000L);
+        assertFalse(scheduler.isIdle());
+        assertTrue(scheduler.shouldAnalyse(now += FRAME_NANOS));
+        assertTrue(scheduler.shouldAnalyse(now + FRAME_NANOS));
+    }
+
+    @Test
+    public void motionKeepsFullRate() throws Exception {
+        FrameScheduler scheduler = new FrameScheduler(4, 3, 0.05f);
+        for (int n = 0; n < 20; n++) {
+            assertTrue(scheduler.shouldAnalyse(n * FRAME_NANOS));
+            scheduler.onAnalysed(n % 2 == 0, 0f, 1000000L);
+        }
+        assertFalse(scheduler.isIdle());
+        assertEquals(0, scheduler.getSkippedFrames());
+    }
+
+    @Test
+    public void reportsEffectiveFrameRate() throws Exception {
+        FrameScheduler scheduler = new FrameScheduler(5, 1, 0.05f);
+        scheduler.shouldAnalyse(0);
+        scheduler.onAnalysed(false, 0f, 1000000L);
+        assertTrue(scheduler.isIdle());
+
+        // Six seconds of 30 fps preview; the first 5 s window sees one frame in five
+        for (int n = 1; n <= 180; n++) {
+            if (scheduler.shouldAnalyse(n * FRAME_NANOS)) {
+                scheduler.onAnalysed(false, 0f, 1000000L);
+            }
+        }
+        assertEquals(6f, scheduler.getEffectiveFps(), 0.5f);
+    }
+}
@@ -0,0 +1,179 @@
+package com.example.jagadish.motion;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import static org.junit.Assert.*;
+
+public class HotStandbyTest {
+    // Numbered resources; fails the next preparation on request
+    private static class CountingFactory implements HotStandby.Factory<Integer> {
+        final List<Integer> discarded = new ArrayList<>();
+        int prepared;
+        boolean fail;
+
+        @Override
+        public Integer prepare() throws IOException {
+            if (fail) {
+                fail = false;
+                throw new IOException("no space");
+            }
+            return ++prepared;
+        }
+
+        @Override
+        public void discard(Integer item) {
+            discarded.add(item);
+        }
+    }
+
+    // Runs tasks only when asked, standing in for the background thread
+    private static class ManualExecutor implements Executor {
+        final ArrayDeque<Runnable> tasks = new ArrayDeque<>();
+
+        @Override
+        public void execute(Runnable task) {
+            tasks.add(task);
+        }
+
+        void runAll() {
+            while (!tasks.isEmpty()) tasks.poll().run();
+        }
+    }
+
+    @Test
+    public void takeHandsOverPreparedAndRearms() throws Exception {
+        CountingFactory factory = new CountingFactory();
+        ManualExecutor executor = new ManualExecutor();
+        HotStandby<Integer> standby = new HotStandby<>(factory, executor);
+
+        standby.arm();
+        standby.arm();
+        assertEquals(1, executor.tasks.size());
+        executor.runAll();
+        assertTrue(standby.isReady());
+
+        assertEquals(1, (int) standby.take());
+        assertFalse(standby.isReady());
+        assertEquals(1, executor.tasks.size());
+        executor.runAll();
+        assertEquals(2, (int) standby.take());
+        assertEquals(2, standby.getHits());
+        assertEquals(0, standby.getMisses());
+    }
+
+    @Test
+    public void missPreparesOnCaller() throws Exception {
+        CountingFactory factory = new CountingFactory();
+        HotStandby<Integer> standby = new HotStandby<>(factory, new ManualExecutor());
+
+        assertEquals(1, (int) standby.take());
+        assertEquals(1, standby.getMisses());
+        assertEquals(0, standby.getHits());
+    }
+
+    @Test
+    public void backgroundFailureIsKeptAndRetried() throws Exception {
+        CountingFactory factory = new CountingFactory();
+        ManualExecutor executor = new ManualExecutor();
+        HotStandby<Integer> standby = new HotStandby<>(factory, executor);
+
+        factory.fail = true;
+        standby.arm();
+        executor.runAll();
+        assertFalse(standby.isReady());
+        assertNotNull(standby.getLastError());
+
+        standby.arm();
+        executor.runAll();
+        assertTrue(standby.isReady());
+        assertNull(standby.getLastError());
+    }
+
+    @Test(timeout = 5000)
+    public void uncheckedFailureStillRearms() throws Exception {
+        CountingFactory factory = new CountingFactory() {
+            boolean broken = true;
+
+            @Override
+            public Integer prepare() throws IOException {
+                if (broken) {
+                    broken = false;
+                    throw new IllegalStateException("muxer");
+                }
+                return super.prepare();
+            }
+        };
+        ManualExecutor executor = new ManualExecutor();
+        HotStandby<Integer> standby = new HotStandby<>(factory, executor);
+
+        standby.arm();
+        executor.runAll();
+        assertFalse(standby.isReady());
+        assertTrue(standby.getLastError().getCause() instanceof IllegalStateException);
+
+        // Nothing is left in progress, so take() prepares at once instead of waiting
+        assertEquals(1, (int) standby.take());
+        assertEquals(1, executor.tasks.size());
+        executor.runAll();
+        assertTrue(standby.isReady());
+    }
+
+    @Test
+    public void closeDiscardsPrepared() throws Exception {
+        CountingFactory factory = new CountingFactory();
+        ManualExecutor executor = new ManualExecutor();
+        HotStandby<Integer> standby = new HotStandby<>(factory, executor);
+        standby.arm();
+        executor.runAll();
+        standby.close();
+        assertEquals(1, factory.discarded.size());
+
+        // A preparation still running when closed is discarded as it finishes
+        HotStandby<Integer> late = new HotStandby<>(factory, executor);
+        late.arm();
+        late.close();
+        executor.runAll();
+        assertFalse(late.isReady());
+        assertEquals(2, factory.discarded.size());
+    }
+
+    @Test
+    public void takeWaitsForPreparationInProgress() throws Exception {
+        CountingFactory factory = new CountingFactory();
+        HotStandby<Integer> standby = new HotStandby<>(factory, task -> new Thread(() -> {
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                return;
+            }
+            task.run();
+        }).start());
+
+        standby.arm();
+        assertEquals(1, (int) standby.take());
+        assertEquals(1, standby.getMisses());
+        standby.close();
+    }
+
+    @Test
+    public void latencyPercentilesOverWindow() {
+        LatencyTracker tracker = new LatencyTracker(4, 100);
+        assertEquals(0, tracker.getPercentileNanos(50));
+        for (long nanos : new long[] { 500, 10, 40, 30, 20 }) {
+            tracker.record(nanos);
+        }
+        // The oldest sample has left the window but still counts against the target
+        assertEquals(5, tracker.getCount());
+        assertEquals(1, tracker.getOverTarget());
+        assertEquals(20, tracker.getLastNanos());
+        assertEquals(20, tracker.getPercentileNanos(50));
+        assertEquals(40, tracker.getPercentileNanos(100));
+        assertTrue(tracker.toString().contains("1 over"));
+    }
+}
@@ -0,0 +1,217 @@
+package com.example.jagadish.motion;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class ImageProcessingTest {
+    private static final int WIDTH = 37;
+    private static final int HEIGHT = 23;
+    private static final int CHROMA_WIDTH = (WIDTH + 1) / 2;
+    private static final int CHROMA_HEIGHT = (HEIGHT + 1) / 2;
+
+    private final byte[] yPlane = new byte[WIDTH * HEIGHT];
+    private final byte[] uPlane = new byte[CHROMA_WIDTH * CHROMA_HEIGHT];
+    private final byte[] vPlane = new byte[CHROMA_WIDTH * CHROMA_HEIGHT];
+
+    public ImageProcessingTest() {
+        Random random = new Random(5);
+        random.nextBytes(yPlane);
+        random.nextBytes(uPlane);
+        random.nextBytes(vPlane);
+    }
+
+    // The original per-pixel loop with branch clamping
+    private int reference(int x, int y) {
+        int luma = Math.max(0, (yPlane[y * WIDTH + x] & 0xff) - 16);
+        int u = (uPlane[(y / 2) * CHROMA_WIDTH + x / 2] & 0xff) - 128;
+        int v = (vPlane[(y / 2) * CHROMA_WIDTH + x / 2] & 0xff) - 128;
+        int y1192 = 1192 * luma;
+        int r = Math.max(0, Math.min(262143, y1192 + 1634 * v));
+        int g = Math.max(0, Math.min(262143, y1192 - 833 * v - 400 * u));
+        int b = Math.max(0, Math.min(262143, y1192 + 2066 * u));
+        return 0xff000000 | ((r << 6) & 0xff0000) | ((g >> 2) & 0xff00) | ((b >> 10) & 0xff);
+    }
+
+    private byte[] pack(int format, int yStride, int uvStride) {
+        boolean semiPlanar = format == ImageProcessing.NV21 || format == ImageProcessing.NV12;
+        int chromaSize = uvStride * CHROMA_HEIGHT;
+        byte[] yuv = new byte[yStride * HEIGHT + (semiPlanar ? chromaSize : 2 * chromaSize)];
+        for (int y = 0; y < HEIGHT; y++) {
+            System.arraycopy(yPlane, y * WIDTH, yuv, y * yStride, WIDTH);
+        }
+
+        int base = yStride * HEIGHT;
+        for (int y = 0; y < CHROMA_HEIGHT; y++) {
+            for (int x = 0; x < CHROMA_WIDTH; x++) {
+                byte u = uPlane[y * CHROMA_WIDTH + x];
+                byte v = vPlane[y * CHROMA_WIDTH + x];
+                int row = base + y * uvStride;
+                switch (format) {
+                    case ImageProcessing.NV21:
+                        yuv[row + 2 * x] = v;
+                        yuv[row + 2 * x + 1] = u;
+                        break;
+                    case ImageProcessing.NV12:
+                        yuv[row + 2 * x] = u;
+                        yuv[row + 2 * x + 1] = v;
+                        break;
+                    case ImageProcessing.YV12:
+                        yuv[row + x] = v;
+                        yuv[row + chromaSize + x] = u;
+                        break;
+                    default:
+                        yuv[row + x] = u;
+                        yuv[row + chromaSize + x] = v;
+                        break;
+                }
+            }
+        }
+        return yuv;
+    }
+
+    private void assertDecodes(int format, int yStride, int uvStride) {
+        byte[] yuv = pack(format, yStride, uvStride);
+        int[] rgb = new int[WIDTH * HEIGHT];
+        // Two row ranges, as two threads would split the frame
+        ImageProcessing.decodeYUV420(yuv, format, WIDTH, HEIGHT, yStride, uvStride, rgb, 0, 11);
+        ImageProcessing.decodeYUV420(yuv, format, WIDTH, HEIGHT, yStride, uvStride, rgb, 11, HEIGHT);
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                assertEquals("format " + format + " pixel " + x + "," + y, reference(x, y), rgb[y * WIDTH + x]);
+            }
+        }
+    }
+
+    @Test
+    public void decodesEveryLayoutWithPadding() throws Exception {
+        assertDecodes(ImageProcessing.NV21, WIDTH + 11, 2 * CHROMA_WIDTH + 5);
+        assertDecodes(ImageProcessing.NV12, WIDTH + 3, 2 * CHROMA_WIDTH);
+        assertDecodes(ImageProcessing.YV12, 48, 32);
+        assertDecodes(ImageProcessing.I420, WIDTH, CHROMA_WIDTH);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsShortBuffer() throws Exception {
+        ImageProcessing.decodeYUV420(new byte[WIDTH * HEIGHT], ImageProcessing.NV21, WIDTH, HEIGHT,
+                new int[WIDTH * HEIGHT]);
+    }
+
+    private static byte[] randomNV21(int width, int height, long seed) {
+        byte[] nv21 = new byte[width * height * 3 / 2];
+        new Random(seed).nextBytes(nv21);
+        return nv21;
+    }
+
+    @Test
+    public void rotationMovesPixelsClockwise() throws Exception {
+        int width = 8;
+        int height = 6;
+        byte[] src = randomNV21(width, height, 7);
+        byte[] dst = new byte[src.length];
+
+        ImageProcessing.rotateNV21(src, width, height, 90, dst);
+        // Rotated image is height wide; the bottom-left source pixel ends up top-left
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                assertEquals(src[y * width + x], dst[x * height + (height - 1 - y)]);
+            }
+        }
+        int chroma = width * height;
+        assertEquals(src[chroma + (height / 2 - 1) * width], dst[chroma]);
+        assertEquals(src[chroma + (height / 2 - 1) * width + 1], dst[chroma + 1]);
+
+        // Four quarter turns, or two half turns, are the identity
+        byte[] a = src.clone();
+        byte[] b = new byte[src.length];
+        int w = width;
+        int h = height;
+        for (int n = 0; n < 4; n++) {
+            ImageProcessing.rotateNV21(a, w, h, 90, b);
+            int t = w;
+            w = h;
+            h = t;
+            byte[] swap = a;
+            a = b;
+            b = swap;
+        }
+        assertArrayEquals(src, a);
+
+        ImageProcessing.rotateNV21(src, width, height, 180, a);
+        ImageProcessing.rotateNV21(a, width, height, 180, b);
+        assertArrayEquals(src, b);
+
+        ImageProcessing.rotateNV21(src, width, height, 270, a);
+        ImageProcessing.rotateNV21(a, height, width, 90, b);
+        assertArrayEquals(src, b);
+    }
+
+    @Test
+    public void cropKeepsChromaAligned() throws Exception {
+        int width = 10;
+        int height = 8;
+        byte[] src = randomNV21(width, height, 8);
+        byte[] dst = new byte[4 * 4 * 3 / 2];
+
+        // Odd origin is moved to 2, 4
+        ImageProcessing.cropNV21(src, width, height, 3, 5, 4, 4, dst);
+        for (int y = 0; y < 4; y++) {
+            for (int x = 0; x < 4; x++) {
+                assertEquals(src[(4 + y) * width + 2 + x], dst[y * 4 + x]);
+            }
+        }
+        for (int y = 0; y < 2; y++) {
+            for (int x = 0; x < 4; x++) {
+                assertEquals(src[width * height + (2 + y) * width + 2 + x], dst[16 + y * 4 + x]);
+            }
+        }
+    }
+
+    @Test
+    public void downscaleAveragesBlocks() throws Exception {
+        int width = 16;
+        int height = 8;
+        byte[] src = new byte[width * height * 3 / 2];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                src[y * width + x] = (byte) ((x / 4) * 60 + (x % 2) * 2);
+            }
+        }
+        for (int i = width * height; i < src.length; i += 2) {
+            src[i] = (byte) 200;
+            src[i + 1] = (byte) 50;
+        }
+
+        byte[] dst = new byte[4 * 2 * 3 / 2];
+        ImageProcessing.downscaleNV21(src, width, height, 4, dst);
+        for (int x = 0; x < 4; x++) {
+            assertEquals(x * 60 + 1, dst[x] & 0xff);
+            assertEquals(x * 60 + 1, dst[4 + x] & 0xff);
+        }
+        assertEquals(200, dst[8] & 0xff);
+        assertEquals(50, dst[9] & 0xff);
+        assertEquals(200, dst[10] & 0xff);
+        assertEquals(50, dst[11] & 0xff);
+    }
+
+    @Test
+    public void conversionKeepsColours() throws Exception {
+        int width = 10;
+        int height = 8;
+        byte[] src = randomNV21(width, height, 9);
+        int[] expected = new int[width * height];
+        ImageProcessing.decodeYUV420(src, ImageProcessing.NV21, width, height, expected);
+
+        byte[] dst = new byte[src.length];
+        int[] rgb = new int[width * height];
+        int[] formats = { ImageProcessing.NV21, ImageProcessing.NV12, ImageProcessing.YV12, ImageProcessing.I420 };
+        for (int format : formats) {
+            ImageProcessing.convertNV21(src, width, height, format, dst);
+            ImageProcessing.decodeYUV420(dst, format, width, height, rgb);
+            assertArrayEquals("format " + format, expected, rgb);
+        }
+        assertEquals(src[width * height], dst[width * height + width * height / 4]);
+    }
+}
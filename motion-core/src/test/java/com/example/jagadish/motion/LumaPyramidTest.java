@@ -0,0 +1,55 @@
+package com.example.jagadish.motion;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class LumaPyramidTest {
+    @Test
+    public void averagesEachBlock() throws Exception {
+        // 8x4 image, two 4x4 blocks: left block 0..15, right block all 200
+        byte[] luma = new byte[8 * 4];
+        for (int y = 0; y < 4; y++) {
+            for (int x = 0; x < 4; x++) {
+                luma[y * 8 + x] = (byte) (y * 4 + x);
+                luma[y * 8 + x + 4] = (byte) 200;
+            }
+        }
+
+        LumaPyramid pyramid = new LumaPyramid(8, 4, 4);
+        pyramid.build(luma);
+
+        assertEquals(2, pyramid.getLevelWidth());
+        assertEquals(1, pyramid.getLevelHeight());
+        assertEquals(7, pyramid.getLevel()[0] & 0xff);
+        assertEquals(200, pyramid.getLevel()[1] & 0xff);
+    }
+
+    @Test
+    public void spansLimitBuild() throws Exception {
+        byte[] luma = new byte[16 * 8];
+        Arrays.fill(luma, (byte) 90);
+        LumaPyramid pyramid = new LumaPyramid(16, 8, 4);
+        ZoneMask zones = new ZoneMask();
+        zones.addRectangle(true, 0.5f, 0f, 1f, 0.5f);
+        pyramid.build(luma, zones.compile(4, 2));
+
+        byte[] level = pyramid.getLevel();
+        assertArrayEquals(new byte[] { 0, 0, 90, 90, 0, 0, 0, 0 }, level);
+    }
+
+    @Test
+    public void ignoresPartialBlocks() throws Exception {
+        LumaPyramid pyramid = new LumaPyramid(10, 9, 4);
+
+        assertEquals(2, pyramid.getLevelWidth());
+        assertEquals(2, pyramid.getLevelHeight());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsNonPowerOfTwoScale() throws Exception {
+        new LumaPyramid(64, 64, 3);
+    }
+}
@@ -0,0 +1,70 @@
+package com.example.jagadish.motion;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class MotionDetectionTest {
+    private static final int WIDTH = 320;
+    private static final int HEIGHT = 240;
+
+    @Test
+    public void gatedBackgroundFollowsDrift() {
+        MotionDetection gated = new MotionDetection(WIDTH, HEIGHT);
+        MotionDetection full = new MotionDetection(WIDTH, HEIGHT);
+        full.setCascade(false, 1);
+        assertTrue(gated.isCascadeEnabled());
+
+        // Slowly brightening light over a fixed texture, too gradual for the coarse pass to flag
+        Random random = new Random(5);
+        int[] texture = new int[WIDTH * HEIGHT];
+        for (int i = 0; i < texture.length; i++) {
+            texture[i] = random.nextInt(20);
+        }
+        byte[] frame = new byte[WIDTH * HEIGHT * 3 / 2];
+        int maxDivergence = 0;
+        for (int n = 0; n < 400; n++) {
+            int light = 40 + n / 4;
+            for (int i = 0; i < texture.length; i++) {
+                frame[i] = (byte) (light + texture[i]);
+            }
+            assertFalse(gated.detect(frame, WIDTH, HEIGHT));
+            assertFalse(full.detect(frame, WIDTH, HEIGHT));
+
+            int[] a = gated.getBackgroundModel().getBackground();
+            int[] b = full.getBackgroundModel().getBackground();
+            for (int i = 0; i < texture.length; i++) {
+                maxDivergence = Math.max(maxDivergence, Math.abs(a[i] - b[i]) >> BackgroundModel.FRACTION_BITS);
+            }
+        }
+        assertTrue(gated.getCascadeStats().toString(), gated.getCascadeStats().getFrames() > 300);
+        // Rows refreshed once per grid size frames lag at most that many frames of drift behind
+        assertTrue("Diverged by " + maxDivergence, maxDivergence <= 3);
+    }
+
+    @Test
+    public void pixelLabelsGrowWithTheRectangle() {
+        MotionDetection detection = new MotionDetection(WIDTH, HEIGHT);
+        detection.setCascade(false, 1);
+        byte[] frame = new byte[WIDTH * HEIGHT * 3 / 2];
+        for (int n = 0; n < 5; n++) {
+            detection.detect(frame, WIDTH, HEIGHT);
+        }
+        // Two squares, one inside a small box and both inside the whole frame
+        for (int y = 0; y < 40; y++) {
+            for (int x = 0; x < 40; x++) {
+                frame[(100 + y) * WIDTH + 100 + x] = (byte) 200;
+                frame[(20 + y) * WIDTH + 20 + x] = (byte) 200;
+            }
+        }
+        assertTrue(detection.detect(frame, WIDTH, HEIGHT));
+
+        assertEquals(1, detection.labelChangedPixels(90, 90, 150, 150));
+        assertEquals(100, detection.getPixelBlob(0).getLeft());
+        assertEquals(2, detection.labelChangedPixels(0, 0, WIDTH, HEIGHT));
+        assertEquals(1, detection.labelChangedPixels(10, 10, 70, 70));
+        assertEquals(20, detection.getPixelBlob(0).getTop());
+    }
+}
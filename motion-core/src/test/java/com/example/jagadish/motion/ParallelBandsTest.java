@@ -0,0 +1,78 @@
+package com.example.jagadish.motion;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class ParallelBandsTest {
+    @Test
+    public void bandedResultMatchesSequential() throws Exception {
+        final int rows = 37;
+        final int cols = 101;
+        final int[] data = new int[rows * cols];
+        Random random = new Random(7);
+        for (int i = 0; i < data.length; i++) {
+            data[i] = random.nextInt(256);
+        }
+
+        final int[] expected = new int[rows];
+        final int[] actual = new int[rows];
+        ParallelBands.BandTask sequential = (start, end) -> sumRows(data, cols, expected, start, end);
+        ParallelBands.BandTask banded = (start, end) -> sumRows(data, cols, actual, start, end);
+
+        sequential.run(0, rows);
+        ParallelBands bands = new ParallelBands(4);
+        try {
+            for (int run = 0; run < 50; run++) {
+                Arrays.fill(actual, -1);
+                bands.run(rows, banded);
+                assertArrayEquals(expected, actual);
+            }
+        } finally {
+            bands.shutdown();
+        }
+    }
+
+    @Test
+    public void coversEveryRowExactlyOnce() throws Exception {
+        final int[] visits = new int[5];
+        ParallelBands bands = new ParallelBands(8);
+        try {
+            bands.run(visits.length, (start, end) -> {
+                for (int i = start; i < end; i++) {
+                    synchronized (visits) {
+                        visits[i]++;
+                    }
+                }
+            });
+        } finally {
+            bands.shutdown();
+        }
+        assertArrayEquals(new int[] { 1, 1, 1, 1, 1 }, visits);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void rethrowsWorkerFailure() throws Exception {
+        ParallelBands bands = new ParallelBands(2);
+        try {
+            bands.run(4, (start, end) -> {
+                if (start == 0) throw new IllegalStateException("band failed");
+            });
+        } finally {
+            bands.shutdown();
+        }
+    }
+
+    private static void sumRows(int[] data, int cols, int[] out, int start, int end) {
+        for (int y = start; y < end; y++) {
+            int sum = 0;
+            for (int x = 0; x < cols; x++) {
+                sum += data[y * cols + x];
+            }
+            out[y] = sum;
+        }
+    }
+}
@@ -0,0 +1,208 @@
+package com.example.jagadish.motion;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class PreRollBufferTest {
+    private static final long FRAME_US = 33333; // 30 fps
+    private static final int GOP = 30; // One key frame a second
+    private static final int PACKET_SIZE = 1000;
+
+    // Stands in for the encoder: numbered packets whose first byte is the frame number
+    private static class FakeEncoder {
+        final byte[] packet = new byte[PACKET_SIZE + 8];
+        int frame;
+
+        void encode(PreRollRecorder recorder, int frames) {
+            for (int i = 0; i < frames; i++, frame++) {
+                packet[4] = (byte) frame;
+                recorder.onPacket(packet, 4, PACKET_SIZE, frame * FRAME_US, frame % GOP == 0);
+            }
+        }
+    }
+
+    private static class ListSink implements PacketSink {
+        final List<Long> timestamps = new ArrayList<>();
+        final List<Boolean> keyFrames = new ArrayList<>();
+        final List<Integer> frames = new ArrayList<>();
+        int failAfter = Integer.MAX_VALUE;
+
+        @Override
+        public void writePacket(byte[] data, int offset, int size, long presentationTimeUs, boolean keyFrame)
+                throws IOException {
+            if (timestamps.size() == failAfter) throw new IOException("disk full");
+            assertEquals(PACKET_SIZE, size);
+            timestamps.add(presentationTimeUs);
+            keyFrames.add(keyFrame);
+            frames.add(data[offset] & 0xff);
+        }
+    }
+
+    @Test
+    public void ringCoversPreRollFromKeyFrame() {
+        PreRollBuffer buffer = new PreRollBuffer(2000000, 1 << 20);
+        new FakeEncoder().encode(new PreRollRecorder(buffer), 300);
+
+        assertTrue(buffer.getDurationUs() >= 2000000 - FRAME_US);
+        assertTrue(buffer.getDurationUs() < 3000000);
+        assertEquals(0, buffer.getOldestTimestampUs() % (GOP * FRAME_US));
+        assertEquals(buffer.getPacketCount() * PACKET_SIZE, buffer.getBufferedBytes());
+        assertEquals(0, buffer.getMemoryEvictions());
+    }
+
+    @Test
+    public void memoryCapDropsWholeGroups() {
+        PreRollBuffer buffer = new PreRollBuffer(5000000, 45 * PACKET_SIZE);
+        new FakeEncoder().encode(new PreRollRecorder(buffer), 300);
+
+        assertTrue(buffer.getBufferedBytes() <= buffer.getMaxBytes());
+        assertTrue(buffer.getMemoryEvictions() > 0);
+        assertEquals(0, buffer.getOldestTimestampUs() % (GOP * FRAME_US));
+
+        // A group that alone exceeds the cap empties the ring until the next key frame
+        PreRollBuffer tiny = new PreRollBuffer(5000000, 10 * PACKET_SIZE);
+        new FakeEncoder().encode(new PreRollRecorder(tiny), 45);
+        assertEquals(0, tiny.getPacketCount());
+        assertTrue(tiny.getRejectedPackets() > 0);
+    }
+
+    @Test
+    public void rejectsPacketsBeforeFirstKeyFrame() {
+        PreRollBuffer buffer = new PreRollBuffer(1000000, 1 << 20);
+        byte[] data = new byte[10];
+        assertFalse(buffer.add(data, 0, 10, 0, false));
+        assertTrue(buffer.add(data, 0, 10, FRAME_US, true));
+        assertTrue(buffer.add(data, 0, 10, 2 * FRAME_US, false));
+        assertEquals(1, buffer.getRejectedPackets());
+        assertEquals(2, buffer.getPacketCount());
+    }
+
+    @Test
+    public void clipStartsWithPreRollThenLive() {
+        PreRollBuffer buffer = new PreRollBuffer(2000000, 1 << 20);
+        PreRollRecorder recorder = new PreRollRecorder(buffer);
+        FakeEncoder encoder = new FakeEncoder();
+        encoder.encode(recorder, 200);
+
+        ListSink sink = new ListSink();
+        int buffered = buffer.getPacketCount();
+        LatencyTracker latency = new LatencyTracker(8, Long.MAX_VALUE);
+        recorder.setStartLatency(latency);
+        recorder.start(sink, System.nanoTime());
+        assertEquals(0, latency.getCount());
+        assertTrue(recorder.isRecording());
+        encoder.encode(recorder, 60);
+        assertEquals(buffered + 60, recorder.stop());
+        assertFalse(recorder.isRecording());
+        assertNull(recorder.getError());
+
+        assertEquals(buffered + 60, sink.timestamps.size());
+        assertTrue(sink.keyFrames.get(0));
+        assertEquals(0L, (long) sink.timestamps.get(0));
+        for (int i = 1; i < sink.frames.size(); i++) {
+            // Gapless: consecutive frames with rising timestamps
+            assertEquals((sink.frames.get(i - 1) + 1) & 0xff, (int) sink.frames.get(i));
+            assertTrue(sink.timestamps.get(i) > sink.timestamps.get(i - 1));
+        }
+        assertTrue(recorder.getLastPreRollUs() >= 2000000);
+        // One sample per clip, taken when the first packet is written
+        assertEquals(1, latency.getCount());
+
+        // Nothing more reaches the sink after stop, but the ring keeps filling
+        encoder.encode(recorder, 30);
+        assertEquals(buffered + 60, sink.timestamps.size());
+        assertTrue(buffer.getPacketCount() > 0);
+    }
+
+    @Test
+    public void emptyRingWaitsForKeyFrame() {
+        PreRollRecorder recorder = new PreRollRecorder(new PreRollBuffer(1000000, 1 << 20));
+        FakeEncoder encoder = new FakeEncoder();
+        encoder.frame = 5;
+
+        ListSink sink = new ListSink();
+        recorder.start(sink);
+        encoder.encode(recorder, 10);
+        assertTrue(recorder.isWaitingForKeyFrame());
+        assertTrue(sink.timestamps.isEmpty());
+
+        encoder.encode(recorder, 20);
+        assertFalse(recorder.isWaitingForKeyFrame());
+        assertEquals(5, recorder.stop());
+        assertTrue(sink.keyFrames.get(0));
+        assertEquals(0L, (long) sink.timestamps.get(0));
+    }
+
+    @Test
+    public void writeFailureEndsClip() {
+        PreRollRecorder recorder = new PreRollRecorder(new PreRollBuffer(1000000, 1 << 20));
+        FakeEncoder encoder = new FakeEncoder();
+        encoder.encode(recorder, 60);
+
+        ListSink sink = new ListSink();
+        sink.failAfter = 10;
+        recorder.start(sink);
+        encoder.encode(recorder, 10);
+        assertFalse(recorder.isRecording());
+        assertNotNull(recorder.getError());
+        assertEquals(10, sink.timestamps.size());
+
+        // The next clip starts clean
+        recorder.start(new ListSink());
+        assertNull(recorder.getError());
+        recorder.stop();
+    }
+
+    @Test
+    public void rollOverSplitsAtKeyFrameWithoutLoss() {
+        PreRollBuffer buffer = new PreRollBuffer(1000000, 1 << 20);
+        PreRollRecorder recorder = new PreRollRecorder(buffer);
+        List<PacketSink> finished = new ArrayList<>();
+        recorder.setSegmentListener((sink, packets) -> {
+            finished.add(sink);
+            assertEquals(((ListSink) sink).timestamps.size(), packets);
+        });
+        FakeEncoder encoder = new FakeEncoder();
+        encoder.encode(recorder, 45);
+
+        ListSink first = new ListSink();
+        ListSink second = new ListSink();
+        recorder.start(first);
+        encoder.encode(recorder, 5);
+        recorder.rollOver(second);
+        assertTrue(recorder.isWaitingForKeyFrame());
+        // Frames 50 to 59 still belong to the first segment
+        encoder.encode(recorder, 10);
+        assertTrue(finished.isEmpty());
+        encoder.encode(recorder, 20);
+        assertEquals(1, finished.size());
+        assertSame(first, finished.get(0));
+        assertFalse(recorder.isRollOverPending());
+        recorder.stop();
+
+        assertEquals(60, (int) second.frames.get(0));
+        assertEquals(59, (int) first.frames.get(first.frames.size() - 1));
+        assertTrue(second.keyFrames.get(0));
+        assertEquals(0L, (long) second.timestamps.get(0));
+        assertEquals(20, second.frames.size());
+    }
+
+    @Test
+    public void stopAbandonsPendingRollOver() {
+        PreRollRecorder recorder = new PreRollRecorder(new PreRollBuffer(1000000, 1 << 20));
+        FakeEncoder encoder = new FakeEncoder();
+        encoder.encode(recorder, 10);
+        ListSink next = new ListSink();
+        recorder.start(new ListSink());
+        recorder.rollOver(next);
+        encoder.encode(recorder, 5);
+        recorder.stop();
+        encoder.encode(recorder, 30);
+        assertTrue(next.timestamps.isEmpty());
+    }
+}
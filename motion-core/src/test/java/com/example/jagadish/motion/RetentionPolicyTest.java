@@ -0,0 +1,82 @@
+package com.example.jagadish.motion;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class RetentionPolicyTest {
+    private static final long DAY = 24 * 3600 * 1000L;
+    private static final long NOW = 100 * DAY;
+
+    // One 10-byte clip a day, the oldest first, importance by day
+    private static List<RetentionPolicy.Clip> clips(int days, int... important) {
+        List<RetentionPolicy.Clip> clips = new ArrayList<>();
+        for (int i = days - 1; i >= 0; i--) {
+            boolean flagged = false;
+            for (int day : important) {
+                flagged |= day == i;
+            }
+            clips.add(new RetentionPolicy.Clip(i, "clip" + i, 10, NOW - (days - i) * DAY, flagged));
+        }
+        return clips;
+    }
+
+    private static String paths(List<RetentionPolicy.Clip> clips) {
+        StringBuilder paths = new StringBuilder();
+        for (RetentionPolicy.Clip clip : clips) {
+            paths.append(clip.getPath()).append(' ');
+        }
+        return paths.toString().trim();
+    }
+
+    @Test
+    public void quotaEvictsOldestFirst() {
+        RetentionPolicy policy = new RetentionPolicy(75, 0, 0);
+        assertEquals("clip0 clip1 clip2", paths(policy.select(clips(10), NOW, 1000)));
+        assertTrue(policy.select(clips(7), NOW, 1000).isEmpty());
+    }
+
+    @Test
+    public void ageLimitEvictsExpired() {
+        RetentionPolicy policy = new RetentionPolicy(0, 7 * DAY + 1, 0);
+        assertEquals("clip0 clip1 clip2", paths(policy.select(clips(10), NOW, 1000)));
+    }
+
+    @Test
+    public void importantClipsAreKept() {
+        RetentionPolicy policy = new RetentionPolicy(75, 0, 0);
+        assertEquals("clip0 clip2 clip3", paths(policy.select(clips(10, 1), NOW, 1000)));
+        assertEquals("clip0 clip2 clip4", paths(policy.select(clips(10, 1, 3), NOW, 1000)));
+        // Flagged clips count against the quota even though they stay
+        assertEquals(8, new RetentionPolicy(20, 0, 0).select(clips(10, 8, 9), NOW, 1000).size());
+    }
+
+    @Test
+    public void lowSpaceFreesRoomForRecording() {
+        RetentionPolicy policy = new RetentionPolicy(0, 0, 500);
+        assertEquals("clip0 clip1", paths(policy.select(clips(10), NOW, 485)));
+        assertTrue(policy.select(clips(10), NOW, 500).isEmpty());
+    }
+
+    @Test
+    public void cursorIsReadOnlyAsFarAsNeeded() throws IOException {
+        RetentionPolicy policy = new RetentionPolicy(75, 0, 0);
+        List<RetentionPolicy.Clip> oldestFirst = clips(10, 1);
+        Collections.reverse(oldestFirst);
+        Iterator<RetentionPolicy.Clip> clips = oldestFirst.iterator();
+        int[] read = new int[1];
+        RetentionPolicy.Cursor cursor = () -> {
+            read[0]++;
+            return clips.hasNext() ? clips.next() : null;
+        };
+
+        assertEquals("clip0 clip2 clip3", paths(policy.select(cursor, 100, NOW, 1000)));
+        assertEquals(5, read[0]); // The four chosen or skipped and the one that stopped the walk
+    }
+}
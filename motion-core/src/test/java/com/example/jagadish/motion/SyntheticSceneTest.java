@@ -0,0 +1,113 @@
+package com.example.jagadish.motion;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class SyntheticSceneTest {
+    private static final int WIDTH = 320;
+    private static final int HEIGHT = 240;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    // Reports exactly the scene's ground truth
+    private static class OracleDetector implements InterMotionDetection {
+        final SyntheticScene scene;
+        int frame;
+
+        OracleDetector(SyntheticScene scene) {
+            this.scene = scene;
+        }
+
+        @Override
+        public int[] getPrevious() {
+            return null;
+        }
+
+        @Override
+        public boolean detect(int[] data, int width, int height) {
+            return false;
+        }
+
+        @Override
+        public boolean detect(byte[] yuv, int width, int height) {
+            return scene.isMotion(frame++);
+        }
+    }
+
+    private static SyntheticScene walker() {
+        SyntheticScene scene = new SyntheticScene(WIDTH, HEIGHT, 120, 3);
+        scene.setNoise(2);
+        scene.addObject(40, 80, 20, 80, 3, 0, 50, 100, 220);
+        return scene;
+    }
+
+    @Test
+    public void sameSeedRendersSameFrames() {
+        SyntheticScene a = walker();
+        SyntheticScene b = walker();
+        byte[] frameA = new byte[WIDTH * HEIGHT * 3 / 2];
+        byte[] frameB = new byte[frameA.length];
+        a.render(60, frameA);
+        b.render(60, frameB);
+        assertArrayEquals(frameA, frameB);
+
+        b.render(61, frameB);
+        assertFalse(Arrays.equals(frameA, frameB));
+    }
+
+    @Test
+    public void groundTruthFollowsObjects() {
+        SyntheticScene scene = walker();
+        assertFalse(scene.isMotion(49));
+        assertTrue(scene.isMotion(50));
+        assertTrue(scene.isMotion(100));
+        assertTrue(scene.isMotion(101));
+        assertFalse(scene.isMotion(102));
+
+        // An object that has left the frame no longer counts
+        SyntheticScene leaving = new SyntheticScene(WIDTH, HEIGHT, 60, 3);
+        leaving.addObject(20, 20, WIDTH - 30, 10, 10, 0, 0, 59, 200);
+        assertTrue(leaving.isMotion(1));
+        assertFalse(leaving.isMotion(10));
+    }
+
+    @Test
+    public void oracleScoresPerfectly() {
+        SyntheticScene scene = walker();
+        DetectionScore score = DetectionScorer.score(scene, new OracleDetector(scene), 0);
+        assertEquals(1.0, score.getPrecision(), 0);
+        assertEquals(1.0, score.getRecall(), 0);
+        assertEquals(1, score.getEpisodes());
+        assertEquals(0, score.getMissedEpisodes());
+        assertEquals(0, score.getMaxFramesToDetect());
+    }
+
+    @Test
+    public void motionDetectionFindsWalker() {
+        DetectionScore score = DetectionScorer.score(walker(), new MotionDetection(WIDTH, HEIGHT));
+        assertEquals(0, score.getMissedEpisodes());
+        assertTrue(score.toString(), score.getRecall() > 0.8);
+        assertTrue(score.toString(), score.getPrecision() > 0.8);
+    }
+
+    @Test
+    public void writesReplayableFile() throws Exception {
+        SyntheticScene scene = walker();
+        File file = folder.newFile();
+        scene.writeTo(file);
+
+        byte[] expected = new byte[WIDTH * HEIGHT * 3 / 2];
+        scene.render(75, expected);
+        try (FrameFileReader reader = new FrameFileReader(file)) {
+            assertEquals(scene.getFrameCount(), reader.getFrameCount());
+            assertArrayEquals(expected, reader.readFrame(75, null));
+        }
+    }
+}
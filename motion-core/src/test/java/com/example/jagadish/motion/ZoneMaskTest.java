@@ -0,0 +1,97 @@
+package com.example.jagadish.motion;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class ZoneMaskTest {
+    @Test
+    public void emptyMaskCoversWholeFrame() throws Exception {
+        SpanList spans = new ZoneMask().compile(16, 8);
+        assertEquals(16 * 8, spans.getPixelCount());
+        for (int y = 0; y < 8; y++) {
+            assertEquals(1, spans.getRowStart(y + 1) - spans.getRowStart(y));
+        }
+    }
+
+    @Test
+    public void exclusionWinsOverInclusion() throws Exception {
+        ZoneMask zones = new ZoneMask();
+        zones.addRectangle(true, 0f, 0f, 0.5f, 1f);
+        zones.addRectangle(false, 0.25f, 0.25f, 0.75f, 0.75f);
+        SpanList spans = zones.compile(20, 20);
+
+        // Left half minus the excluded square's overlap with it
+        assertEquals(10 * 20 - 5 * 10, spans.getPixelCount());
+        assertEquals(10, spans.count(0, 0, 20, 1));
+        assertEquals(5, spans.count(0, 10, 20, 11));
+        assertEquals(0, spans.count(10, 0, 20, 20));
+    }
+
+    @Test
+    public void boundsAndCopyCoverOnlySpans() throws Exception {
+        ZoneMask zones = new ZoneMask();
+        zones.addRectangle(true, 0.25f, 0.5f, 0.75f, 0.75f);
+        SpanList spans = zones.compile(8, 8);
+        assertEquals(2, spans.getLeft());
+        assertEquals(4, spans.getTop());
+        assertEquals(6, spans.getRight());
+        assertEquals(6, spans.getBottom());
+
+        byte[] src = new byte[64];
+        byte[] dst = new byte[64];
+        Arrays.fill(src, (byte) 1);
+        spans.copy(src, dst);
+        int copied = 0;
+        for (int i = 0; i < 64; i++) {
+            copied += dst[i];
+            assertEquals(spans.count(i % 8, i / 8, i % 8 + 1, i / 8 + 1), dst[i]);
+        }
+        assertEquals(spans.getPixelCount(), copied);
+    }
+
+    private static boolean anyMotion(ZoneMask zones) {
+        SyntheticScene scene = new SyntheticScene(320, 240, 40, 3);
+        // Walks across the left half only
+        scene.addObject(40, 80, 10, 80, 2, 0, 10, 40, 220);
+        MotionDetection detection = new MotionDetection(320, 240);
+        detection.setZoneMask(zones);
+        byte[] frame = new byte[320 * 240 * 3 / 2];
+        boolean motion = false;
+        for (int i = 0; i < scene.getFrameCount(); i++) {
+            scene.render(i, frame);
+            motion |= detection.detect(frame, 320, 240);
+        }
+        return motion;
+    }
+
+    @Test
+    public void motionOutsideZonesIsIgnored() throws Exception {
+        ZoneMask left = new ZoneMask();
+        left.addRectangle(true, 0f, 0f, 0.5f, 1f);
+        ZoneMask right = new ZoneMask();
+        right.addRectangle(true, 0.5f, 0f, 1f, 1f);
+
+        assertTrue(anyMotion(left));
+        assertFalse(anyMotion(right));
+    }
+
+    @Test
+    public void triangleFollowsPixelCentres() throws Exception {
+        ZoneMask zones = new ZoneMask();
+        zones.addPolygon(true, new float[] { 0f, 0f, 1f, 0f, 0f, 1f });
+        int size = 10;
+        SpanList spans = zones.compile(size, size);
+
+        for (int y = 0; y < size; y++) {
+            for (int x = 0; x < size; x++) {
+                // Centres on the hypotenuse may round either way
+                if (x + y + 1 == size) continue;
+                boolean inside = x + y + 1 < size;
+                assertEquals("pixel " + x + "," + y, inside ? 1 : 0, spans.count(x, y, x + 1, y + 1));
+            }
+        }
+    }
+}